@@ -0,0 +1,280 @@
+package com.hanoi_metro.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hanoi_metro.backend.BackendApplication;
+import com.hanoi_metro.backend.service.IdempotencyService;
+
+/**
+ * Load test cho luồng mua hàng: dựng MySQL bằng Testcontainers, MoMo và GHN giả lập, khởi động backend trên cổng ngẫu nhiên
+ * rồi cho N khách ảo đồng thời chạy thêm giỏ -> áp voucher -> checkout.
+ * Báo cáo throughput, p50/p95/p99 từng endpoint, thời gian chờ connection Hikari và các vi phạm
+ * (bán vượt tồn kho, voucher dùng quá giới hạn).
+ *
+ * Chạy: mvn -Ploadtest test-compile exec:java -Dloadtest.users=500 -Dloadtest.concurrency=100
+ */
+public class CheckoutLoadTest {
+
+    private static final String CONTEXT_PATH = "/hanoi_metro";
+    private static final int SUCCESS_CODE = 1000;
+
+    private final LoadTestSettings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+    private final AtomicInteger completedFlows = new AtomicInteger();
+    private final AtomicInteger ordersPlaced = new AtomicInteger();
+    private final AtomicInteger momoPayUrls = new AtomicInteger();
+    private final AtomicInteger voucherApplied = new AtomicInteger();
+    private final AtomicLong peakPendingConnections = new AtomicLong();
+
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    public CheckoutLoadTest(LoadTestSettings settings) {
+        this.settings = settings;
+        for (String name : List.of("login", "add-to-cart", "apply-voucher", "checkout")) {
+            recorders.put(name, new LatencyRecorder(name, settings.getUsers()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = new LoadTestSettings();
+        Report report = new CheckoutLoadTest(settings).run();
+        System.out.println(report.text());
+        Path reportFile = Path.of(settings.getReportFile());
+        if (reportFile.getParent() != null) {
+            Files.createDirectories(reportFile.getParent());
+        }
+        Files.writeString(reportFile, report.text(), StandardCharsets.UTF_8);
+        if (report.violations() > 0
+                && Boolean.parseBoolean(System.getProperty("loadtest.failOnViolation", "true"))) {
+            throw new IllegalStateException("Load test found " + report.violations() + " consistency violations");
+        }
+    }
+
+    public Report run() throws Exception {
+        ConnectionWaitTracker connectionWait = new ConnectionWaitTracker(settings.getUsers() * 64);
+        try (MySQLContainer<?> mysql = new MySQLContainer<>(DockerImageName.parse(settings.getMysqlImage()))
+                        .withDatabaseName("hanoi_metro");
+                MomoStubServer momo = new MomoStubServer(settings.getMomoLatencyMs());
+                GhnStandInServer ghn = new GhnStandInServer(
+                        0,
+                        StandInBehavior.fromProperties("ghn", 80),
+                        new GhnStandInServer.Progression(null, 60_000L, null))) {
+            mysql.start();
+            momo.start();
+            ghn.start();
+
+            SpringApplication application = new SpringApplication(BackendApplication.class);
+            application.addInitializers(context -> context.getBeanFactory().addBeanPostProcessor(connectionWait));
+            try (ConfigurableApplicationContext context = application.run(applicationArguments(mysql, momo, ghn))) {
+                baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port")
+                        + CONTEXT_PATH;
+                LoadTestSeeder.Seed seed = new LoadTestSeeder(context).seed(settings);
+
+                long startedAt = System.nanoTime();
+                drive(seed.customers(), connectionWait);
+                long elapsedNanos = System.nanoTime() - startedAt;
+
+                return buildReport(context.getBean(JdbcTemplate.class), connectionWait, momo, elapsedNanos);
+            }
+        }
+    }
+
+    // Tham số dòng lệnh có độ ưu tiên cao hơn application.yaml
+    private String[] applicationArguments(MySQLContainer<?> mysql, MomoStubServer momo, GhnStandInServer ghn) {
+        return new String[] {
+            "--server.port=0",
+            "--spring.datasource.url=" + mysql.getJdbcUrl(),
+            "--spring.datasource.username=" + mysql.getUsername(),
+            "--spring.datasource.password=" + mysql.getPassword(),
+            "--spring.datasource.hikari.maximum-pool-size=" + settings.getHikariMaxPoolSize(),
+            "--momo.end-point=" + momo.endpoint(),
+            "--jwt.signerKey=" + "loadtest-".repeat(12),
+            "--brevo.api.key=loadtest",
+            "--brevo.sender.email=loadtest@hanoimetro.test",
+            "--ghn.token=loadtest",
+            "--ghn.shop-id=0",
+            "--ghn.base-url=" + ghn.baseUrl(),
+            "--ghn.master-data.snapshot-file=target/loadtest-ghn-master-data.json",
+        };
+    }
+
+    private void drive(List<LoadTestSeeder.Customer> customers, ConnectionWaitTracker connectionWait)
+            throws InterruptedException {
+        // Java 17 chưa có virtual thread: mỗi khách ảo chạy trên một luồng của pool cố định = concurrency
+        ExecutorService workers = Executors.newFixedThreadPool(settings.getConcurrency());
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        sampler.scheduleAtFixedRate(
+                () -> peakPendingConnections.accumulateAndGet(connectionWait.pendingThreads(), Math::max),
+                0, 20, TimeUnit.MILLISECONDS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(customers.size());
+            for (int i = 0; i < customers.size(); i++) {
+                LoadTestSeeder.Customer customer = customers.get(i);
+                boolean payWithMomo = i % 100 < settings.getMomoPercent();
+                futures.add(workers.submit(() -> runFlow(customer, payWithMomo)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    // runFlow đã tự ghi nhận lỗi
+                }
+            }
+        } finally {
+            sampler.shutdownNow();
+            workers.shutdownNow();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private void runFlow(LoadTestSeeder.Customer customer, boolean payWithMomo) {
+        Response login = call("login", "POST", "/auth/token", null, Map.of(
+                "email", customer.email(), "password", LoadTestSeeder.PASSWORD));
+        if (!login.ok()) {
+            return;
+        }
+        String token = login.body().path("result").path("token").asText();
+
+        Response addToCart = call("add-to-cart", "POST",
+                "/cart/items?productId=" + LoadTestSeeder.PRODUCT_ID + "&quantity=1", token, null);
+        if (!addToCart.ok()) {
+            return;
+        }
+        // Voucher hết lượt không chặn checkout, khách vẫn mua với giá gốc
+        if (call("apply-voucher", "POST", "/cart/apply-voucher?code=" + LoadTestSeeder.VOUCHER_CODE, token, null)
+                .ok()) {
+            voucherApplied.incrementAndGet();
+        }
+
+        Map<String, Object> checkout = new LinkedHashMap<>();
+        checkout.put("addressId", customer.addressId());
+        checkout.put("shippingFee", 30_000d);
+        checkout.put("paymentMethod", payWithMomo ? "MOMO" : "COD");
+        Response placed = call("checkout", "POST", "/orders/checkout", token, checkout);
+        if (placed.ok()) {
+            completedFlows.incrementAndGet();
+            if (payWithMomo) {
+                momoPayUrls.incrementAndGet();
+            } else {
+                ordersPlaced.incrementAndGet();
+            }
+        }
+    }
+
+    private Response call(String recorder, String method, String path, String token, Object body) {
+        long start = System.nanoTime();
+        int status = -1;
+        JsonNode json = null;
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .method(method, body == null
+                            ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+            if (token != null) {
+                request.header("Authorization", "Bearer " + token);
+            }
+            if ("checkout".equals(recorder)) {
+                request.header(IdempotencyService.HEADER, UUID.randomUUID().toString());
+            }
+            HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            status = response.statusCode();
+            json = response.body().length == 0 ? null : objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            recorders.get(recorder).record(System.nanoTime() - start, status);
+        }
+        boolean ok = status == 200 && json != null && json.path("code").asInt(SUCCESS_CODE) == SUCCESS_CODE;
+        return new Response(ok, json == null ? objectMapper.createObjectNode() : json);
+    }
+
+    private Report buildReport(
+            JdbcTemplate jdbcTemplate, ConnectionWaitTracker connectionWait, MomoStubServer momo, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000d;
+        long totalRequests = recorders.values().stream().mapToLong(LatencyRecorder::getCount).sum();
+
+        Long soldUnits = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE product_id = ?",
+                Long.class, LoadTestSeeder.PRODUCT_ID);
+        Long voucherUses = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_voucher_usage u JOIN vouchers v ON v.id = u.voucher_id WHERE v.code = ?",
+                Long.class, LoadTestSeeder.VOUCHER_CODE);
+        long oversold = Math.max(0, (soldUnits == null ? 0 : soldUnits) - settings.getStock());
+        long voucherOveruse = Math.max(0, (voucherUses == null ? 0 : voucherUses) - settings.getVoucherLimit());
+
+        StringBuilder text = new StringBuilder();
+        text.append("=== Checkout load test ===\n");
+        text.append(settings).append('\n');
+        text.append(String.format("Duration: %.2fs, requests: %d, throughput: %.1f req/s, %.1f checkouts/s%n",
+                seconds, totalRequests, totalRequests / seconds, completedFlows.get() / seconds));
+        text.append(String.format("Completed checkouts: %d (COD orders %d, MoMo payUrls %d, MoMo stub calls %d),"
+                        + " vouchers applied: %d%n",
+                completedFlows.get(), ordersPlaced.get(), momoPayUrls.get(), momo.requestCount(),
+                voucherApplied.get()));
+        text.append(String.format("%-20s %8s %8s %8s %10s %10s %10s %10s%n",
+                "endpoint", "count", "4xx", "errors", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)"));
+        for (LatencyRecorder recorder : recorders.values()) {
+            appendLatencyRow(text, recorder, recorder.getRejected(), recorder.getErrors());
+        }
+        appendLatencyRow(text, connectionWait.getAcquire(), 0, connectionWait.getTimeouts());
+        text.append(String.format("Connection wait: total %d ms, timeouts %d, peak pending threads %d%n",
+                connectionWait.getTotalWaitMillis(), connectionWait.getTimeouts(), peakPendingConnections.get()));
+        text.append(String.format("Oversell: sold %d / stock %d -> %s%n",
+                soldUnits, settings.getStock(), oversold > 0 ? "VIOLATION (+" + oversold + ")" : "ok"));
+        text.append(String.format("Voucher usage: %d / limit %d -> %s%n",
+                voucherUses, settings.getVoucherLimit(),
+                voucherOveruse > 0 ? "VIOLATION (+" + voucherOveruse + ")" : "ok"));
+        return new Report(text.toString(), oversold + voucherOveruse);
+    }
+
+    private static void appendLatencyRow(StringBuilder text, LatencyRecorder recorder, long rejected, long errors) {
+        LatencyRecorder.Snapshot snapshot = recorder.snapshot();
+        text.append(String.format("%-20s %8d %8d %8d %10.1f %10.1f %10.1f %10.1f%n",
+                recorder.getName(), recorder.getCount(), rejected, errors,
+                snapshot.p50Micros() / 1000d, snapshot.p95Micros() / 1000d,
+                snapshot.p99Micros() / 1000d, snapshot.maxMicros() / 1000d));
+    }
+
+    private record Response(boolean ok, JsonNode body) {
+    }
+
+    public record Report(String text, long violations) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.hanoi_metro.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Đo thời gian chờ lấy connection từ Hikari pool. Đăng ký như BeanPostProcessor để gắn
+ * MetricsTrackerFactory vào HikariDataSource trước khi pool được khởi tạo.
+ */
+public class ConnectionWaitTracker implements BeanPostProcessor, MetricsTrackerFactory {
+
+    private final LatencyRecorder acquire;
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private volatile PoolStats poolStats;
+
+    public ConnectionWaitTracker(int capacity) {
+        this.acquire = new LatencyRecorder("connection-acquire", capacity);
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof HikariDataSource dataSource) {
+            dataSource.setMetricsTrackerFactory(this);
+        }
+        return bean;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+                totalWaitNanos.addAndGet(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.incrementAndGet();
+            }
+        };
+    }
+
+    public LatencyRecorder getAcquire() {
+        return acquire;
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitNanos.get() / 1_000_000;
+    }
+
+    // Số luồng đang chờ connection tại thời điểm gọi (dùng để lấy mẫu đỉnh trong lúc chạy)
+    public int pendingThreads() {
+        PoolStats stats = poolStats;
+        return stats != null ? stats.getPendingThreads() : 0;
+    }
+}
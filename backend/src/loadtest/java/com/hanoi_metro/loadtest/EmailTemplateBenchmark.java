@@ -0,0 +1,262 @@
+package com.hanoi_metro.loadtest;
+
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hanoi_metro.backend.configuration.EmailProperties;
+import com.hanoi_metro.backend.entity.Order;
+import com.hanoi_metro.backend.entity.OrderItem;
+import com.hanoi_metro.backend.entity.Product;
+import com.hanoi_metro.backend.entity.User;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+import com.hanoi_metro.backend.service.BrevoEmailService;
+import com.hanoi_metro.backend.service.EmailQueueService.EmailContent;
+import com.hanoi_metro.backend.service.EmailTemplateService;
+
+/**
+ * So sánh tốc độ dựng email xác nhận đơn hàng: cách cũ (String.format + StringBuilder cho từng OrderItem,
+ * tạo NumberFormat / ObjectMapper mỗi lần) với template biên dịch sẵn của EmailTemplateService.
+ * - legacyBuilder: bản chép nguyên code dựng nội dung trước khi có template
+ * - templateRender: template, cache hết hạn ngay (mỗi lần đều render)
+ * - templateCached: template, nội dung lặp lại lấy từ cache (ví dụ cùng thông báo gửi nhiều người)
+ * Không cần Spring context hay MySQL.
+ *
+ * Chạy: mvn -Ploadtest test-compile exec:java -Dloadtest.main=com.hanoi_metro.loadtest.EmailTemplateBenchmark
+ *       -Dbenchmark.items=1,10,50
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class EmailTemplateBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int items;
+
+    private Order order;
+    private BrevoEmailService uncachedRenderer;
+    private BrevoEmailService cachedRenderer;
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(EmailTemplateBenchmark.class.getSimpleName())
+                .param("items", System.getProperty("benchmark.items", "1,10,50").split(","))
+                .forks(0)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<OrderItem> orderItems = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            orderItems.add(OrderItem.builder()
+                    .product(Product.builder().name("Sách <Lập trình> & thuật toán tập " + i).build())
+                    .quantity(1 + i % 3)
+                    .finalPrice(89_000d + i * 1_000)
+                    .build());
+        }
+        order = Order.builder()
+                .code("HM" + items)
+                .user(User.builder().email("khach@hanoimetro.test").fullName("Nguyễn Văn A").build())
+                .orderDate(LocalDate.now())
+                .shippingFee(30_000d)
+                .totalAmount(30_000d + items * 100_000d)
+                .paymentMethod(PaymentMethod.COD)
+                .shippingAddress("{\"name\":\"Nguyễn Văn A\",\"phone\":\"0900000000\","
+                        + "\"address\":\"144 Xuân Thủy, Cầu Giấy, Hà Nội\"}")
+                .items(orderItems)
+                .build();
+
+        EmailProperties noCache = new EmailProperties();
+        noCache.setTemplateCacheTtlSeconds(0);
+        uncachedRenderer = new BrevoEmailService(null, new EmailTemplateService(noCache), "support@hanoimetro.test");
+        cachedRenderer =
+                new BrevoEmailService(null, new EmailTemplateService(new EmailProperties()), "support@hanoimetro.test");
+    }
+
+    @Benchmark
+    public String[] legacyBuilder() {
+        return legacyOrderConfirmation(order);
+    }
+
+    @Benchmark
+    public EmailContent templateRender() {
+        return uncachedRenderer.renderOrderConfirmationEmail(order);
+    }
+
+    @Benchmark
+    public EmailContent templateCached() {
+        return cachedRenderer.renderOrderConfirmationEmail(order);
+    }
+
+    // Chép từ BrevoEmailService.sendOrderConfirmationEmail trước khi chuyển sang template, trả về {text, html}
+    private static String[] legacyOrderConfirmation(Order order) {
+        String customerName = order.getUser().getFullName() != null
+                ? order.getUser().getFullName()
+                : "Quý khách";
+
+        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(Locale.forLanguageTag("vi-VN"));
+
+        // Build items list for text
+        StringBuilder itemsTextBuilder = new StringBuilder();
+        // Build items list for HTML
+        StringBuilder itemsHtmlBuilder = new StringBuilder();
+        if (order.getItems() != null && !order.getItems().isEmpty()) {
+            for (OrderItem item : order.getItems()) {
+                String name = item.getProduct() != null ? item.getProduct().getName() : "Sản phẩm";
+                String itemText = String.format("- %s x%d : %s\n",
+                        name, item.getQuantity(), currencyFormat.format(item.getFinalPrice()));
+                itemsTextBuilder.append(itemText);
+
+                String itemHtml = String.format(
+                        "<tr><td style='padding: 8px; border-bottom: 1px solid #eee;'>%s</td>" +
+                        "<td style='padding: 8px; border-bottom: 1px solid #eee; text-align: center;'>x%d</td>" +
+                        "<td style='padding: 8px; border-bottom: 1px solid #eee; text-align: right;'>%s</td></tr>",
+                        name, item.getQuantity(), currencyFormat.format(item.getFinalPrice()));
+                itemsHtmlBuilder.append(itemHtml);
+            }
+        } else {
+            // Nếu không có items, vẫn gửi email nhưng với thông báo
+            itemsTextBuilder.append("Không có sản phẩm trong đơn hàng.\n");
+            itemsHtmlBuilder.append("<tr><td colspan='3' style='padding: 8px; text-align: center; color: #999;'>Không có sản phẩm trong đơn hàng.</td></tr>");
+        }
+
+        // Parse shipping address
+        String shippingAddressText = order.getShippingAddress();
+        if (shippingAddressText != null && shippingAddressText.startsWith("{")) {
+            try {
+                ObjectMapper mapper = new ObjectMapper();
+                JsonNode jsonNode = mapper.readTree(shippingAddressText);
+                String name = jsonNode.path("name").asText("");
+                String phone = jsonNode.path("phone").asText("");
+                String address = jsonNode.path("address").asText("");
+                shippingAddressText = String.format("%s - %s\n%s", name, phone, address);
+            } catch (Exception e) {
+                // Keep original if parsing fails
+            }
+        }
+
+        // Payment method display name
+        String paymentMethodDisplay = "Không xác định";
+        if (order.getPaymentMethod() != null) {
+            switch (order.getPaymentMethod().name()) {
+                case "MOMO":
+                    paymentMethodDisplay = "Thanh toán qua MoMo";
+                    break;
+                case "COD":
+                    paymentMethodDisplay = "Thanh toán khi nhận hàng (COD)";
+                    break;
+                default:
+                    paymentMethodDisplay = order.getPaymentMethod().name();
+            }
+        }
+
+        // Text content
+        String textContent = String.format(
+                "Xin chào %s,\n\n"
+                        + "Cảm ơn bạn đã đặt hàng tại LuminaBook!\n\n"
+                        + "Đơn hàng %s của bạn đã được xác nhận thành công.\n\n"
+                        + "THÔNG TIN ĐƠN HÀNG:\n"
+                        + "Mã đơn hàng: %s\n"
+                        + "Ngày đặt: %s\n"
+                        + "Tổng tiền: %s\n"
+                        + "Phí vận chuyển: %s\n"
+                        + "Phương thức thanh toán: %s\n\n"
+                        + "CHI TIẾT SẢN PHẨM:\n%s\n"
+                        + "ĐỊA CHỈ GIAO HÀNG:\n%s\n\n"
+                        + "Chúng tôi sẽ liên hệ với bạn khi đơn hàng được giao cho đơn vị vận chuyển.\n"
+                        + "Bạn có thể theo dõi trạng thái đơn hàng tại: http://localhost:3000/customer-account/orders\n\n"
+                        + "Trân trọng,\nĐội ngũ LuminaBook",
+                customerName,
+                order.getCode(),
+                order.getCode(),
+                order.getOrderDate() != null ? order.getOrderDate().toString() : "Hôm nay",
+                currencyFormat.format(order.getTotalAmount()),
+                currencyFormat.format(order.getShippingFee() != null ? order.getShippingFee() : 0),
+                paymentMethodDisplay,
+                itemsTextBuilder.toString(),
+                shippingAddressText != null ? shippingAddressText : "Chưa có địa chỉ");
+
+        // HTML content
+        String htmlContent = String.format(
+                "<!DOCTYPE html>" +
+                "<html><head><meta charset='UTF-8'><style>" +
+                "body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }" +
+                ".container { max-width: 600px; margin: 0 auto; padding: 20px; }" +
+                ".header { background-color: #1A3C5A; color: white; padding: 20px; text-align: center; border-radius: 5px 5px 0 0; }" +
+                ".content { background-color: #f9f9f9; padding: 20px; border: 1px solid #ddd; }" +
+                ".order-info { background-color: white; padding: 15px; margin: 15px 0; border-radius: 5px; }" +
+                ".order-info h3 { margin-top: 0; color: #1A3C5A; }" +
+                ".items-table { width: 100%%; border-collapse: collapse; margin: 15px 0; background-color: white; }" +
+                ".items-table th { background-color: #1A3C5A; color: white; padding: 10px; text-align: left; }" +
+                ".items-table td { padding: 8px; border-bottom: 1px solid #eee; }" +
+                ".total-row { font-weight: bold; font-size: 18px; color: #1A3C5A; }" +
+                ".footer { text-align: center; padding: 20px; color: #666; font-size: 12px; }" +
+                "</style></head><body>" +
+                "<div class='container'>" +
+                "<div class='header'><h1>Xác nhận đơn hàng</h1></div>" +
+                "<div class='content'>" +
+                "<p>Xin chào <strong>%s</strong>,</p>" +
+                "<p>Cảm ơn bạn đã đặt hàng tại <strong>LuminaBook</strong>!</p>" +
+                "<div class='order-info'>" +
+                "<h3>Thông tin đơn hàng</h3>" +
+                "<p><strong>Mã đơn hàng:</strong> %s</p>" +
+                "<p><strong>Ngày đặt:</strong> %s</p>" +
+                "<p><strong>Phương thức thanh toán:</strong> %s</p>" +
+                "</div>" +
+                "<h3>Chi tiết sản phẩm</h3>" +
+                "<table class='items-table'>" +
+                "<thead><tr><th>Sản phẩm</th><th style='text-align: center;'>Số lượng</th><th style='text-align: right;'>Thành tiền</th></tr></thead>" +
+                "<tbody>%s</tbody>" +
+                "<tfoot>" +
+                "<tr><td colspan='2' style='text-align: right; padding-top: 10px;'><strong>Phí vận chuyển:</strong></td>" +
+                "<td style='text-align: right; padding-top: 10px;'>%s</td></tr>" +
+                "<tr class='total-row'><td colspan='2' style='text-align: right; padding-top: 10px;'><strong>Tổng cộng:</strong></td>" +
+                "<td style='text-align: right; padding-top: 10px;'>%s</td></tr>" +
+                "</tfoot></table>" +
+                "<div class='order-info'>" +
+                "<h3>Địa chỉ giao hàng</h3>" +
+                "<p style='white-space: pre-line;'>%s</p>" +
+                "</div>" +
+                "<p>Chúng tôi sẽ liên hệ với bạn khi đơn hàng được giao cho đơn vị vận chuyển.</p>" +
+                "<p>Bạn có thể theo dõi trạng thái đơn hàng tại: " +
+                "<a href='http://localhost:3000/customer-account/orders'>Xem đơn hàng của tôi</a></p>" +
+                "</div>" +
+                "<div class='footer'>" +
+                "<p>Trân trọng,<br>Đội ngũ LuminaBook</p>" +
+                "</div></div></body></html>",
+                customerName,
+                order.getCode(),
+                order.getOrderDate() != null ? order.getOrderDate().toString() : "Hôm nay",
+                paymentMethodDisplay,
+                itemsHtmlBuilder.toString(),
+                currencyFormat.format(order.getShippingFee() != null ? order.getShippingFee() : 0),
+                currencyFormat.format(order.getTotalAmount()),
+                shippingAddressText != null ? shippingAddressText.replace("\n", "<br>") : "Chưa có địa chỉ");
+
+        return new String[] {textContent, htmlContent};
+    }
+}
@@ -0,0 +1,295 @@
+package com.hanoi_metro.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * GHN giả lập: các endpoint mà GhnService gọi (địa chính, ca lấy hàng, phí, thời gian giao, preview, tạo đơn,
+ * chi tiết đơn), trả đúng vỏ {code, message, data} của GHN. Dữ liệu địa chính sinh sẵn và luôn có kho mặc định
+ * (quận 1485, phường 1A0602).
+ *
+ * Vận đơn tạo ra đi lần lượt qua statuses, mỗi bước sau stepMs; detail trả trạng thái theo thời gian đã trôi qua.
+ * Khi có webhookUrl, mỗi lần chuyển trạng thái được đẩy tới webhook như GHN thật.
+ */
+public class GhnStandInServer extends StandInServer {
+
+    private static final String BASE_PATH = "/shiip/public-api";
+    private static final ZoneOffset VN = ZoneOffset.ofHours(7);
+
+    private final Progression progression;
+    private final Map<String, Instant> orders = new ConcurrentHashMap<>();
+    private final AtomicLong orderSequence = new AtomicLong();
+    private final ScheduledExecutorService webhookScheduler;
+    private final HttpClient httpClient;
+    private final AtomicLong webhooksSent = new AtomicLong();
+    private final AtomicLong webhooksFailed = new AtomicLong();
+
+    public GhnStandInServer(int port, StandInBehavior behavior, Progression progression) throws IOException {
+        super("127.0.0.1", port, behavior);
+        this.progression = progression;
+        boolean webhook = progression.webhookUrl() != null && !progression.webhookUrl().isBlank();
+        this.webhookScheduler = webhook ? Executors.newScheduledThreadPool(4) : null;
+        this.httpClient = webhook ? HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build() : null;
+
+        route(BASE_PATH + "/master-data/province", (body, exchange) -> ok(provinces()));
+        route(BASE_PATH + "/master-data/district", (body, exchange) -> ok(districts(body.path("province_id").asInt())));
+        route(BASE_PATH + "/master-data/ward", (body, exchange) -> ok(wards(body.path("district_id").asInt())));
+        route(BASE_PATH + "/v2/shift/date", (body, exchange) -> ok(shifts()));
+        route(BASE_PATH + "/v2/shipping-order/fee", (body, exchange) -> ok(fee(body)));
+        route(BASE_PATH + "/v2/shipping-order/leadtime", (body, exchange) -> ok(leadtime()));
+        route(BASE_PATH + "/v2/shipping-order/preview", (body, exchange) -> ok(shipment(body, null)));
+        route(BASE_PATH + "/v2/shipping-order/create", this::create);
+        route(BASE_PATH + "/v2/shipping-order/detail", (body, exchange) -> ok(detail(body.path("order_code").asText())));
+    }
+
+    // Giá trị cho ghn.base-url
+    public String baseUrl() {
+        return "http://127.0.0.1:" + port();
+    }
+
+    public int orderCount() {
+        return orders.size();
+    }
+
+    public long webhooksSentCount() {
+        return webhooksSent.get();
+    }
+
+    public long webhooksFailedCount() {
+        return webhooksFailed.get();
+    }
+
+    // ==================== Địa chính ====================
+
+    private static List<Map<String, Object>> provinces() {
+        return List.of(
+                Map.of("ProvinceID", 201, "ProvinceName", "Hà Nội", "Code", "4"),
+                Map.of("ProvinceID", 202, "ProvinceName", "Hồ Chí Minh", "Code", "8"),
+                Map.of("ProvinceID", 203, "ProvinceName", "Đà Nẵng", "Code", "511"));
+    }
+
+    private static List<Map<String, Object>> districts(int provinceId) {
+        List<Map<String, Object>> districts = new ArrayList<>();
+        if (provinceId == 201) {
+            districts.add(district(1485, provinceId, "Quận Cầu Giấy"));
+        }
+        for (int i = 1; i <= 4; i++) {
+            districts.add(district(provinceId * 10 + i, provinceId, "Quận " + i));
+        }
+        return districts;
+    }
+
+    private static Map<String, Object> district(int districtId, int provinceId, String name) {
+        return Map.of(
+                "DistrictID", districtId,
+                "ProvinceID", provinceId,
+                "DistrictName", name,
+                "Code", String.valueOf(districtId),
+                "Type", 1,
+                "SupportType", 3);
+    }
+
+    private static List<Map<String, Object>> wards(int districtId) {
+        List<Map<String, Object>> wards = new ArrayList<>();
+        if (districtId == 1485) {
+            wards.add(Map.of("WardCode", "1A0602", "DistrictID", districtId, "WardName", "Phường Dịch Vọng Hậu"));
+        }
+        for (int i = 1; i <= 5; i++) {
+            wards.add(Map.of("WardCode", districtId + "0" + i, "DistrictID", districtId, "WardName", "Phường " + i));
+        }
+        return wards;
+    }
+
+    private static List<Map<String, Object>> shifts() {
+        OffsetDateTime today = OffsetDateTime.now(VN).truncatedTo(ChronoUnit.DAYS);
+        List<Map<String, Object>> shifts = new ArrayList<>();
+        int id = 1;
+        for (int day = 0; day < 2; day++) {
+            for (int[] hours : new int[][] {{7, 12}, {12, 18}}) {
+                OffsetDateTime from = today.plusDays(day).plusHours(hours[0]);
+                shifts.add(Map.of(
+                        "id", id++,
+                        "title", String.format("Ca lấy %td-%<tm (%dh00 - %dh00)", from, hours[0], hours[1]),
+                        "from_time", from.toEpochSecond(),
+                        "to_time", today.plusDays(day).plusHours(hours[1]).toEpochSecond()));
+            }
+        }
+        return shifts;
+    }
+
+    // ==================== Báo giá ====================
+
+    // 16.500đ cho 500g đầu, thêm 5.000đ mỗi 500g; bảo hiểm 0,5% giá trị khai báo trên 3 triệu
+    private static Map<String, Object> fee(JsonNode body) {
+        long serviceFee = serviceFee(weight(body));
+        long insuranceFee = insuranceFee(body.path("insurance_value").asLong());
+        Map<String, Object> fee = new LinkedHashMap<>();
+        fee.put("total", serviceFee + insuranceFee);
+        fee.put("service_fee", serviceFee);
+        fee.put("insurance_fee", insuranceFee);
+        fee.put("pick_station_fee", 0);
+        fee.put("coupon_value", 0);
+        fee.put("r2s_fee", 0);
+        fee.put("cod_fee", 0);
+        return fee;
+    }
+
+    private static Map<String, Object> leadtime() {
+        OffsetDateTime expected = OffsetDateTime.now(VN).plusDays(2);
+        return Map.of(
+                "leadtime", expected.toEpochSecond(),
+                "leadtime_order", Map.of(
+                        "from_estimate_date", expected.minusDays(1).toString(),
+                        "to_estimate_date", expected.toString()));
+    }
+
+    private static long weight(JsonNode body) {
+        if (body.hasNonNull("weight")) {
+            return body.path("weight").asLong();
+        }
+        long total = 0;
+        for (JsonNode item : body.path("items")) {
+            total += item.path("weight").asLong() * Math.max(1, item.path("quantity").asLong(1));
+        }
+        return total;
+    }
+
+    private static long serviceFee(long weightGrams) {
+        long extraSteps = weightGrams <= 500 ? 0 : (weightGrams - 500 + 499) / 500;
+        return 16_500 + extraSteps * 5_000;
+    }
+
+    private static long insuranceFee(long insuranceValue) {
+        return insuranceValue > 3_000_000 ? insuranceValue / 200 : 0;
+    }
+
+    // ==================== Vận đơn ====================
+
+    private Object create(JsonNode body, HttpExchange exchange) {
+        String orderCode = "SI" + String.format("%08d", orderSequence.incrementAndGet());
+        Instant createdAt = Instant.now();
+        orders.put(orderCode, createdAt);
+        if (webhookScheduler != null) {
+            String shopId = exchange.getRequestHeaders().getFirst("ShopId");
+            for (int i = 0; i < progression.statuses().size(); i++) {
+                String status = progression.statuses().get(i);
+                webhookScheduler.schedule(
+                        () -> sendWebhook(orderCode, status, shopId), i * progression.stepMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+        return ok(shipment(body, orderCode));
+    }
+
+    private static Map<String, Object> shipment(JsonNode body, String orderCode) {
+        long serviceFee = serviceFee(weight(body));
+        long insuranceFee = insuranceFee(body.path("insurance_value").asLong());
+        Map<String, Object> fee = new LinkedHashMap<>();
+        fee.put("main_service", serviceFee);
+        fee.put("insurance", insuranceFee);
+        fee.put("station_do", 0);
+        fee.put("station_pu", 0);
+        fee.put("return", 0);
+        fee.put("r2s", 0);
+        fee.put("coupon", 0);
+        fee.put("cod_failed_fee", 0);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("order_code", orderCode);
+        data.put("sort_code", "000-A-00-00");
+        data.put("trans_type", "truck");
+        data.put("ward_encode", "");
+        data.put("district_encode", "");
+        data.put("fee", fee);
+        data.put("total_fee", serviceFee + insuranceFee);
+        data.put("expected_delivery_time", OffsetDateTime.now(VN).plusDays(2).toString());
+        return data;
+    }
+
+    private Map<String, Object> detail(String orderCode) {
+        Instant createdAt = orders.get(orderCode);
+        if (createdAt == null) {
+            throw new StandInError(400, "Order not found: " + orderCode);
+        }
+        long elapsedMs = Duration.between(createdAt, Instant.now()).toMillis();
+        int step = (int) Math.min(elapsedMs / Math.max(progression.stepMs(), 1), progression.statuses().size() - 1);
+        return Map.of("order_code", orderCode, "status", progression.statuses().get(step));
+    }
+
+    private void sendWebhook(String orderCode, String status, String shopId) {
+        Map<String, Object> callback = new LinkedHashMap<>();
+        callback.put("OrderCode", orderCode);
+        callback.put("Type", "switch_status");
+        callback.put("Status", status);
+        callback.put("Time", OffsetDateTime.now(VN).toString());
+        if (shopId != null && shopId.matches("\\d+")) {
+            callback.put("ShopID", Integer.parseInt(shopId));
+        }
+        try {
+            HttpResponse<Void> response = httpClient.send(
+                    HttpRequest.newBuilder(URI.create(progression.webhookUrl()))
+                            .timeout(Duration.ofSeconds(10))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(callback)))
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200) {
+                webhooksSent.incrementAndGet();
+            } else {
+                webhooksFailed.incrementAndGet();
+            }
+        } catch (IOException e) {
+            webhooksFailed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, Object> ok(Object data) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("code", 200);
+        response.put("message", "Success");
+        response.put("data", data);
+        return response;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (webhookScheduler != null) {
+            webhookScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Vòng đời vận đơn giả lập. webhookUrl gồm cả ?token=... của ghn.webhook.token; null thì không đẩy webhook.
+     */
+    public record Progression(List<String> statuses, long stepMs, String webhookUrl) {
+
+        public static final List<String> DEFAULT_STATUSES = List.of(
+                "ready_to_pick", "picking", "picked", "storing", "transporting", "delivering", "delivered");
+
+        public Progression {
+            statuses = statuses == null || statuses.isEmpty() ? DEFAULT_STATUSES : List.copyOf(statuses);
+        }
+    }
+}
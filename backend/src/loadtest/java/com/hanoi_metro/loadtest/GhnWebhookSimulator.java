@@ -0,0 +1,172 @@
+package com.hanoi_metro.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Phát lại luồng callback GHN vào /shipments/ghn/webhook của một backend đang chạy (mặc định localhost)
+ * để thử webhook mà không cần GHN gọi thật.
+ *
+ * Nguồn callback:
+ *  - -Dsimulator.file=callbacks.jsonl: mỗi dòng là một body JSON đúng định dạng GHN, phát lại theo thứ tự file;
+ *  - -Dsimulator.orderCodes=GHN1,GHN2: sinh vòng đời ready_to_pick -> ... -> delivered cho từng vận đơn,
+ *    xen kẽ ngẫu nhiên giữa các vận đơn.
+ * Nhiễu như GHN thật: -Dsimulator.duplicatePercent (gửi lại callback đã gửi), -Dsimulator.reorderPercent
+ * (đảo hai callback liên tiếp của cùng vận đơn).
+ *
+ * Chạy: mvn -Ploadtest test-compile exec:java -Dloadtest.main=com.hanoi_metro.loadtest.GhnWebhookSimulator
+ *       -Dsimulator.orderCodes=LFXXXX -Dsimulator.token=... -Dsimulator.shopId=...
+ */
+public class GhnWebhookSimulator {
+
+    private static final List<String> LIFECYCLE = List.of(
+            "ready_to_pick", "picking", "picked", "storing", "transporting", "sorting", "delivering", "delivered");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final Random random = new Random(Long.getLong("simulator.seed", 42L));
+
+    public static void main(String[] args) throws Exception {
+        new GhnWebhookSimulator().run();
+    }
+
+    private void run() throws Exception {
+        String url = System.getProperty("simulator.url", "http://localhost:8080/hanoi_metro/shipments/ghn/webhook");
+        String token = System.getProperty("simulator.token", "");
+        double ratePerSecond = Double.parseDouble(System.getProperty("simulator.ratePerSecond", "20"));
+        int duplicatePercent = Integer.getInteger("simulator.duplicatePercent", 20);
+        int reorderPercent = Integer.getInteger("simulator.reorderPercent", 10);
+
+        List<String> stream = addNoise(loadCallbacks(), duplicatePercent, reorderPercent);
+        URI target = URI.create(url + (url.contains("?") ? "&" : "?") + "token="
+                + URLEncoder.encode(token, StandardCharsets.UTF_8));
+        LatencyRecorder recorder = new LatencyRecorder("webhook", stream.size());
+        Map<Integer, Integer> byStatus = new TreeMap<>();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+
+        System.out.printf("Replaying %d GHN callbacks to %s at %.1f/s%n", stream.size(), url, ratePerSecond);
+        for (String body : stream) {
+            long startedAt = System.nanoTime();
+            int status;
+            try {
+                HttpResponse<Void> response = httpClient.send(
+                        HttpRequest.newBuilder(target)
+                                .timeout(Duration.ofSeconds(10))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body))
+                                .build(),
+                        HttpResponse.BodyHandlers.discarding());
+                status = response.statusCode();
+            } catch (Exception e) {
+                status = -1;
+            }
+            long elapsed = System.nanoTime() - startedAt;
+            recorder.record(elapsed, status);
+            byStatus.merge(status, 1, Integer::sum);
+            if (elapsed < intervalNanos) {
+                TimeUnit.NANOSECONDS.sleep(intervalNanos - elapsed);
+            }
+        }
+
+        LatencyRecorder.Snapshot snapshot = recorder.snapshot();
+        System.out.printf("Sent %d callbacks, by HTTP status %s (-1 = no response)%n", recorder.getCount(), byStatus);
+        System.out.printf("Latency p50 %d us, p95 %d us, p99 %d us, max %d us%n",
+                snapshot.p50Micros(), snapshot.p95Micros(), snapshot.p99Micros(), snapshot.maxMicros());
+    }
+
+    private List<String> loadCallbacks() throws Exception {
+        String file = System.getProperty("simulator.file");
+        if (file != null && !file.isBlank()) {
+            return Files.readAllLines(Path.of(file), StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .toList();
+        }
+
+        String codes = System.getProperty("simulator.orderCodes", "");
+        Map<String, Deque<String>> pending = new LinkedHashMap<>();
+        for (String code : codes.split(",")) {
+            if (!code.isBlank()) {
+                pending.put(code.trim(), new ArrayDeque<>(lifecycle(code.trim())));
+            }
+        }
+        if (pending.isEmpty()) {
+            throw new IllegalArgumentException("Set -Dsimulator.file or -Dsimulator.orderCodes");
+        }
+        // Xen kẽ các vận đơn nhưng giữ thứ tự callback trong từng vận đơn
+        List<String> stream = new ArrayList<>();
+        List<Deque<String>> queues = new ArrayList<>(pending.values());
+        while (!queues.isEmpty()) {
+            Deque<String> queue = queues.get(random.nextInt(queues.size()));
+            stream.add(queue.poll());
+            if (queue.isEmpty()) {
+                queues.remove(queue);
+            }
+        }
+        return stream;
+    }
+
+    private List<String> lifecycle(String orderCode) throws Exception {
+        Integer shopId = Integer.getInteger("simulator.shopId");
+        OffsetDateTime at = OffsetDateTime.now(ZoneOffset.ofHours(7)).minusHours(12);
+        List<String> callbacks = new ArrayList<>();
+        for (String status : LIFECYCLE) {
+            at = at.plusMinutes(30 + random.nextInt(60));
+            ObjectNode body = objectMapper.createObjectNode()
+                    .put("OrderCode", orderCode)
+                    .put("Type", "switch_status")
+                    .put("Status", status)
+                    .put("Time", at.toString());
+            if (shopId != null) {
+                body.put("ShopID", shopId);
+            }
+            callbacks.add(objectMapper.writeValueAsString(body));
+        }
+        return callbacks;
+    }
+
+    // GHN gửi lại callback khi không nhận được 200 kịp và không đảm bảo thứ tự
+    private List<String> addNoise(List<String> callbacks, int duplicatePercent, int reorderPercent) throws Exception {
+        List<String> noisy = new ArrayList<>(callbacks.size());
+        for (String callback : callbacks) {
+            noisy.add(callback);
+            if (random.nextInt(100) < duplicatePercent) {
+                noisy.add(callback);
+            }
+        }
+        for (int i = 0; i + 1 < noisy.size(); i++) {
+            if (random.nextInt(100) < reorderPercent && sameOrder(noisy.get(i), noisy.get(i + 1))) {
+                Collections.swap(noisy, i, i + 1);
+                i++;
+            }
+        }
+        return noisy;
+    }
+
+    private boolean sameOrder(String first, String second) throws Exception {
+        return objectMapper.readTree(first).path("OrderCode").asText()
+                .equals(objectMapper.readTree(second).path("OrderCode").asText());
+    }
+}
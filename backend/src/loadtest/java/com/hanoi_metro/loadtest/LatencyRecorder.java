@@ -0,0 +1,81 @@
+package com.hanoi_metro.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ghi độ trễ (micro giây) của một loại request và tính p50/p95/p99.
+ * Mảng cố định theo số mẫu dự kiến nên không cần khóa khi nhiều luồng cùng ghi.
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+    // 4xx: nghiệp vụ từ chối (hết hàng, voucher hết lượt...); 5xx hoặc lỗi kết nối: lỗi thật
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public LatencyRecorder(String name, int capacity) {
+        this.name = name;
+        this.samples = new AtomicLongArray(Math.max(capacity, 1));
+    }
+
+    public void record(long nanos) {
+        long index = count.getAndIncrement();
+        if (index < samples.length()) {
+            samples.set((int) index, nanos / 1_000);
+        }
+    }
+
+    // httpStatus < 0 nghĩa là request không nhận được phản hồi
+    public void record(long nanos, int httpStatus) {
+        record(nanos);
+        if (httpStatus < 0 || httpStatus >= 500) {
+            errors.incrementAndGet();
+        } else if (httpStatus >= 400) {
+            rejected.incrementAndGet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public Snapshot snapshot() {
+        int size = (int) Math.min(count.get(), samples.length());
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        return new Snapshot(
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                size == 0 ? 0 : sorted[size - 1]);
+    }
+
+    // Nearest-rank: giá trị nhỏ nhất mà ít nhất p% mẫu không vượt quá
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    public record Snapshot(long p50Micros, long p95Micros, long p99Micros, long maxMicros) {
+    }
+}
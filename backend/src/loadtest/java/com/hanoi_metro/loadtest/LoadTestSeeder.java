@@ -0,0 +1,144 @@
+package com.hanoi_metro.loadtest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.hanoi_metro.backend.constant.PredefinedRole;
+import com.hanoi_metro.backend.entity.Address;
+import com.hanoi_metro.backend.entity.Inventory;
+import com.hanoi_metro.backend.entity.Product;
+import com.hanoi_metro.backend.entity.Role;
+import com.hanoi_metro.backend.entity.User;
+import com.hanoi_metro.backend.entity.Voucher;
+import com.hanoi_metro.backend.enums.DiscountApplyScope;
+import com.hanoi_metro.backend.enums.DiscountValueType;
+import com.hanoi_metro.backend.enums.ProductStatus;
+import com.hanoi_metro.backend.enums.VoucherStatus;
+import com.hanoi_metro.backend.repository.AddressRepository;
+import com.hanoi_metro.backend.repository.ProductRepository;
+import com.hanoi_metro.backend.repository.RoleRepository;
+import com.hanoi_metro.backend.repository.UserRepository;
+import com.hanoi_metro.backend.repository.VoucherRepository;
+
+/**
+ * Tạo dữ liệu cho một lượt load test: một sản phẩm "hot" tồn kho giới hạn, một voucher giới hạn
+ * tổng lượt dùng và N khách hàng (mỗi khách một địa chỉ mặc định) dùng chung một mật khẩu.
+ */
+public class LoadTestSeeder {
+
+    public static final String PRODUCT_ID = "LOADTEST-HOT-001";
+    public static final String VOUCHER_CODE = "LOADTEST50";
+    public static final String PASSWORD = "loadtest-password";
+    public static final double UNIT_PRICE = 120_000d;
+
+    private final ConfigurableApplicationContext context;
+
+    public LoadTestSeeder(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public Seed seed(LoadTestSettings settings) {
+        Role customerRole = ensureCustomerRole();
+        seedProduct(settings.getStock());
+        seedVoucher(settings.getVoucherLimit());
+
+        // BCrypt chậm có chủ đích; băm một lần rồi dùng lại cho mọi khách
+        String passwordHash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        AddressRepository addressRepository = context.getBean(AddressRepository.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+
+        List<Customer> customers = new ArrayList<>(settings.getUsers());
+        for (int i = 0; i < settings.getUsers(); i++) {
+            String email = String.format("loadtest-%05d@hanoimetro.test", i);
+            Address address = addressRepository.save(Address.builder()
+                    .recipientName("Load Test " + i)
+                    .recipientPhoneNumber(String.format("09%08d", i))
+                    .country("VN")
+                    .provinceID("201")
+                    .provinceName("Hà Nội")
+                    .districtID("1442")
+                    .districtName("Ba Đình")
+                    .wardCode("20101")
+                    .wardName("Phúc Xá")
+                    .address(i + " Đường Thử Tải")
+                    .defaultAddress(true)
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+            userRepository.save(User.builder()
+                    .email(email)
+                    .password(passwordHash)
+                    .fullName("Load Test " + i)
+                    .phoneNumber(String.format("09%08d", i))
+                    .active(true)
+                    .createAt(LocalDate.now())
+                    .role(customerRole)
+                    .addresses(new HashSet<>(Set.of(address)))
+                    .build());
+            customers.add(new Customer(email, address.getAddressId()));
+        }
+        return new Seed(customers);
+    }
+
+    private Role ensureCustomerRole() {
+        RoleRepository roleRepository = context.getBean(RoleRepository.class);
+        String name = PredefinedRole.CUSTOMER_ROLE.getName();
+        return roleRepository.findById(name).orElseGet(() -> roleRepository.save(Role.builder()
+                .name(name)
+                .description(PredefinedRole.CUSTOMER_ROLE.getDescription())
+                .build()));
+    }
+
+    private void seedProduct(int stock) {
+        Product product = Product.builder()
+                .id(PRODUCT_ID)
+                .name("Sách thử tải")
+                .unitPrice(UNIT_PRICE)
+                .purchasePrice(UNIT_PRICE / 2)
+                .price(UNIT_PRICE)
+                .weight(300d)
+                .length(20d)
+                .width(14d)
+                .height(2d)
+                .quantitySold(0)
+                .status(ProductStatus.APPROVED)
+                .createdAt(LocalDateTime.now())
+                .build();
+        product.setInventory(Inventory.builder()
+                .stockQuantity(stock)
+                .lastUpdated(LocalDate.now())
+                .product(product)
+                .build());
+        context.getBean(ProductRepository.class).save(product);
+    }
+
+    private void seedVoucher(int usageLimit) {
+        context.getBean(VoucherRepository.class).save(Voucher.builder()
+                .code(VOUCHER_CODE)
+                .name("Voucher thử tải")
+                .discountValueType(DiscountValueType.AMOUNT)
+                .applyScope(DiscountApplyScope.ORDER)
+                .discountValue(20_000d)
+                .minOrderValue(0d)
+                .startDate(LocalDate.now().minusDays(1))
+                .expiryDate(LocalDate.now().plusDays(30))
+                .usageLimit(usageLimit)
+                .usagePerUser(1)
+                .isActive(true)
+                .status(VoucherStatus.APPROVED)
+                .build());
+    }
+
+    public record Customer(String email, String addressId) {
+    }
+
+    public record Seed(List<Customer> customers) {
+    }
+}
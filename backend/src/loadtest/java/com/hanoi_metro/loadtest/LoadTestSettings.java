@@ -0,0 +1,40 @@
+package com.hanoi_metro.loadtest;
+
+import lombok.Getter;
+
+/**
+ * Tham số của một lượt load test, đọc từ system property (-Dloadtest.xxx=...).
+ */
+@Getter
+public class LoadTestSettings {
+    // Số khách hàng ảo, mỗi khách chạy trọn kịch bản thêm giỏ -> áp voucher -> checkout một lần
+    private final int users = intProperty("loadtest.users", 300);
+    // Số khách chạy đồng thời
+    private final int concurrency = intProperty("loadtest.concurrency", 50);
+    // Tồn kho của sản phẩm "hot" mà tất cả khách tranh mua (nhỏ hơn users để lộ lỗi bán vượt tồn kho)
+    private final int stock = intProperty("loadtest.stock", 100);
+    // Giới hạn tổng lượt dùng voucher
+    private final int voucherLimit = intProperty("loadtest.voucherLimit", 50);
+    // Tỉ lệ % khách thanh toán MoMo (còn lại COD)
+    private final int momoPercent = intProperty("loadtest.momoPercent", 30);
+    // Độ trễ giả lập của MoMo stub (ms)
+    private final int momoLatencyMs = intProperty("loadtest.momoLatencyMs", 150);
+    private final String mysqlImage = System.getProperty("loadtest.mysqlImage", "mysql:8.0.36");
+    private final int hikariMaxPoolSize = intProperty("loadtest.hikariMaxPoolSize", 10);
+    private final String reportFile = System.getProperty("loadtest.reportFile", "target/loadtest-report.txt");
+
+    private static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "users=%d concurrency=%d stock=%d voucherLimit=%d momoPercent=%d momoLatencyMs=%d hikariMaxPoolSize=%d",
+                users, concurrency, stock, voucherLimit, momoPercent, momoLatencyMs, hikariMaxPoolSize);
+    }
+}
@@ -0,0 +1,146 @@
+package com.hanoi_metro.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * MoMo giả lập cho load test: trả về payUrl hợp lệ cho POST {end-point}/create sau độ trễ của behavior,
+ * để checkout MoMo đi hết luồng mà không gọi sandbox thật.
+ * Khi bật IPN, sau ipnDelayMs gửi IPN đã ký (HMAC-SHA256 như MoMo thật) tới ipnUrl trong request create;
+ * ipnFailPercent % giao dịch báo khách hủy (resultCode 1006).
+ */
+public class MomoStubServer extends StandInServer {
+
+    private static final String BASE_PATH = "/v2/gateway/api";
+
+    private final Ipn ipn;
+    private final ScheduledExecutorService ipnScheduler;
+    private final HttpClient httpClient;
+    private final AtomicLong ipnSent = new AtomicLong();
+    private final AtomicLong ipnFailed = new AtomicLong();
+
+    public MomoStubServer(int latencyMs) throws IOException {
+        this(0, new StandInBehavior(latencyMs, 0, 0), null);
+    }
+
+    public MomoStubServer(int port, StandInBehavior behavior, Ipn ipn) throws IOException {
+        super("127.0.0.1", port, behavior);
+        this.ipn = ipn;
+        this.ipnScheduler = ipn != null ? Executors.newScheduledThreadPool(4) : null;
+        this.httpClient = ipn != null
+                ? HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build()
+                : null;
+        route(BASE_PATH + "/create", (body, exchange) -> create(body));
+    }
+
+    // Giá trị cho momo.end-point (Feign client gọi {end-point}/create)
+    public String endpoint() {
+        return "http://127.0.0.1:" + port() + BASE_PATH;
+    }
+
+    public long ipnSentCount() {
+        return ipnSent.get();
+    }
+
+    public long ipnFailedCount() {
+        return ipnFailed.get();
+    }
+
+    private Object create(JsonNode body) {
+        String orderId = body.path("orderId").asText("");
+        if (ipn != null && !body.path("ipnUrl").asText("").isEmpty()) {
+            ipnScheduler.schedule(() -> sendIpn(body), ipn.delayMs(), TimeUnit.MILLISECONDS);
+        }
+        return Map.of(
+                "partnerCode", body.path("partnerCode").asText(""),
+                "orderId", orderId,
+                "requestId", body.path("requestId").asText(""),
+                "amount", body.path("amount").asLong(),
+                "responseTime", System.currentTimeMillis(),
+                "message", "Thành công.",
+                "resultCode", 0,
+                "payUrl", "https://momo.stub/pay/" + orderId);
+    }
+
+    private void sendIpn(JsonNode create) {
+        boolean paid = ThreadLocalRandom.current().nextInt(100) >= ipn.failPercent();
+        // Thứ tự khóa a-z đúng như MomoService.validateIpnSignature
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("amount", create.path("amount").asLong());
+        fields.put("extraData", create.path("extraData").asText(""));
+        fields.put("message", paid ? "Thành công." : "Giao dịch bị từ chối bởi người dùng.");
+        fields.put("orderId", create.path("orderId").asText(""));
+        fields.put("orderInfo", create.path("orderInfo").asText(""));
+        fields.put("orderType", "momo_wallet");
+        fields.put("partnerCode", create.path("partnerCode").asText(""));
+        fields.put("payType", "qr");
+        fields.put("requestId", create.path("requestId").asText(""));
+        fields.put("responseTime", System.currentTimeMillis());
+        fields.put("resultCode", paid ? 0 : 1006);
+        fields.put("transId", ThreadLocalRandom.current().nextLong(1_000_000_000L, 9_999_999_999L));
+
+        StringBuilder raw = new StringBuilder("accessKey=").append(ipn.accessKey());
+        fields.forEach((key, value) -> raw.append('&').append(key).append('=').append(value));
+        Map<String, Object> payload = new LinkedHashMap<>(fields);
+        payload.put("signature", sign(raw.toString()));
+
+        try {
+            HttpResponse<Void> response = httpClient.send(
+                    HttpRequest.newBuilder(URI.create(create.path("ipnUrl").asText()))
+                            .timeout(Duration.ofSeconds(10))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(payload)))
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 300) {
+                ipnFailed.incrementAndGet();
+            } else {
+                ipnSent.incrementAndGet();
+            }
+        } catch (IOException e) {
+            ipnFailed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String sign(String raw) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(ipn.secretKey().getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(raw.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign MoMo IPN", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (ipnScheduler != null) {
+            ipnScheduler.shutdownNow();
+        }
+    }
+
+    // accessKey/secretKey phải trùng momo.access-key/momo.secret-key của backend để IPN qua được kiểm tra chữ ký
+    public record Ipn(String accessKey, String secretKey, int delayMs, int failPercent) {}
+}
@@ -0,0 +1,212 @@
+package com.hanoi_metro.loadtest;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import com.hanoi_metro.backend.BackendApplication;
+import com.hanoi_metro.backend.dto.response.RevenueSlice;
+import com.hanoi_metro.backend.enums.FinancialRecordType;
+import com.hanoi_metro.backend.repository.FinancialRecordRepository;
+import com.hanoi_metro.backend.service.RevenueCubeService;
+
+/**
+ * So sánh RevenueCube với các truy vấn JPQL hiện tại của FinancialRecordRepository trên cùng một bộ dữ liệu:
+ * MySQL (Testcontainers) được nạp N bản ghi doanh thu trải đều trong một năm, rồi đo từng kiểu cắt dữ liệu.
+ *
+ * Chạy: mvn -Ploadtest test-compile exec:java -Dloadtest.main=com.hanoi_metro.loadtest.RevenueCubeBenchmark
+ *       -Dbenchmark.records=200000
+ * JMH chạy trong JVM của exec:java (forks = 0) vì classpath của plugin không truyền sang JVM con.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RevenueCubeBenchmark {
+
+    private static final int CATEGORIES = 20;
+    private static final int PRODUCTS = 1_000;
+    private static final int ITEMS_PER_ORDER = 4;
+    private static final int BATCH_SIZE = 2_000;
+
+    @Param("200000")
+    private int records;
+
+    private MySQLContainer<?> mysql;
+    private ConfigurableApplicationContext context;
+    private FinancialRecordRepository financialRecordRepository;
+    private RevenueCubeService revenueCubeService;
+    private LocalDate start;
+    private LocalDate end;
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(RevenueCubeBenchmark.class.getSimpleName())
+                .param("records", System.getProperty("benchmark.records", "200000"))
+                .forks(0)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(options).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mysql = new MySQLContainer<>(DockerImageName.parse(System.getProperty("loadtest.mysqlImage", "mysql:8.0.36")))
+                .withDatabaseName("hanoi_metro");
+        mysql.start();
+        context = new SpringApplication(BackendApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + mysql.getJdbcUrl(),
+                "--spring.datasource.username=" + mysql.getUsername(),
+                "--spring.datasource.password=" + mysql.getPassword(),
+                "--jwt.signerKey=" + "benchmark-".repeat(12),
+                "--brevo.api.key=benchmark",
+                "--brevo.sender.email=benchmark@hanoimetro.test",
+                "--ghn.token=benchmark",
+                "--ghn.shop-id=0",
+                // Khối được nạp thủ công sau khi có dữ liệu
+                "--app.revenue-cube.initial-delay-ms=86400000");
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/create_order_archive_tables.sql"))
+                .execute(jdbcTemplate.getDataSource());
+        end = LocalDate.now();
+        start = end.minusDays(364);
+        seed(jdbcTemplate);
+
+        financialRecordRepository = context.getBean(FinancialRecordRepository.class);
+        revenueCubeService = context.getBean(RevenueCubeService.class);
+        revenueCubeService.reload();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (mysql != null) {
+            mysql.stop();
+        }
+    }
+
+    // ==================== Doanh thu theo ngày trong một năm ====================
+
+    @Benchmark
+    public List<Object[]> repositoryRevenueByDay() {
+        return financialRecordRepository.revenueByDayGroupedByOrder(
+                FinancialRecordType.ORDER_PAYMENT, start.atStartOfDay(), end.atTime(23, 59, 59));
+    }
+
+    @Benchmark
+    public List<RevenueSlice> cubeRevenueByDay() {
+        return revenueCubeService.query(start, end, List.of("day"), null, null, null);
+    }
+
+    // ==================== Doanh thu theo phương thức thanh toán ====================
+
+    @Benchmark
+    public List<Object[]> repositoryRevenueByPayment() {
+        return financialRecordRepository.revenueByPayment(
+                FinancialRecordType.ORDER_PAYMENT, start.atStartOfDay(), end.atTime(23, 59, 59));
+    }
+
+    @Benchmark
+    public List<RevenueSlice> cubeRevenueByPayment() {
+        return revenueCubeService.query(start, end, List.of("paymentMethod"), null, null, null);
+    }
+
+    // ==================== Cắt nhiều chiều (chưa có truy vấn tương ứng trong repository) ====================
+
+    @Benchmark
+    public List<RevenueSlice> cubeCategoryByMonthForCod() {
+        return revenueCubeService.query(start, end, List.of("month", "category"), List.of("COD"), null, null);
+    }
+
+    @Benchmark
+    public List<RevenueSlice> cubeProductRevenueInOneCategory() {
+        return revenueCubeService.query(start, end, List.of("product"), null, List.of(categoryId(0)), null);
+    }
+
+    // ==================== Dữ liệu ====================
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> categories = new ArrayList<>();
+        for (int i = 0; i < CATEGORIES; i++) {
+            categories.add(new Object[] {categoryId(i), "Danh mục " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO categories (id, name, status) VALUES (?, ?, TRUE)", categories);
+
+        List<Object[]> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new Object[] {productId(i), "Sách " + i, categoryId(i % CATEGORIES)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO products (id, name, unit_price, price, status, category_id) "
+                + "VALUES (?, ?, 100000, 100000, 'APPROVED', ?)", products);
+
+        Random random = new Random(42);
+        List<Object[]> orders = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> revenue = new ArrayList<>(BATCH_SIZE * ITEMS_PER_ORDER);
+        for (int i = 0; i < records / ITEMS_PER_ORDER; i++) {
+            String orderId = UUID.randomUUID().toString();
+            LocalDateTime at = start.atStartOfDay()
+                    .plusDays(random.nextInt(365))
+                    .plusMinutes(random.nextInt(24 * 60));
+            boolean cod = random.nextInt(100) < 70;
+            orders.add(new Object[] {orderId, Timestamp.valueOf(at), cod ? "DELIVERED" : "CONFIRMED", cod ? "COD" : "MOMO"});
+            int firstProduct = random.nextInt(PRODUCTS - ITEMS_PER_ORDER);
+            for (int item = 0; item < ITEMS_PER_ORDER; item++) {
+                revenue.add(new Object[] {
+                    UUID.randomUUID().toString(), orderId, productId(firstProduct + item),
+                    50_000d + random.nextInt(200_000), cod ? "COD" : "MOMO", Timestamp.valueOf(at)
+                });
+            }
+            if (orders.size() == BATCH_SIZE) {
+                flush(jdbcTemplate, orders, revenue);
+            }
+        }
+        flush(jdbcTemplate, orders, revenue);
+    }
+
+    private static void flush(JdbcTemplate jdbcTemplate, List<Object[]> orders, List<Object[]> revenue) {
+        jdbcTemplate.batchUpdate("INSERT INTO orders (id, order_date_time, status, payment_method, payment_status, "
+                + "is_paid, version) VALUES (?, ?, ?, ?, 'PAID', TRUE, 0)", orders);
+        jdbcTemplate.batchUpdate("INSERT INTO financial_records (id, order_id, product_id, amount, payment_method, "
+                + "record_type, occurred_at) VALUES (?, ?, ?, ?, ?, 'ORDER_PAYMENT', ?)", revenue);
+        orders.clear();
+        revenue.clear();
+    }
+
+    private static String categoryId(int index) {
+        return String.format("BENCH-CAT-%02d", index);
+    }
+
+    private static String productId(int index) {
+        return String.format("BENCH-P-%04d", index);
+    }
+}
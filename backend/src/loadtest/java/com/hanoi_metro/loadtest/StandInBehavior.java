@@ -0,0 +1,52 @@
+package com.hanoi_metro.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Getter;
+
+/**
+ * Hành vi mạng giả lập của một stand-in: độ trễ cơ bản + jitter và tỉ lệ % request trả HTTP 500.
+ * Đọc từ system property -Dstandin.&lt;tên&gt;.latencyMs / .jitterMs / .errorPercent.
+ */
+@Getter
+public class StandInBehavior {
+
+    private final int latencyMs;
+    private final int jitterMs;
+    private final int errorPercent;
+
+    public StandInBehavior(int latencyMs, int jitterMs, int errorPercent) {
+        this.latencyMs = Math.max(latencyMs, 0);
+        this.jitterMs = Math.max(jitterMs, 0);
+        this.errorPercent = Math.max(0, Math.min(errorPercent, 100));
+    }
+
+    public static StandInBehavior fromProperties(String name, int defaultLatencyMs) {
+        String prefix = "standin." + name + ".";
+        return new StandInBehavior(
+                Integer.getInteger(prefix + "latencyMs", defaultLatencyMs),
+                Integer.getInteger(prefix + "jitterMs", defaultLatencyMs / 2),
+                Integer.getInteger(prefix + "errorPercent", 0));
+    }
+
+    public void delay() {
+        int millis = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextInt(jitterMs + 1) : 0);
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean shouldFail() {
+        return errorPercent > 0 && ThreadLocalRandom.current().nextInt(100) < errorPercent;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("latency=%d+%dms errors=%d%%", latencyMs, jitterMs, errorPercent);
+    }
+}
@@ -0,0 +1,111 @@
+package com.hanoi_metro.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Khung chung cho các dịch vụ đối tác giả lập (GHN, MoMo) chạy trong cùng JVM với load test hoặc độc lập:
+ * mỗi request đọc body JSON, chờ theo StandInBehavior, có thể bị trả HTTP 500 ngẫu nhiên, rồi trả JSON của handler.
+ */
+public abstract class StandInServer implements AutoCloseable {
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+    protected final StandInBehavior behavior;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    protected StandInServer(String host, int port, StandInBehavior behavior) throws IOException {
+        this.behavior = behavior;
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.executor = Executors.newFixedThreadPool(64);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long injectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    protected void route(String path, Handler handler) {
+        server.createContext(path, exchange -> handle(exchange, handler));
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        requests.incrementAndGet();
+        try {
+            JsonNode body;
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] raw = in.readAllBytes();
+                body = raw.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(raw);
+            }
+            behavior.delay();
+            if (behavior.shouldFail()) {
+                injectedErrors.incrementAndGet();
+                writeJson(exchange, 500, Map.of("code", 500, "message", "stand-in injected error"));
+                return;
+            }
+            try {
+                writeJson(exchange, 200, handler.handle(body, exchange));
+            } catch (StandInError e) {
+                writeJson(exchange, e.status, Map.of("code", e.status, "message", e.getMessage()));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void writeJson(HttpExchange exchange, int status, Object payload) throws IOException {
+        byte[] response = objectMapper.writeValueAsBytes(payload);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    protected interface Handler {
+        Object handle(JsonNode body, HttpExchange exchange) throws IOException;
+    }
+
+    // Lỗi nghiệp vụ có chủ đích (ví dụ vận đơn không tồn tại), khác với lỗi ngẫu nhiên của behavior
+    protected static class StandInError extends RuntimeException {
+        private final int status;
+
+        protected StandInError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
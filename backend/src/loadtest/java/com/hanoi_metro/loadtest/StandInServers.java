@@ -0,0 +1,71 @@
+package com.hanoi_metro.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Chạy GHN và MoMo giả lập độc lập để benchmark luồng vận chuyển/thanh toán trên máy không có mạng.
+ * Backend trỏ vào bằng profile standin (application-standin.yaml, cổng mặc định khớp bên dưới).
+ *
+ * Tham số (-D):
+ *  - standin.ghnPort=18081, standin.momoPort=18082
+ *  - standin.ghn.latencyMs / jitterMs / errorPercent, tương tự standin.momo.*
+ *  - standin.ghn.statuses=ready_to_pick,picking,...; standin.ghn.stepMs=60000: vòng đời vận đơn
+ *  - standin.ghn.webhookUrl=http://127.0.0.1:8080/hanoi_metro/shipments/ghn/webhook?token=standin: đẩy callback
+ *  - standin.momo.ipnDelayMs=2000, standin.momo.ipnFailPercent=10, standin.momo.ipn=false để tắt IPN
+ *  - standin.momo.accessKey / secretKey: mặc định trùng khóa sandbox trong application.yaml
+ *
+ * Chạy: mvn -Ploadtest test-compile exec:java -Dloadtest.main=com.hanoi_metro.loadtest.StandInServers
+ * rồi khởi động backend với SPRING_PROFILES_ACTIVE=standin.
+ */
+public class StandInServers {
+
+    public static void main(String[] args) throws Exception {
+        GhnStandInServer.Progression progression = new GhnStandInServer.Progression(
+                statuses(System.getProperty("standin.ghn.statuses")),
+                Long.getLong("standin.ghn.stepMs", 60_000L),
+                System.getProperty("standin.ghn.webhookUrl"));
+        MomoStubServer.Ipn ipn = Boolean.parseBoolean(System.getProperty("standin.momo.ipn", "true"))
+                ? new MomoStubServer.Ipn(
+                        System.getProperty("standin.momo.accessKey", "mTCKt9W3eU1m39TW"),
+                        System.getProperty("standin.momo.secretKey", "SetA5RDnLHvt51AULf51DyauxUo3kDU6"),
+                        Integer.getInteger("standin.momo.ipnDelayMs", 2_000),
+                        Integer.getInteger("standin.momo.ipnFailPercent", 10))
+                : null;
+
+        StandInBehavior ghnBehavior = StandInBehavior.fromProperties("ghn", 80);
+        StandInBehavior momoBehavior = StandInBehavior.fromProperties("momo", 150);
+        GhnStandInServer ghn = new GhnStandInServer(Integer.getInteger("standin.ghnPort", 18081), ghnBehavior, progression);
+        MomoStubServer momo = new MomoStubServer(Integer.getInteger("standin.momoPort", 18082), momoBehavior, ipn);
+        ghn.start();
+        momo.start();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            ghn.close();
+            momo.close();
+            System.out.printf("GHN: %d requests (%d injected errors), %d orders, webhooks %d sent / %d failed%n",
+                    ghn.requestCount(), ghn.injectedErrorCount(), ghn.orderCount(),
+                    ghn.webhooksSentCount(), ghn.webhooksFailedCount());
+            System.out.printf("MoMo: %d requests (%d injected errors), IPN %d sent / %d failed%n",
+                    momo.requestCount(), momo.injectedErrorCount(), momo.ipnSentCount(), momo.ipnFailedCount());
+            stopped.countDown();
+        }));
+
+        System.out.printf("GHN stand-in  %s (%s, step %dms, statuses %s, webhook %s)%n",
+                ghn.baseUrl(), ghnBehavior, progression.stepMs(), progression.statuses(),
+                progression.webhookUrl() != null ? progression.webhookUrl() : "off");
+        System.out.printf("MoMo stand-in %s (%s, IPN %s)%n",
+                momo.endpoint(), momoBehavior, ipn != null ? "after " + ipn.delayMs() + "ms" : "off");
+        System.out.println("Ctrl+C to stop");
+        stopped.await();
+    }
+
+    private static List<String> statuses(String value) {
+        if (value == null || value.isBlank()) {
+            return GhnStandInServer.Progression.DEFAULT_STATUSES;
+        }
+        return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+}
@@ -0,0 +1,23 @@
+package com.hanoi_metro.backend.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.archive")
+public class ArchiveProperties {
+    // Tắt mặc định: chỉ bật sau khi đã chạy migration tạo bảng *_archive
+    private boolean enabled = false;
+    // Chỉ lưu trữ đơn đã kết thúc và cũ hơn số ngày này (phải dài hơn thời hạn yêu cầu trả hàng)
+    private int minAgeDays = 365;
+    private int chunkSize = 500;
+    // Giới hạn số chunk mỗi lần chạy để job ban đêm không kéo dài vô hạn
+    private int maxChunksPerRun = 200;
+    // Watermark (đơn lưu trữ mới nhất) được cache trong khoảng này
+    private long watermarkCacheSeconds = 300;
+}
@@ -0,0 +1,20 @@
+package com.hanoi_metro.backend.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.dashboard-cache")
+public class DashboardCacheProperties {
+    private boolean enabled = true;
+    // Bucket chứa hôm nay (hoặc tương lai) vẫn đang thay đổi nên chỉ cache rất ngắn
+    private long openTtlSeconds = 30;
+    // Bucket đã đóng chỉ đổi khi có đơn cũ đổi trạng thái (đã có invalidate), TTL dài để phòng sót
+    private long closedTtlMinutes = 720;
+    private int maxEntries = 10000;
+}
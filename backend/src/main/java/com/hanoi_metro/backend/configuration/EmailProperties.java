@@ -0,0 +1,29 @@
+package com.hanoi_metro.backend.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.email")
+public class EmailProperties {
+    private String apiUrl = "https://api.brevo.com/v3/smtp/email";
+    private int batchSize = 200;
+    // Số request Brevo gửi song song; pool kết nối HTTP cũng giới hạn theo số này
+    private int concurrency = 4;
+    private int maxAttempts = 6;
+    // Backoff: initialBackoffSeconds * 2^(attempt-1), tối đa maxBackoffSeconds, cộng jitter ngẫu nhiên
+    private long initialBackoffSeconds = 10;
+    private long maxBackoffSeconds = 1800;
+    private long staleAfterSeconds = 300;
+    private int connectTimeoutMs = 3000;
+    private int readTimeoutMs = 10000;
+    private int retentionDays = 7;
+    // Cache nội dung đã render theo (template, tham số), không áp dụng cho OTP / mật khẩu
+    private int templateCacheSize = 500;
+    private long templateCacheTtlSeconds = 600;
+}
@@ -14,4 +14,71 @@ public class GhnProperties {
     private String token;
     private Integer shopId;
     private String baseUrl;
+    private Sync sync = new Sync();
+    private MasterData masterData = new MasterData();
+    private Quote quote = new Quote();
+    private Webhook webhook = new Webhook();
+    private Dispatch dispatch = new Dispatch();
+
+    @Getter
+    @Setter
+    public static class Sync {
+        // Số lời gọi GHN chạy song song trong một lượt đồng bộ trạng thái
+        private int concurrency = 8;
+        // Giới hạn tốc độ gọi API GHN (lượt/giây) và số lượt được dồn khi rảnh
+        private double permitsPerSecond = 10;
+        private int burst = 10;
+        // Lượt chưa xong sau khoảng này bị dừng; các vận đơn còn lại để lượt sau
+        private long maxRunMinutes = 14;
+    }
+
+    @Getter
+    @Setter
+    public static class MasterData {
+        // Ảnh chụp tỉnh/quận/phường ghi ra đĩa để khởi động lại không phải tải lại từ GHN
+        private String snapshotFile = "data/ghn-master-data.json";
+        // Cây tỉnh/quận/phường được làm mới nền sau khoảng này
+        private long ttlHours = 24;
+        // Ca lấy hàng đổi theo ngày nên hết hạn sớm hơn nhiều
+        private long pickShiftTtlMinutes = 30;
+        // Tốc độ gọi GHN khi tải cả cây (~700 lời gọi quận/phường)
+        private double permitsPerSecond = 5;
+    }
+
+    @Getter
+    @Setter
+    public static class Quote {
+        // Số báo giá phí/thời gian giao tối đa giữ trong bộ nhớ cho mỗi loại (LRU)
+        private int maxEntries = 10_000;
+        private long feeTtlMinutes = 10;
+        private long leadtimeTtlMinutes = 30;
+        // Bước làm tròn lên khối lượng/kích thước trong khóa cache (0 = khóa theo số đo chính xác).
+        // Bật lên thì các giỏ cùng bậc dùng chung một báo giá, phí có thể lệch với GHN trong phạm vi một bậc
+        private int weightStepGrams = 0;
+        private int dimensionStepCm = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class Webhook {
+        // Khóa bí mật gắn vào URL callback khai báo trên GHN (?token=...); để trống = tắt webhook
+        private String token;
+        // Số ngày giữ khóa chống trùng của callback đã nhận
+        private int retentionDays = 14;
+    }
+
+    @Getter
+    @Setter
+    public static class Dispatch {
+        // Số đơn tối đa trong một lần tạo vận đơn hàng loạt
+        private int maxOrders = 1000;
+        // Số lời gọi tạo đơn GHN chạy song song; nên nhỏ hơn bulkhead ghn-order (app.resilience)
+        private int concurrency = 6;
+        private double permitsPerSecond = 5;
+        private int burst = 5;
+        // Số vận đơn ghi trong một transaction
+        private int persistBatchSize = 50;
+        // Lô chưa xong sau khoảng này bị dừng; đơn chưa gửi được báo lỗi để tạo lại
+        private long maxRunMinutes = 10;
+    }
 }
@@ -0,0 +1,35 @@
+package com.hanoi_metro.backend.configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import com.hanoi_metro.backend.enums.OutboxEventType;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.outbox")
+public class OutboxProperties {
+    private int batchSize = 50;
+    private int maxAttempts = 8;
+    // Backoff: initialBackoffSeconds * 2^(attempt-1), tối đa maxBackoffSeconds
+    private long initialBackoffSeconds = 5;
+    private long maxBackoffSeconds = 1800;
+    // Event PROCESSING quá thời gian này được coi là bị treo (instance chết) và lấy lại
+    private long staleAfterSeconds = 300;
+    private int retentionDays = 7;
+    private int defaultConcurrency = 2;
+    // Số worker song song cho từng loại handler
+    private Map<OutboxEventType, Integer> concurrency = new EnumMap<>(OutboxEventType.class);
+
+    public int concurrencyFor(OutboxEventType type) {
+        Integer value = concurrency.get(type);
+        return value != null && value > 0 ? value : defaultConcurrency;
+    }
+}
@@ -0,0 +1,47 @@
+package com.hanoi_metro.backend.configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.resilience")
+public class ResilienceProperties {
+    // Timeout mở kết nối tới GHN (theo client, không theo endpoint)
+    private int ghnConnectTimeoutMs = 2000;
+    // Chính sách theo nhóm endpoint (ghn-master-data, ghn-quote, ghn-order, ghn-tracking, momo);
+    // nhóm không khai báo dùng giá trị mặc định của Policy
+    private Map<String, Policy> policies = new HashMap<>();
+
+    public Policy policyFor(String name) {
+        Policy policy = policies.get(name);
+        return policy != null ? policy : new Policy();
+    }
+
+    @Getter
+    @Setter
+    public static class Policy {
+        private long readTimeoutMs = 5000;
+        // Tổng số lần gọi cho lời gọi idempotent (1 = không thử lại); lời gọi không idempotent luôn chỉ gọi 1 lần
+        private int maxAttempts = 3;
+        // Backoff lũy thừa có jitter: ngẫu nhiên trong [0, min(maxDelay, baseDelay * 2^(n-1))]
+        private long retryBaseDelayMs = 200;
+        private long retryMaxDelayMs = 2000;
+        // Bulkhead: số lời gọi đang bay tối đa và thời gian chờ chỗ trống trước khi từ chối
+        private int maxConcurrentCalls = 20;
+        private long maxWaitMs = 0;
+        // Circuit breaker
+        private int slidingWindowSize = 20;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 50;
+        private long openDurationMs = 30_000;
+        private int halfOpenCalls = 3;
+    }
+}
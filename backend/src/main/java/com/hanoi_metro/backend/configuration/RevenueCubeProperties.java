@@ -0,0 +1,18 @@
+package com.hanoi_metro.backend.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.revenue-cube")
+public class RevenueCubeProperties {
+    private boolean enabled = true;
+    // Khoảng tối đa của một truy vấn (ngày); nhóm theo giờ trên khoảng dài sinh quá nhiều ô
+    private int maxRangeDays = 3660;
+    private int maxHourlyRangeDays = 93;
+}
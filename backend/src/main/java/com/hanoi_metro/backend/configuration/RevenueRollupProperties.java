@@ -0,0 +1,21 @@
+package com.hanoi_metro.backend.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.revenue-rollup")
+public class RevenueRollupProperties {
+    // Tắt mặc định: chỉ bật sau khi đã chạy migration tạo bảng revenue_rollup_*
+    private boolean enabled = false;
+    private int batchSize = 500;
+    // Giới hạn số lô backfill mỗi lần chạy để không giữ khóa đơn quá lâu
+    private int backfillBatchesPerRun = 20;
+    // Trạng thái "đã backfill xong" được cache trong khoảng này
+    private long stateCacheSeconds = 60;
+}
@@ -31,6 +31,8 @@ public class SecurityConfig {
         "/auth/verify-otp",
         "/auth/reset-password",
         "/shipments/ghn/fees",
+        "/shipments/ghn/checkout-quote",
+        "/shipments/ghn/webhook",
         "/api/momo/ipn-handler"
     };
 
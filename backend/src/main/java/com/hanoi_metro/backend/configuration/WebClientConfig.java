@@ -1,17 +1,43 @@
 package com.hanoi_metro.backend.configuration;
 
+import java.time.Duration;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
 @Configuration
 public class WebClientConfig {
 
+    // Timeout đọc đặt theo từng endpoint trong ApiUtil (app.resilience.policies.*.read-timeout-ms)
     @Bean
-    public WebClient ghnWebClient(GhnProperties ghnProperties) {
+    public WebClient ghnWebClient(GhnProperties ghnProperties, ResilienceProperties resilienceProperties) {
+        HttpClient httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, resilienceProperties.getGhnConnectTimeoutMs());
         return WebClient.builder()
                 .baseUrl(ghnProperties.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
-}
 
+    // Pool kết nối keep-alive tới Brevo, số kết nối bằng số worker của EmailDispatcher
+    @Bean
+    public WebClient brevoWebClient(EmailProperties emailProperties) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("brevo")
+                .maxConnections(Math.max(1, emailProperties.getConcurrency()))
+                .pendingAcquireTimeout(Duration.ofMillis(emailProperties.getReadTimeoutMs()))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, emailProperties.getConnectTimeoutMs())
+                .responseTimeout(Duration.ofMillis(emailProperties.getReadTimeoutMs()));
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -0,0 +1,65 @@
+package com.hanoi_metro.backend.controller;
+
+import java.time.LocalDate;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.hanoi_metro.backend.enums.ExportFormat;
+import com.hanoi_metro.backend.service.ExportService;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/exports")
+@RequiredArgsConstructor
+public class ExportController {
+
+    private final ExportService exportService;
+
+    @GetMapping("/orders")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam LocalDate start,
+            @RequestParam LocalDate end,
+            @RequestParam(defaultValue = "csv") String format) {
+        return export(ExportService.Dataset.ORDERS, start, end, format);
+    }
+
+    @GetMapping("/order-items")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrderItems(
+            @RequestParam LocalDate start,
+            @RequestParam LocalDate end,
+            @RequestParam(defaultValue = "csv") String format) {
+        return export(ExportService.Dataset.ORDER_ITEMS, start, end, format);
+    }
+
+    @GetMapping("/financial-records")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportFinancialRecords(
+            @RequestParam LocalDate start,
+            @RequestParam LocalDate end,
+            @RequestParam(defaultValue = "csv") String format) {
+        return export(ExportService.Dataset.FINANCIAL_RECORDS, start, end, format);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(
+            ExportService.Dataset dataset, LocalDate start, LocalDate end, String rawFormat) {
+        exportService.validateRange(start, end);
+        ExportFormat format = exportService.parseFormat(rawFormat);
+        StreamingResponseBody body = out -> exportService.export(dataset, start, end, format, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(exportService.fileName(dataset, start, end, format))
+                        .build()
+                        .toString())
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .body(body);
+    }
+}
@@ -12,7 +12,10 @@ import com.hanoi_metro.backend.dto.response.ProductRevenue;
 import com.hanoi_metro.backend.dto.response.RevenuePoint;
 import com.hanoi_metro.backend.dto.response.RevenueSummary;
 import com.hanoi_metro.backend.dto.response.FinancialSummary;
+import com.hanoi_metro.backend.dto.response.RevenueSlice;
 import com.hanoi_metro.backend.service.FinancialService;
+import com.hanoi_metro.backend.service.RevenueCubeService;
+import com.hanoi_metro.backend.service.RevenueRollupService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -22,6 +25,8 @@ import lombok.RequiredArgsConstructor;
 public class FinancialController {
 
     private final FinancialService financialService;
+    private final RevenueRollupService revenueRollupService;
+    private final RevenueCubeService revenueCubeService;
 
     @GetMapping("/revenue/day")
     @PreAuthorize("hasRole('ADMIN')")
@@ -70,4 +75,29 @@ public class FinancialController {
                 .result(financialService.topProductsByRevenue(start, end, limit))
                 .build();
     }
+
+    // Cắt doanh thu tùy ý: groupBy=day,paymentMethod&categoryId=...; đọc từ khối dữ liệu trong bộ nhớ
+    @GetMapping("/revenue/cube")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<RevenueSlice>> revenueCube(
+            @RequestParam LocalDate start,
+            @RequestParam LocalDate end,
+            @RequestParam(required = false) List<String> groupBy,
+            @RequestParam(required = false) List<String> paymentMethod,
+            @RequestParam(required = false) List<String> categoryId,
+            @RequestParam(required = false) List<String> productId) {
+        return ApiResponse.<List<RevenueSlice>>builder()
+                .result(revenueCubeService.query(start, end, groupBy, paymentMethod, categoryId, productId))
+                .build();
+    }
+
+    // Xóa bảng tổng hợp doanh thu và backfill lại; báo cáo dùng truy vấn trực tiếp cho tới khi backfill xong
+    @PostMapping("/rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Void> rebuildRevenueRollups() {
+        revenueRollupService.rebuild();
+        return ApiResponse.<Void>builder()
+                .message("Đã bắt đầu dựng lại bảng tổng hợp doanh thu")
+                .build();
+    }
 }
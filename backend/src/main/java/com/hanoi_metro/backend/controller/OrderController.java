@@ -9,17 +9,28 @@ import com.hanoi_metro.backend.dto.request.*;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hanoi_metro.backend.dto.request.CreateOrderRequest;
+import com.hanoi_metro.backend.dto.response.BulkOrderStatusResponse;
 import com.hanoi_metro.backend.dto.response.CheckoutInitResponse;
+import com.hanoi_metro.backend.dto.response.OrderCursorPageResponse;
 import com.hanoi_metro.backend.dto.response.OrderDetailResponse;
 import com.hanoi_metro.backend.dto.response.OrderItemResponse;
 import com.hanoi_metro.backend.dto.response.OrderResponse;
 import com.hanoi_metro.backend.dto.response.OrderStatistics;
+import com.hanoi_metro.backend.dto.response.OrderSummaryPageResponse;
+import com.hanoi_metro.backend.dto.response.OrderSummaryResponse;
 import com.hanoi_metro.backend.dto.response.OrderPageResponse;
 import com.hanoi_metro.backend.entity.Address;
 import com.hanoi_metro.backend.entity.Order;
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+import com.hanoi_metro.backend.repository.OrderSummaryView;
+import com.hanoi_metro.backend.service.IdempotencyService;
+import com.hanoi_metro.backend.service.OrderBulkService;
+import com.hanoi_metro.backend.service.OrderSearchService;
 import com.hanoi_metro.backend.service.OrderService;
 
 import lombok.AccessLevel;
@@ -34,35 +45,33 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class OrderController {
 
+    private static final TypeReference<ApiResponse<CheckoutInitResponse>> CHECKOUT_RESPONSE_TYPE =
+            new TypeReference<>() {};
+    private static final TypeReference<ApiResponse<OrderDetailResponse>> DETAIL_RESPONSE_TYPE =
+            new TypeReference<>() {};
+
     OrderService orderService;
+    IdempotencyService idempotencyService;
+    OrderBulkService orderBulkService;
+    OrderSearchService orderSearchService;
     ObjectMapper objectMapper = new ObjectMapper();
 
     @PostMapping("/checkout")
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ApiResponse<CheckoutInitResponse> createOrder(@RequestBody CreateOrderRequest request) {
-        OrderService.CheckoutResult result = orderService.createOrderFromCurrentCart(request);
-        CheckoutInitResponse response = CheckoutInitResponse.builder()
-                .order(result.getOrder() != null ? toResponse(result.getOrder()) : null)
-                .payUrl(result.getPayUrl())
-                .orderCode(result.getOrderCode()) // For MoMo: order code to be created after payment
-                .build();
-        return ApiResponse.<CheckoutInitResponse>builder()
-                .result(response)
-                .build();
+    public ApiResponse<CheckoutInitResponse> createOrder(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody CreateOrderRequest request) {
+        return idempotencyService.execute("POST /orders/checkout", idempotencyKey, request, CHECKOUT_RESPONSE_TYPE, () ->
+                toCheckoutResponse(orderService.createOrderFromCurrentCart(request)));
     }
 
     @PostMapping("/checkout-direct")
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ApiResponse<CheckoutInitResponse> createOrderDirectly(@RequestBody DirectCheckoutRequest request) {
-        OrderService.CheckoutResult result = orderService.createOrderDirectly(request);
-        CheckoutInitResponse response = CheckoutInitResponse.builder()
-                .order(result.getOrder() != null ? toResponse(result.getOrder()) : null)
-                .payUrl(result.getPayUrl())
-                .orderCode(result.getOrderCode()) // For MoMo: order code to be created after payment
-                .build();
-        return ApiResponse.<CheckoutInitResponse>builder()
-                .result(response)
-                .build();
+    public ApiResponse<CheckoutInitResponse> createOrderDirectly(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody DirectCheckoutRequest request) {
+        return idempotencyService.execute("POST /orders/checkout-direct", idempotencyKey, request, CHECKOUT_RESPONSE_TYPE, () ->
+                toCheckoutResponse(orderService.createOrderDirectly(request)));
     }
 
     @GetMapping
@@ -108,6 +117,76 @@ public class OrderController {
                 .build();
     }
 
+    /**
+     * Danh sách đơn hàng phân trang keyset cho admin / staff / CSKH.
+     * Trang đầu không truyền cursor; các trang sau truyền nextCursor của trang trước.
+     */
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN','CUSTOMER_SUPPORT')")
+    public ApiResponse<OrderCursorPageResponse> getOrdersPage(
+            @RequestParam(required = false) List<OrderStatus> status,
+            @RequestParam(required = false) List<PaymentMethod> paymentMethod,
+            @RequestParam(required = false) LocalDate from,
+            @RequestParam(required = false) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        OrderService.OrderSlice<Order> slice = orderService.getOrdersPage(status, paymentMethod, from, to, cursor, size);
+        return ApiResponse.<OrderCursorPageResponse>builder()
+                .result(toCursorPageResponse(slice))
+                .build();
+    }
+
+    @GetMapping("/my-orders/page")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public ApiResponse<OrderCursorPageResponse> getMyOrdersPage(
+            @RequestParam(required = false) List<OrderStatus> status,
+            @RequestParam(required = false) List<PaymentMethod> paymentMethod,
+            @RequestParam(required = false) LocalDate from,
+            @RequestParam(required = false) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        OrderService.OrderSlice<Order> slice = orderService.getMyOrdersPage(status, paymentMethod, from, to, cursor, size);
+        return ApiResponse.<OrderCursorPageResponse>builder()
+                .result(toCursorPageResponse(slice))
+                .build();
+    }
+
+    /**
+     * Danh sách tóm tắt (mã, trạng thái, tổng tiền, số sản phẩm, ảnh đại diện) cho màn hình danh sách.
+     * Chi tiết sản phẩm chỉ được tải khi mở GET /orders/{id}.
+     */
+    @GetMapping("/summaries")
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN','CUSTOMER_SUPPORT')")
+    public ApiResponse<OrderSummaryPageResponse> getOrderSummaries(
+            @RequestParam(required = false) List<OrderStatus> status,
+            @RequestParam(required = false) List<PaymentMethod> paymentMethod,
+            @RequestParam(required = false) LocalDate from,
+            @RequestParam(required = false) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        OrderService.OrderSlice<OrderSummaryView> slice =
+                orderService.getOrderSummariesPage(status, paymentMethod, from, to, cursor, size);
+        return ApiResponse.<OrderSummaryPageResponse>builder()
+                .result(toSummaryPageResponse(slice))
+                .build();
+    }
+
+    @GetMapping("/my-orders/summaries")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public ApiResponse<OrderSummaryPageResponse> getMyOrderSummaries(
+            @RequestParam(required = false) List<OrderStatus> status,
+            @RequestParam(required = false) List<PaymentMethod> paymentMethod,
+            @RequestParam(required = false) LocalDate from,
+            @RequestParam(required = false) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        OrderService.OrderSlice<OrderSummaryView> slice =
+                orderService.getMyOrderSummariesPage(status, paymentMethod, from, to, cursor, size);
+        return ApiResponse.<OrderSummaryPageResponse>builder()
+                .result(toSummaryPageResponse(slice))
+                .build();
+    }
+
     @GetMapping("/my-orders")
     @PreAuthorize("hasRole('CUSTOMER')")
     public ApiResponse<List<OrderResponse>> getMyOrders() {
@@ -163,12 +242,15 @@ public class OrderController {
     @PostMapping("/create-after-payment")
     @PreAuthorize("hasRole('CUSTOMER')")
     public ApiResponse<OrderDetailResponse> createOrderAfterPayment(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody CreateOrderRequest request) {
-        Order order = orderService.createOrderFromCurrentCartAfterPayment(request);
-        return ApiResponse.<OrderDetailResponse>builder()
-                .result(toDetailResponse(order))
-                .message("Đơn hàng đã được tạo thành công sau khi thanh toán.")
-                .build();
+        return idempotencyService.execute("POST /orders/create-after-payment", idempotencyKey, request, DETAIL_RESPONSE_TYPE, () -> {
+            Order order = orderService.createOrderFromCurrentCartAfterPayment(request);
+            return ApiResponse.<OrderDetailResponse>builder()
+                    .result(toDetailResponse(order))
+                    .message("Đơn hàng đã được tạo thành công sau khi thanh toán.")
+                    .build();
+        });
     }
 
 
@@ -177,12 +259,16 @@ public class OrderController {
     @PostMapping("/create-direct-after-payment")
     @PreAuthorize("hasRole('CUSTOMER')")
     public ApiResponse<OrderDetailResponse> createOrderDirectlyAfterPayment(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody DirectCheckoutRequest request) {
-        Order order = orderService.createOrderDirectlyAfterPayment(request);
-        return ApiResponse.<OrderDetailResponse>builder()
-                .result(toDetailResponse(order))
-                .message("Đơn hàng đã được tạo thành công sau khi thanh toán.")
-                .build();
+        return idempotencyService.execute(
+                "POST /orders/create-direct-after-payment", idempotencyKey, request, DETAIL_RESPONSE_TYPE, () -> {
+                    Order order = orderService.createOrderDirectlyAfterPayment(request);
+                    return ApiResponse.<OrderDetailResponse>builder()
+                            .result(toDetailResponse(order))
+                            .message("Đơn hàng đã được tạo thành công sau khi thanh toán.")
+                            .build();
+                });
     }
 
     @PostMapping("/{id}/request-return")
@@ -271,6 +357,92 @@ public class OrderController {
                 .build();
     }
 
+    // Chuyển trạng thái hàng loạt cho nhân viên kho; trả về kết quả từng đơn
+    @PostMapping("/bulk-status")
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN')")
+    public ApiResponse<BulkOrderStatusResponse> bulkUpdateStatus(@RequestBody BulkOrderStatusRequest request) {
+        BulkOrderStatusResponse response = orderBulkService.applyBulkTransition(request);
+        return ApiResponse.<BulkOrderStatusResponse>builder()
+                .result(response)
+                .message(String.format("Đã xử lý %d đơn hàng: %d thành công, %d thất bại.",
+                        response.getRequested(), response.getSucceeded(), response.getFailed()))
+                .build();
+    }
+
+    /**
+     * Tra cứu đơn cho CSKH/nhân viên theo tiền tố mã đơn, mã GHN, email/SĐT khách hoặc tên/SĐT người nhận.
+     */
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN','CUSTOMER_SUPPORT')")
+    public ApiResponse<List<OrderSummaryResponse>> searchOrders(
+            @RequestParam("q") String query, @RequestParam(defaultValue = "20") int limit) {
+        return ApiResponse.<List<OrderSummaryResponse>>builder()
+                .result(orderSearchService.search(query, limit).stream()
+                        .map(this::toSummaryResponse)
+                        .toList())
+                .build();
+    }
+
+    // Nạp lại order_search_index cho các đơn đã có; gọi lặp với afterId = nextAfterId tới khi done
+    @PostMapping("/search-index/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<OrderSearchService.RebuildProgress> rebuildSearchIndex(
+            @RequestParam(required = false) String afterId, @RequestParam(defaultValue = "20") int maxBatches) {
+        return ApiResponse.<OrderSearchService.RebuildProgress>builder()
+                .result(orderSearchService.rebuild(afterId, maxBatches))
+                .build();
+    }
+
+    private ApiResponse<CheckoutInitResponse> toCheckoutResponse(OrderService.CheckoutResult result) {
+        CheckoutInitResponse response = CheckoutInitResponse.builder()
+                .order(result.getOrder() != null ? toResponse(result.getOrder()) : null)
+                .payUrl(result.getPayUrl())
+                .orderCode(result.getOrderCode()) // For MoMo: order code to be created after payment
+                .build();
+        return ApiResponse.<CheckoutInitResponse>builder()
+                .result(response)
+                .build();
+    }
+
+    private OrderCursorPageResponse toCursorPageResponse(OrderService.OrderSlice<Order> slice) {
+        return OrderCursorPageResponse.builder()
+                .orders(slice.getOrders().stream().map(this::toResponse).toList())
+                .nextCursor(slice.getNextCursor())
+                .hasNext(slice.isHasNext())
+                .pageSize(slice.getOrders().size())
+                .build();
+    }
+
+    private OrderSummaryPageResponse toSummaryPageResponse(OrderService.OrderSlice<OrderSummaryView> slice) {
+        return OrderSummaryPageResponse.builder()
+                .orders(slice.getOrders().stream().map(this::toSummaryResponse).toList())
+                .nextCursor(slice.getNextCursor())
+                .hasNext(slice.isHasNext())
+                .pageSize(slice.getOrders().size())
+                .build();
+    }
+
+    private OrderSummaryResponse toSummaryResponse(OrderSummaryView view) {
+        String customerName = view.getCustomerName() != null && !view.getCustomerName().isBlank()
+                ? view.getCustomerName()
+                : (view.getCustomerEmail() != null ? view.getCustomerEmail() : "Khách hàng");
+        return OrderSummaryResponse.builder()
+                .id(view.getId())
+                .code(view.getCode() != null ? view.getCode() : view.getId())
+                .status(view.getStatus() != null ? view.getStatus().name() : null)
+                .paymentMethod(view.getPaymentMethod() != null ? view.getPaymentMethod().name() : null)
+                .paymentStatus(view.getPaymentStatus() != null ? view.getPaymentStatus().name() : null)
+                .paid(view.getPaid())
+                .shippingFee(view.getShippingFee())
+                .totalAmount(view.getTotalAmount())
+                .orderDateTime(view.getOrderDateTime())
+                .customerName(customerName)
+                .customerEmail(view.getCustomerEmail())
+                .itemCount(view.getItemCount() != null ? view.getItemCount() : 0L)
+                .thumbnailUrl(view.getThumbnailUrl())
+                .build();
+    }
+
     private OrderResponse toResponse(Order order) {
         if (order == null) {
             return null;
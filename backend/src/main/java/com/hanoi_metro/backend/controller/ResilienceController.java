@@ -0,0 +1,33 @@
+package com.hanoi_metro.backend.controller;
+
+import java.util.List;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.hanoi_metro.backend.dto.request.ApiResponse;
+import com.hanoi_metro.backend.dto.response.ResilienceStats;
+import com.hanoi_metro.backend.util.ResilienceGuard;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@RestController
+@RequestMapping("/resilience")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ResilienceController {
+    ResilienceGuard resilienceGuard;
+
+    // Trạng thái circuit breaker, bulkhead và số lần gọi/thử lại/từ chối theo nhóm endpoint GHN, MoMo.
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<ResilienceStats>> getStats() {
+        return ApiResponse.<List<ResilienceStats>>builder()
+                .result(resilienceGuard.stats())
+                .build();
+    }
+}
@@ -2,12 +2,18 @@ package com.hanoi_metro.backend.controller;
 
 import java.util.List;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import com.hanoi_metro.backend.dto.request.ApiResponse;
 import com.hanoi_metro.backend.dto.request.CreateShipmentRequest;
 import com.hanoi_metro.backend.dto.request.GhnCalculateFeeRequest;
 import com.hanoi_metro.backend.dto.request.GhnLeadtimeRequest;
+import com.hanoi_metro.backend.dto.request.GhnWebhookRequest;
+import com.hanoi_metro.backend.dto.request.ShipmentDispatchRequest;
+import com.hanoi_metro.backend.dto.response.CheckoutQuoteResponse;
 import com.hanoi_metro.backend.dto.response.GhnDistrictResponse;
 import com.hanoi_metro.backend.dto.response.GhnFeeResponse;
 import com.hanoi_metro.backend.dto.response.GhnLeadtimeResponse;
@@ -15,13 +21,18 @@ import com.hanoi_metro.backend.dto.response.GhnPickShiftResponse;
 import com.hanoi_metro.backend.dto.response.GhnProvinceResponse;
 import com.hanoi_metro.backend.dto.response.GhnShipmentDataResponse;
 import com.hanoi_metro.backend.dto.response.GhnWardResponse;
+import com.hanoi_metro.backend.dto.response.QuoteCacheStats;
+import com.hanoi_metro.backend.dto.response.ShipmentDispatchResponse;
 import com.hanoi_metro.backend.dto.response.ShipmentResponse;
+import com.hanoi_metro.backend.service.GhnWebhookService;
+import com.hanoi_metro.backend.service.ShipmentDispatchService;
 import com.hanoi_metro.backend.service.ShipmentService;
 import com.hanoi_metro.backend.util.ParseUtil;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/shipments")
@@ -29,6 +40,8 @@ import lombok.experimental.FieldDefaults;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class ShipmentController {
     ShipmentService shipmentService;
+    GhnWebhookService ghnWebhookService;
+    ShipmentDispatchService shipmentDispatchService;
 
     // GHN master data
     @GetMapping("/ghn/provinces")
@@ -68,6 +81,39 @@ public class ShipmentController {
                 .build();
     }
 
+    // Phí + thời gian giao + ca lấy hàng cho checkout, gọi GHN song song.
+    // Trả Mono: luồng servlet được trả lại trong lúc chờ GHN (MVC async).
+    @PostMapping("/ghn/checkout-quote")
+    public Mono<ApiResponse<CheckoutQuoteResponse>> getCheckoutQuote(@RequestBody GhnCalculateFeeRequest request) {
+        return shipmentService.getCheckoutQuote(request)
+                .map(quote -> ApiResponse.<CheckoutQuoteResponse>builder()
+                        .result(quote)
+                        .build());
+    }
+
+    // Callback trạng thái vận đơn từ GHN; xử lý bất đồng bộ qua outbox nên trả 200 ngay (404: chưa có vận đơn, GHN gửi lại).
+    @PostMapping("/ghn/webhook")
+    public ResponseEntity<Void> handleGhnWebhook(
+            @RequestParam(value = "token", required = false) String token,
+            @RequestBody GhnWebhookRequest request) {
+        if (!ghnWebhookService.verify(token, request)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!ghnWebhookService.accept(request)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    // Số liệu hit/miss của cache báo giá phí và thời gian giao GHN.
+    @GetMapping("/ghn/quote-cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<QuoteCacheStats>> getQuoteCacheStats() {
+        return ApiResponse.<List<QuoteCacheStats>>builder()
+                .result(shipmentService.getQuoteCacheStats())
+                .build();
+    }
+
     // Lấy danh sách ca lấy hàng (pick shifts).
     @GetMapping("/pick-shifts")
     public ApiResponse<List<GhnPickShiftResponse>> getPickShifts() {
@@ -114,6 +160,18 @@ public class ShipmentController {
                 .build();
     }
 
+    // Tạo vận đơn GHN hàng loạt cho các đơn đã xác nhận; trả về kết quả từng đơn
+    @PostMapping("/dispatch")
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN')")
+    public ApiResponse<ShipmentDispatchResponse> dispatchShipments(@RequestBody ShipmentDispatchRequest request) {
+        ShipmentDispatchResponse response = shipmentDispatchService.dispatch(request);
+        return ApiResponse.<ShipmentDispatchResponse>builder()
+                .result(response)
+                .message(String.format("Đã tạo %d/%d vận đơn GHN (%d thất bại).",
+                        response.getSucceeded(), response.getRequested(), response.getFailed()))
+                .build();
+    }
+
     // Lấy thông tin shipment theo order ID.
     @GetMapping("/order/{orderId}")
     public ApiResponse<ShipmentResponse> getShipmentByOrderId(@PathVariable String orderId) {
@@ -0,0 +1,22 @@
+package com.hanoi_metro.backend.dto.request;
+
+import java.util.List;
+
+import com.hanoi_metro.backend.enums.BulkOrderAction;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkOrderStatusRequest {
+    List<String> orderIds;
+    BulkOrderAction action;
+
+    // Lý do hủy (chỉ dùng cho CANCEL)
+    String reason;
+}
@@ -0,0 +1,43 @@
+package com.hanoi_metro.backend.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Callback GHN gửi khi vận đơn đổi trạng thái (chỉ giữ các trường cần dùng)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class GhnWebhookRequest {
+    @JsonProperty("OrderCode")
+    String orderCode;
+
+    @JsonProperty("ClientOrderCode")
+    String clientOrderCode;
+
+    @JsonProperty("ShopID")
+    Integer shopId;
+
+    // create | switch_status | update_weight | update_cod | update_fee
+    @JsonProperty("Type")
+    String type;
+
+    @JsonProperty("Status")
+    String status;
+
+    // Thời điểm GHN đổi trạng thái (ISO-8601)
+    @JsonProperty("Time")
+    String time;
+
+    @JsonProperty("Reason")
+    String reason;
+
+    @JsonProperty("Warehouse")
+    String warehouse;
+}
@@ -0,0 +1,19 @@
+package com.hanoi_metro.backend.dto.request;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ShipmentDispatchRequest {
+    List<String> orderIds;
+
+    // Ca lấy hàng chung cho cả lô (null = tự chọn ca gần nhất)
+    List<Integer> pickShiftIds;
+}
@@ -0,0 +1,20 @@
+package com.hanoi_metro.backend.dto.response;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkOrderStatusResponse {
+    String action;
+    int requested;
+    int succeeded;
+    int failed;
+    List<BulkOrderStatusResult> results;
+}
@@ -0,0 +1,21 @@
+package com.hanoi_metro.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkOrderStatusResult {
+    String orderId;
+    String code;
+    boolean success;
+    String previousStatus;
+    String newStatus;
+
+    // Lý do thất bại (null nếu thành công)
+    String message;
+}
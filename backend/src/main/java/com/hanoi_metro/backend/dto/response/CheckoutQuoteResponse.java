@@ -0,0 +1,21 @@
+package com.hanoi_metro.backend.dto.response;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Báo giá vận chuyển cho màn checkout: phí, thời gian giao dự kiến và ca lấy hàng, lấy song song từ GHN.
+ * leadtime null và pickShifts rỗng khi GHN không trả được phần đó; phí luôn có (có thể feeToBeConfirmed).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CheckoutQuoteResponse {
+    GhnFeeResponse fee;
+    GhnLeadtimeResponse leadtime;
+    List<GhnPickShiftResponse> pickShifts;
+}
@@ -49,5 +49,8 @@ public class GhnFeeResponse {
     
     @JsonProperty("cod_failed_fee")
     Long codFailedFee;
-}
 
+    // Không phải trường của GHN: true khi GHN gián đoạn và chưa có báo giá nào để dùng lại ("phí sẽ được xác nhận sau")
+    @JsonProperty("fee_to_be_confirmed")
+    Boolean feeToBeConfirmed;
+}
@@ -0,0 +1,26 @@
+package com.hanoi_metro.backend.dto.response;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OrderCursorPageResponse {
+    // Danh sách đơn hàng trong trang hiện tại
+    List<OrderResponse> orders;
+
+    // Truyền lại vào tham số cursor để lấy trang tiếp theo (null nếu hết)
+    String nextCursor;
+
+    // Có trang tiếp theo không
+    Boolean hasNext;
+
+    // Số phần tử mỗi trang
+    Integer pageSize;
+}
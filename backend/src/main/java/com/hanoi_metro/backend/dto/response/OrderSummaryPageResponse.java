@@ -0,0 +1,23 @@
+package com.hanoi_metro.backend.dto.response;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OrderSummaryPageResponse {
+    List<OrderSummaryResponse> orders;
+
+    // Truyền lại vào tham số cursor để lấy trang tiếp theo (null nếu hết)
+    String nextCursor;
+
+    Boolean hasNext;
+
+    Integer pageSize;
+}
@@ -0,0 +1,30 @@
+package com.hanoi_metro.backend.dto.response;
+
+import java.time.LocalDateTime;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OrderSummaryResponse {
+    String id;
+    String code;
+    String status;
+    String paymentMethod;
+    String paymentStatus;
+    Boolean paid;
+    Double shippingFee;
+    Double totalAmount;
+    LocalDateTime orderDateTime;
+    String customerName;
+    String customerEmail;
+    Long itemCount;
+
+    // Ảnh đại diện của sản phẩm đầu tiên trong đơn
+    String thumbnailUrl;
+}
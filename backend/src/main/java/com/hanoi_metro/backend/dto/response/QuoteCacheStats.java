@@ -0,0 +1,22 @@
+package com.hanoi_metro.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class QuoteCacheStats {
+    // fee | leadtime
+    String cache;
+    Integer size;
+    Long hits;
+    Long misses;
+    // Lời gọi trùng khóa được gộp vào một lần gọi GHN đang chạy
+    Long collapsed;
+    Long failures;
+    Long evictions;
+    Double hitRatio;
+}
@@ -0,0 +1,28 @@
+package com.hanoi_metro.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ResilienceStats {
+    // Nhóm endpoint: ghn-master-data | ghn-quote | ghn-order | ghn-tracking | momo
+    String policy;
+    // CLOSED | OPEN | HALF_OPEN
+    String circuitState;
+    // Tỉ lệ lỗi tạm thời (%) trong cửa sổ của circuit breaker
+    Double failureRate;
+    Integer inFlight;
+    Long calls;
+    Long successes;
+    // Đối tác trả lời lỗi nghiệp vụ (không thử lại, không tính vào circuit breaker)
+    Long businessErrors;
+    // Timeout, lỗi kết nối, HTTP 5xx
+    Long failures;
+    Long retries;
+    Long shortCircuited;
+    Long bulkheadRejected;
+}
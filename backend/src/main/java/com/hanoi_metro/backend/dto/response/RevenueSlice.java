@@ -0,0 +1,26 @@
+package com.hanoi_metro.backend.dto.response;
+
+import java.time.LocalDateTime;
+
+import com.hanoi_metro.backend.enums.PaymentMethod;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RevenueSlice {
+    // Đầu giờ / ngày / tháng khi nhóm theo thời gian
+    LocalDateTime bucket;
+    PaymentMethod paymentMethod;
+    String categoryId;
+    String categoryName;
+    String productId;
+    String productName;
+    Double revenue;
+    // Số bản ghi doanh thu (dòng sản phẩm trong đơn) trong nhóm
+    Long records;
+}
@@ -0,0 +1,20 @@
+package com.hanoi_metro.backend.dto.response;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ShipmentDispatchResponse {
+    int requested;
+    int succeeded;
+    int failed;
+    long elapsedMs;
+    List<ShipmentDispatchResult> results;
+}
@@ -0,0 +1,23 @@
+package com.hanoi_metro.backend.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ShipmentDispatchResult {
+    String orderId;
+    String code;
+    boolean success;
+
+    // Mã vận đơn GHN; vẫn có khi GHN đã tạo đơn nhưng lưu vận đơn thất bại (cần đối soát tay)
+    String ghnOrderCode;
+    Long totalFee;
+
+    // Lý do thất bại (null nếu thành công)
+    String message;
+}
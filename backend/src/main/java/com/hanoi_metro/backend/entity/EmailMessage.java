@@ -0,0 +1,72 @@
+package com.hanoi_metro.backend.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import com.hanoi_metro.backend.enums.EmailStatus;
+import com.hanoi_metro.backend.enums.EmailTemplate;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Email chờ gửi qua Brevo, mỗi dòng một người nhận; nội dung bị xóa sau khi gửi xong (có thể chứa mật khẩu / OTP)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "email_queue",
+        indexes = {@Index(name = "idx_email_queue_status_next_attempt", columnList = "status, next_attempt_at")})
+public class EmailMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "template", nullable = false, length = 50)
+    EmailTemplate template;
+
+    @Column(name = "sender_name", nullable = false)
+    String senderName;
+
+    @Column(name = "recipient_email", nullable = false)
+    String recipientEmail;
+
+    @Column(name = "recipient_name")
+    String recipientName;
+
+    @Column(name = "subject", nullable = false, length = 500)
+    String subject;
+
+    @Column(name = "text_content", columnDefinition = "MEDIUMTEXT")
+    String textContent;
+
+    @Column(name = "html_content", columnDefinition = "MEDIUMTEXT")
+    String htmlContent;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    EmailStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_at")
+    LocalDateTime lockedAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    LocalDateTime sentAt;
+}
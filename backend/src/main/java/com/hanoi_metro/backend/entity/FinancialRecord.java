@@ -17,7 +17,18 @@ import lombok.experimental.FieldDefaults;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name = "financial_records")
+@Table(
+        name = "financial_records",
+        indexes = {
+            // Báo cáo doanh thu và xuất file đọc theo khoảng occurred_at
+            @Index(name = "idx_financial_records_occurred_at", columnList = "occurred_at")
+        },
+        uniqueConstraints = {
+            // Mỗi sản phẩm của một đơn chỉ có một bản ghi mỗi loại => ghi doanh thu idempotent
+            @UniqueConstraint(
+                    name = "uk_financial_records_order_product_type",
+                    columnNames = {"order_id", "product_id", "record_type"})
+        })
 public class FinancialRecord {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -0,0 +1,35 @@
+package com.hanoi_metro.backend.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Callback trạng thái GHN đã nhận; khóa chính dùng để bỏ qua callback GHN gửi lại
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "ghn_webhook_events",
+        indexes = {@Index(name = "idx_ghn_webhook_received_at", columnList = "received_at")})
+public class GhnWebhookEvent {
+    // SHA-256 của (OrderCode, Type, Status, Time) trong callback
+    @Id
+    @Column(name = "id", length = 64)
+    String id;
+
+    @Column(name = "order_code", nullable = false, length = 50)
+    String orderCode;
+
+    @Column(name = "status", length = 50)
+    String status;
+
+    @Column(name = "received_at", nullable = false)
+    LocalDateTime receivedAt;
+}
@@ -0,0 +1,55 @@
+package com.hanoi_metro.backend.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import com.hanoi_metro.backend.enums.IdempotencyStatus;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Lưu kết quả của request có Idempotency-Key để trả lại khi client gửi lại (retry, double-click)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "idempotency_records",
+        indexes = {@Index(name = "idx_idempotency_expires_at", columnList = "expires_at")})
+public class IdempotencyRecord {
+    // SHA-256 của (endpoint, email, key) => tra cứu theo khóa chính
+    @Id
+    @Column(name = "id", length = 64)
+    String id;
+
+    @Column(name = "endpoint", nullable = false)
+    String endpoint;
+
+    @Column(name = "user_email", nullable = false)
+    String userEmail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    IdempotencyStatus status;
+
+    // SHA-256 của body request => key dùng lại với body khác bị từ chối
+    @Column(name = "request_hash", length = 64)
+    String requestHash;
+
+    // Thời điểm request đang giữ key bắt đầu xử lý; cũng dùng làm token sở hữu khi complete / release
+    @Column(name = "locked_at")
+    LocalDateTime lockedAt;
+
+    @Column(name = "response_body", columnDefinition = "LONGTEXT")
+    String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    LocalDateTime expiresAt;
+}
@@ -6,6 +6,8 @@ import java.util.List;
 
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.BatchSize;
+
 import com.hanoi_metro.backend.enums.CancellationSource;
 import com.hanoi_metro.backend.enums.OrderStatus;
 import com.hanoi_metro.backend.enums.PaymentMethod;
@@ -21,7 +23,15 @@ import lombok.experimental.FieldDefaults;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name = "orders")
+@Table(
+        name = "orders",
+        indexes = {
+            // Phục vụ phân trang keyset (order_date_time DESC, id DESC) kèm các bộ lọc
+            @Index(name = "idx_orders_date_id", columnList = "order_date_time, id"),
+            @Index(name = "idx_orders_status_date_id", columnList = "status, order_date_time, id"),
+            @Index(name = "idx_orders_user_date_id", columnList = "user_id, order_date_time, id"),
+            @Index(name = "idx_orders_payment_date_id", columnList = "payment_method, order_date_time, id")
+        })
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -38,6 +48,13 @@ public class Order {
     @OneToOne(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     Shipment shipment;
 
+    // Lượt tạo vận đơn hàng loạt đang giữ đơn (token + thời điểm); NULL khi không có lượt nào đang gọi GHN
+    @Column(name = "dispatch_claim", length = 36)
+    String dispatchClaim;
+
+    @Column(name = "dispatch_claimed_at")
+    LocalDateTime dispatchClaimedAt;
+
     // Mã đơn hàng hiển thị cho khách (ví dụ: LMN20241120ABC123).
     @Column(name = "order_code", unique = true)
     String code;
@@ -73,6 +90,11 @@ public class Order {
     @Enumerated(EnumType.STRING)
     OrderStatus status;
 
+    // Optimistic locking: hai luồng cùng sửa một đơn thì luồng commit sau bị từ chối thay vì ghi đè
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    Long version;
+
     @Enumerated(EnumType.STRING)
     PaymentMethod paymentMethod;
 
@@ -83,7 +105,9 @@ public class Order {
     @JoinColumn(name = "address_id")
     Address address;
 
+    // Khi duyệt items của nhiều đơn, Hibernate nạp theo lô bằng 1 truy vấn IN thay vì N truy vấn
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     List<OrderItem> items;
 
     // Refund/Return request fields
@@ -0,0 +1,61 @@
+package com.hanoi_metro.backend.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Bản sao phi chuẩn hóa các trường tra cứu của đơn hàng (mã đơn, email/SĐT khách, người nhận, mã GHN)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "order_search_index",
+        indexes = {
+            @Index(name = "idx_osi_order_code", columnList = "order_code, order_date_time"),
+            @Index(name = "idx_osi_customer_email", columnList = "customer_email, order_date_time"),
+            @Index(name = "idx_osi_customer_phone", columnList = "customer_phone, order_date_time"),
+            @Index(name = "idx_osi_recipient_name", columnList = "recipient_name, order_date_time"),
+            @Index(name = "idx_osi_recipient_phone", columnList = "recipient_phone, order_date_time"),
+            @Index(name = "idx_osi_ghn_order_code", columnList = "ghn_order_code, order_date_time"),
+            @Index(name = "idx_osi_user", columnList = "user_id")
+        })
+public class OrderSearchIndex {
+    @Id
+    @Column(name = "order_id")
+    String orderId;
+
+    @Column(name = "user_id")
+    String userId;
+
+    @Column(name = "order_code", length = 64)
+    String orderCode;
+
+    @Column(name = "customer_email")
+    String customerEmail;
+
+    // Chỉ giữ chữ số, đầu số 84 được đổi về 0
+    @Column(name = "customer_phone", length = 32)
+    String customerPhone;
+
+    @Column(name = "recipient_name")
+    String recipientName;
+
+    @Column(name = "recipient_phone", length = 32)
+    String recipientPhone;
+
+    @Column(name = "ghn_order_code", length = 64)
+    String ghnOrderCode;
+
+    @Column(name = "order_date_time")
+    LocalDateTime orderDateTime;
+
+    @Column(name = "updated_at", nullable = false)
+    LocalDateTime updatedAt;
+}
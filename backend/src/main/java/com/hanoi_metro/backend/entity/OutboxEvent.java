@@ -0,0 +1,69 @@
+package com.hanoi_metro.backend.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import com.hanoi_metro.backend.enums.OutboxEventType;
+import com.hanoi_metro.backend.enums.OutboxStatus;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Side effect của đơn hàng được ghi cùng transaction, dispatcher xử lý bất đồng bộ sau khi commit
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "outbox_events",
+        indexes = {
+            @Index(name = "idx_outbox_status_next_attempt", columnList = "status, next_attempt_at"),
+            @Index(name = "idx_outbox_aggregate", columnList = "aggregate_id")
+        },
+        uniqueConstraints = @UniqueConstraint(name = "uk_outbox_dedupe_key", columnNames = "dedupe_key"))
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    OutboxEventType eventType;
+
+    // Thường là orderId
+    @Column(name = "aggregate_id")
+    String aggregateId;
+
+    // Chỉ có với event một lần cho mỗi aggregate (type:aggregateId); NULL với event thường
+    @Column(name = "dedupe_key", length = 120)
+    String dedupeKey;
+
+    @Column(name = "payload", columnDefinition = "TEXT")
+    String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    OutboxStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_at")
+    LocalDateTime lockedAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    LocalDateTime processedAt;
+}
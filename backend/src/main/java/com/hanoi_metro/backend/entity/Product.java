@@ -8,6 +8,8 @@ import java.util.Set;
 
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.BatchSize;
+
 import com.hanoi_metro.backend.enums.ProductStatus;
 
 import lombok.*;
@@ -107,6 +109,7 @@ public class Product {
     // Product media
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @OrderBy("displayOrder ASC")
+    @BatchSize(size = 50)
     List<ProductMedia> mediaList;
 
     // Default media
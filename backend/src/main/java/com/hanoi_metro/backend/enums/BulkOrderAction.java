@@ -0,0 +1,8 @@
+package com.hanoi_metro.backend.enums;
+
+public enum BulkOrderAction {
+    CONFIRM,
+    CANCEL,
+    MARK_SHIPPED,
+    MARK_DELIVERED
+}
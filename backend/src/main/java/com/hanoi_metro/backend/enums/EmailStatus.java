@@ -0,0 +1,8 @@
+package com.hanoi_metro.backend.enums;
+
+public enum EmailStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,41 @@
+package com.hanoi_metro.backend.enums;
+
+// Nội dung nằm ở resources/templates/email/<resourceName>.txt (và .html nếu có), subject cũng là template
+public enum EmailTemplate {
+    OTP("LuminaBook", "Mã xác thực OTP - LuminaBook", false),
+    STAFF_PASSWORD("LuminaBook Admin", "Thông tin tài khoản nhân viên - LuminaBook", false),
+    ACCOUNT_LOCKED("LuminaBook Admin", "Thông báo: Tài khoản của bạn đã bị khóa - LuminaBook", true),
+    ACCOUNT_UNLOCKED("LuminaBook Admin", "Thông báo: Tài khoản của bạn đã được mở khóa - LuminaBook", true),
+    ORDER_CONFIRMATION("LuminaBook", "Xác nhận đơn hàng {{orderCode}} - LuminaBook", false),
+    RETURN_CS_CONFIRMED("LuminaBook CSKH", "CSKH đã xác nhận yêu cầu hoàn tiền cho đơn hàng {{orderCode}}", false),
+    RETURN_STAFF_INSPECTION("LuminaBook Kho hàng", "Kết quả kiểm tra hàng trả về cho đơn hàng {{orderCode}}", false),
+    RETURN_REJECTED("LuminaBook CSKH", "Thông báo từ chối yêu cầu hoàn tiền cho đơn hàng {{orderCode}}", false);
+
+    private final String senderName;
+    private final String subject;
+    // Chỉ cache template có bộ tham số lặp lại (thông báo khóa / mở khóa tài khoản). Email theo đơn hàng có
+    // mã đơn riêng nên cache chỉ tốn bản sao tham số và giữ email khách trong bộ nhớ; OTP / mật khẩu thì không được giữ
+    private final boolean cacheable;
+
+    EmailTemplate(String senderName, String subject, boolean cacheable) {
+        this.senderName = senderName;
+        this.subject = subject;
+        this.cacheable = cacheable;
+    }
+
+    public String getSenderName() {
+        return senderName;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public String getResourceName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,6 @@
+package com.hanoi_metro.backend.enums;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
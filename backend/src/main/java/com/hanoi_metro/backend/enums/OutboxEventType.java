@@ -0,0 +1,14 @@
+package com.hanoi_metro.backend.enums;
+
+public enum OutboxEventType {
+    ORDER_REVENUE,
+    COD_DELIVERED_REVENUE,
+    ORDER_CONFIRMATION_EMAIL,
+    RETURN_CS_CONFIRMED_EMAIL,
+    RETURN_STAFF_INSPECTION_EMAIL,
+    RETURN_REJECTED_EMAIL,
+    NOTIFICATION,
+    ORDER_SEARCH_INDEX,
+    REVENUE_ROLLUP,
+    GHN_STATUS_CALLBACK
+}
@@ -0,0 +1,8 @@
+package com.hanoi_metro.backend.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    PROCESSING,
+    DONE,
+    FAILED
+}
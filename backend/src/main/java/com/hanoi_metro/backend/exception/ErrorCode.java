@@ -64,6 +64,16 @@ public enum ErrorCode {
     ADDRESS_NOT_EXISTED(7004, "Địa chỉ không tồn tại", HttpStatus.NOT_FOUND),
     SHIPMENT_NOT_EXISTED(7005, "Vận đơn không tồn tại", HttpStatus.NOT_FOUND),
     BAD_REQUEST(7006, "Yêu cầu không hợp lệ", HttpStatus.BAD_REQUEST),
+    IDEMPOTENCY_REQUEST_IN_PROGRESS(
+            7007, "Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau", HttpStatus.CONFLICT),
+    ORDER_CONCURRENT_MODIFICATION(
+            7008, "Đơn hàng vừa được cập nhật bởi thao tác khác, vui lòng tải lại và thử lại", HttpStatus.CONFLICT),
+    REVENUE_CUBE_LOADING(
+            7009, "Dữ liệu phân tích doanh thu đang được nạp, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    EXTERNAL_SERVICE_UNAVAILABLE(
+            7010, "Dịch vụ đối tác đang gián đoạn, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    IDEMPOTENCY_KEY_REUSED(
+            7011, "Idempotency-Key đã được dùng cho một yêu cầu có nội dung khác", HttpStatus.UNPROCESSABLE_ENTITY),
 
     // FILE UPLOAD
     FILE_UPLOAD_FAILED(8001, "Không thể upload file", HttpStatus.INTERNAL_SERVER_ERROR),
@@ -18,6 +18,8 @@ public interface GhnMapper {
 
     GhnLeadtimeRequest toLeadtimeRequest(GhnCreateOrderRequest ghnRequest);
 
+    GhnLeadtimeRequest toLeadtimeRequest(GhnCalculateFeeRequest feeRequest);
+
     // Build GhnOrderItemRequest từ OrderItem.
     default GhnOrderItemRequest toGhnOrderItem(OrderItem item) {
         Product product = item.getProduct();
@@ -0,0 +1,67 @@
+package com.hanoi_metro.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.hanoi_metro.backend.entity.EmailMessage;
+import com.hanoi_metro.backend.enums.EmailStatus;
+
+@Repository
+public interface EmailMessageRepository extends JpaRepository<EmailMessage, String> {
+
+    // Như OutboxEventRepository.findDueForUpdate: SKIP LOCKED để nhiều instance không gửi trùng
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT m FROM EmailMessage m "
+            + "WHERE (m.status = com.hanoi_metro.backend.enums.EmailStatus.PENDING AND m.nextAttemptAt <= :now) "
+            + "OR (m.status = com.hanoi_metro.backend.enums.EmailStatus.SENDING AND m.lockedAt < :staleBefore) "
+            + "ORDER BY m.nextAttemptAt ASC")
+    List<EmailMessage> findDueForUpdate(
+            @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore, Pageable pageable);
+
+    // Gia hạn lockedAt cho email còn đang gửi để không bị coi là treo và bị lấy lại
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailMessage m SET m.lockedAt = :lockedAt "
+            + "WHERE m.id IN :ids AND m.status = com.hanoi_metro.backend.enums.EmailStatus.SENDING")
+    int renewLocks(@Param("ids") Collection<String> ids, @Param("lockedAt") LocalDateTime lockedAt);
+
+    // Xóa nội dung khi đã gửi: không giữ OTP / mật khẩu trong DB lâu hơn cần thiết
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailMessage m SET m.status = com.hanoi_metro.backend.enums.EmailStatus.SENT, "
+            + "m.sentAt = :sentAt, m.lockedAt = null, m.textContent = null, m.htmlContent = null "
+            + "WHERE m.id IN :ids")
+    int markSent(@Param("ids") Collection<String> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailMessage m SET m.status = :status, m.attempts = :attempts, m.nextAttemptAt = :nextAttemptAt, "
+            + "m.lastError = :lastError, m.lockedAt = null WHERE m.id = :id")
+    int markFailed(
+            @Param("id") String id,
+            @Param("status") EmailStatus status,
+            @Param("attempts") int attempts,
+            @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+            @Param("lastError") String lastError);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EmailMessage m WHERE m.status IN :statuses AND m.createdAt < :before")
+    int deleteByStatusInAndCreatedAtBefore(
+            @Param("statuses") Collection<EmailStatus> statuses, @Param("before") LocalDateTime before);
+}
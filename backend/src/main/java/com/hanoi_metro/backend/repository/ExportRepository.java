@@ -0,0 +1,81 @@
+package com.hanoi_metro.backend.repository;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Đọc dữ liệu xuất file bằng con trỏ forward-only: với MySQL, fetchSize = Integer.MIN_VALUE bật chế độ
+ * streaming nên driver trả từng dòng thay vì nạp cả kết quả. Không đi qua JPA nên không có persistence context.
+ */
+@Repository
+public class ExportRepository {
+
+    public static final List<String> ORDER_COLUMNS = List.of(
+            "order_id", "order_code", "order_date_time", "status", "payment_method", "payment_status",
+            "is_paid", "shipping_fee", "total_amount", "customer_email", "cancellation_reason");
+    public static final List<String> ORDER_ITEM_COLUMNS = List.of(
+            "item_id", "order_id", "order_code", "order_date_time", "product_id", "product_name",
+            "quantity", "unit_price", "final_price");
+    public static final List<String> FINANCIAL_RECORD_COLUMNS = List.of(
+            "record_id", "order_id", "product_id", "record_type", "payment_method", "amount", "occurred_at");
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public ExportRepository(DataSource dataSource) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    public void streamOrders(boolean archived, LocalDateTime start, LocalDateTime end, RowHandler handler) {
+        String suffix = archived ? OrderArchiveRepository.ARCHIVE_SUFFIX : "";
+        stream("SELECT o.id, o.order_code, o.order_date_time, o.status, o.payment_method, o.payment_status, "
+                        + "o.is_paid, o.shipping_fee, o.total_amount, u.email, o.cancellation_reason "
+                        + "FROM orders" + suffix + " o LEFT JOIN users u ON u.id = o.user_id "
+                        + "WHERE o.order_date_time BETWEEN ? AND ? ORDER BY o.order_date_time, o.id",
+                ORDER_COLUMNS.size(), handler, start, end);
+    }
+
+    public void streamOrderItems(boolean archived, LocalDateTime start, LocalDateTime end, RowHandler handler) {
+        String suffix = archived ? OrderArchiveRepository.ARCHIVE_SUFFIX : "";
+        String itemJoin = archived
+                ? "oi.order_id = o.id AND oi.order_date_time = o.order_date_time"
+                : "oi.order_id = o.id";
+        stream("SELECT oi.id, o.id, o.order_code, o.order_date_time, oi.product_id, p.name, "
+                        + "oi.quantity, oi.unit_price, oi.final_price "
+                        + "FROM orders" + suffix + " o JOIN order_items" + suffix + " oi ON " + itemJoin + " "
+                        + "LEFT JOIN products p ON p.id = oi.product_id "
+                        + "WHERE o.order_date_time BETWEEN ? AND ? ORDER BY o.order_date_time, o.id",
+                ORDER_ITEM_COLUMNS.size(), handler, start, end);
+    }
+
+    public void streamFinancialRecords(boolean archived, LocalDateTime start, LocalDateTime end, RowHandler handler) {
+        String suffix = archived ? OrderArchiveRepository.ARCHIVE_SUFFIX : "";
+        stream("SELECT fr.id, fr.order_id, fr.product_id, fr.record_type, fr.payment_method, fr.amount, fr.occurred_at "
+                        + "FROM financial_records" + suffix + " fr "
+                        + "WHERE fr.occurred_at BETWEEN ? AND ? ORDER BY fr.occurred_at",
+                FINANCIAL_RECORD_COLUMNS.size(), handler, start, end);
+    }
+
+    // Mỗi dòng được chuyển ngay cho handler; mảng giá trị không được giữ lại sau khi handler trả về
+    private void stream(String sql, int columns, RowHandler handler, Object... args) {
+        streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            Object[] values = new Object[columns];
+            for (int i = 0; i < columns; i++) {
+                values[i] = rs.getObject(i + 1);
+            }
+            handler.handle(values);
+        }, args);
+    }
+
+    @FunctionalInterface
+    public interface RowHandler {
+        void handle(Object[] values) throws SQLException;
+    }
+}
@@ -0,0 +1,101 @@
+package com.hanoi_metro.backend.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.hanoi_metro.backend.enums.FinancialRecordType;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Ghi doanh thu của cả một đơn trong một câu INSERT nhiều dòng. Khóa duy nhất
+ * (order_id, product_id, record_type) làm cho việc ghi lại idempotent, không cần kiểm tra trước.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class FinancialRecordBatchRepository {
+
+    private static final String INSERT_PREFIX = "INSERT INTO financial_records "
+            + "(id, order_id, product_id, amount, payment_method, record_type, occurred_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?)";
+
+    JdbcTemplate jdbcTemplate;
+
+    // Dòng đã tồn tại được giữ nguyên (kể cả occurred_at) => gọi lại nhiều lần không sinh bản ghi trùng
+    public void insertIfAbsent(
+            String orderId,
+            Map<String, Double> amountByProductId,
+            PaymentMethod paymentMethod,
+            FinancialRecordType recordType,
+            LocalDateTime occurredAt) {
+        write(orderId, amountByProductId, paymentMethod, recordType, occurredAt, "id = id");
+    }
+
+    // Dòng đã tồn tại được ghi đè số tiền, phương thức và occurred_at (đơn COD ghi nhận lại lúc DELIVERED)
+    public void upsert(
+            String orderId,
+            Map<String, Double> amountByProductId,
+            PaymentMethod paymentMethod,
+            FinancialRecordType recordType,
+            LocalDateTime occurredAt) {
+        write(orderId, amountByProductId, paymentMethod, recordType, occurredAt,
+                "amount = VALUES(amount), payment_method = VALUES(payment_method), occurred_at = VALUES(occurred_at)");
+    }
+
+    // Xóa các dòng của đơn có sản phẩm không còn trong amountByProductId (dòng hàng đã bị bỏ / về 0)
+    public int deleteOtherProducts(
+            String orderId, Collection<String> keepProductIds, FinancialRecordType recordType) {
+        String sql = "DELETE FROM financial_records WHERE order_id = ? AND record_type = ?";
+        List<Object> args = new ArrayList<>(keepProductIds.size() + 2);
+        args.add(orderId);
+        args.add(recordType.name());
+        if (!keepProductIds.isEmpty()) {
+            sql += " AND (product_id IS NULL OR product_id NOT IN ("
+                    + String.join(", ", Collections.nCopies(keepProductIds.size(), "?")) + "))";
+            args.addAll(keepProductIds);
+        }
+        return jdbcTemplate.update(sql, args.toArray());
+    }
+
+    private void write(
+            String orderId,
+            Map<String, Double> amountByProductId,
+            PaymentMethod paymentMethod,
+            FinancialRecordType recordType,
+            LocalDateTime occurredAt,
+            String onDuplicate) {
+        if (amountByProductId.isEmpty()) {
+            return;
+        }
+        String sql = INSERT_PREFIX
+                + String.join(", ", Collections.nCopies(amountByProductId.size(), ROW_PLACEHOLDERS))
+                + " ON DUPLICATE KEY UPDATE " + onDuplicate;
+
+        Timestamp timestamp = Timestamp.valueOf(occurredAt);
+        String method = paymentMethod != null ? paymentMethod.name() : null;
+        List<Object> args = new ArrayList<>(amountByProductId.size() * 7);
+        amountByProductId.forEach((productId, amount) -> {
+            args.add(UUID.randomUUID().toString());
+            args.add(orderId);
+            args.add(productId);
+            args.add(amount);
+            args.add(method);
+            args.add(recordType.name());
+            args.add(timestamp);
+        });
+        jdbcTemplate.update(sql, args.toArray());
+    }
+}
@@ -1,6 +1,7 @@
 package com.hanoi_metro.backend.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -94,6 +95,14 @@ public interface FinancialRecordRepository extends JpaRepository<FinancialRecord
     // Lấy tất cả bản ghi tài chính trong khoảng thời gian.
     List<FinancialRecord> findByOccurredAtBetween(LocalDateTime start, LocalDateTime end);
 
+    // Tổng chi phí (giá trị tuyệt đối) của các loại bản ghi trong khoảng thời gian
+    @Query("select coalesce(sum(abs(fr.amount)), 0) from FinancialRecord fr "
+            + "where fr.occurredAt between :start and :end and fr.amount is not null and fr.recordType in :types")
+    Double sumAbsoluteAmount(
+            @Param("types") Collection<FinancialRecordType> types,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
     // Kiểm tra xem đã có FinancialRecord cho order này chưa
     boolean existsByOrderIdAndRecordType(String orderId, FinancialRecordType recordType);
     
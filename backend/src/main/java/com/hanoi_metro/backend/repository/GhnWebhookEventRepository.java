@@ -0,0 +1,34 @@
+package com.hanoi_metro.backend.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.hanoi_metro.backend.entity.GhnWebhookEvent;
+
+@Repository
+public interface GhnWebhookEventRepository extends JpaRepository<GhnWebhookEvent, String> {
+
+    // Trả về 1 nếu là callback mới, 0 nếu GHN gửi lại callback đã nhận
+    @Modifying
+    @Transactional
+    @Query(
+            value = "INSERT IGNORE INTO ghn_webhook_events (id, order_code, status, received_at) "
+                    + "VALUES (:id, :orderCode, :status, :receivedAt)",
+            nativeQuery = true)
+    int reserve(
+            @Param("id") String id,
+            @Param("orderCode") String orderCode,
+            @Param("status") String status,
+            @Param("receivedAt") LocalDateTime receivedAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM GhnWebhookEvent e WHERE e.receivedAt < :before")
+    int deleteReceivedBefore(@Param("before") LocalDateTime before);
+}
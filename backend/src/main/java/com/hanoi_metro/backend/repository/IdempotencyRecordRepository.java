@@ -0,0 +1,66 @@
+package com.hanoi_metro.backend.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.hanoi_metro.backend.entity.IdempotencyRecord;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Giữ chỗ cho key: trả về 1 nếu insert thành công, 0 nếu key đã tồn tại (request trùng)
+    @Modifying
+    @Transactional
+    @Query(
+            value = "INSERT IGNORE INTO idempotency_records "
+                    + "(id, endpoint, user_email, status, request_hash, locked_at, created_at, expires_at) "
+                    + "VALUES (:id, :endpoint, :userEmail, 'IN_PROGRESS', :requestHash, :lockedAt, :lockedAt, :expiresAt)",
+            nativeQuery = true)
+    int reserve(
+            @Param("id") String id,
+            @Param("endpoint") String endpoint,
+            @Param("userEmail") String userEmail,
+            @Param("requestHash") String requestHash,
+            @Param("lockedAt") LocalDateTime lockedAt,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Tiếp quản key IN_PROGRESS đã hết lease (request trước bị kill / treo); trả về 1 nếu giành được
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.lockedAt = :lockedAt, r.expiresAt = :expiresAt "
+            + "WHERE r.id = :id AND r.status = com.hanoi_metro.backend.enums.IdempotencyStatus.IN_PROGRESS "
+            + "AND (r.lockedAt IS NULL OR r.lockedAt < :leaseBefore)")
+    int takeOver(
+            @Param("id") String id,
+            @Param("lockedAt") LocalDateTime lockedAt,
+            @Param("expiresAt") LocalDateTime expiresAt,
+            @Param("leaseBefore") LocalDateTime leaseBefore);
+
+    // Chỉ request còn giữ lease (lockedAt khớp) mới được ghi kết quả
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.status = com.hanoi_metro.backend.enums.IdempotencyStatus.COMPLETED, "
+            + "r.responseBody = :responseBody WHERE r.id = :id AND r.lockedAt = :lockedAt")
+    int complete(
+            @Param("id") String id,
+            @Param("lockedAt") LocalDateTime lockedAt,
+            @Param("responseBody") String responseBody);
+
+    // Giải phóng key khi request thất bại, trừ khi đã bị request khác tiếp quản
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.lockedAt = :lockedAt "
+            + "AND r.status = com.hanoi_metro.backend.enums.IdempotencyStatus.IN_PROGRESS")
+    int release(@Param("id") String id, @Param("lockedAt") LocalDateTime lockedAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
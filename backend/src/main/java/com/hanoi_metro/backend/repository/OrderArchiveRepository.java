@@ -0,0 +1,279 @@
+package com.hanoi_metro.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.hanoi_metro.backend.dto.response.OrderStatistics;
+import com.hanoi_metro.backend.dto.response.ProductRevenue;
+import com.hanoi_metro.backend.enums.FinancialRecordType;
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Truy cập các bảng lưu trữ (orders_archive, order_items_archive, financial_records_archive, shipment_archive).
+ * Các bảng này không có entity JPA nên dùng SQL thuần qua JdbcTemplate.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OrderArchiveRepository {
+
+    public static final String ORDERS = "orders";
+    public static final String ORDER_ITEMS = "order_items";
+    public static final String FINANCIAL_RECORDS = "financial_records";
+    public static final String SHIPMENTS = "shipment";
+    public static final String ARCHIVE_SUFFIX = "_archive";
+
+    // Cùng điều kiện "đã thanh toán" với FinancialRecordRepository (COD: DELIVERED, MoMo: CONFIRMED)
+    static final String PAID_ORDER_FILTER = "o.payment_status = 'PAID' AND o.is_paid = TRUE "
+            + "AND ((o.payment_method = 'COD' AND o.status = 'DELIVERED') "
+            + "     OR (o.payment_method = 'MOMO' AND o.status = 'CONFIRMED') "
+            + "     OR (o.payment_method NOT IN ('COD', 'MOMO'))) ";
+
+    private static final String ARCHIVED_REVENUE_FROM = "FROM financial_records_archive fr "
+            + "JOIN orders_archive o ON o.id = fr.order_id "
+            + "WHERE fr.record_type = ? AND fr.occurred_at BETWEEN ? AND ? AND " + PAID_ORDER_FILTER;
+
+    JdbcTemplate jdbcTemplate;
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // ==================== Đọc dữ liệu lưu trữ ====================
+
+    public LocalDateTime findNewestArchivedOrderTime() {
+        return jdbcTemplate.queryForObject("SELECT MAX(order_date_time) FROM orders_archive", LocalDateTime.class);
+    }
+
+    // Cùng dạng với OrderRepository.countOrderStatistics: tổng / hủy / hoàn tiền trong một lượt quét
+    public OrderStatistics countOrderStatistics(LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*), COALESCE(SUM(status = ?), 0), COALESCE(SUM(status = ?), 0) "
+                        + "FROM orders_archive WHERE order_date_time BETWEEN ? AND ?",
+                (rs, rowNum) -> OrderStatistics.builder()
+                        .totalOrders(rs.getLong(1))
+                        .cancelledOrders(rs.getLong(2))
+                        .refundedOrders(rs.getLong(3))
+                        .build(),
+                OrderStatus.CANCELLED.name(), OrderStatus.REFUNDED.name(), start, end);
+    }
+
+    // Cùng dạng Object[] với FinancialRecordRepository.revenueByDayGroupedByOrder: year, month, day, orderId, total
+    public List<Object[]> revenueByDayGroupedByOrder(FinancialRecordType type, LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.query(
+                "SELECT YEAR(fr.occurred_at), MONTH(fr.occurred_at), DAY(fr.occurred_at), fr.order_id, SUM(fr.amount) "
+                        + ARCHIVED_REVENUE_FROM
+                        + "GROUP BY YEAR(fr.occurred_at), MONTH(fr.occurred_at), DAY(fr.occurred_at), fr.order_id",
+                (rs, rowNum) -> new Object[] {rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getDouble(5)},
+                type.name(), start, end);
+    }
+
+    // year, month, day, hour, orderId, total
+    public List<Object[]> revenueByHourGroupedByOrder(FinancialRecordType type, LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.query(
+                "SELECT YEAR(fr.occurred_at), MONTH(fr.occurred_at), DAY(fr.occurred_at), HOUR(fr.occurred_at), "
+                        + "fr.order_id, SUM(fr.amount) "
+                        + ARCHIVED_REVENUE_FROM
+                        + "GROUP BY YEAR(fr.occurred_at), MONTH(fr.occurred_at), DAY(fr.occurred_at), "
+                        + "HOUR(fr.occurred_at), fr.order_id",
+                (rs, rowNum) -> new Object[] {
+                    rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getString(5), rs.getDouble(6)
+                },
+                type.name(), start, end);
+    }
+
+    // year, month, orderId, total
+    public List<Object[]> revenueByMonthGroupedByOrder(FinancialRecordType type, LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.query(
+                "SELECT YEAR(fr.occurred_at), MONTH(fr.occurred_at), fr.order_id, SUM(fr.amount) "
+                        + ARCHIVED_REVENUE_FROM
+                        + "GROUP BY YEAR(fr.occurred_at), MONTH(fr.occurred_at), fr.order_id",
+                (rs, rowNum) -> new Object[] {rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getDouble(4)},
+                type.name(), start, end);
+    }
+
+    // paymentMethod, total
+    public List<Object[]> revenueByPayment(FinancialRecordType type, LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.query(
+                "SELECT fr.payment_method, SUM(fr.amount) "
+                        + ARCHIVED_REVENUE_FROM
+                        + "AND fr.payment_method IS NOT NULL GROUP BY fr.payment_method",
+                (rs, rowNum) -> new Object[] {PaymentMethod.valueOf(rs.getString(1)), rs.getDouble(2)},
+                type.name(), start, end);
+    }
+
+    // Doanh thu (finalPrice), số đơn và giá vốn của các đơn đã thanh toán trong kho lưu trữ
+    public SalesTotals sumPaidSales(LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT o.id), "
+                        + "COALESCE(SUM(CASE WHEN oi.final_price > 0 THEN oi.final_price ELSE 0 END), 0), "
+                        + "COALESCE(SUM(CASE WHEN oi.product_id IS NOT NULL AND oi.quantity > 0 AND p.purchase_price > 0 "
+                        + "THEN p.purchase_price * oi.quantity ELSE 0 END), 0) "
+                        + "FROM orders_archive o "
+                        + "JOIN order_items_archive oi ON oi.order_id = o.id AND oi.order_date_time = o.order_date_time "
+                        + "LEFT JOIN products p ON p.id = oi.product_id "
+                        + "WHERE o.order_date_time BETWEEN ? AND ? AND " + PAID_ORDER_FILTER,
+                (rs, rowNum) -> new SalesTotals(rs.getLong(1), rs.getDouble(2), rs.getDouble(3)),
+                start, end);
+    }
+
+    /**
+     * Top sản phẩm theo doanh thu gộp cả bảng nóng và kho lưu trữ trong một truy vấn
+     * (một sản phẩm có thể nằm ở cả hai nơi nên phải cộng trước rồi mới xếp hạng).
+     */
+    public List<ProductRevenue> topProductsByRevenue(LocalDateTime start, LocalDateTime end, int limit) {
+        String itemFilter = "o.order_date_time BETWEEN ? AND ? AND " + PAID_ORDER_FILTER
+                + "AND oi.product_id IS NOT NULL AND oi.final_price > 0 AND oi.quantity > 0 ";
+        return jdbcTemplate.query(
+                "SELECT t.product_id, p.name, SUM(t.quantity), SUM(t.revenue) FROM ("
+                        + "SELECT oi.product_id, SUM(oi.quantity) AS quantity, SUM(oi.final_price) AS revenue "
+                        + "FROM orders o JOIN order_items oi ON oi.order_id = o.id "
+                        + "WHERE " + itemFilter + "GROUP BY oi.product_id "
+                        + "UNION ALL "
+                        + "SELECT oi.product_id, SUM(oi.quantity), SUM(oi.final_price) "
+                        + "FROM orders_archive o "
+                        + "JOIN order_items_archive oi ON oi.order_id = o.id AND oi.order_date_time = o.order_date_time "
+                        + "WHERE " + itemFilter + "GROUP BY oi.product_id"
+                        + ") t JOIN products p ON p.id = t.product_id "
+                        + "WHERE p.name IS NOT NULL "
+                        + "GROUP BY t.product_id, p.name ORDER BY SUM(t.revenue) DESC LIMIT ?",
+                (rs, rowNum) -> ProductRevenue.builder()
+                        .productId(rs.getString(1))
+                        .productName(rs.getString(2))
+                        .quantity(rs.getLong(3))
+                        .total(rs.getDouble(4))
+                        .build(),
+                start, end, start, end, limit);
+    }
+
+    // Chi phí hoàn hàng / bồi thường đã lưu trữ
+    public double sumExpenses(LocalDateTime start, LocalDateTime end) {
+        Double total = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(ABS(amount)), 0) FROM financial_records_archive "
+                        + "WHERE occurred_at BETWEEN ? AND ? AND amount IS NOT NULL AND record_type IN (?, ?)",
+                Double.class, start, end, FinancialRecordType.REFUND.name(), FinancialRecordType.COMPENSATION.name());
+        return total != null ? total : 0.0;
+    }
+
+    // ==================== Chuyển dữ liệu sang kho lưu trữ ====================
+
+    public List<String> findColumns(String table) {
+        return jdbcTemplate.queryForList(
+                "SELECT column_name FROM information_schema.columns "
+                        + "WHERE table_schema = DATABASE() AND table_name = ? ORDER BY ordinal_position",
+                String.class, table);
+    }
+
+    public List<String> findPartitionNames(String table) {
+        return jdbcTemplate.queryForList(
+                "SELECT partition_name FROM information_schema.partitions "
+                        + "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL",
+                String.class, table);
+    }
+
+    // Tách partition năm `year` ra khỏi pmax (pmax thường rỗng nên thao tác rất nhẹ)
+    public void addYearPartition(String table, int year) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION pmax INTO ("
+                + "PARTITION p" + year + " VALUES LESS THAN ('" + (year + 1) + "-01-01'), "
+                + "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+    }
+
+    // Đơn đã kết thúc, cũ hơn cutoff; bỏ qua đơn còn bản ghi payment tham chiếu (không lưu trữ bảng đó)
+    public List<String> findArchivableOrderIds(
+            Collection<OrderStatus> statuses, LocalDateTime cutoff, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("statuses", statuses.stream().map(Enum::name).toList())
+                .addValue("cutoff", cutoff)
+                .addValue("limit", limit);
+        return namedParameterJdbcTemplate.queryForList(
+                "SELECT o.id FROM orders o "
+                        + "WHERE o.status IN (:statuses) AND o.order_date_time < :cutoff "
+                        + "AND NOT EXISTS (SELECT 1 FROM payment p WHERE p.order_id = o.id) "
+                        + "ORDER BY o.order_date_time, o.id LIMIT :limit",
+                params, String.class);
+    }
+
+    // Khóa các đơn trong chunk và lọc lại trạng thái (đơn có thể vừa chuyển sang luồng trả hàng)
+    public List<String> lockArchivableOrders(Collection<String> ids, Collection<OrderStatus> statuses) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("statuses", statuses.stream().map(Enum::name).toList());
+        return namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM orders WHERE id IN (:ids) AND status IN (:statuses) FOR UPDATE",
+                params, String.class);
+    }
+
+    /**
+     * Chép đơn, items, bản ghi tài chính, vận đơn sang bảng lưu trữ rồi xóa khỏi bảng nóng
+     * (kèm dòng order_search_index của đơn).
+     * Phải chạy trong transaction của caller để bản sao và thao tác xóa cùng commit hoặc cùng rollback.
+     *
+     * @param columns danh sách cột của từng bảng nóng (khóa là tên bảng nóng)
+     */
+    public int moveOrders(Collection<String> ids, Map<String, List<String>> columns) {
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+
+        String orderColumns = join(columns.get(ORDERS), "");
+        namedParameterJdbcTemplate.update(
+                "INSERT INTO orders_archive (" + orderColumns + ") "
+                        + "SELECT " + orderColumns + " FROM orders WHERE id IN (:ids)",
+                params);
+
+        namedParameterJdbcTemplate.update(
+                "INSERT INTO order_items_archive (" + join(columns.get(ORDER_ITEMS), "") + ", order_date_time) "
+                        + "SELECT " + join(columns.get(ORDER_ITEMS), "oi.") + ", o.order_date_time "
+                        + "FROM order_items oi JOIN orders o ON o.id = oi.order_id WHERE oi.order_id IN (:ids)",
+                params);
+
+        String recordColumns = join(columns.get(FINANCIAL_RECORDS), "");
+        namedParameterJdbcTemplate.update(
+                "INSERT INTO financial_records_archive (" + recordColumns + ") "
+                        + "SELECT " + recordColumns + " FROM financial_records WHERE order_id IN (:ids)",
+                params);
+
+        String shipmentColumns = join(columns.get(SHIPMENTS), "");
+        namedParameterJdbcTemplate.update(
+                "INSERT INTO shipment_archive (" + shipmentColumns + ") "
+                        + "SELECT " + shipmentColumns + " FROM shipment WHERE order_id IN (:ids)",
+                params);
+
+        // Đơn đã lưu trữ không còn trong danh sách tra cứu của staff
+        namedParameterJdbcTemplate.update("DELETE FROM order_search_index WHERE order_id IN (:ids)", params);
+        namedParameterJdbcTemplate.update("DELETE FROM financial_records WHERE order_id IN (:ids)", params);
+        namedParameterJdbcTemplate.update("DELETE FROM order_items WHERE order_id IN (:ids)", params);
+        namedParameterJdbcTemplate.update("DELETE FROM shipment WHERE order_id IN (:ids)", params);
+        return namedParameterJdbcTemplate.update("DELETE FROM orders WHERE id IN (:ids)", params);
+    }
+
+    private static String join(List<String> columns, String prefix) {
+        return columns.stream().map(column -> prefix + "`" + column + "`").collect(Collectors.joining(", "));
+    }
+
+    @Getter
+    public static class SalesTotals {
+        private final long orderCount;
+        private final double income;
+        private final double costOfGoodsSold;
+
+        public SalesTotals(long orderCount, double income, double costOfGoodsSold) {
+            this.orderCount = orderCount;
+            this.income = income;
+            this.costOfGoodsSold = costOfGoodsSold;
+        }
+
+        public static SalesTotals empty() {
+            return new SalesTotals(0L, 0.0, 0.0);
+        }
+    }
+}
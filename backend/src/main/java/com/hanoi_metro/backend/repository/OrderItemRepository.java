@@ -1,12 +1,50 @@
 package com.hanoi_metro.backend.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.hanoi_metro.backend.dto.response.ProductRevenue;
 import com.hanoi_metro.backend.entity.OrderItem;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, String> {
-}
 
+    // Top sản phẩm theo doanh thu (finalPrice) của các đơn đã thanh toán, gom nhóm và giới hạn ngay trong DB
+    // COD: chỉ tính khi status = DELIVERED
+    // MoMo: chỉ tính khi status = CONFIRMED
+    @Query("select new com.hanoi_metro.backend.dto.response.ProductRevenue("
+            + "p.id, p.name, sum(oi.quantity), sum(oi.finalPrice)) "
+            + "from OrderItem oi join oi.order o join oi.product p "
+            + "where o.orderDateTime between :start and :end "
+            + "and o.paymentStatus = 'PAID' "
+            + "and o.paid = true "
+            + "and ((o.paymentMethod = 'COD' and o.status = 'DELIVERED') "
+            + "     or (o.paymentMethod = 'MOMO' and o.status = 'CONFIRMED') "
+            + "     or (o.paymentMethod not in ('COD', 'MOMO'))) "
+            + "and oi.finalPrice > 0 and oi.quantity > 0 and p.name is not null "
+            + "group by p.id, p.name "
+            + "order by sum(oi.finalPrice) desc")
+    List<ProductRevenue> topProductsByRevenue(
+            @Param("start") LocalDateTime start, @Param("end") LocalDateTime end, Pageable pageable);
 
+    // Số đơn, tổng finalPrice và giá vốn (purchasePrice × quantity) của các đơn đã thanh toán
+    // Cùng điều kiện với OrderArchiveRepository.sumPaidSales; một dòng: [orderCount, income, costOfGoodsSold]
+    @Query("select count(distinct o.id), "
+            + "coalesce(sum(case when oi.finalPrice > 0 then oi.finalPrice else 0 end), 0), "
+            + "coalesce(sum(case when p.id is not null and oi.quantity > 0 and p.purchasePrice > 0 "
+            + "then p.purchasePrice * oi.quantity else 0 end), 0) "
+            + "from OrderItem oi join oi.order o left join oi.product p "
+            + "where o.orderDateTime between :start and :end "
+            + "and o.paymentStatus = 'PAID' "
+            + "and o.paid = true "
+            + "and ((o.paymentMethod = 'COD' and o.status = 'DELIVERED') "
+            + "     or (o.paymentMethod = 'MOMO' and o.status = 'CONFIRMED') "
+            + "     or (o.paymentMethod not in ('COD', 'MOMO')))")
+    List<Object[]> sumPaidSales(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
@@ -1,27 +1,60 @@
 package com.hanoi_metro.backend.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import com.hanoi_metro.backend.enums.CancellationSource;
 import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.PaymentMethod;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.hanoi_metro.backend.dto.response.OrderStatistics;
 import com.hanoi_metro.backend.entity.Order;
 
 public interface OrderRepository extends JpaRepository<Order, String> {
 
+    // Projection tóm tắt đơn hàng: số item và ảnh đại diện lấy bằng subquery nên mỗi đơn chỉ 1 dòng.
+    // Ảnh đại diện = ảnh mặc định của sản phẩm thuộc dòng hàng có id nhỏ nhất trong số các dòng có ảnh
+    // (order_items không có cột thứ tự dòng; id nhỏ nhất cho kết quả ổn định giữa các lần tải trang)
+    String SUMMARY_SELECT = "SELECT o.id AS id, o.code AS code, o.status AS status, o.paymentMethod AS paymentMethod, "
+            + "o.paymentStatus AS paymentStatus, o.paid AS paid, o.shippingFee AS shippingFee, "
+            + "o.totalAmount AS totalAmount, o.orderDateTime AS orderDateTime, "
+            + "u.fullName AS customerName, u.email AS customerEmail, "
+            + "(SELECT COUNT(oi) FROM OrderItem oi WHERE oi.order = o) AS itemCount, "
+            + "(SELECT dm.mediaUrl FROM OrderItem ti JOIN ti.product tp JOIN tp.defaultMedia dm "
+            + "WHERE ti.id = (SELECT MIN(fi.id) FROM OrderItem fi JOIN fi.product fp JOIN fp.defaultMedia fm "
+            + "WHERE fi.order = o)) AS thumbnailUrl "
+            + "FROM Order o LEFT JOIN o.user u ";
+
+    // Điều kiện phân trang keyset dùng chung: lấy các đơn "sau" con trỏ (orderDateTime, id) theo thứ tự giảm dần
+    String KEYSET_FILTER = "o.orderDateTime >= :from AND o.orderDateTime < :to "
+            + "AND (o.orderDateTime < :cursorTime OR (o.orderDateTime = :cursorTime AND o.id < :cursorId)) "
+            + "ORDER BY o.orderDateTime DESC, o.id DESC";
+
+    // Bộ lọc status / paymentMethod viết thẳng (không kèm "(:all = true OR ...)") để MySQL dùng được
+    // idx_orders_status_date_id / idx_orders_payment_date_id; không lọc thì gọi biến thể không có điều kiện này
+    // để đi theo idx_orders_date_id (hoặc idx_orders_user_date_id)
+    String LISTING_FILTER = "o.status IN :statuses AND o.paymentMethod IN :paymentMethods AND ";
+
+    // Khách hàng không thấy đơn MoMo chưa thanh toán (giống findByUserEmail)
+    String CUSTOMER_VISIBLE = "(o.paymentMethod <> com.hanoi_metro.backend.enums.PaymentMethod.MOMO "
+            + "OR o.paymentStatus = com.hanoi_metro.backend.enums.PaymentStatus.PAID) AND ";
+
     /**
      * Tìm các đơn hàng theo email của user (subject của JWT).
      * Chỉ trả về đơn hàng đã thanh toán thành công hoặc đơn COD (không cần thanh toán trước).
      * Loại bỏ đơn hàng MoMo chưa thanh toán (paymentStatus = PENDING, FAILED, CANCELLED và paymentMethod = MOMO).
      */
-    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia", "items.product.mediaList"})
+    @EntityGraph(attributePaths = {"user", "address", "shipment"})
     @Query("SELECT o FROM Order o WHERE o.user.email = :email " +
            "AND (o.paymentMethod != 'MOMO' OR o.paymentStatus = 'PAID') " +
            "ORDER BY o.orderDateTime DESC")
@@ -31,21 +64,21 @@ public interface OrderRepository extends JpaRepository<Order, String> {
      * Tìm đơn hàng gắn với một giỏ hàng cụ thể.
      * Do mapping @OneToOne nên tối đa chỉ có 1 đơn cho mỗi cart.
      */
-    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia", "items.product.mediaList"})
+    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia"})
     Optional<Order> findByCartId(String cartId);
 
-    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia", "items.product.mediaList"})
+    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia"})
     Optional<Order> findByCode(String code);
 
     @Override
-    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia", "items.product.mediaList"})
+    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia"})
     Optional<Order> findById(String id);
 
     /**
      * Tìm các đơn hàng có status liên quan đến trả hàng/hoàn tiền.
      * Dành cho Customer Support để quản lý yêu cầu trả hàng.
      */
-    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia", "items.product.mediaList", "user"})
+    @EntityGraph(attributePaths = {"user", "address", "shipment"})
     @Query("SELECT o FROM Order o WHERE o.status IN :statuses ORDER BY o.orderDateTime DESC")
     List<Order> findByStatusIn(@Param("statuses") List<OrderStatus> statuses);
 
@@ -53,7 +86,7 @@ public interface OrderRepository extends JpaRepository<Order, String> {
      * Tìm đơn hàng MoMo pending (chưa thanh toán) của user trong vòng 30 phút gần đây.
      * Dùng để tránh tạo duplicate order khi user click nhiều lần.
      */
-    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia", "items.product.mediaList"})
+    @EntityGraph(attributePaths = {"user", "address", "shipment"})
     @Query("SELECT o FROM Order o WHERE o.user.email = :email " +
            "AND o.paymentMethod = 'MOMO' " +
            "AND o.paymentStatus = 'PENDING' " +
@@ -63,35 +96,177 @@ public interface OrderRepository extends JpaRepository<Order, String> {
             @Param("email") String email,
             @Param("sinceTime") java.time.LocalDateTime sinceTime);
     // Tìm các đơn hàng trong khoảng thời gian, sắp xếp theo orderDateTime DESC
-    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia", "items.product.mediaList", "user"})
+    @EntityGraph(attributePaths = {"items", "items.product", "user"})
     @Query("SELECT o FROM Order o WHERE o.orderDateTime BETWEEN :start AND :end ORDER BY o.orderDateTime DESC")
     List<Order> findByOrderDateTimeBetween(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
 
     // Tìm các đơn hàng trong khoảng thời gian với pagination, sắp xếp theo orderDateTime DESC
-    @EntityGraph(attributePaths = {"items", "items.product", "items.product.defaultMedia", "items.product.mediaList", "user"})
+    @EntityGraph(attributePaths = {"user", "address", "shipment"})
     @Query("SELECT o FROM Order o WHERE o.orderDateTime BETWEEN :start AND :end ORDER BY o.orderDateTime DESC")
     Page<Order> findByOrderDateTimeBetween(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end,
             Pageable pageable);
 
-    // Đếm số đơn hàng trong khoảng thời gian
-    @Query("SELECT COUNT(o) FROM Order o WHERE o.orderDateTime BETWEEN :start AND :end")
-    Long countByOrderDateTimeBetween(
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end);
+    /**
+     * Phân trang keyset cho staff/admin/CSKH: lấy các đơn "sau" con trỏ (orderDateTime, id) theo thứ tự giảm dần.
+     * Không dùng OFFSET nên thời gian truy vấn không tăng theo số trang / kích thước bảng.
+     * Mỗi danh sách có hai biến thể: không lọc và có lọc (Filtered) để mỗi câu truy vấn chỉ có một kế hoạch index.
+     */
+    @EntityGraph(attributePaths = {"user", "address", "shipment"})
+    @Query("SELECT o FROM Order o WHERE " + KEYSET_FILTER)
+    List<Order> findPageAfterCursor(
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") String cursorId,
+            Pageable pageable);
 
-    // Đếm số đơn hàng bị hủy trong khoảng thời gian
-    @Query("SELECT COUNT(o) FROM Order o WHERE o.orderDateTime BETWEEN :start AND :end AND o.status = 'CANCELLED'")
-    Long countCancelledOrdersByOrderDateTimeBetween(
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end);
+    @EntityGraph(attributePaths = {"user", "address", "shipment"})
+    @Query("SELECT o FROM Order o WHERE " + LISTING_FILTER + KEYSET_FILTER)
+    List<Order> findFilteredPageAfterCursor(
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("statuses") Collection<OrderStatus> statuses,
+            @Param("paymentMethods") Collection<PaymentMethod> paymentMethods,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") String cursorId,
+            Pageable pageable);
+
+    // Phân trang keyset cho khách hàng
+    @EntityGraph(attributePaths = {"user", "address", "shipment"})
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId AND " + CUSTOMER_VISIBLE + KEYSET_FILTER)
+    List<Order> findUserPageAfterCursor(
+            @Param("userId") String userId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") String cursorId,
+            Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "address", "shipment"})
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId AND " + CUSTOMER_VISIBLE + LISTING_FILTER + KEYSET_FILTER)
+    List<Order> findUserFilteredPageAfterCursor(
+            @Param("userId") String userId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("statuses") Collection<OrderStatus> statuses,
+            @Param("paymentMethods") Collection<PaymentMethod> paymentMethods,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") String cursorId,
+            Pageable pageable);
+
+    // Danh sách tóm tắt (keyset) cho admin / staff / CSKH
+    @Query(SUMMARY_SELECT + "WHERE " + KEYSET_FILTER)
+    List<OrderSummaryView> findSummariesAfterCursor(
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") String cursorId,
+            Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE " + LISTING_FILTER + KEYSET_FILTER)
+    List<OrderSummaryView> findFilteredSummariesAfterCursor(
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("statuses") Collection<OrderStatus> statuses,
+            @Param("paymentMethods") Collection<PaymentMethod> paymentMethods,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") String cursorId,
+            Pageable pageable);
+
+    // Danh sách tóm tắt (keyset) của khách hàng
+    @Query(SUMMARY_SELECT + "WHERE u.id = :userId AND " + CUSTOMER_VISIBLE + KEYSET_FILTER)
+    List<OrderSummaryView> findUserSummariesAfterCursor(
+            @Param("userId") String userId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") String cursorId,
+            Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE u.id = :userId AND " + CUSTOMER_VISIBLE + LISTING_FILTER + KEYSET_FILTER)
+    List<OrderSummaryView> findUserFilteredSummariesAfterCursor(
+            @Param("userId") String userId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("statuses") Collection<OrderStatus> statuses,
+            @Param("paymentMethods") Collection<PaymentMethod> paymentMethods,
+            @Param("cursorTime") LocalDateTime cursorTime,
+            @Param("cursorId") String cursorId,
+            Pageable pageable);
+
+    @Query("SELECT o.id AS id, o.code AS code, o.status AS status, o.paymentMethod AS paymentMethod, "
+            + "o.paymentStatus AS paymentStatus, o.paid AS paid, u.id AS userId, "
+            + "o.orderDateTime AS orderDateTime FROM Order o LEFT JOIN o.user u WHERE o.id IN :ids")
+    List<OrderStatusView> findStatusViewsByIdIn(@Param("ids") Collection<String> ids);
+
+    // Tạo vận đơn hàng loạt: địa chỉ, vận đơn hiện có, sản phẩm và danh mục của cả lô trong một truy vấn
+    @EntityGraph(attributePaths = {"address", "shipment", "items", "items.product", "items.product.category"})
+    @Query("SELECT DISTINCT o FROM Order o WHERE o.id IN :ids")
+    List<Order> findForDispatchByIdIn(@Param("ids") Collection<String> ids);
+
+    // Kết quả tra cứu: tóm tắt các đơn tìm được trong order_search_index
+    @Query(SUMMARY_SELECT + "WHERE o.id IN :ids")
+    List<OrderSummaryView> findSummariesByIdIn(@Param("ids") Collection<String> ids);
+
+    // Nạp đơn kèm khách và vận đơn để dựng dòng order_search_index
+    @EntityGraph(attributePaths = {"user", "shipment"})
+    List<Order> findWithUserAndShipmentByIdIn(Collection<String> ids);
+
+    // Cập nhật trạng thái hàng loạt; điều kiện status IN :fromStatuses chặn ghi đè đơn vừa bị đổi trạng thái.
+    // UPDATE bằng JPQL không tự tăng @Version nên phải tăng tay để các entity đang giữ bản cũ bị từ chối khi lưu.
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :target, o.version = o.version + 1 "
+            + "WHERE o.id IN :ids AND o.status IN :fromStatuses")
+    int bulkUpdateStatus(
+            @Param("ids") Collection<String> ids,
+            @Param("fromStatuses") Collection<OrderStatus> fromStatuses,
+            @Param("target") OrderStatus target);
+
+    @Modifying
+    @Query("UPDATE Order o SET o.status = com.hanoi_metro.backend.enums.OrderStatus.CANCELLED, "
+            + "o.cancellationReason = :reason, o.cancellationSource = :source, o.note = :note, "
+            + "o.version = o.version + 1 "
+            + "WHERE o.id IN :ids AND o.status IN :fromStatuses")
+    int bulkCancel(
+            @Param("ids") Collection<String> ids,
+            @Param("fromStatuses") Collection<OrderStatus> fromStatuses,
+            @Param("reason") String reason,
+            @Param("source") CancellationSource source,
+            @Param("note") String note);
+
+    // Giữ đơn cho một lượt tạo vận đơn trước khi gọi GHN: chỉ đơn CONFIRMED, chưa có vận đơn và không bị lượt khác
+    // giữ (hoặc lượt đó đã quá hạn). Đơn giữ được là đơn có dispatchClaim = :claim sau câu lệnh này.
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.dispatchClaim = :claim, o.dispatchClaimedAt = :claimedAt, o.version = o.version + 1 "
+            + "WHERE o.id IN :ids AND o.status = com.hanoi_metro.backend.enums.OrderStatus.CONFIRMED "
+            + "AND (o.dispatchClaim IS NULL OR o.dispatchClaimedAt < :staleBefore) "
+            + "AND NOT EXISTS (SELECT s.id FROM Shipment s WHERE s.order = o)")
+    int claimForDispatch(
+            @Param("ids") Collection<String> ids,
+            @Param("claim") String claim,
+            @Param("claimedAt") LocalDateTime claimedAt,
+            @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids AND o.dispatchClaim = :claim")
+    List<String> findIdsByDispatchClaim(@Param("ids") Collection<String> ids, @Param("claim") String claim);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.dispatchClaim = null, o.dispatchClaimedAt = null, o.version = o.version + 1 "
+            + "WHERE o.id IN :ids AND o.dispatchClaim = :claim")
+    int releaseDispatchClaim(@Param("ids") Collection<String> ids, @Param("claim") String claim);
 
-    // Đếm số đơn hàng đã hoàn tiền trong khoảng thời gian
-    @Query("SELECT COUNT(o) FROM Order o WHERE o.orderDateTime BETWEEN :start AND :end AND o.status = 'REFUNDED'")
-    Long countRefundedOrdersByOrderDateTimeBetween(
+    // Tổng số đơn, số đơn bị hủy và số đơn đã hoàn tiền trong khoảng thời gian (một lượt quét)
+    @Query("SELECT new com.hanoi_metro.backend.dto.response.OrderStatistics(COUNT(o), "
+            + "SUM(CASE WHEN o.status = 'CANCELLED' THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN o.status = 'REFUNDED' THEN 1 ELSE 0 END)) "
+            + "FROM Order o WHERE o.orderDateTime BETWEEN :start AND :end")
+    OrderStatistics countOrderStatistics(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
 }
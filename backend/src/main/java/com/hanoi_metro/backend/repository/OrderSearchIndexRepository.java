@@ -0,0 +1,50 @@
+package com.hanoi_metro.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.hanoi_metro.backend.entity.OrderSearchIndex;
+
+// Mỗi truy vấn tiền tố chỉ chạm một index (cột, order_date_time); ghép kết quả ở tầng service
+@Repository
+public interface OrderSearchIndexRepository extends JpaRepository<OrderSearchIndex, String> {
+
+    List<OrderSearchIndex> findByOrderCodeStartingWithOrderByOrderDateTimeDesc(String prefix, Pageable pageable);
+
+    List<OrderSearchIndex> findByGhnOrderCodeStartingWithOrderByOrderDateTimeDesc(String prefix, Pageable pageable);
+
+    List<OrderSearchIndex> findByCustomerEmailStartingWithOrderByOrderDateTimeDesc(String prefix, Pageable pageable);
+
+    List<OrderSearchIndex> findByCustomerPhoneStartingWithOrderByOrderDateTimeDesc(String prefix, Pageable pageable);
+
+    List<OrderSearchIndex> findByRecipientNameStartingWithOrderByOrderDateTimeDesc(String prefix, Pageable pageable);
+
+    List<OrderSearchIndex> findByRecipientPhoneStartingWithOrderByOrderDateTimeDesc(String prefix, Pageable pageable);
+
+    // Khách đổi email / SĐT trong hồ sơ: cập nhật mọi đơn của khách trong một câu lệnh
+    @Modifying
+    @Query("UPDATE OrderSearchIndex s SET s.customerEmail = :email, s.customerPhone = :phone, s.updatedAt = :now "
+            + "WHERE s.userId = :userId")
+    int updateCustomerContact(
+            @Param("userId") String userId,
+            @Param("email") String email,
+            @Param("phone") String phone,
+            @Param("now") LocalDateTime now);
+
+    // Đơn gần đây chưa có trong index (bỏ sót do lỗi outbox hoặc được tạo bằng đường khác)
+    @Query(value = "SELECT o.id FROM orders o LEFT JOIN order_search_index s ON s.order_id = o.id "
+            + "WHERE o.order_date_time >= :since AND s.order_id IS NULL "
+            + "ORDER BY o.order_date_time LIMIT :limit", nativeQuery = true)
+    List<String> findUnindexedOrderIdsSince(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
+    // Duyệt toàn bộ orders theo khóa chính (keyset) để dựng lại index
+    @Query(value = "SELECT o.id FROM orders o WHERE o.id > :afterId ORDER BY o.id LIMIT :limit", nativeQuery = true)
+    List<String> findOrderIdsAfter(@Param("afterId") String afterId, @Param("limit") int limit);
+}
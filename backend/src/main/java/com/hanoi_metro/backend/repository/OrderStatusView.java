@@ -0,0 +1,26 @@
+package com.hanoi_metro.backend.repository;
+
+import java.time.LocalDateTime;
+
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+import com.hanoi_metro.backend.enums.PaymentStatus;
+
+// Projection tối thiểu để kiểm tra chuyển trạng thái hàng loạt mà không nạp entity Order
+public interface OrderStatusView {
+    String getId();
+
+    String getCode();
+
+    OrderStatus getStatus();
+
+    PaymentMethod getPaymentMethod();
+
+    PaymentStatus getPaymentStatus();
+
+    Boolean getPaid();
+
+    String getUserId();
+
+    LocalDateTime getOrderDateTime();
+}
@@ -0,0 +1,36 @@
+package com.hanoi_metro.backend.repository;
+
+import java.time.LocalDateTime;
+
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+import com.hanoi_metro.backend.enums.PaymentStatus;
+
+// Projection phẳng cho danh sách đơn hàng: 1 dòng / đơn, không join items x media
+public interface OrderSummaryView {
+    String getId();
+
+    String getCode();
+
+    OrderStatus getStatus();
+
+    PaymentMethod getPaymentMethod();
+
+    PaymentStatus getPaymentStatus();
+
+    Boolean getPaid();
+
+    Double getShippingFee();
+
+    Double getTotalAmount();
+
+    LocalDateTime getOrderDateTime();
+
+    String getCustomerName();
+
+    String getCustomerEmail();
+
+    Long getItemCount();
+
+    String getThumbnailUrl();
+}
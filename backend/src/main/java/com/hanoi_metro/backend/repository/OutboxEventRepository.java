@@ -0,0 +1,80 @@
+package com.hanoi_metro.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.hanoi_metro.backend.entity.OutboxEvent;
+import com.hanoi_metro.backend.enums.OutboxStatus;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, String> {
+
+    // Lấy các event đến hạn (hoặc PROCESSING bị treo quá lâu); SKIP LOCKED để nhiều instance không lấy trùng
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e "
+            + "WHERE (e.status = com.hanoi_metro.backend.enums.OutboxStatus.PENDING AND e.nextAttemptAt <= :now) "
+            + "OR (e.status = com.hanoi_metro.backend.enums.OutboxStatus.PROCESSING AND e.lockedAt < :staleBefore) "
+            + "ORDER BY e.nextAttemptAt ASC")
+    List<OutboxEvent> findDueForUpdate(
+            @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore, Pageable pageable);
+
+    // Trả về 1 nếu ghi được event, 0 nếu dedupeKey đã tồn tại
+    @Modifying
+    @Transactional
+    @Query(
+            value = "INSERT IGNORE INTO outbox_events "
+                    + "(id, event_type, aggregate_id, dedupe_key, status, attempts, next_attempt_at, created_at) "
+                    + "VALUES (:id, :eventType, :aggregateId, :dedupeKey, 'PENDING', 0, :now, :now)",
+            nativeQuery = true)
+    int insertIfAbsent(
+            @Param("id") String id,
+            @Param("eventType") String eventType,
+            @Param("aggregateId") String aggregateId,
+            @Param("dedupeKey") String dedupeKey,
+            @Param("now") LocalDateTime now);
+
+    // Gia hạn lockedAt cho event còn đang xử lý để không bị coi là treo và bị lấy lại
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.lockedAt = :lockedAt "
+            + "WHERE e.id IN :ids AND e.status = com.hanoi_metro.backend.enums.OutboxStatus.PROCESSING")
+    int renewLocks(@Param("ids") Collection<String> ids, @Param("lockedAt") LocalDateTime lockedAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.status = com.hanoi_metro.backend.enums.OutboxStatus.DONE, "
+            + "e.processedAt = :processedAt, e.lockedAt = null WHERE e.id = :id")
+    int markDone(@Param("id") String id, @Param("processedAt") LocalDateTime processedAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.status = :status, e.attempts = :attempts, e.nextAttemptAt = :nextAttemptAt, "
+            + "e.lastError = :lastError, e.lockedAt = null WHERE e.id = :id")
+    int markFailed(
+            @Param("id") String id,
+            @Param("status") OutboxStatus status,
+            @Param("attempts") int attempts,
+            @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+            @Param("lastError") String lastError);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = com.hanoi_metro.backend.enums.OutboxStatus.DONE "
+            + "AND e.processedAt < :before AND e.dedupeKey IS NULL")
+    int deleteDoneBefore(@Param("before") LocalDateTime before);
+}
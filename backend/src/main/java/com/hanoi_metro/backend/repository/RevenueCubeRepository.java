@@ -0,0 +1,84 @@
+package com.hanoi_metro.backend.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.hanoi_metro.backend.enums.FinancialRecordType;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+import com.hanoi_metro.backend.util.RevenueCube;
+
+/**
+ * Đọc bản ghi doanh thu (ORDER_PAYMENT của đơn đã thanh toán, cùng điều kiện với báo cáo) kèm sản phẩm và danh mục
+ * để nạp RevenueCube. Nạp toàn bộ dùng con trỏ streaming như ExportRepository.
+ */
+@Repository
+public class RevenueCubeRepository {
+
+    private static final String COLUMNS = "SELECT fr.order_id, fr.occurred_at, fr.payment_method, "
+            + "c.id, c.name, p.id, p.name, fr.amount ";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public RevenueCubeRepository(DataSource dataSource, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    public void streamFacts(boolean archived, Consumer<RevenueCube.Fact> consumer) {
+        streamingJdbcTemplate.query(
+                COLUMNS + from(archived) + "WHERE fr.record_type = ? AND " + OrderArchiveRepository.PAID_ORDER_FILTER,
+                (RowCallbackHandler) rs -> consumer.accept(toFact(rs)),
+                FinancialRecordType.ORDER_PAYMENT.name());
+    }
+
+    // Bản ghi hiện tại của các đơn ở bảng nóng, và ở kho lưu trữ khi includeArchived (bảng *_archive đã tồn tại)
+    public List<RevenueCube.Fact> findFacts(Collection<String> orderIds, boolean includeArchived) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", orderIds)
+                .addValue("type", FinancialRecordType.ORDER_PAYMENT.name());
+        List<RevenueCube.Fact> facts = new ArrayList<>();
+        for (boolean archived : includeArchived ? new boolean[] {false, true} : new boolean[] {false}) {
+            facts.addAll(namedParameterJdbcTemplate.query(
+                    COLUMNS + from(archived) + "WHERE fr.order_id IN (:ids) AND fr.record_type = :type AND "
+                            + OrderArchiveRepository.PAID_ORDER_FILTER,
+                    params,
+                    (rs, rowNum) -> toFact(rs)));
+        }
+        return facts;
+    }
+
+    private static String from(boolean archived) {
+        String suffix = archived ? OrderArchiveRepository.ARCHIVE_SUFFIX : "";
+        return "FROM financial_records" + suffix + " fr JOIN orders" + suffix + " o ON o.id = fr.order_id "
+                + "LEFT JOIN products p ON p.id = fr.product_id "
+                + "LEFT JOIN categories c ON c.id = p.category_id ";
+    }
+
+    private static RevenueCube.Fact toFact(ResultSet rs) throws SQLException {
+        String method = rs.getString(3);
+        return RevenueCube.Fact.builder()
+                .orderId(rs.getString(1))
+                .occurredAt(rs.getTimestamp(2).toLocalDateTime())
+                .paymentMethod(method != null ? PaymentMethod.valueOf(method) : null)
+                .categoryId(rs.getString(4))
+                .categoryName(rs.getString(5))
+                .productId(rs.getString(6))
+                .productName(rs.getString(7))
+                .amount(rs.getDouble(8))
+                .build();
+    }
+}
@@ -0,0 +1,275 @@
+package com.hanoi_metro.backend.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.hanoi_metro.backend.enums.FinancialRecordType;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Truy cập các bảng revenue_rollup_* (tổng hợp doanh thu theo giờ / ngày / tháng và phương thức thanh toán).
+ * Các bảng không có entity JPA; cập nhật bằng INSERT ... ON DUPLICATE KEY UPDATE cộng dồn phần chênh lệch.
+ */
+@Repository
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RevenueRollupRepository {
+
+    // FinancialRecord không có phương thức thanh toán vẫn được tính vào doanh thu theo thời gian
+    public static final String NO_PAYMENT_METHOD = "NONE";
+    public static final String HOURLY = "revenue_rollup_hourly";
+    public static final String DAILY = "revenue_rollup_daily";
+    public static final String MONTHLY = "revenue_rollup_monthly";
+
+    private static final String HOUR_BUCKET = "'%Y-%m-%d %H:00:00'";
+    private static final String MEASURES = "revenue, order_count, sales_income, cost_of_goods";
+
+    JdbcTemplate jdbcTemplate;
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // ==================== Tiến độ backfill ====================
+
+    public BackfillState findState() {
+        List<BackfillState> rows = jdbcTemplate.query(
+                "SELECT phase, cursor_id, backfilled_at FROM revenue_rollup_state WHERE id = 1",
+                (rs, rowNum) -> new BackfillState(
+                        rs.getString(1),
+                        rs.getString(2),
+                        rs.getTimestamp(3) != null ? rs.getTimestamp(3).toLocalDateTime() : null));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public void saveState(String phase, String cursorId, LocalDateTime backfilledAt) {
+        jdbcTemplate.update(
+                "INSERT INTO revenue_rollup_state (id, phase, cursor_id, backfilled_at) VALUES (1, ?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE phase = VALUES(phase), cursor_id = VALUES(cursor_id), "
+                        + "backfilled_at = VALUES(backfilled_at)",
+                phase, cursorId, backfilledAt != null ? Timestamp.valueOf(backfilledAt) : null);
+    }
+
+    // Xóa sạch để dựng lại; phải cùng transaction để bảng tổng hợp và phần đóng góp luôn khớp nhau
+    public void clearAll() {
+        jdbcTemplate.update("DELETE FROM revenue_rollup_contributions");
+        jdbcTemplate.update("DELETE FROM " + HOURLY);
+        jdbcTemplate.update("DELETE FROM " + DAILY);
+        jdbcTemplate.update("DELETE FROM " + MONTHLY);
+    }
+
+    // ==================== Nguồn dữ liệu ====================
+
+    // Duyệt đơn theo khóa chính (orders hoặc orders_archive)
+    public List<String> findOrderIdsAfter(boolean archived, String afterId, int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM " + ordersTable(archived) + " WHERE id > ? ORDER BY id LIMIT ?",
+                String.class, afterId, limit);
+    }
+
+    // Khóa các đơn còn ở bảng nóng để hai lượt cập nhật cùng một đơn không tính chênh lệch chồng lên nhau
+    public List<String> lockOrders(Collection<String> ids) {
+        return namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM orders WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+                new MapSqlParameterSource("ids", ids), String.class);
+    }
+
+    /**
+     * Phần đóng góp "đúng" hiện tại của các đơn, tính lại từ dữ liệu gốc (đơn không đủ điều kiện => không có dòng).
+     * Doanh thu theo giờ ghi nhận của FinancialRecord; số đơn / tiền hàng / giá vốn theo giờ đặt đơn.
+     */
+    public List<Contribution> computeContributions(boolean archived, Collection<String> ids) {
+        String orders = ordersTable(archived);
+        String records = archived ? "financial_records_archive" : "financial_records";
+        String items = archived ? "order_items_archive" : "order_items";
+        String itemJoin = archived
+                ? "oi.order_id = o.id AND oi.order_date_time = o.order_date_time"
+                : "oi.order_id = o.id";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("type", FinancialRecordType.ORDER_PAYMENT.name())
+                .addValue("none", NO_PAYMENT_METHOD);
+
+        List<Contribution> rows = namedParameterJdbcTemplate.query(
+                "SELECT fr.order_id, DATE_FORMAT(fr.occurred_at, " + HOUR_BUCKET + ") AS bucket, "
+                        + "COALESCE(fr.payment_method, :none) AS method, SUM(fr.amount) "
+                        + "FROM " + records + " fr JOIN " + orders + " o ON o.id = fr.order_id "
+                        + "WHERE fr.order_id IN (:ids) AND fr.record_type = :type AND "
+                        + OrderArchiveRepository.PAID_ORDER_FILTER
+                        + "GROUP BY fr.order_id, bucket, method",
+                params,
+                (rs, rowNum) -> new Contribution(
+                        rs.getString(1),
+                        LocalDateTime.parse(rs.getString(2).replace(' ', 'T')),
+                        rs.getString(3),
+                        rs.getDouble(4), 0L, 0.0, 0.0));
+
+        rows.addAll(namedParameterJdbcTemplate.query(
+                "SELECT o.id, DATE_FORMAT(o.order_date_time, " + HOUR_BUCKET + ") AS bucket, o.payment_method, "
+                        + "COALESCE(SUM(CASE WHEN oi.final_price > 0 THEN oi.final_price ELSE 0 END), 0), "
+                        + "COALESCE(SUM(CASE WHEN oi.product_id IS NOT NULL AND oi.quantity > 0 AND p.purchase_price > 0 "
+                        + "THEN p.purchase_price * oi.quantity ELSE 0 END), 0) "
+                        + "FROM " + orders + " o JOIN " + items + " oi ON " + itemJoin + " "
+                        + "LEFT JOIN products p ON p.id = oi.product_id "
+                        + "WHERE o.id IN (:ids) AND o.order_date_time IS NOT NULL AND "
+                        + OrderArchiveRepository.PAID_ORDER_FILTER
+                        + "GROUP BY o.id, bucket, o.payment_method",
+                params,
+                (rs, rowNum) -> new Contribution(
+                        rs.getString(1),
+                        LocalDateTime.parse(rs.getString(2).replace(' ', 'T')),
+                        rs.getString(3),
+                        0.0, 1L, rs.getDouble(4), rs.getDouble(5))));
+        return rows;
+    }
+
+    public List<Contribution> findContributions(Collection<String> ids) {
+        return namedParameterJdbcTemplate.query(
+                "SELECT order_id, bucket_start, payment_method, " + MEASURES + " "
+                        + "FROM revenue_rollup_contributions WHERE order_id IN (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                (rs, rowNum) -> new Contribution(
+                        rs.getString(1),
+                        rs.getTimestamp(2).toLocalDateTime(),
+                        rs.getString(3),
+                        rs.getDouble(4), rs.getLong(5), rs.getDouble(6), rs.getDouble(7)));
+    }
+
+    public void replaceContributions(Collection<String> orderIds, List<Contribution> rows) {
+        namedParameterJdbcTemplate.update(
+                "DELETE FROM revenue_rollup_contributions WHERE order_id IN (:ids)",
+                new MapSqlParameterSource("ids", orderIds));
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO revenue_rollup_contributions (order_id, bucket_start, payment_method, " + MEASURES + ") "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                rows,
+                rows.size(),
+                (ps, row) -> {
+                    ps.setString(1, row.getOrderId());
+                    ps.setTimestamp(2, Timestamp.valueOf(row.getBucketStart()));
+                    ps.setString(3, row.getPaymentMethod());
+                    ps.setDouble(4, row.getRevenue());
+                    ps.setLong(5, row.getOrderCount());
+                    ps.setDouble(6, row.getSalesIncome());
+                    ps.setDouble(7, row.getCostOfGoods());
+                });
+    }
+
+    // Cộng phần chênh lệch (đã gộp theo bucket) vào một bảng tổng hợp
+    public void applyDeltas(String table, List<Contribution> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO " + table + " (bucket_start, payment_method, " + MEASURES + ") "
+                        + "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+                        + "revenue = revenue + VALUES(revenue), "
+                        + "order_count = order_count + VALUES(order_count), "
+                        + "sales_income = sales_income + VALUES(sales_income), "
+                        + "cost_of_goods = cost_of_goods + VALUES(cost_of_goods)",
+                deltas,
+                deltas.size(),
+                (ps, row) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(row.getBucketStart()));
+                    ps.setString(2, row.getPaymentMethod());
+                    ps.setDouble(3, row.getRevenue());
+                    ps.setLong(4, row.getOrderCount());
+                    ps.setDouble(5, row.getSalesIncome());
+                    ps.setDouble(6, row.getCostOfGoods());
+                });
+    }
+
+    // ==================== Đọc cho báo cáo ====================
+
+    // Doanh thu theo từng giờ trong [start, end]
+    public List<Object[]> revenueByHour(LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.query(
+                "SELECT bucket_start, SUM(revenue) FROM " + HOURLY + " "
+                        + "WHERE bucket_start BETWEEN ? AND ? GROUP BY bucket_start HAVING SUM(revenue) <> 0",
+                (rs, rowNum) -> new Object[] {rs.getTimestamp(1).toLocalDateTime(), rs.getDouble(2)},
+                start, end);
+    }
+
+    // Doanh thu theo ngày (DAILY) hoặc tháng (MONTHLY) trong [start, end]
+    public List<Object[]> revenueByBucket(String table, LocalDate start, LocalDate end) {
+        return jdbcTemplate.query(
+                "SELECT bucket_start, SUM(revenue) FROM " + table + " "
+                        + "WHERE bucket_start BETWEEN ? AND ? GROUP BY bucket_start",
+                (rs, rowNum) -> new Object[] {rs.getDate(1).toLocalDate(), rs.getDouble(2)},
+                start, end);
+    }
+
+    // Tổng các chỉ số theo phương thức thanh toán trong [start, end] của bảng ngày / tháng
+    public List<Contribution> sumByPaymentMethod(String table, LocalDate start, LocalDate end) {
+        return jdbcTemplate.query(
+                "SELECT payment_method, SUM(revenue), SUM(order_count), SUM(sales_income), SUM(cost_of_goods) "
+                        + "FROM " + table + " WHERE bucket_start BETWEEN ? AND ? GROUP BY payment_method",
+                (rs, rowNum) -> new Contribution(
+                        null, null, rs.getString(1),
+                        rs.getDouble(2), rs.getLong(3), rs.getDouble(4), rs.getDouble(5)),
+                start, end);
+    }
+
+    private static String ordersTable(boolean archived) {
+        return archived ? OrderArchiveRepository.ORDERS + OrderArchiveRepository.ARCHIVE_SUFFIX
+                : OrderArchiveRepository.ORDERS;
+    }
+
+    // Một dòng đóng góp / chênh lệch / tổng: (đơn, bucket, phương thức) -> các chỉ số
+    @Getter
+    public static class Contribution {
+        private final String orderId;
+        private final LocalDateTime bucketStart;
+        private final String paymentMethod;
+        private final double revenue;
+        private final long orderCount;
+        private final double salesIncome;
+        private final double costOfGoods;
+
+        public Contribution(
+                String orderId,
+                LocalDateTime bucketStart,
+                String paymentMethod,
+                double revenue,
+                long orderCount,
+                double salesIncome,
+                double costOfGoods) {
+            this.orderId = orderId;
+            this.bucketStart = bucketStart;
+            this.paymentMethod = paymentMethod;
+            this.revenue = revenue;
+            this.orderCount = orderCount;
+            this.salesIncome = salesIncome;
+            this.costOfGoods = costOfGoods;
+        }
+
+        public boolean isZero() {
+            return revenue == 0.0 && orderCount == 0L && salesIncome == 0.0 && costOfGoods == 0.0;
+        }
+    }
+
+    @Getter
+    public static class BackfillState {
+        private final String phase;
+        private final String cursorId;
+        private final LocalDateTime backfilledAt;
+
+        public BackfillState(String phase, String cursorId, LocalDateTime backfilledAt) {
+            this.phase = phase;
+            this.cursorId = cursorId;
+            this.backfilledAt = backfilledAt;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.hanoi_metro.backend.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -7,10 +9,25 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.hanoi_metro.backend.entity.Shipment;
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.ShipmentProvider;
 
 public interface ShipmentRepository extends JpaRepository<Shipment, String> {
     Optional<Shipment> findByOrderCode(String orderCode);
 
     @Query("select s from Shipment s where s.order.id = :orderId")
     Optional<Shipment> findByOrderId(@Param("orderId") String orderId);
+
+    @Query("select s.order.id from Shipment s where s.orderCode = :orderCode")
+    Optional<String> findOrderIdByOrderCode(@Param("orderCode") String orderCode);
+
+    // Vận đơn đã tạo trên provider mà đơn còn ở trạng thái đồng bộ được (lọc theo idx_orders_status_date_id);
+    // đơn cũ chưa có status được coi như CREATED
+    @Query("select o.id as orderId, s.orderCode as orderCode, o.status as status "
+            + "from Shipment s join s.order o "
+            + "where s.provider = :provider and s.orderCode is not null and s.orderCode <> '' "
+            + "and (o.status in :statuses or o.status is null)")
+    List<ShipmentSyncView> findSyncCandidates(
+            @Param("provider") ShipmentProvider provider,
+            @Param("statuses") Collection<OrderStatus> statuses);
 }
@@ -0,0 +1,12 @@
+package com.hanoi_metro.backend.repository;
+
+import com.hanoi_metro.backend.enums.OrderStatus;
+
+// Vận đơn GHN cần đồng bộ trạng thái: chỉ các cột cần cho lời gọi GHN, không nạp entity Shipment / Order
+public interface ShipmentSyncView {
+    String getOrderId();
+
+    String getOrderCode();
+
+    OrderStatus getStatus();
+}
@@ -0,0 +1,67 @@
+package com.hanoi_metro.backend.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.hanoi_metro.backend.configuration.EmailProperties;
+import com.hanoi_metro.backend.entity.EmailMessage;
+
+/**
+ * Gọi API transactional email của Brevo cho một email trong hàng đợi.
+ * Lỗi HTTP ném WebClientResponseException để EmailDispatcher quyết định thử lại.
+ */
+@Service
+public class BrevoEmailSender {
+
+    private final WebClient brevoWebClient;
+    private final EmailProperties emailProperties;
+    private final String apiKey;
+    private final String senderEmail;
+
+    public BrevoEmailSender(
+            @Qualifier("brevoWebClient") WebClient brevoWebClient,
+            EmailProperties emailProperties,
+            @Value("${brevo.api.key}") String apiKey,
+            @Value("${brevo.sender.email}") String senderEmail) {
+        this.brevoWebClient = brevoWebClient;
+        this.emailProperties = emailProperties;
+        this.apiKey = apiKey;
+        this.senderEmail = senderEmail;
+    }
+
+    public void send(EmailMessage message) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("sender", Map.of("email", senderEmail, "name", message.getSenderName()));
+        requestBody.put("subject", message.getSubject());
+        if (message.getTextContent() != null) {
+            requestBody.put("textContent", message.getTextContent());
+        }
+        if (message.getHtmlContent() != null) {
+            requestBody.put("htmlContent", message.getHtmlContent());
+        }
+        requestBody.put("to", List.of(recipient(message)));
+
+        brevoWebClient
+                .post()
+                .uri(emailProperties.getApiUrl())
+                .header("api-key", apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody)
+                .retrieve()
+                .toBodilessEntity()
+                .block();
+    }
+
+    private static Map<String, String> recipient(EmailMessage message) {
+        return message.getRecipientName() != null
+                ? Map.of("email", message.getRecipientEmail(), "name", message.getRecipientName())
+                : Map.of("email", message.getRecipientEmail());
+    }
+}
@@ -0,0 +1,192 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.hanoi_metro.backend.configuration.DashboardCacheProperties;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache số liệu dashboard theo (metric, bucket thời gian). Khoảng được hỏi được chia thành các tháng trọn vẹn,
+ * phần lẻ hai đầu và phần từ hôm nay trở đi; bucket đã đóng được cache lâu, bucket đang mở chỉ cache vài giây.
+ * Metric phải cộng dồn được giữa các bucket (combiner). Luồng ghi gọi invalidate cho ngày bị ảnh hưởng.
+ * Cache nằm trong bộ nhớ của từng instance; instance khác chỉ thấy thay đổi của bucket đã đóng sau TTL.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class DashboardCacheService {
+
+    public enum Metric {
+        ORDER_STATISTICS,
+        REVENUE_SUMMARY,
+        REVENUE_BY_PAYMENT,
+        FINANCIAL_SUMMARY
+    }
+
+    DashboardCacheProperties dashboardCacheProperties;
+    Map<BucketKey, CachedValue> cache = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate; giá trị tính xong sau một lần invalidate không được ghi vào cache
+    AtomicLong generation = new AtomicLong();
+
+    public <T> T get(
+            Metric metric,
+            LocalDate start,
+            LocalDate end,
+            BiFunction<LocalDate, LocalDate, T> loader,
+            BinaryOperator<T> combiner) {
+        if (!dashboardCacheProperties.isEnabled() || start.isAfter(end)) {
+            return loader.apply(start, end);
+        }
+        LocalDate today = LocalDate.now();
+        T result = null;
+        for (LocalDate[] bucket : buckets(start, end, today)) {
+            T value = bucketValue(metric, bucket[0], bucket[1], today, loader);
+            result = result == null ? value : combiner.apply(result, value);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T bucketValue(
+            Metric metric, LocalDate from, LocalDate to, LocalDate today, BiFunction<LocalDate, LocalDate, T> loader) {
+        BucketKey key = new BucketKey(metric, from, to);
+        boolean closed = to.isBefore(today);
+        long ttlMillis = closed
+                ? dashboardCacheProperties.getClosedTtlMinutes() * 60_000
+                : dashboardCacheProperties.getOpenTtlSeconds() * 1000;
+        long now = System.currentTimeMillis();
+        CachedValue cached = cache.get(key);
+        if (cached != null && now - cached.loadedAt < ttlMillis) {
+            return (T) cached.value;
+        }
+
+        long observed = generation.get();
+        T value = loader.apply(from, to);
+        if (generation.get() == observed) {
+            if (cache.size() >= dashboardCacheProperties.getMaxEntries()) {
+                evict(now);
+            }
+            cache.put(key, new CachedValue(value, now));
+        }
+        return value;
+    }
+
+    // Xóa các bucket chứa ngày này (ngay, hoặc sau khi transaction hiện tại commit)
+    public void invalidate(LocalDateTime... moments) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDateTime moment : moments) {
+            if (moment != null) {
+                days.add(moment.toLocalDate());
+            }
+        }
+        invalidateDays(days);
+    }
+
+    public void invalidateDays(List<LocalDate> days) {
+        if (days.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> evictIf(key -> days.stream().anyMatch(key::contains)));
+    }
+
+    // Xóa các bucket giao với [from, to] khi không biết chính xác ngày bị ảnh hưởng
+    public void invalidateBetween(LocalDateTime from, LocalDateTime to) {
+        LocalDate last = to.toLocalDate();
+        LocalDate first = from != null && !from.isAfter(to) ? from.toLocalDate() : last;
+        afterCommit(() -> evictIf(key -> key.overlaps(first, last)));
+    }
+
+    private void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    private void evictIf(Predicate<BucketKey> affected) {
+        generation.incrementAndGet();
+        cache.keySet().removeIf(affected);
+    }
+
+    private void evict(long now) {
+        long maxTtl = dashboardCacheProperties.getClosedTtlMinutes() * 60_000;
+        cache.values().removeIf(cached -> now - cached.loadedAt >= maxTtl);
+        if (cache.size() >= dashboardCacheProperties.getMaxEntries()) {
+            log.info("Dashboard cache reached {} entries, clearing", cache.size());
+            cache.clear();
+        }
+    }
+
+    /**
+     * Chia [start, end] thành phần lẻ đầu tháng, các tháng trọn vẹn, phần lẻ cuối tháng;
+     * bucket nào chứa hôm nay được tách thành phần đã đóng (trước hôm nay) và phần đang mở.
+     */
+    static List<LocalDate[]> buckets(LocalDate start, LocalDate end, LocalDate today) {
+        List<LocalDate[]> buckets = new ArrayList<>();
+        LocalDate cursor = start;
+        while (!cursor.isAfter(end)) {
+            LocalDate monthEnd = cursor.withDayOfMonth(cursor.lengthOfMonth());
+            LocalDate to = monthEnd.isBefore(end) ? monthEnd : end;
+            if (!today.isAfter(cursor) || today.isAfter(to)) {
+                buckets.add(new LocalDate[] {cursor, to});
+            } else {
+                buckets.add(new LocalDate[] {cursor, today.minusDays(1)});
+                buckets.add(new LocalDate[] {today, to});
+            }
+            cursor = to.plusDays(1);
+        }
+        return buckets;
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class BucketKey {
+        private final Metric metric;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        private boolean contains(LocalDate day) {
+            return !day.isBefore(from) && !day.isAfter(to);
+        }
+
+        private boolean overlaps(LocalDate first, LocalDate last) {
+            return !last.isBefore(from) && !first.isAfter(to);
+        }
+    }
+
+    private static class CachedValue {
+        private final Object value;
+        private final long loadedAt;
+
+        private CachedValue(Object value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
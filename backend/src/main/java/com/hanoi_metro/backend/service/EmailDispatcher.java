@@ -0,0 +1,112 @@
+package com.hanoi_metro.backend.service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.hanoi_metro.backend.configuration.EmailProperties;
+import com.hanoi_metro.backend.entity.EmailMessage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đọc email_queue theo batch và gửi qua Brevo trên pool worker cố định (at-least-once), mỗi email một request.
+ */
+@Slf4j
+@Service
+public class EmailDispatcher {
+
+    private final EmailQueueService emailQueueService;
+    private final BrevoEmailSender brevoEmailSender;
+    private final EmailProperties emailProperties;
+    private final ExecutorService executor;
+
+    public EmailDispatcher(
+            EmailQueueService emailQueueService, BrevoEmailSender brevoEmailSender, EmailProperties emailProperties) {
+        this.emailQueueService = emailQueueService;
+        this.brevoEmailSender = brevoEmailSender;
+        this.emailProperties = emailProperties;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, emailProperties.getConcurrency()), runnable -> {
+            Thread thread = new Thread(runnable, "email-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.poll-interval-ms:1000}")
+    public void dispatchPending() {
+        List<EmailMessage> batch = emailQueueService.claimBatch();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        CountDownLatch latch = new CountDownLatch(batch.size());
+        Set<String> inFlight = ConcurrentHashMap.newKeySet();
+        batch.forEach(message -> inFlight.add(message.getId()));
+        for (EmailMessage message : batch) {
+            executor.execute(() -> {
+                try {
+                    send(message);
+                } finally {
+                    inFlight.remove(message.getId());
+                    latch.countDown();
+                }
+            });
+        }
+
+        // Chờ batch xong rồi mới lấy batch mới => số request Brevo đang chạy không vượt concurrency.
+        // Như OutboxDispatcher: chờ từng nhịp ngắn hơn staleAfterSeconds và gia hạn lockedAt cho email còn gửi
+        // để claimBatch không lấy lại (và gửi trùng) email chỉ đang chậm.
+        long heartbeatSeconds = Math.max(1, emailProperties.getStaleAfterSeconds() / 3);
+        try {
+            while (!latch.await(heartbeatSeconds, TimeUnit.SECONDS)) {
+                emailQueueService.renewLocks(List.copyOf(inFlight));
+                log.warn("Email batch still has {} of {} messages in flight", inFlight.size(), batch.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Dọn email đã gửi xong
+    @Scheduled(cron = "0 45 3 * * *")
+    public void purgeSentEmails() {
+        int deleted = emailQueueService.purgeSent();
+        if (deleted > 0) {
+            log.info("Purged {} sent emails", deleted);
+        }
+    }
+
+    private void send(EmailMessage message) {
+        try {
+            brevoEmailSender.send(message);
+        } catch (WebClientResponseException e) {
+            // 400 (địa chỉ / nội dung sai): thử lại cũng không qua
+            boolean retryable = e.getStatusCode().value() != HttpStatus.BAD_REQUEST.value();
+            emailQueueService.markFailed(message, e, retryable);
+            return;
+        } catch (Exception e) {
+            emailQueueService.markFailed(message, e, true);
+            return;
+        }
+        emailQueueService.markSent(message);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,132 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.hanoi_metro.backend.configuration.EmailProperties;
+import com.hanoi_metro.backend.entity.EmailMessage;
+import com.hanoi_metro.backend.enums.EmailStatus;
+import com.hanoi_metro.backend.enums.EmailTemplate;
+import com.hanoi_metro.backend.repository.EmailMessageRepository;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hàng đợi email giao dịch: bên gọi chỉ ghi vào bảng email_queue (cùng transaction của nghiệp vụ),
+ * EmailDispatcher gửi qua Brevo ở background, thử lại với backoff khi lỗi.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class EmailQueueService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    EmailMessageRepository emailMessageRepository;
+    EmailProperties emailProperties;
+
+    @Transactional
+    public void enqueue(EmailContent content, String toEmail, String toName) {
+        LocalDateTime now = LocalDateTime.now();
+        emailMessageRepository.save(EmailMessage.builder()
+                .template(content.getTemplate())
+                .senderName(content.getSenderName())
+                .recipientEmail(toEmail)
+                .recipientName(toName == null || toName.isBlank() ? null : toName)
+                .subject(content.getSubject())
+                .textContent(content.getTextContent())
+                .htmlContent(content.getHtmlContent())
+                .status(EmailStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+    }
+
+    // Lấy một batch email đến hạn và đánh dấu SENDING
+    @Transactional
+    public List<EmailMessage> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailMessage> batch = emailMessageRepository.findDueForUpdate(
+                now,
+                now.minusSeconds(emailProperties.getStaleAfterSeconds()),
+                PageRequest.of(0, emailProperties.getBatchSize()));
+        batch.forEach(message -> {
+            message.setStatus(EmailStatus.SENDING);
+            message.setLockedAt(now);
+        });
+        return batch;
+    }
+
+    public void renewLocks(Collection<String> messageIds) {
+        if (!messageIds.isEmpty()) {
+            emailMessageRepository.renewLocks(messageIds, LocalDateTime.now());
+        }
+    }
+
+    public void markSent(EmailMessage message) {
+        emailMessageRepository.markSent(List.of(message.getId()), LocalDateTime.now());
+    }
+
+    public void markFailed(EmailMessage message, Exception error, boolean retryable) {
+        int attempts = message.getAttempts() + 1;
+        boolean exhausted = !retryable || attempts >= emailProperties.getMaxAttempts();
+        long backoff = Math.min(
+                emailProperties.getMaxBackoffSeconds(),
+                emailProperties.getInitialBackoffSeconds() * (1L << Math.min(attempts - 1, 20)));
+        // Jitter để các email lỗi cùng lúc (Brevo sập / 429) không dồn lại một thời điểm khi thử lại
+        backoff += ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        String errorMessage = error.getClass().getSimpleName() + ": " + error.getMessage();
+        if (errorMessage.length() > MAX_ERROR_LENGTH) {
+            errorMessage = errorMessage.substring(0, MAX_ERROR_LENGTH);
+        }
+        emailMessageRepository.markFailed(
+                message.getId(),
+                exhausted ? EmailStatus.FAILED : EmailStatus.PENDING,
+                attempts,
+                LocalDateTime.now().plusSeconds(backoff),
+                errorMessage);
+        if (exhausted) {
+            log.error("Email {} ({}) to {} failed permanently after {} attempts: {}",
+                    message.getId(), message.getTemplate(), message.getRecipientEmail(), attempts, errorMessage);
+        } else {
+            log.warn("Email {} ({}) failed, retry #{} in {}s: {}",
+                    message.getId(), message.getTemplate(), attempts, backoff, errorMessage);
+        }
+    }
+
+    public int purgeSent() {
+        return emailMessageRepository.deleteByStatusInAndCreatedAtBefore(
+                List.of(EmailStatus.SENT), LocalDateTime.now().minusDays(emailProperties.getRetentionDays()));
+    }
+
+    // Nội dung đã render sẵn của một email; template chỉ dùng để thống kê / log
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class EmailContent {
+        EmailTemplate template;
+        String senderName;
+        String subject;
+        String textContent;
+        String htmlContent;
+    }
+}
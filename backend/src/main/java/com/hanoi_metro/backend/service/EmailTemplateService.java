@@ -0,0 +1,96 @@
+package com.hanoi_metro.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import com.hanoi_metro.backend.configuration.EmailProperties;
+import com.hanoi_metro.backend.enums.EmailTemplate;
+import com.hanoi_metro.backend.service.EmailQueueService.EmailContent;
+import com.hanoi_metro.backend.util.CompiledTemplate;
+import com.hanoi_metro.backend.util.ExpiringLruCache;
+
+/**
+ * Nạp và biên dịch toàn bộ template email (resources/templates/email) một lần khi khởi động;
+ * template lỗi cú pháp hoặc thiếu file làm ứng dụng dừng ngay thay vì lỗi lúc gửi.
+ * Template không có file .html thì phần html lấy từ bản .txt với xuống dòng thành &lt;br&gt;.
+ * Nội dung của template cacheable được cache theo bộ tham số
+ * (ví dụ cùng một thông báo gửi cho nhiều nhân viên).
+ */
+@Service
+public class EmailTemplateService {
+
+    private static final String TEMPLATE_DIR = "templates/email/";
+
+    private final Map<EmailTemplate, Compiled> templates = new EnumMap<>(EmailTemplate.class);
+    private final ExpiringLruCache<CacheKey, EmailContent> renderedCache;
+
+    public EmailTemplateService(EmailProperties emailProperties) {
+        for (EmailTemplate template : EmailTemplate.values()) {
+            String text = read(template.getResourceName() + ".txt");
+            String html = exists(template.getResourceName() + ".html")
+                    ? read(template.getResourceName() + ".html")
+                    : text.replace("\n", "<br>");
+            try {
+                templates.put(template, new Compiled(
+                        CompiledTemplate.compile(template.getSubject(), false),
+                        CompiledTemplate.compile(text, false),
+                        CompiledTemplate.compile(html, true)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Invalid email template " + template + ": " + e.getMessage(), e);
+            }
+        }
+        this.renderedCache = new ExpiringLruCache<>(
+                Math.max(1, emailProperties.getTemplateCacheSize()),
+                Duration.ofSeconds(emailProperties.getTemplateCacheTtlSeconds()));
+    }
+
+    public EmailContent render(EmailTemplate template, Map<String, ?> params) {
+        if (!template.isCacheable()) {
+            return renderUncached(template, params);
+        }
+        // Chép tham số: bên gọi có thể sửa map sau khi render, khóa cache phải bất biến
+        Map<String, Object> key = new HashMap<>(params);
+        return renderedCache.getOrLoad(new CacheKey(template, key), () -> renderUncached(template, key));
+    }
+
+    public ExpiringLruCache.Stats cacheStats() {
+        return renderedCache.stats();
+    }
+
+    private EmailContent renderUncached(EmailTemplate template, Map<String, ?> params) {
+        Compiled compiled = templates.get(template);
+        return EmailContent.builder()
+                .template(template)
+                .senderName(template.getSenderName())
+                .subject(compiled.subject().render(params))
+                .textContent(compiled.text().render(params))
+                .htmlContent(compiled.html().render(params))
+                .build();
+    }
+
+    private static boolean exists(String name) {
+        return new ClassPathResource(TEMPLATE_DIR + name).exists();
+    }
+
+    // Bỏ một dấu xuống dòng cuối file để nội dung không kết thúc bằng dòng trống
+    private static String read(String name) {
+        try (InputStream in = new ClassPathResource(TEMPLATE_DIR + name).getInputStream()) {
+            String source = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            return source.endsWith("\n") ? source.substring(0, source.length() - 1) : source;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load email template " + TEMPLATE_DIR + name, e);
+        }
+    }
+
+    private record Compiled(CompiledTemplate subject, CompiledTemplate text, CompiledTemplate html) {}
+
+    private record CacheKey(EmailTemplate template, Map<String, Object> params) {}
+}
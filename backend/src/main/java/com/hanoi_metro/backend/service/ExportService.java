@@ -0,0 +1,112 @@
+package com.hanoi_metro.backend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.hanoi_metro.backend.enums.ExportFormat;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+import com.hanoi_metro.backend.repository.ExportRepository;
+import com.hanoi_metro.backend.util.ExportWriter;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Xuất đơn hàng, dòng hàng và bản ghi tài chính theo khoảng ngày ra CSV / XLSX.
+ * Dữ liệu đi thẳng từ con trỏ DB ra response (kho lưu trữ trước, bảng nóng sau) nên bộ nhớ không phụ thuộc số dòng.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ExportService {
+
+    ExportRepository exportRepository;
+    OrderArchiveService orderArchiveService;
+
+    public enum Dataset {
+        ORDERS("orders", ExportRepository.ORDER_COLUMNS),
+        ORDER_ITEMS("order-items", ExportRepository.ORDER_ITEM_COLUMNS),
+        FINANCIAL_RECORDS("financial-records", ExportRepository.FINANCIAL_RECORD_COLUMNS);
+
+        private final String fileName;
+        private final List<String> columns;
+
+        Dataset(String fileName, List<String> columns) {
+            this.fileName = fileName;
+            this.columns = columns;
+        }
+    }
+
+    public void validateRange(LocalDate start, LocalDate end) {
+        if (start == null || end == null || start.isAfter(end)) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Khoảng thời gian xuất dữ liệu không hợp lệ");
+        }
+    }
+
+    public ExportFormat parseFormat(String format) {
+        for (ExportFormat candidate : ExportFormat.values()) {
+            if (candidate.name().equalsIgnoreCase(format != null ? format.trim() : "")) {
+                return candidate;
+            }
+        }
+        throw new AppException(ErrorCode.BAD_REQUEST, "Định dạng xuất không hỗ trợ (csv, xlsx)");
+    }
+
+    public String fileName(Dataset dataset, LocalDate start, LocalDate end, ExportFormat format) {
+        return dataset.fileName + "_" + start + "_" + end + "." + format.getExtension();
+    }
+
+    // Chạy trên thread của StreamingResponseBody; lỗi giữa chừng chỉ cắt ngang file đang tải
+    public void export(Dataset dataset, LocalDate start, LocalDate end, ExportFormat format, OutputStream out)
+            throws IOException {
+        LocalDateTime from = start.atStartOfDay();
+        LocalDateTime to = end.atTime(LocalTime.MAX);
+        long startedAt = System.currentTimeMillis();
+        long[] rows = {0};
+        // close() trong mọi trường hợp để file tạm của XLSX không bị bỏ lại khi export lỗi giữa chừng
+        try (ExportWriter writer = ExportWriter.of(format, out)) {
+            ExportRepository.RowHandler handler = values -> {
+                try {
+                    writer.writeRow(values);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+
+            writer.writeHeader(dataset.columns);
+            try {
+                if (orderArchiveService.covers(from)) {
+                    stream(dataset, true, from, to, handler);
+                }
+                stream(dataset, false, from, to, handler);
+            } catch (UncheckedIOException e) {
+                // Client ngắt kết nối: DB cursor đã được đóng khi exception đi qua JdbcTemplate
+                throw e.getCause();
+            }
+            writer.finish();
+        }
+        log.info("Exported {} {} rows ({} to {}) as {} in {} ms",
+                rows[0], dataset, start, end, format, System.currentTimeMillis() - startedAt);
+    }
+
+    private void stream(
+            Dataset dataset, boolean archived, LocalDateTime from, LocalDateTime to, ExportRepository.RowHandler handler) {
+        switch (dataset) {
+            case ORDERS -> exportRepository.streamOrders(archived, from, to, handler);
+            case ORDER_ITEMS -> exportRepository.streamOrderItems(archived, from, to, handler);
+            case FINANCIAL_RECORDS -> exportRepository.streamFinancialRecords(archived, from, to, handler);
+        }
+    }
+}
@@ -3,12 +3,13 @@ package com.hanoi_metro.backend.service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,16 +18,18 @@ import com.hanoi_metro.backend.dto.response.ProductRevenue;
 import com.hanoi_metro.backend.dto.response.RevenuePoint;
 import com.hanoi_metro.backend.dto.response.RevenueSummary;
 import com.hanoi_metro.backend.dto.response.FinancialSummary;
-import com.hanoi_metro.backend.entity.FinancialRecord;
 import com.hanoi_metro.backend.entity.Order;
 import com.hanoi_metro.backend.entity.OrderItem;
-import com.hanoi_metro.backend.entity.Product;
 import com.hanoi_metro.backend.enums.FinancialRecordType;
 import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.OutboxEventType;
 import com.hanoi_metro.backend.enums.PaymentMethod;
 import com.hanoi_metro.backend.enums.PaymentStatus;
+import com.hanoi_metro.backend.repository.FinancialRecordBatchRepository;
 import com.hanoi_metro.backend.repository.FinancialRecordRepository;
-import com.hanoi_metro.backend.repository.OrderRepository;
+import com.hanoi_metro.backend.repository.OrderArchiveRepository;
+import com.hanoi_metro.backend.repository.OrderItemRepository;
+import com.hanoi_metro.backend.repository.RevenueRollupRepository;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -40,7 +43,12 @@ import lombok.extern.slf4j.Slf4j;
 public class FinancialService {
 
     FinancialRecordRepository financialRecordRepository;
-    OrderRepository orderRepository;
+    FinancialRecordBatchRepository financialRecordBatchRepository;
+    OrderItemRepository orderItemRepository;
+    OrderArchiveService orderArchiveService;
+    OutboxService outboxService;
+    RevenueRollupService revenueRollupService;
+    DashboardCacheService dashboardCacheService;
 
     // Chuyển đổi LocalDate thành LocalDateTime range (start of day đến end of day).
     private LocalDateTime[] toDateTimeRange(LocalDate start, LocalDate end) {
@@ -50,74 +58,45 @@ public class FinancialService {
         };
     }
 
-    // Lọc các đơn hàng đã thanh toán thành công trong khoảng thời gian
+    // Số đơn, tổng tiền hàng và giá vốn của các đơn đã thanh toán (đặt trong khoảng), gồm cả kho lưu trữ
     // - COD: chỉ tính khi đơn hàng đã được giao thành công (status = DELIVERED)
     // - MoMo: chỉ tính khi khách hàng đã thanh toán thành công và nhân viên xác nhận đơn (status = CONFIRMED)
-    private List<Order> getPaidOrdersInRange(LocalDateTime start, LocalDateTime end) {
-        List<Order> allOrders = orderRepository.findByOrderDateTimeBetween(start, end);
-        return allOrders.stream()
-                .filter(order -> {
-                    // Kiểm tra điều kiện cơ bản: đã thanh toán và có items
-                    if (order.getPaymentStatus() != PaymentStatus.PAID
-                            || !Boolean.TRUE.equals(order.getPaid())
-                            || order.getItems() == null
-                            || order.getItems().isEmpty()) {
-                        return false;
-                    }
-                    
-                    // Kiểm tra điều kiện theo phương thức thanh toán
-                    PaymentMethod paymentMethod = order.getPaymentMethod();
-                    if (paymentMethod == PaymentMethod.COD) {
-                        // COD: chỉ tính khi đơn hàng đã được giao thành công (khách hàng đã trả tiền)
-                        return order.getStatus() == OrderStatus.DELIVERED;
-                    } else if (paymentMethod == PaymentMethod.MOMO) {
-                        // MoMo: chỉ tính khi khách hàng đã thanh toán thành công và nhân viên xác nhận đơn
-                        return order.getStatus() == OrderStatus.CONFIRMED;
-                    }
-                    
-                    // Các phương thức thanh toán khác: giữ nguyên logic cũ
-                    return true;
-                })
-                .toList();
-    }
-
-    // Tính tổng doanh thu từ danh sách đơn hàng đã thanh toán
-    private double calculateTotalRevenue(List<Order> paidOrders) {
-        return paidOrders.stream()
-                .flatMap(order -> order.getItems().stream())
-                .filter(item -> item.getFinalPrice() != null && item.getFinalPrice() > 0)
-                .mapToDouble(item -> item.getFinalPrice())
-                .sum();
-    }
-
-    // Kiểm tra xem đã ghi nhận doanh thu cho order này chưa
-    public boolean hasRecordedRevenue(String orderId) {
-        return financialRecordRepository.existsByOrderIdAndRecordType(
-                orderId, FinancialRecordType.ORDER_PAYMENT);
-    }
-
-    // Xóa các FinancialRecord cũ của đơn COD (để ghi nhận lại với occurredAt = thời điểm DELIVERED)
-    @Transactional
-    public void deleteOrderRevenueRecords(String orderId) {
-        List<FinancialRecord> records = financialRecordRepository.findByOrderIdAndRecordType(
-                orderId, FinancialRecordType.ORDER_PAYMENT);
-        if (!records.isEmpty()) {
-            financialRecordRepository.deleteAll(records);
-            log.info("Deleted {} old revenue records for COD order {}", records.size(), orderId);
+    private OrderArchiveRepository.SalesTotals paidSalesTotals(LocalDate start, LocalDate end) {
+        if (revenueRollupService.isReady()) {
+            long orderCount = 0L;
+            double income = 0.0;
+            double costOfGoodsSold = 0.0;
+            for (RevenueRollupRepository.Contribution totals
+                    : revenueRollupService.totalsByPaymentMethod(start, end).values()) {
+                orderCount += totals.getOrderCount();
+                income += totals.getSalesIncome();
+                costOfGoodsSold += totals.getCostOfGoods();
+            }
+            return new OrderArchiveRepository.SalesTotals(orderCount, income, costOfGoodsSold);
         }
+        LocalDateTime[] range = toDateTimeRange(start, end);
+        List<Object[]> rows = orderItemRepository.sumPaidSales(range[0], range[1]);
+        Object[] hot = rows.isEmpty() ? new Object[] {0L, 0.0, 0.0} : rows.get(0);
+        OrderArchiveRepository.SalesTotals archived = orderArchiveService.sumPaidSales(range[0], range[1]);
+        return new OrderArchiveRepository.SalesTotals(
+                ((Number) hot[0]).longValue() + archived.getOrderCount(),
+                ((Number) hot[1]).doubleValue() + archived.getIncome(),
+                ((Number) hot[2]).doubleValue() + archived.getCostOfGoodsSold());
     }
 
+    // Ghi nhận doanh thu cho đơn đã thanh toán: một câu INSERT cho cả đơn, bản ghi đã có được giữ nguyên
     @Transactional
-    public void recordRevenue(Order order, Product product, double amount, PaymentMethod method) {
-        FinancialRecord rec = FinancialRecord.builder()
-                .order(order)
-                .product(product)
-                .amount(amount)
-                .paymentMethod(method)
-                .recordType(FinancialRecordType.ORDER_PAYMENT)
-                .occurredAt(LocalDateTime.now())
-                .build();
-        financialRecordRepository.save(rec);
+    public void recordOrderRevenue(Order order) {
+        Map<String, Double> amounts = revenueByProduct(order);
+        if (amounts.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        financialRecordBatchRepository.insertIfAbsent(
+                order.getId(), amounts, order.getPaymentMethod(), FinancialRecordType.ORDER_PAYMENT, now);
+        dashboardCacheService.invalidate(now);
+        // Bảng tổng hợp được cập nhật sau khi transaction commit (một event cho cả đơn)
+        outboxService.enqueueOnce(OutboxEventType.REVENUE_ROLLUP, order.getId());
     }
 
     // Xử lý lại doanh thu cho đơn COD đã DELIVERED (đảm bảo có FinancialRecord với occurredAt = thời điểm DELIVERED)
@@ -127,33 +106,40 @@ public class FinancialService {
                 || order.getPaymentMethod() != PaymentMethod.COD
                 || order.getStatus() != OrderStatus.DELIVERED
                 || order.getPaymentStatus() != PaymentStatus.PAID
-                || !Boolean.TRUE.equals(order.getPaid())
-                || order.getItems() == null
-                || order.getItems().isEmpty()) {
+                || !Boolean.TRUE.equals(order.getPaid())) {
             return;
         }
+        Map<String, Double> amounts = revenueByProduct(order);
+
+        // Ghi đè bản ghi cũ (nếu có) với occurredAt = thời điểm hiện tại trong một câu upsert;
+        // bản ghi của sản phẩm không còn trong đơn bị xóa trong cùng transaction
+        LocalDateTime now = LocalDateTime.now();
+        int removed = financialRecordBatchRepository.deleteOtherProducts(
+                order.getId(), amounts.keySet(), FinancialRecordType.ORDER_PAYMENT);
+        if (amounts.isEmpty() && removed == 0) {
+            return;
+        }
+        financialRecordBatchRepository.upsert(
+                order.getId(), amounts, order.getPaymentMethod(), FinancialRecordType.ORDER_PAYMENT, now);
+        // occurredAt cũ nằm giữa lúc đặt đơn và bây giờ
+        dashboardCacheService.invalidateBetween(order.getOrderDateTime(), now);
+        outboxService.enqueueOnce(OutboxEventType.REVENUE_ROLLUP, order.getId());
+        log.info("Ensured revenue recorded for COD order {} when delivered with {} products",
+                order.getId(), amounts.size());
+    }
 
-        // Xóa FinancialRecord cũ (nếu có) để ghi nhận lại với occurredAt = thời điểm hiện tại
-        deleteOrderRevenueRecords(order.getId());
-
-        // Ghi nhận doanh thu cho từng sản phẩm trong đơn hàng
+    // Doanh thu theo sản phẩm (OrderItem.finalPrice > 0); cùng sản phẩm trên nhiều dòng được cộng dồn
+    private Map<String, Double> revenueByProduct(Order order) {
+        Map<String, Double> amounts = new LinkedHashMap<>();
+        if (order == null || order.getItems() == null) {
+            return amounts;
+        }
         for (OrderItem item : order.getItems()) {
             if (item.getProduct() != null && item.getFinalPrice() != null && item.getFinalPrice() > 0) {
-                try {
-                    recordRevenue(
-                            order,
-                            item.getProduct(),
-                            item.getFinalPrice(),
-                            order.getPaymentMethod()
-                    );
-                } catch (Exception e) {
-                    log.error("Error recording revenue for COD order {} product {}", 
-                            order.getId(), item.getProduct().getId(), e);
-                }
+                amounts.merge(item.getProduct().getId(), item.getFinalPrice(), Double::sum);
             }
         }
-        log.info("Ensured revenue recorded for COD order {} when delivered with {} items", 
-                order.getId(), order.getItems().size());
+        return amounts;
     }
 
         // r[0] = year
@@ -167,10 +153,21 @@ public class FinancialService {
     public List<RevenuePoint> revenueByDay(LocalDate start, LocalDate end, String timeMode) {
         LocalDateTime[] range = toDateTimeRange(start, end);
         
+        // Đọc bảng tổng hợp (revenue_rollup_*) khi đã backfill xong, ngược lại truy vấn trực tiếp
+        boolean useRollup = revenueRollupService.isReady();
+
         // Day mode: group theo giờ
         if ("day".equals(timeMode)) {
-            List<Object[]> orderRevenueData = financialRecordRepository.revenueByHourGroupedByOrder(
-                    FinancialRecordType.ORDER_PAYMENT, range[0], range[1]);
+            if (useRollup) {
+                return revenueRollupService.revenueByHour(range[0], range[1]).entrySet().stream()
+                        .map(entry -> new RevenuePoint(entry.getKey(), entry.getValue()))
+                        .toList();
+            }
+            List<Object[]> orderRevenueData = withArchived(
+                    financialRecordRepository.revenueByHourGroupedByOrder(
+                            FinancialRecordType.ORDER_PAYMENT, range[0], range[1]),
+                    orderArchiveService.revenueByHourGroupedByOrder(
+                            FinancialRecordType.ORDER_PAYMENT, range[0], range[1]));
 
             // Aggregate theo giờ (mỗi đơn hàng chỉ được tính 1 lần)
             Map<LocalDateTime, Double> revenueByHour = orderRevenueData.stream()
@@ -198,19 +195,9 @@ public class FinancialService {
         
         // Year mode: group theo tháng
         if ("year".equals(timeMode)) {
-            List<Object[]> orderRevenueData = financialRecordRepository.revenueByMonthGroupedByOrder(
-                    FinancialRecordType.ORDER_PAYMENT, range[0], range[1]);
-
-            // Aggregate theo tháng (mỗi đơn hàng chỉ được tính 1 lần)
-            Map<LocalDate, Double> revenueByMonth = orderRevenueData.stream()
-                    .collect(Collectors.groupingBy(
-                            r -> {
-                                int year = ((Number) r[0]).intValue();
-                                int month = ((Number) r[1]).intValue();
-                                return LocalDate.of(year, month, 1); // Ngày 1 của tháng
-                            },
-                            Collectors.summingDouble(r -> ((Number) r[3]).doubleValue())
-                    ));
+            Map<LocalDate, Double> revenueByMonth = useRollup
+                    ? revenueRollupService.revenueByMonth(start, end)
+                    : revenueByMonthFromRecords(range);
             
 
             // Fill tất cả các tháng trong năm (từ tháng 1 đến tháng 12)
@@ -233,23 +220,21 @@ public class FinancialService {
         
         // Month mode: group theo tuần
         if ("month".equals(timeMode)) {
-            List<Object[]> orderRevenueData = financialRecordRepository.revenueByDayGroupedByOrder(
-                    FinancialRecordType.ORDER_PAYMENT, range[0], range[1]);
+            Map<LocalDate, Double> revenueByDate = useRollup
+                    ? revenueRollupService.revenueByDay(start, end)
+                    : revenueByDateFromRecords(range);
 
-            // Aggregate theo tuần (mỗi đơn hàng chỉ được tính 1 lần)
-            Map<LocalDate, Double> revenueByWeek = orderRevenueData.stream()
+            // Aggregate theo tuần
+            Map<LocalDate, Double> revenueByWeek = revenueByDate.entrySet().stream()
                     .collect(Collectors.groupingBy(
-                            r -> {
-                                int year = ((Number) r[0]).intValue();
-                                int month = ((Number) r[1]).intValue();
-                                int day = ((Number) r[2]).intValue();
-                                LocalDate date = LocalDate.of(year, month, day);
+                            entry -> {
+                                LocalDate date = entry.getKey();
                                 // Lấy ngày đầu tuần (thứ 2) của tuần đó
                                 int dayOfWeek = date.getDayOfWeek().getValue(); // 1 = Monday, 7 = Sunday
                                 int daysToMonday = (dayOfWeek == 1) ? 0 : (dayOfWeek == 7) ? 6 : dayOfWeek - 1;
                                 return date.minusDays(daysToMonday);
                             },
-                            Collectors.summingDouble(r -> ((Number) r[4]).doubleValue())
+                            Collectors.summingDouble(Map.Entry::getValue)
                     ));
 
             // Fill tất cả các tuần trong tháng (kể cả tuần không có data)
@@ -283,21 +268,9 @@ public class FinancialService {
     }
 
         // Week mode: group theo ngày
-        List<Object[]> orderRevenueData = financialRecordRepository.revenueByDayGroupedByOrder(
-                FinancialRecordType.ORDER_PAYMENT, range[0], range[1]);
-
-        // Aggregate theo date (mỗi đơn hàng chỉ được tính 1 lần)
-        Map<LocalDate, Double> revenueByDate = orderRevenueData.stream()
-                .collect(Collectors.groupingBy(
-                        r -> {
-                            // r[0] = year, r[1] = month, r[2] = day
-                            int year = ((Number) r[0]).intValue();
-                            int month = ((Number) r[1]).intValue();
-                            int day = ((Number) r[2]).intValue();
-                            return LocalDate.of(year, month, day);
-                        },
-                        Collectors.summingDouble(r -> ((Number) r[4]).doubleValue())
-                ));
+        Map<LocalDate, Double> revenueByDate = useRollup
+                ? revenueRollupService.revenueByDay(start, end)
+                : revenueByDateFromRecords(range);
 
         // Fill tất cả các ngày trong tuần (từ thứ 2 đến Chủ nhật)
         LocalDate weekStart = start; // start đã là thứ 2
@@ -317,28 +290,113 @@ public class FinancialService {
                 .toList();
     }
 
-    // Tính doanh thu theo phương thức thanh toán
+    // Aggregate theo tháng (mỗi đơn hàng chỉ được tính 1 lần)
+    private Map<LocalDate, Double> revenueByMonthFromRecords(LocalDateTime[] range) {
+        List<Object[]> orderRevenueData = withArchived(
+                financialRecordRepository.revenueByMonthGroupedByOrder(
+                        FinancialRecordType.ORDER_PAYMENT, range[0], range[1]),
+                orderArchiveService.revenueByMonthGroupedByOrder(
+                        FinancialRecordType.ORDER_PAYMENT, range[0], range[1]));
+        return orderRevenueData.stream()
+                .collect(Collectors.groupingBy(
+                        r -> {
+                            int year = ((Number) r[0]).intValue();
+                            int month = ((Number) r[1]).intValue();
+                            return LocalDate.of(year, month, 1); // Ngày 1 của tháng
+                        },
+                        Collectors.summingDouble(r -> ((Number) r[3]).doubleValue())
+                ));
+    }
+
+    // Aggregate theo ngày (mỗi đơn hàng chỉ được tính 1 lần)
+    private Map<LocalDate, Double> revenueByDateFromRecords(LocalDateTime[] range) {
+        List<Object[]> orderRevenueData = withArchived(
+                financialRecordRepository.revenueByDayGroupedByOrder(
+                        FinancialRecordType.ORDER_PAYMENT, range[0], range[1]),
+                orderArchiveService.revenueByDayGroupedByOrder(
+                        FinancialRecordType.ORDER_PAYMENT, range[0], range[1]));
+        return orderRevenueData.stream()
+                .collect(Collectors.groupingBy(
+                        r -> {
+                            // r[0] = year, r[1] = month, r[2] = day
+                            int year = ((Number) r[0]).intValue();
+                            int month = ((Number) r[1]).intValue();
+                            int day = ((Number) r[2]).intValue();
+                            return LocalDate.of(year, month, day);
+                        },
+                        Collectors.summingDouble(r -> ((Number) r[4]).doubleValue())
+                ));
+    }
+
+    // Tính doanh thu theo phương thức thanh toán (cache theo bucket thời gian)
     public List<PaymentRevenue> revenueByPayment(LocalDate start, LocalDate end) {
+        return dashboardCacheService.get(DashboardCacheService.Metric.REVENUE_BY_PAYMENT, start, end,
+                this::loadRevenueByPayment, FinancialService::mergePaymentRevenue);
+    }
+
+    private List<PaymentRevenue> loadRevenueByPayment(LocalDate start, LocalDate end) {
+        if (revenueRollupService.isReady()) {
+            // Bảng tổng hợp đã gồm cả đơn lưu trữ; bỏ nhóm không có phương thức giống điều kiện
+            // fr.paymentMethod is not null của truy vấn trực tiếp
+            return revenueRollupService.totalsByPaymentMethod(start, end).values().stream()
+                    .filter(totals -> !RevenueRollupRepository.NO_PAYMENT_METHOD.equals(totals.getPaymentMethod()))
+                    .filter(totals -> totals.getRevenue() != 0.0)
+                    .map(totals -> new PaymentRevenue(
+                            PaymentMethod.valueOf(totals.getPaymentMethod()), totals.getRevenue()))
+                    .toList();
+        }
         LocalDateTime[] range = toDateTimeRange(start, end);
-        return financialRecordRepository.revenueByPayment(FinancialRecordType.ORDER_PAYMENT, range[0], range[1])
-                .stream()
-                .map(r -> new PaymentRevenue((PaymentMethod) r[0], ((Number) r[1]).doubleValue()))
+        List<Object[]> rows = withArchived(
+                financialRecordRepository.revenueByPayment(FinancialRecordType.ORDER_PAYMENT, range[0], range[1]),
+                orderArchiveService.revenueByPayment(FinancialRecordType.ORDER_PAYMENT, range[0], range[1]));
+        // Cộng dồn theo phương thức (một phương thức có thể xuất hiện ở cả bảng nóng lẫn kho lưu trữ)
+        Map<PaymentMethod, Double> totals = new LinkedHashMap<>();
+        for (Object[] r : rows) {
+            totals.merge((PaymentMethod) r[0], ((Number) r[1]).doubleValue(), Double::sum);
+        }
+        return totals.entrySet().stream()
+                .map(entry -> new PaymentRevenue(entry.getKey(), entry.getValue()))
                 .toList();
     }
 
+    private static List<PaymentRevenue> mergePaymentRevenue(List<PaymentRevenue> left, List<PaymentRevenue> right) {
+        Map<PaymentMethod, Double> totals = new LinkedHashMap<>();
+        left.forEach(revenue -> totals.merge(revenue.getPaymentMethod(), revenue.getTotal(), Double::sum));
+        right.forEach(revenue -> totals.merge(revenue.getPaymentMethod(), revenue.getTotal(), Double::sum));
+        return totals.entrySet().stream()
+                .map(entry -> new PaymentRevenue(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    // Ghép kết quả bảng nóng với kho lưu trữ (mỗi đơn chỉ nằm ở một trong hai nơi nên không bị tính trùng)
+    private List<Object[]> withArchived(List<Object[]> hot, List<Object[]> archived) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        List<Object[]> merged = new ArrayList<>(hot.size() + archived.size());
+        merged.addAll(hot);
+        merged.addAll(archived);
+        return merged;
+    }
+
     // Tổng doanh thu = tổng giá trị các sách bán ra (OrderItem.finalPrice), không bao gồm shipping fee
     public RevenueSummary revenueSummary(LocalDate start, LocalDate end) {
-        LocalDateTime[] range = toDateTimeRange(start, end);
-        
-        // Lọc các đơn hàng đã thanh toán thành công
-        List<Order> paidOrders = getPaidOrdersInRange(range[0], range[1]);
+        return dashboardCacheService.get(DashboardCacheService.Metric.REVENUE_SUMMARY, start, end,
+                this::loadRevenueSummary, FinancialService::mergeRevenueSummary);
+    }
 
+    private RevenueSummary loadRevenueSummary(LocalDate start, LocalDate end) {
         // Tính tổng doanh thu = sum của tất cả OrderItem.finalPrice (chỉ giá sách, không có shipping fee)
-        double totalRevenue = calculateTotalRevenue(paidOrders);
+        OrderArchiveRepository.SalesTotals sales = paidSalesTotals(start, end);
+        return buildRevenueSummary(sales.getIncome(), sales.getOrderCount());
+    }
 
-        // Tổng đơn hàng
-        long totalOrders = paidOrders.size();
+    private static RevenueSummary mergeRevenueSummary(RevenueSummary left, RevenueSummary right) {
+        return buildRevenueSummary(
+                left.getTotalRevenue() + right.getTotalRevenue(), left.getTotalOrders() + right.getTotalOrders());
+    }
 
+    private static RevenueSummary buildRevenueSummary(double totalRevenue, long totalOrders) {
         // Giá trị trung bình mỗi đơn hàng (chỉ tính giá sách, không có shipping fee)
         double averageOrderValue = totalOrders > 0 ? totalRevenue / totalOrders : 0.0;
 
@@ -360,70 +418,28 @@ public class FinancialService {
      * - Lợi nhuận = Tổng thu - Tổng chi
      */
     public FinancialSummary summary(LocalDate start, LocalDate end) {
+        return dashboardCacheService.get(DashboardCacheService.Metric.FINANCIAL_SUMMARY, start, end,
+                this::loadSummary, FinancialService::mergeSummary);
+    }
+
+    private FinancialSummary loadSummary(LocalDate start, LocalDate end) {
         LocalDateTime[] range = toDateTimeRange(start, end);
-        
-        // Lọc các đơn hàng đã thanh toán thành công
-        List<Order> paidOrders = getPaidOrdersInRange(range[0], range[1]);
 
         // Tổng thu = Tổng doanh thu từ các đơn hàng đã thanh toán (OrderItem.finalPrice) - bỏ giá ship của đơn
-        // OrderItem.finalPrice chỉ chứa giá sản phẩm, không bao gồm shipping fee
-        double income = calculateTotalRevenue(paidOrders);
-        log.debug("Financial report - Total income (revenue): {}", income);
-        log.debug("Financial report - Number of paid orders: {}", paidOrders.size());
-
-        // Giá gốc sản phẩm = sum của (purchasePrice × quantity) cho tất cả OrderItem
-        // Lưu ý: Nếu purchasePrice là null hoặc <= 0, sẽ tính = 0 (không có giá gốc)
-        // Điều này có thể dẫn đến lợi nhuận không chính xác nếu sản phẩm chưa được set purchasePrice
-        AtomicInteger itemsWithoutPurchasePrice = new AtomicInteger(0);
-        AtomicInteger totalItemsCount = new AtomicInteger(0);
-        double costOfGoodsSold = paidOrders.stream()
-                .flatMap(order -> order.getItems().stream())
-                .filter(item -> {
-                    totalItemsCount.incrementAndGet();
-                    return item.getProduct() != null 
-                            && item.getQuantity() != null
-                            && item.getQuantity() > 0;
-                })
-                .mapToDouble(item -> {
-                    // Nếu purchasePrice là null hoặc <= 0, tính = 0
-                    Double purchasePrice = item.getProduct().getPurchasePrice();
-                    double price = (purchasePrice != null && purchasePrice > 0) ? purchasePrice : 0.0;
-                    int quantity = item.getQuantity();
-                    double cost = price * quantity;
-                    
-                    // Đếm số item không có purchasePrice để log warning sau
-                    if (purchasePrice == null || purchasePrice <= 0) {
-                        itemsWithoutPurchasePrice.incrementAndGet();
-                    }
-                    
-                    return cost;
-                })
-                .sum();
-        
-        log.debug("Financial report - Cost of goods sold: {}", costOfGoodsSold);
-        log.debug("Financial report - Total items processed: {}", totalItemsCount.get());
-        
-        // Log warning nếu có sản phẩm không có purchasePrice
-        if (itemsWithoutPurchasePrice.get() > 0) {
-            log.warn("Financial report: {} out of {} order items have no purchase price set. Cost calculated as 0 for these items. " +
-                    "Please update purchase price for products to get accurate profit calculation.", 
-                    itemsWithoutPurchasePrice.get(), totalItemsCount.get());
-        }
+        // Giá gốc sản phẩm = sum của (purchasePrice × quantity); purchasePrice null hoặc <= 0 được tính = 0
+        OrderArchiveRepository.SalesTotals sales = paidSalesTotals(start, end);
+        double income = sales.getIncome();
+        double costOfGoodsSold = sales.getCostOfGoodsSold();
 
         // Chi phí phát sinh = sum của FinancialRecord có type là REFUND hoặc COMPENSATION
         // (hoàn hàng và lỗi do cửa hàng)
-        List<FinancialRecord> records = financialRecordRepository.findByOccurredAtBetween(range[0], range[1]);
-        double expense = records.stream()
-                .filter(fr -> fr.getAmount() != null 
-                        && (fr.getRecordType() == FinancialRecordType.REFUND 
-                            || fr.getRecordType() == FinancialRecordType.COMPENSATION))
-                .mapToDouble(fr -> Math.abs(fr.getAmount())) // Lấy giá trị tuyệt đối vì đây là chi phí
-                .sum();
-        log.debug("Financial report - Other expenses (refunds/compensations): {}", expense);
+        Double hotExpense = financialRecordRepository.sumAbsoluteAmount(
+                List.of(FinancialRecordType.REFUND, FinancialRecordType.COMPENSATION), range[0], range[1]);
+        double expense = (hotExpense != null ? hotExpense : 0.0) + orderArchiveService.sumExpenses(range[0], range[1]);
 
         // Tổng chi = Giá gốc sản phẩm + Chi phí phát sinh do hoàn hàng và lỗi do cửa hàng
         double totalExpense = costOfGoodsSold + expense;
-        log.debug("Financial report - Total expense: {} (cost of goods: {} + other expenses: {})", 
+        log.debug("Financial report - Total expense: {} (cost of goods: {} + other expenses: {})",
                 totalExpense, costOfGoodsSold, expense);
 
         // Lợi nhuận = Tổng thu - Tổng chi
@@ -437,6 +453,15 @@ public class FinancialService {
                 .build();
     }
 
+    private static FinancialSummary mergeSummary(FinancialSummary left, FinancialSummary right) {
+        return FinancialSummary.builder()
+                .totalIncome(left.getTotalIncome() + right.getTotalIncome())
+                .totalExpense(left.getTotalExpense() + right.getTotalExpense())
+                .profit(left.getProfit() + right.getProfit())
+                .build();
+    }
+
+
     /**
      * Lấy top sản phẩm bán chạy theo doanh thu trong khoảng thời gian.
      * 
@@ -446,69 +471,21 @@ public class FinancialService {
      * @return Danh sách ProductRevenue sắp xếp theo doanh thu giảm dần
      */
     public List<ProductRevenue> topProductsByRevenue(LocalDate start, LocalDate end, int limit) {
-        LocalDateTime[] range = toDateTimeRange(start, end);
-        
-        // Lọc các đơn hàng đã thanh toán thành công
-        List<Order> paidOrders = getPaidOrdersInRange(range[0], range[1]);
-
-        if (paidOrders.isEmpty()) {
-            log.debug("No paid orders found in date range");
+        if (limit <= 0) {
             return List.of();
         }
+        LocalDateTime[] range = toDateTimeRange(start, end);
 
-        // Nhóm theo productId và tính tổng quantity và revenue
+        // Gom nhóm theo sản phẩm, sắp xếp và giới hạn ngay trong DB (chỉ trả về limit dòng)
         // Lưu ý: OrderItem.finalPrice đã là tổng giá cho quantity (finalPrice = unitPrice * quantity)
-        Map<String, ProductRevenue> productMap = paidOrders.stream()
-                .flatMap(order -> order.getItems().stream())
-                .filter(item -> isValidOrderItem(item))
-                .collect(Collectors.groupingBy(
-                        item -> item.getProduct().getId(),
-                        Collectors.collectingAndThen(
-                                Collectors.toList(),
-                                this::buildProductRevenue
-                        )
-                ));
-        
-        // Sắp xếp theo doanh thu giảm dần và lấy top limit
-        List<ProductRevenue> result = productMap.values().stream()
-                .sorted((a, b) -> Double.compare(b.getTotal(), a.getTotal()))
-                .limit(limit)
-                .collect(Collectors.toList());
-        
+        List<ProductRevenue> result = orderArchiveService.covers(range[0])
+                ? orderArchiveService.topProductsWithArchived(range[0], range[1], limit)
+                : orderItemRepository.topProductsByRevenue(range[0], range[1], PageRequest.of(0, limit));
+
         if (!result.isEmpty()) {
             log.info("Top product: {} - quantity: {}, revenue: {}", 
                     result.get(0).getProductName(), result.get(0).getQuantity(), result.get(0).getTotal());
         }
         return result;
     }
-
-    // Kiểm tra OrderItem có hợp lệ không (có product, finalPrice > 0, quantity > 0).
-    private boolean isValidOrderItem(OrderItem item) {
-        return item.getProduct() != null
-                && item.getProduct().getId() != null
-                && item.getProduct().getName() != null
-                && item.getFinalPrice() != null
-                && item.getFinalPrice() > 0
-                && item.getQuantity() != null
-                && item.getQuantity() > 0;
-    }
-
-    // Tính tổng quantity và revenue từ danh sách OrderItem của cùng một product.
-    private ProductRevenue buildProductRevenue(List<OrderItem> items) {
-        Product product = items.get(0).getProduct();
-        long totalQuantity = items.stream()
-                .mapToLong(OrderItem::getQuantity)
-                .sum();
-        // finalPrice đã là tổng cho quantity, chỉ cần sum lại
-        double totalRevenue = items.stream()
-                .mapToDouble(OrderItem::getFinalPrice)
-                .sum();
-        
-        return ProductRevenue.builder()
-                .productId(product.getId())
-                .productName(product.getName())
-                .quantity(totalQuantity)
-                .total(totalRevenue)
-                .build();
-    }
 }
@@ -0,0 +1,239 @@
+package com.hanoi_metro.backend.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hanoi_metro.backend.configuration.GhnProperties;
+import com.hanoi_metro.backend.dto.response.GhnDistrictResponse;
+import com.hanoi_metro.backend.dto.response.GhnPickShiftResponse;
+import com.hanoi_metro.backend.dto.response.GhnProvinceResponse;
+import com.hanoi_metro.backend.dto.response.GhnWardResponse;
+import com.hanoi_metro.backend.util.RateLimiter;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Giữ danh mục địa chính GHN (tỉnh/quận/phường) và ca lấy hàng trong bộ nhớ.
+ * Cả cây được tải một lần, ghi ra file ảnh chụp để khởi động lại vẫn có dữ liệu ngay,
+ * rồi làm mới nền khi quá ghn.master-data.ttl-hours. GHN lỗi thì tiếp tục phục vụ bản cũ.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class GhnMasterDataService {
+
+    GhnService ghnService;
+    GhnProperties ghnProperties;
+    ObjectMapper objectMapper;
+    AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    AtomicReference<PickShifts> pickShifts = new AtomicReference<>();
+    AtomicBoolean refreshing = new AtomicBoolean();
+
+    // ==================== Đọc ====================
+
+    public List<GhnProvinceResponse> getProvinces() {
+        Snapshot current = snapshot.get();
+        if (current != null) {
+            return current.getProvinces();
+        }
+        // Chưa có ảnh chụp nào (lần chạy đầu, đang tải nền): gọi thẳng GHN
+        return ghnService.getProvinces();
+    }
+
+    public List<GhnDistrictResponse> getDistricts(Integer provinceId) {
+        Snapshot current = snapshot.get();
+        if (current != null && current.getDistricts().containsKey(provinceId)) {
+            return current.getDistricts().get(provinceId);
+        }
+        return ghnService.getDistricts(provinceId);
+    }
+
+    public List<GhnWardResponse> getWards(Integer districtId) {
+        Snapshot current = snapshot.get();
+        if (current != null && current.getWards().containsKey(districtId)) {
+            return current.getWards().get(districtId);
+        }
+        return ghnService.getWards(districtId);
+    }
+
+    // Ca lấy hàng gắn với ngày nên chỉ giữ ngắn hạn; GHN lỗi thì trả lại danh sách gần nhất nếu có
+    public List<GhnPickShiftResponse> getPickShifts() {
+        PickShifts cached = pickShifts.get();
+        Duration ttl = Duration.ofMinutes(ghnProperties.getMasterData().getPickShiftTtlMinutes());
+        if (cached != null && cached.getLoadedAt().plus(ttl).isAfter(Instant.now())) {
+            return cached.getShifts();
+        }
+        try {
+            List<GhnPickShiftResponse> shifts = List.copyOf(ghnService.getPickShifts());
+            pickShifts.set(new PickShifts(shifts, Instant.now()));
+            return shifts;
+        } catch (RuntimeException e) {
+            if (cached == null) {
+                throw e;
+            }
+            log.warn("Không lấy được ca lấy hàng từ GHN, dùng bản tải lúc {}: {}", cached.getLoadedAt(), e.getMessage());
+            return cached.getShifts();
+        }
+    }
+
+    public Mono<List<GhnPickShiftResponse>> getPickShiftsAsync() {
+        PickShifts cached = pickShifts.get();
+        Duration ttl = Duration.ofMinutes(ghnProperties.getMasterData().getPickShiftTtlMinutes());
+        if (cached != null && cached.getLoadedAt().plus(ttl).isAfter(Instant.now())) {
+            return Mono.just(cached.getShifts());
+        }
+        return ghnService.getPickShiftsAsync()
+                .map(loaded -> {
+                    List<GhnPickShiftResponse> shifts = List.copyOf(loaded);
+                    pickShifts.set(new PickShifts(shifts, Instant.now()));
+                    return shifts;
+                })
+                .onErrorResume(e -> {
+                    if (cached == null) {
+                        return Mono.error(e);
+                    }
+                    log.warn("Không lấy được ca lấy hàng từ GHN, dùng bản tải lúc {}: {}", cached.getLoadedAt(), e.getMessage());
+                    return Mono.just(cached.getShifts());
+                });
+    }
+
+    // ==================== Nạp / làm mới ====================
+
+    @PostConstruct
+    void loadSnapshotFile() {
+        Path path = snapshotPath();
+        if (!Files.exists(path)) {
+            log.info("Chưa có ảnh chụp dữ liệu địa chính GHN tại {}, sẽ tải từ GHN", path);
+            return;
+        }
+        try {
+            Snapshot loaded = objectMapper.readValue(path.toFile(), Snapshot.class);
+            snapshot.set(loaded);
+            log.info("Đã nạp ảnh chụp địa chính GHN ({} tỉnh, {} quận, tải lúc {})",
+                    loaded.getProvinces().size(), loaded.getWards().size(), loaded.getLoadedAt());
+        } catch (IOException e) {
+            log.warn("Không đọc được ảnh chụp địa chính GHN {}, sẽ tải lại: {}", path, e.getMessage());
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${ghn.master-data.initial-delay-ms:10000}",
+            fixedDelayString = "${ghn.master-data.check-interval-ms:600000}")
+    public void refreshIfStale() {
+        Snapshot current = snapshot.get();
+        Duration ttl = Duration.ofHours(ghnProperties.getMasterData().getTtlHours());
+        if (current != null && current.getLoadedAt() != null && current.getLoadedAt().plus(ttl).isAfter(Instant.now())) {
+            return;
+        }
+        refresh();
+    }
+
+    // Tải lại cả cây; chỉ thay bản đang phục vụ khi tải trọn vẹn, lỗi giữa chừng thì giữ bản cũ
+    public void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            Snapshot fresh = fetchAll();
+            snapshot.set(fresh);
+            writeSnapshotFile(fresh);
+            log.info("Đã làm mới địa chính GHN: {} tỉnh, {} quận trong {} ms",
+                    fresh.getProvinces().size(), fresh.getWards().size(), System.currentTimeMillis() - startedAt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Làm mới địa chính GHN thất bại, tiếp tục dùng bản {}: {}",
+                    snapshot.get() != null ? "tải lúc " + snapshot.get().getLoadedAt() : "gọi trực tiếp",
+                    e.getMessage());
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private Snapshot fetchAll() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(ghnProperties.getMasterData().getPermitsPerSecond(), 1);
+        rateLimiter.acquire();
+        List<GhnProvinceResponse> provinces = List.copyOf(ghnService.getProvinces());
+
+        Map<Integer, List<GhnDistrictResponse>> districts = new HashMap<>();
+        Map<Integer, List<GhnWardResponse>> wards = new HashMap<>();
+        for (GhnProvinceResponse province : provinces) {
+            rateLimiter.acquire();
+            List<GhnDistrictResponse> provinceDistricts = List.copyOf(ghnService.getDistricts(province.getProvinceID()));
+            districts.put(province.getProvinceID(), provinceDistricts);
+            for (GhnDistrictResponse district : provinceDistricts) {
+                rateLimiter.acquire();
+                wards.put(district.getDistrictID(), List.copyOf(ghnService.getWards(district.getDistrictID())));
+            }
+        }
+
+        Snapshot fresh = new Snapshot();
+        fresh.setProvinces(provinces);
+        fresh.setDistricts(districts);
+        fresh.setWards(wards);
+        fresh.setLoadedAt(Instant.now());
+        return fresh;
+    }
+
+    // Ghi ra file tạm rồi đổi tên để tiến trình khác/lần khởi động sau không đọc phải file ghi dở
+    private void writeSnapshotFile(Snapshot fresh) {
+        Path path = snapshotPath();
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            objectMapper.writeValue(temp.toFile(), fresh);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Không ghi được ảnh chụp địa chính GHN {}: {}", path, e.getMessage());
+        }
+    }
+
+    private Path snapshotPath() {
+        return Paths.get(ghnProperties.getMasterData().getSnapshotFile());
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Snapshot {
+        private List<GhnProvinceResponse> provinces = List.of();
+        private Map<Integer, List<GhnDistrictResponse>> districts = Map.of();
+        private Map<Integer, List<GhnWardResponse>> wards = Map.of();
+        private Instant loadedAt;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class PickShifts {
+        private final List<GhnPickShiftResponse> shifts;
+        private final Instant loadedAt;
+    }
+}
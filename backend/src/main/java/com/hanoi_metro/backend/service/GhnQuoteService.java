@@ -0,0 +1,221 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.hanoi_metro.backend.configuration.GhnProperties;
+import com.hanoi_metro.backend.dto.request.GhnCalculateFeeRequest;
+import com.hanoi_metro.backend.dto.request.GhnLeadtimeRequest;
+import com.hanoi_metro.backend.dto.response.GhnFeeResponse;
+import com.hanoi_metro.backend.dto.response.GhnLeadtimeResponse;
+import com.hanoi_metro.backend.dto.response.QuoteCacheStats;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+import com.hanoi_metro.backend.util.ExpiringLruCache;
+
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Báo giá phí và thời gian giao GHN có cache. Khóa chỉ gồm các đầu vào ảnh hưởng tới giá:
+ * điểm lấy/giao, loại dịch vụ, giá trị khai báo và khối lượng/kích thước.
+ * Request gửi GHN luôn dùng số đo thật. Khi bật ghn.quote.weight-step-grams / dimension-step-cm (mặc định 0),
+ * số đo chỉ được làm tròn lên trong khóa cache: các giỏ hàng cùng bậc dùng chung phí đã báo cho giỏ hỏi đầu tiên,
+ * nên có thể lệch với phí GHN thật trong phạm vi một bậc (ví dụ 1.2kg nhận phí của 1.4kg khi bước là 500g).
+ * Các hàm *Async dùng chung cache và cách dự phòng với bản đồng bộ.
+ */
+@Slf4j
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class GhnQuoteService {
+
+    GhnService ghnService;
+    GhnProperties.Quote settings;
+    ExpiringLruCache<FeeKey, GhnFeeResponse> feeCache;
+    ExpiringLruCache<LeadtimeKey, GhnLeadtimeResponse> leadtimeCache;
+
+    public GhnQuoteService(GhnService ghnService, GhnProperties ghnProperties) {
+        this.ghnService = ghnService;
+        this.settings = ghnProperties.getQuote();
+        this.feeCache = new ExpiringLruCache<>(
+                settings.getMaxEntries(), Duration.ofMinutes(settings.getFeeTtlMinutes()));
+        this.leadtimeCache = new ExpiringLruCache<>(
+                settings.getMaxEntries(), Duration.ofMinutes(settings.getLeadtimeTtlMinutes()));
+    }
+
+    public GhnFeeResponse quoteFee(GhnCalculateFeeRequest request) {
+        // Mã giảm giá phụ thuộc từng tài khoản/thời điểm: không cache
+        if (request == null || request.getCoupon() != null) {
+            return ghnService.calculateShippingFee(request);
+        }
+        FeeKey key = feeKey(request);
+        try {
+            return feeCache.getOrLoad(key, () -> ghnService.calculateShippingFee(request));
+        } catch (AppException e) {
+            // GHN gián đoạn (circuit breaker mở, hết lượt thử): dùng báo giá cũ, không có thì báo phí chờ xác nhận
+            if (e.getErrorCode() != ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE) {
+                throw e;
+            }
+            GhnFeeResponse stale = feeCache.getStale(key);
+            log.warn("GHN fee quote unavailable ({}), serving {}",
+                    e.getMessage(), stale != null ? "stale quote" : "fee to be confirmed");
+            return stale != null ? stale : GhnFeeResponse.builder().feeToBeConfirmed(true).build();
+        }
+    }
+
+    public GhnLeadtimeResponse quoteLeadtime(GhnLeadtimeRequest request) {
+        LeadtimeKey key = new LeadtimeKey(
+                request.getFromDistrictId(),
+                request.getFromWardCode(),
+                request.getToDistrictId(),
+                request.getToWardCode(),
+                request.getServiceTypeId());
+        try {
+            return leadtimeCache.getOrLoad(key, () -> ghnService.getLeadtime(
+                    request.getFromDistrictId(),
+                    request.getFromWardCode(),
+                    request.getToDistrictId(),
+                    request.getToWardCode(),
+                    request.getServiceTypeId()));
+        } catch (AppException e) {
+            GhnLeadtimeResponse stale = e.getErrorCode() == ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE
+                    ? leadtimeCache.getStale(key)
+                    : null;
+            if (stale == null) {
+                throw e;
+            }
+            log.warn("GHN lead-time quote unavailable ({}), serving stale quote", e.getMessage());
+            return stale;
+        }
+    }
+
+    public Mono<GhnFeeResponse> quoteFeeAsync(GhnCalculateFeeRequest request) {
+        if (request == null || request.getCoupon() != null) {
+            return ghnService.calculateShippingFeeAsync(request);
+        }
+        FeeKey key = feeKey(request);
+        return Mono.defer(() -> Mono.fromFuture(feeCache.getOrLoadAsync(
+                        key, () -> ghnService.calculateShippingFeeAsync(request).toFuture())))
+                .onErrorResume(AppException.class, e -> {
+                    if (e.getErrorCode() != ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE) {
+                        return Mono.error(e);
+                    }
+                    GhnFeeResponse stale = feeCache.getStale(key);
+                    log.warn("GHN fee quote unavailable ({}), serving {}",
+                            e.getMessage(), stale != null ? "stale quote" : "fee to be confirmed");
+                    return Mono.just(stale != null ? stale : GhnFeeResponse.builder().feeToBeConfirmed(true).build());
+                });
+    }
+
+    public Mono<GhnLeadtimeResponse> quoteLeadtimeAsync(GhnLeadtimeRequest request) {
+        LeadtimeKey key = new LeadtimeKey(
+                request.getFromDistrictId(),
+                request.getFromWardCode(),
+                request.getToDistrictId(),
+                request.getToWardCode(),
+                request.getServiceTypeId());
+        return Mono.defer(() -> Mono.fromFuture(leadtimeCache.getOrLoadAsync(key, () -> ghnService.getLeadtimeAsync(
+                                request.getFromDistrictId(),
+                                request.getFromWardCode(),
+                                request.getToDistrictId(),
+                                request.getToWardCode(),
+                                request.getServiceTypeId())
+                        .toFuture())))
+                .onErrorResume(AppException.class, e -> {
+                    GhnLeadtimeResponse stale = e.getErrorCode() == ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE
+                            ? leadtimeCache.getStale(key)
+                            : null;
+                    if (stale == null) {
+                        return Mono.error(e);
+                    }
+                    log.warn("GHN lead-time quote unavailable ({}), serving stale quote", e.getMessage());
+                    return Mono.just(stale);
+                });
+    }
+
+    public List<QuoteCacheStats> stats() {
+        return List.of(toStats("fee", feeCache.stats()), toStats("leadtime", leadtimeCache.stats()));
+    }
+
+    // ==================== Khóa báo giá ====================
+
+    // Số đo trong khóa được làm tròn lên theo bước cấu hình; request gửi GHN không bị sửa
+    private FeeKey feeKey(GhnCalculateFeeRequest request) {
+        int dimensionStep = settings.getDimensionStepCm();
+        int weightStep = settings.getWeightStepGrams();
+        List<List<Integer>> items = request.getItems() == null ? null : request.getItems().stream()
+                .map(item -> Arrays.asList(
+                        item.getQuantity(),
+                        roundUp(item.getLength(), dimensionStep),
+                        roundUp(item.getWidth(), dimensionStep),
+                        roundUp(item.getHeight(), dimensionStep),
+                        roundUp(item.getWeight(), weightStep)))
+                .toList();
+        return new FeeKey(
+                request.getFromDistrictId(),
+                request.getFromWardCode(),
+                request.getToDistrictId(),
+                request.getToWardCode(),
+                request.getServiceTypeId(),
+                request.getInsuranceValue(),
+                roundUp(request.getLength(), dimensionStep),
+                roundUp(request.getWidth(), dimensionStep),
+                roundUp(request.getHeight(), dimensionStep),
+                roundUp(request.getWeight(), weightStep),
+                items);
+    }
+
+    // Làm tròn lên bội số của step (step <= 0: giữ nguyên)
+    private static Integer roundUp(Integer value, int step) {
+        if (value == null || step <= 0 || value <= 0) {
+            return value;
+        }
+        return ((value + step - 1) / step) * step;
+    }
+
+    private static QuoteCacheStats toStats(String name, ExpiringLruCache.Stats stats) {
+        return QuoteCacheStats.builder()
+                .cache(name)
+                .size(stats.getSize())
+                .hits(stats.getHits())
+                .misses(stats.getMisses())
+                .collapsed(stats.getCollapsed())
+                .failures(stats.getFailures())
+                .evictions(stats.getEvictions())
+                .hitRatio(stats.getHitRatio())
+                .build();
+    }
+
+    // ==================== Khóa cache ====================
+
+    @Value
+    static class FeeKey {
+        Integer fromDistrictId;
+        String fromWardCode;
+        Integer toDistrictId;
+        String toWardCode;
+        Integer serviceTypeId;
+        Long insuranceValue;
+        Integer length;
+        Integer width;
+        Integer height;
+        Integer weight;
+        // Hàng nặng: chỉ số lượng và kích thước/khối lượng từng kiện ảnh hưởng tới giá
+        List<List<Integer>> items;
+    }
+
+    @Value
+    static class LeadtimeKey {
+        Integer fromDistrictId;
+        String fromWardCode;
+        Integer toDistrictId;
+        String toWardCode;
+        Integer serviceTypeId;
+    }
+}
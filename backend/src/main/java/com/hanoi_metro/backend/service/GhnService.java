@@ -22,6 +22,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
 
 @Slf4j
 @Service
@@ -43,6 +44,9 @@ public class GhnService {
                     ghnProperties.getShopId());
 
             return data == null ? List.of() : Arrays.asList(data);
+        } catch (AppException e) {
+            log.error("Failed to fetch GHN provinces: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Failed to fetch GHN provinces", e);
             throw new AppException(ErrorCode.EXTERNAL_SERVICE_ERROR);
@@ -83,6 +87,16 @@ public class GhnService {
                 ghnProperties.getShopId());
     }
 
+    public Mono<GhnFeeResponse> calculateShippingFeeAsync(GhnCalculateFeeRequest request) {
+        return apiUtil.callGhnApiAsync(
+                ApiConstants.GHN_SHIPPING_ORDER_FEE,
+                HttpMethod.POST,
+                request,
+                new ParameterizedTypeReference<GhnApiResponse<GhnFeeResponse>>() {},
+                ghnProperties.getToken(),
+                ghnProperties.getShopId());
+    }
+
     public List<GhnPickShiftResponse> getPickShifts() {
         GhnPickShiftResponse[] data = apiUtil.callGhnApi(
                 ApiConstants.GHN_SHIFT_DATE,
@@ -95,6 +109,18 @@ public class GhnService {
         return data == null ? List.of() : Arrays.asList(data);
     }
 
+    public Mono<List<GhnPickShiftResponse>> getPickShiftsAsync() {
+        return apiUtil.callGhnApiAsync(
+                        ApiConstants.GHN_SHIFT_DATE,
+                        HttpMethod.GET,
+                        null,
+                        new ParameterizedTypeReference<GhnApiResponse<GhnPickShiftResponse[]>>() {},
+                        ghnProperties.getToken(),
+                        ghnProperties.getShopId())
+                .map(Arrays::asList)
+                .defaultIfEmpty(List.of());
+    }
+
     public GhnLeadtimeResponse getLeadtime(
             Integer fromDistrictId,
             String fromWardCode,
@@ -117,6 +143,28 @@ public class GhnService {
                 ghnProperties.getShopId());
     }
 
+    public Mono<GhnLeadtimeResponse> getLeadtimeAsync(
+            Integer fromDistrictId,
+            String fromWardCode,
+            Integer toDistrictId,
+            String toWardCode,
+            Integer serviceTypeId) {
+        Map<String, Object> payload = Map.of(
+                "from_district_id", fromDistrictId,
+                "from_ward_code", fromWardCode,
+                "to_district_id", toDistrictId,
+                "to_ward_code", toWardCode,
+                "service_type_id", serviceTypeId);
+
+        return apiUtil.callGhnApiAsync(
+                ApiConstants.GHN_SHIPPING_ORDER_LEADTIME,
+                HttpMethod.POST,
+                payload,
+                new ParameterizedTypeReference<GhnApiResponse<GhnLeadtimeResponse>>() {},
+                ghnProperties.getToken(),
+                ghnProperties.getShopId());
+    }
+
     public GhnShipmentDataResponse previewOrder(GhnCreateOrderRequest request) {
         return apiUtil.callGhnApi(
                 ApiConstants.GHN_SHIPPING_ORDER_PREVIEW,
@@ -0,0 +1,130 @@
+package com.hanoi_metro.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.hanoi_metro.backend.configuration.GhnProperties;
+import com.hanoi_metro.backend.dto.request.GhnWebhookRequest;
+import com.hanoi_metro.backend.enums.OutboxEventType;
+import com.hanoi_metro.backend.repository.GhnWebhookEventRepository;
+import com.hanoi_metro.backend.repository.ShipmentRepository;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Nhận callback trạng thái từ GHN: kiểm tra token/ShopID, bỏ callback GHN gửi lại (ghn_webhook_events)
+ * rồi xếp vào outbox (GHN_STATUS_CALLBACK) để áp trạng thái bất đồng bộ. Controller trả 200 ngay sau khi ghi,
+ * 404 khi chưa tìm thấy vận đơn để GHN gửi lại sau.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class GhnWebhookService {
+
+    GhnProperties ghnProperties;
+    GhnWebhookEventRepository ghnWebhookEventRepository;
+    ShipmentRepository shipmentRepository;
+    OutboxService outboxService;
+
+    public boolean verify(String token, GhnWebhookRequest request) {
+        String expected = ghnProperties.getWebhook().getToken();
+        if (expected == null || expected.isBlank() || token == null || request == null) {
+            return false;
+        }
+        // So sánh thời gian hằng để không lộ token qua độ trễ
+        if (!MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            return false;
+        }
+        return request.getShopId() == null || Objects.equals(request.getShopId(), ghnProperties.getShopId());
+    }
+
+    /**
+     * Ghi callback vào outbox. Trả về false khi chưa có vận đơn với OrderCode này (ví dụ callback tới trước khi
+     * transaction tạo vận đơn commit): khóa chống trùng chưa được giữ nên lần GHN gửi lại vẫn được xử lý.
+     */
+    @Transactional
+    public boolean accept(GhnWebhookRequest request) {
+        if (request.getOrderCode() == null || request.getOrderCode().isBlank()
+                || request.getStatus() == null || request.getStatus().isBlank()) {
+            log.debug("Bỏ qua callback GHN không có OrderCode/Status (Type = {})", request.getType());
+            return true;
+        }
+
+        // Tìm đơn trước khi giữ khóa chống trùng: giữ khóa cho vận đơn chưa tồn tại sẽ nuốt mất các lần gửi lại
+        Optional<String> orderId = shipmentRepository.findOrderIdByOrderCode(request.getOrderCode());
+        if (orderId.isEmpty()) {
+            log.warn("Callback GHN cho vận đơn không tồn tại: {}", request.getOrderCode());
+            return false;
+        }
+
+        String eventId = hash(request.getOrderCode() + "|" + request.getType() + "|" + request.getStatus()
+                + "|" + request.getTime());
+        int reserved = ghnWebhookEventRepository.reserve(
+                eventId, request.getOrderCode(), request.getStatus(), LocalDateTime.now());
+        if (reserved == 0) {
+            log.debug("Callback GHN trùng cho vận đơn {} ({}), bỏ qua", request.getOrderCode(), request.getStatus());
+            return true;
+        }
+
+        outboxService.enqueue(
+                OutboxEventType.GHN_STATUS_CALLBACK,
+                orderId.get(),
+                StatusCallback.builder()
+                        .orderCode(request.getOrderCode())
+                        .status(request.getStatus())
+                        .time(request.getTime())
+                        .build());
+        return true;
+    }
+
+    // Dọn khóa chống trùng cũ mỗi ngày
+    @Scheduled(cron = "0 45 3 * * *")
+    public void purgeOldEvents() {
+        int deleted = ghnWebhookEventRepository.deleteReceivedBefore(
+                LocalDateTime.now().minusDays(ghnProperties.getWebhook().getRetentionDays()));
+        if (deleted > 0) {
+            log.info("Purged {} old GHN webhook events", deleted);
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Payload outbox của GHN_STATUS_CALLBACK
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class StatusCallback {
+        String orderCode;
+        String status;
+        String time;
+    }
+}
@@ -0,0 +1,175 @@
+package com.hanoi_metro.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hanoi_metro.backend.dto.request.ApiResponse;
+import com.hanoi_metro.backend.entity.IdempotencyRecord;
+import com.hanoi_metro.backend.enums.IdempotencyStatus;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+import com.hanoi_metro.backend.repository.IdempotencyRecordRepository;
+import com.hanoi_metro.backend.util.SecurityUtil;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Xử lý header Idempotency-Key cho các endpoint tạo đơn hàng.
+ * Request đầu tiên được thực thi và lưu lại response; các request lặp lại (cùng user, endpoint, key)
+ * trong thời gian TTL nhận lại đúng response đó mà không tạo thêm đơn hàng.
+ * Key dùng lại với body khác bị từ chối (422); key IN_PROGRESS quá lease được request sau tiếp quản.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${app.idempotency.lease-seconds:120}")
+    private long leaseSeconds;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+
+    public <T> ApiResponse<T> execute(
+            String endpoint,
+            String idempotencyKey,
+            Object request,
+            TypeReference<ApiResponse<T>> responseType,
+            Supplier<ApiResponse<T>> action) {
+        // Không gửi key => giữ nguyên hành vi cũ
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String key = idempotencyKey.trim();
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Idempotency-Key không được vượt quá 255 ký tự");
+        }
+
+        String userEmail = SecurityUtil.getCurrentUserEmail();
+        String recordId = hash(endpoint + "|" + userEmail + "|" + key);
+        String requestHash = hash(fingerprint(request));
+        // Cột DATETIME(6) => cắt về micro giây để lockedAt so khớp được khi complete / release
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        LocalDateTime expiresAt = now.plusHours(ttlHours);
+
+        if (idempotencyRecordRepository.reserve(recordId, endpoint, userEmail, requestHash, now, expiresAt) == 0) {
+            Optional<ApiResponse<T>> replay =
+                    replayOrTakeOver(recordId, endpoint, userEmail, requestHash, responseType, now);
+            if (replay.isPresent()) {
+                return replay.get();
+            }
+        }
+
+        ApiResponse<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // Thất bại => giải phóng key để client có thể thử lại
+            idempotencyRecordRepository.release(recordId, now);
+            throw e;
+        }
+
+        try {
+            if (idempotencyRecordRepository.complete(recordId, now, objectMapper.writeValueAsString(response)) == 0) {
+                log.warn("Idempotency key for {} was taken over before completion; response not stored", endpoint);
+            }
+        } catch (JsonProcessingException e) {
+            log.error("Cannot serialize idempotent response for {}: {}", endpoint, e.getMessage());
+            idempotencyRecordRepository.release(recordId, now);
+        }
+        return response;
+    }
+
+    /**
+     * Key đã tồn tại: trả lại response đã lưu, hoặc Optional.empty() khi request hiện tại vừa giành được key
+     * (bản ghi cũ hết hạn, hoặc request trước hết lease mà chưa xong) và cần tự thực thi.
+     */
+    private <T> Optional<ApiResponse<T>> replayOrTakeOver(
+            String recordId,
+            String endpoint,
+            String userEmail,
+            String requestHash,
+            TypeReference<ApiResponse<T>> responseType,
+            LocalDateTime now) {
+        IdempotencyRecord existing = idempotencyRecordRepository.findById(recordId).orElse(null);
+        if (existing == null || existing.getExpiresAt().isBefore(now)) {
+            // Bản ghi cũ đã hết hạn (hoặc vừa bị xóa) => giữ chỗ lại
+            if (existing != null) {
+                idempotencyRecordRepository.deleteById(recordId);
+            }
+            LocalDateTime expiresAt = now.plusHours(ttlHours);
+            if (idempotencyRecordRepository.reserve(recordId, endpoint, userEmail, requestHash, now, expiresAt) == 0) {
+                throw new AppException(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS);
+            }
+            return Optional.empty();
+        }
+        // Bản ghi tạo trước khi có cột request_hash thì bỏ qua kiểm tra
+        if (existing.getRequestHash() != null && !existing.getRequestHash().equals(requestHash)) {
+            throw new AppException(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+        }
+        if (existing.getStatus() != IdempotencyStatus.COMPLETED || existing.getResponseBody() == null) {
+            // Request đầu tiên vẫn đang xử lý; hết lease thì coi như đã chết và tiếp quản
+            if (idempotencyRecordRepository.takeOver(
+                            recordId, now, now.plusHours(ttlHours), now.minusSeconds(leaseSeconds))
+                    == 1) {
+                log.warn("Taking over stale idempotency key for {}", endpoint);
+                return Optional.empty();
+            }
+            throw new AppException(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS);
+        }
+        try {
+            log.info("Replaying idempotent response for {}", endpoint);
+            return Optional.of(objectMapper.readValue(existing.getResponseBody(), responseType));
+        } catch (JsonProcessingException e) {
+            log.error("Cannot deserialize stored idempotent response {}: {}", recordId, e.getMessage());
+            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION);
+        }
+    }
+
+    // Dọn các key đã hết hạn mỗi giờ
+    @Scheduled(cron = "0 30 * * * *")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    // Body request dạng JSON (thứ tự field theo DTO nên ổn định giữa các lần gửi)
+    private String fingerprint(Object request) {
+        try {
+            return objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new AppException(ErrorCode.BAD_REQUEST);
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
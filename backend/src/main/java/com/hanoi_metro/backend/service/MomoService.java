@@ -4,6 +4,10 @@ import com.hanoi_metro.backend.client.MomoApi;
 import com.hanoi_metro.backend.dto.request.CreateMomoRequest;
 import com.hanoi_metro.backend.dto.request.MomoIpnRequest;
 import com.hanoi_metro.backend.dto.response.CreateMomoResponse;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+import com.hanoi_metro.backend.util.ResilienceGuard;
+import feign.FeignException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -40,6 +44,7 @@ public class MomoService {
     private String REQUEST_TYPE;
 
     private final MomoApi momoApi;
+    private final ResilienceGuard resilienceGuard;
 
     /**
      * Tạo giao dịch thanh toán MoMo và nhận về thông tin QR / payUrl.
@@ -86,11 +91,37 @@ public class MomoService {
                 .build();
 
         log.info("Sending create MoMo payment request: {}", request);
-        CreateMomoResponse response = momoApi.createMomoQR(request);
+        // Không thử lại: requestId mới mỗi lần nên gọi lại sau timeout có thể tạo hai giao dịch
+        CreateMomoResponse response;
+        try {
+            response = resilienceGuard.execute("momo", false, () -> {
+                try {
+                    return momoApi.createMomoQR(request);
+                } catch (FeignException.FeignClientException e) {
+                    // MoMo trả 4xx: lỗi nghiệp vụ, không tính vào circuit breaker
+                    throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION,
+                            "Không thể tạo đường dẫn thanh toán MoMo: " + e.getMessage());
+                }
+            });
+        } catch (AppException e) {
+            if (e.getErrorCode() != ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE) {
+                throw e;
+            }
+            throw momoUnavailable();
+        } catch (RuntimeException e) {
+            // Timeout, lỗi kết nối, MoMo trả 5xx
+            log.error("MoMo create payment call failed: {}", e.getMessage());
+            throw momoUnavailable();
+        }
         log.info("Received create MoMo payment response: {}", response);
         return response;
     }
 
+    private static AppException momoUnavailable() {
+        return new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE,
+                "Cổng thanh toán MoMo đang gián đoạn, vui lòng thử lại sau hoặc chọn thanh toán khi nhận hàng");
+    }
+
     public boolean validateIpnSignature(MomoIpnRequest request) {
         if (request == null || request.getSignature() == null) {
             return false;
@@ -0,0 +1,224 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.hanoi_metro.backend.configuration.ArchiveProperties;
+import com.hanoi_metro.backend.dto.response.OrderStatistics;
+import com.hanoi_metro.backend.dto.response.ProductRevenue;
+import com.hanoi_metro.backend.enums.FinancialRecordType;
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.repository.OrderArchiveRepository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chuyển đơn hàng đã kết thúc và đủ cũ sang các bảng *_archive (phân vùng theo năm), theo từng chunk nhỏ.
+ * Các truy vấn báo cáo gọi các hàm đọc ở đây; chúng chỉ chạm vào kho lưu trữ khi khoảng thời gian được hỏi
+ * bắt đầu trước đơn lưu trữ mới nhất (watermark), còn lại trả về rỗng ngay.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OrderArchiveService {
+
+    private static final Set<OrderStatus> ARCHIVABLE_STATUSES =
+            EnumSet.of(OrderStatus.DELIVERED, OrderStatus.REFUNDED, OrderStatus.CANCELLED);
+    private static final List<String> PARTITIONED_TABLES = List.of(
+            OrderArchiveRepository.ORDERS + OrderArchiveRepository.ARCHIVE_SUFFIX,
+            OrderArchiveRepository.ORDER_ITEMS + OrderArchiveRepository.ARCHIVE_SUFFIX,
+            OrderArchiveRepository.FINANCIAL_RECORDS + OrderArchiveRepository.ARCHIVE_SUFFIX);
+    private static final List<String> HOT_TABLES = List.of(
+            OrderArchiveRepository.ORDERS,
+            OrderArchiveRepository.ORDER_ITEMS,
+            OrderArchiveRepository.FINANCIAL_RECORDS,
+            OrderArchiveRepository.SHIPMENTS);
+
+    OrderArchiveRepository orderArchiveRepository;
+    ArchiveProperties archiveProperties;
+    TransactionTemplate transactionTemplate;
+    AtomicReference<Watermark> watermark = new AtomicReference<>();
+
+    @Scheduled(cron = "${app.archive.cron:0 30 2 * * *}")
+    public void archiveTerminalOrders() {
+        if (!archiveProperties.isEnabled()) {
+            return;
+        }
+        try {
+            int archived = archiveOnce();
+            if (archived > 0) {
+                log.info("Archived {} terminal orders", archived);
+            }
+        } catch (Exception e) {
+            log.error("Order archival run failed", e);
+        }
+    }
+
+    // Một lượt lưu trữ; trả về số đơn đã chuyển
+    public int archiveOnce() {
+        Map<String, List<String>> columns = resolveColumns();
+        if (columns == null) {
+            return 0;
+        }
+        ensurePartitions(LocalDateTime.now().getYear() + 1);
+
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(archiveProperties.getMinAgeDays());
+        int total = 0;
+        for (int chunk = 0; chunk < archiveProperties.getMaxChunksPerRun(); chunk++) {
+            List<String> candidates = orderArchiveRepository.findArchivableOrderIds(
+                    ARCHIVABLE_STATUSES, cutoff, archiveProperties.getChunkSize());
+            if (candidates.isEmpty()) {
+                break;
+            }
+            // Mỗi chunk một transaction: chép + xóa cùng commit, lock được giữ rất ngắn
+            Integer moved = transactionTemplate.execute(status -> {
+                List<String> locked = orderArchiveRepository.lockArchivableOrders(candidates, ARCHIVABLE_STATUSES);
+                return locked.isEmpty() ? 0 : orderArchiveRepository.moveOrders(locked, columns);
+            });
+            if (moved == null || moved == 0) {
+                break;
+            }
+            total += moved;
+        }
+        if (total > 0) {
+            watermark.set(null);
+        }
+        return total;
+    }
+
+    // ==================== Đọc kho lưu trữ cho báo cáo ====================
+
+    // Khoảng [start, ...] có chạm vào dữ liệu đã lưu trữ hay không
+    public boolean covers(LocalDateTime start) {
+        LocalDateTime newest = newestArchivedOrderTime();
+        return newest != null && start != null && !start.isAfter(newest);
+    }
+
+    // Đã có đơn nằm trong kho lưu trữ (bảng *_archive tồn tại và không rỗng)
+    public boolean hasArchivedOrders() {
+        return newestArchivedOrderTime() != null;
+    }
+
+    public OrderStatistics countOrderStatistics(LocalDateTime start, LocalDateTime end) {
+        return covers(start)
+                ? orderArchiveRepository.countOrderStatistics(start, end)
+                : OrderStatistics.builder().totalOrders(0L).cancelledOrders(0L).refundedOrders(0L).build();
+    }
+
+    public List<Object[]> revenueByDayGroupedByOrder(FinancialRecordType type, LocalDateTime start, LocalDateTime end) {
+        return covers(start) ? orderArchiveRepository.revenueByDayGroupedByOrder(type, start, end) : List.of();
+    }
+
+    public List<Object[]> revenueByHourGroupedByOrder(FinancialRecordType type, LocalDateTime start, LocalDateTime end) {
+        return covers(start) ? orderArchiveRepository.revenueByHourGroupedByOrder(type, start, end) : List.of();
+    }
+
+    public List<Object[]> revenueByMonthGroupedByOrder(FinancialRecordType type, LocalDateTime start, LocalDateTime end) {
+        return covers(start) ? orderArchiveRepository.revenueByMonthGroupedByOrder(type, start, end) : List.of();
+    }
+
+    public List<Object[]> revenueByPayment(FinancialRecordType type, LocalDateTime start, LocalDateTime end) {
+        return covers(start) ? orderArchiveRepository.revenueByPayment(type, start, end) : List.of();
+    }
+
+    // Gộp bảng nóng và kho lưu trữ; chỉ gọi khi covers(start), còn lại đọc thẳng bảng nóng
+    public List<ProductRevenue> topProductsWithArchived(LocalDateTime start, LocalDateTime end, int limit) {
+        return orderArchiveRepository.topProductsByRevenue(start, end, limit);
+    }
+
+    public OrderArchiveRepository.SalesTotals sumPaidSales(LocalDateTime start, LocalDateTime end) {
+        return covers(start)
+                ? orderArchiveRepository.sumPaidSales(start, end)
+                : OrderArchiveRepository.SalesTotals.empty();
+    }
+
+    public double sumExpenses(LocalDateTime start, LocalDateTime end) {
+        return covers(start) ? orderArchiveRepository.sumExpenses(start, end) : 0.0;
+    }
+
+    // ==================== Nội bộ ====================
+
+    private LocalDateTime newestArchivedOrderTime() {
+        Watermark current = watermark.get();
+        long now = System.currentTimeMillis();
+        if (current != null && now - current.loadedAt < archiveProperties.getWatermarkCacheSeconds() * 1000) {
+            return current.newest;
+        }
+        LocalDateTime newest = null;
+        try {
+            newest = orderArchiveRepository.findNewestArchivedOrderTime();
+        } catch (DataAccessException e) {
+            // Chưa chạy migration tạo bảng lưu trữ => coi như không có dữ liệu lưu trữ
+            log.debug("Order archive is not available: {}", e.getMessage());
+        }
+        watermark.set(new Watermark(newest, now));
+        return newest;
+    }
+
+    // Cột của từng bảng nóng; null nếu bảng lưu trữ thiếu cột (schema lệch) để không âm thầm mất dữ liệu
+    private Map<String, List<String>> resolveColumns() {
+        Map<String, List<String>> columns = new LinkedHashMap<>();
+        for (String table : HOT_TABLES) {
+            List<String> hot = orderArchiveRepository.findColumns(table);
+            Set<String> archived = new HashSet<>(
+                    orderArchiveRepository.findColumns(table + OrderArchiveRepository.ARCHIVE_SUFFIX));
+            List<String> missing = new ArrayList<>();
+            for (String column : hot) {
+                if (!archived.contains(column)) {
+                    missing.add(column);
+                }
+            }
+            if (hot.isEmpty() || archived.isEmpty() || !missing.isEmpty()) {
+                log.error("Skipping order archival: {}{} is missing columns {} (run the archive migration / ALTER TABLE)",
+                        table, OrderArchiveRepository.ARCHIVE_SUFFIX, archived.isEmpty() ? "(table not found)" : missing);
+                return null;
+            }
+            columns.put(table, hot);
+        }
+        return columns;
+    }
+
+    private void ensurePartitions(int throughYear) {
+        for (String table : PARTITIONED_TABLES) {
+            int newestYear = 0;
+            for (String name : orderArchiveRepository.findPartitionNames(table)) {
+                if (name.matches("p\\d{4}")) {
+                    newestYear = Math.max(newestYear, Integer.parseInt(name.substring(1)));
+                }
+            }
+            if (newestYear == 0) {
+                continue;
+            }
+            for (int year = newestYear + 1; year <= throughYear; year++) {
+                orderArchiveRepository.addYearPartition(table, year);
+                log.info("Added partition p{} to {}", year, table);
+            }
+        }
+    }
+
+    private static class Watermark {
+        private final LocalDateTime newest;
+        private final long loadedAt;
+
+        private Watermark(LocalDateTime newest, long loadedAt) {
+            this.newest = newest;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.hanoi_metro.backend.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.hanoi_metro.backend.dto.request.BulkOrderStatusRequest;
+import com.hanoi_metro.backend.dto.response.BulkOrderStatusResponse;
+import com.hanoi_metro.backend.dto.response.BulkOrderStatusResult;
+import com.hanoi_metro.backend.enums.BulkOrderAction;
+import com.hanoi_metro.backend.enums.CancellationSource;
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.OutboxEventType;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+import com.hanoi_metro.backend.enums.PaymentStatus;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+import com.hanoi_metro.backend.repository.OrderRepository;
+import com.hanoi_metro.backend.repository.OrderStatusView;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chuyển trạng thái hàng loạt cho nhân viên kho (xác nhận / hủy / giao vận chuyển / đã giao).
+ * Trạng thái được kiểm tra trong bộ nhớ, cập nhật bằng UPDATE ... WHERE id IN (...) theo từng chunk,
+ * side effect của từng đơn được đẩy vào outbox để xử lý sau khi commit.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OrderBulkService {
+
+    private static final int MAX_ORDERS_PER_REQUEST = 5000;
+    private static final int CHUNK_SIZE = 500;
+
+    // Trạng thái nguồn hợp lệ cho từng thao tác
+    private static final Map<BulkOrderAction, Set<OrderStatus>> ALLOWED_SOURCES = new EnumMap<>(BulkOrderAction.class);
+    private static final Map<BulkOrderAction, OrderStatus> TARGETS = new EnumMap<>(BulkOrderAction.class);
+
+    static {
+        ALLOWED_SOURCES.put(BulkOrderAction.CONFIRM, EnumSet.of(OrderStatus.CREATED, OrderStatus.PAID));
+        ALLOWED_SOURCES.put(
+                BulkOrderAction.CANCEL, EnumSet.of(OrderStatus.CREATED, OrderStatus.PAID, OrderStatus.CONFIRMED));
+        ALLOWED_SOURCES.put(BulkOrderAction.MARK_SHIPPED, EnumSet.of(OrderStatus.CONFIRMED));
+        ALLOWED_SOURCES.put(BulkOrderAction.MARK_DELIVERED, EnumSet.of(OrderStatus.SHIPPED));
+
+        TARGETS.put(BulkOrderAction.CONFIRM, OrderStatus.CONFIRMED);
+        TARGETS.put(BulkOrderAction.CANCEL, OrderStatus.CANCELLED);
+        TARGETS.put(BulkOrderAction.MARK_SHIPPED, OrderStatus.SHIPPED);
+        TARGETS.put(BulkOrderAction.MARK_DELIVERED, OrderStatus.DELIVERED);
+    }
+
+    OrderRepository orderRepository;
+    OutboxService outboxService;
+    DashboardCacheService dashboardCacheService;
+    TransactionTemplate transactionTemplate;
+
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN')")
+    public BulkOrderStatusResponse applyBulkTransition(BulkOrderStatusRequest request) {
+        if (request == null || request.getAction() == null) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Thiếu thao tác cần thực hiện");
+        }
+        Set<String> orderIds = new LinkedHashSet<>();
+        if (request.getOrderIds() != null) {
+            request.getOrderIds().stream()
+                    .filter(id -> id != null && !id.isBlank())
+                    .map(String::trim)
+                    .forEach(orderIds::add);
+        }
+        if (orderIds.isEmpty()) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Danh sách đơn hàng trống");
+        }
+        if (orderIds.size() > MAX_ORDERS_PER_REQUEST) {
+            throw new AppException(
+                    ErrorCode.BAD_REQUEST, "Mỗi lần chỉ xử lý tối đa " + MAX_ORDERS_PER_REQUEST + " đơn hàng");
+        }
+
+        BulkOrderAction action = request.getAction();
+        String reason = request.getReason() != null && !request.getReason().isBlank()
+                ? request.getReason().trim()
+                : "Nhân viên hủy đơn";
+
+        List<String> ids = new ArrayList<>(orderIds);
+        List<BulkOrderStatusResult> results = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+            // Mỗi chunk một transaction ngắn: không giữ lock trên hàng nghìn dòng cùng lúc
+            List<BulkOrderStatusResult> chunkResults =
+                    transactionTemplate.execute(status -> processChunk(chunk, action, reason));
+            if (chunkResults != null) {
+                results.addAll(chunkResults);
+            }
+        }
+
+        int succeeded = (int) results.stream().filter(BulkOrderStatusResult::isSuccess).count();
+        log.info("Bulk {} processed {} orders: {} succeeded, {} failed",
+                action, results.size(), succeeded, results.size() - succeeded);
+        return BulkOrderStatusResponse.builder()
+                .action(action.name())
+                .requested(ids.size())
+                .succeeded(succeeded)
+                .failed(results.size() - succeeded)
+                .results(results)
+                .build();
+    }
+
+    private List<BulkOrderStatusResult> processChunk(List<String> chunk, BulkOrderAction action, String reason) {
+        Set<OrderStatus> sources = ALLOWED_SOURCES.get(action);
+        OrderStatus target = TARGETS.get(action);
+
+        Map<String, OrderStatusView> views = new HashMap<>();
+        orderRepository.findStatusViewsByIdIn(chunk).forEach(view -> views.put(view.getId(), view));
+
+        // Kiểm tra trong bộ nhớ
+        List<String> eligible = new ArrayList<>();
+        for (String id : chunk) {
+            OrderStatusView view = views.get(id);
+            if (view != null
+                    && view.getStatus() != null
+                    && sources.contains(view.getStatus())
+                    && OrderStateMachine.canTransition(view.getStatus(), target)) {
+                eligible.add(id);
+            }
+        }
+
+        if (!eligible.isEmpty()) {
+            int updated = action == BulkOrderAction.CANCEL
+                    ? orderRepository.bulkCancel(
+                            eligible, sources, reason, CancellationSource.STAFF, "Đơn hàng đã được hủy. Lý do: " + reason)
+                    : orderRepository.bulkUpdateStatus(eligible, sources, target);
+            if (updated != eligible.size()) {
+                // Có đơn đổi trạng thái giữa lúc đọc và lúc ghi => đọc lại để biết đơn nào thực sự được cập nhật
+                Map<String, OrderStatusView> current = new HashMap<>();
+                orderRepository.findStatusViewsByIdIn(eligible).forEach(view -> current.put(view.getId(), view));
+                eligible.removeIf(id -> current.get(id) == null || current.get(id).getStatus() != target);
+            }
+        }
+
+        Set<String> applied = new LinkedHashSet<>(eligible);
+        List<BulkOrderStatusResult> results = new ArrayList<>(chunk.size());
+        for (String id : chunk) {
+            OrderStatusView view = views.get(id);
+            if (view == null) {
+                results.add(failure(id, null, null, "Đơn hàng không tồn tại"));
+            } else if (applied.contains(id)) {
+                results.add(BulkOrderStatusResult.builder()
+                        .orderId(id)
+                        .code(view.getCode())
+                        .success(true)
+                        .previousStatus(view.getStatus().name())
+                        .newStatus(target.name())
+                        .build());
+                enqueueSideEffects(view, action, target);
+            } else if (view.getStatus() == null || !sources.contains(view.getStatus())) {
+                results.add(failure(id, view.getCode(), view.getStatus(),
+                        "Không thể chuyển từ trạng thái " + view.getStatus() + " sang " + target));
+            } else {
+                results.add(failure(id, view.getCode(), view.getStatus(),
+                        "Đơn hàng vừa được cập nhật bởi người khác, vui lòng thử lại"));
+            }
+        }
+        return results;
+    }
+
+    // Side effect chạy bất đồng bộ qua outbox (cùng transaction với chunk)
+    private void enqueueSideEffects(OrderStatusView view, BulkOrderAction action, OrderStatus target) {
+        // Cùng điều kiện với đồng bộ GHN (ShipmentService): chỉ đơn COD đã thu tiền mới ghi doanh thu khi giao
+        if (action == BulkOrderAction.MARK_DELIVERED
+                && view.getPaymentMethod() == PaymentMethod.COD
+                && view.getPaymentStatus() == PaymentStatus.PAID
+                && Boolean.TRUE.equals(view.getPaid())) {
+            outboxService.enqueue(OutboxEventType.COD_DELIVERED_REVENUE, view.getId());
+        }
+        outboxService.enqueueOnce(OutboxEventType.REVENUE_ROLLUP, view.getId());
+        dashboardCacheService.invalidate(view.getOrderDateTime());
+        if (view.getUserId() != null) {
+            String code = view.getCode() != null ? view.getCode() : view.getId();
+            outboxService.enqueueNotification(OutboxService.NotificationMessage.builder()
+                    .aggregateId(view.getId())
+                    .title("Cập nhật đơn hàng")
+                    .message(String.format("Đơn hàng %s đã chuyển sang trạng thái %s.", code, target.name()))
+                    .type(action == BulkOrderAction.CANCEL ? "WARNING" : "INFO")
+                    .link(String.format("/orders/%s", view.getId()))
+                    .userIds(List.of(view.getUserId()))
+                    .build());
+        }
+    }
+
+    private BulkOrderStatusResult failure(String id, String code, OrderStatus status, String message) {
+        return BulkOrderStatusResult.builder()
+                .orderId(id)
+                .code(code)
+                .success(false)
+                .previousStatus(status != null ? status.name() : null)
+                .message(message)
+                .build();
+    }
+}
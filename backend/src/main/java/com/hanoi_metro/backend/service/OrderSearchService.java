@@ -0,0 +1,253 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hanoi_metro.backend.entity.Order;
+import com.hanoi_metro.backend.entity.OrderSearchIndex;
+import com.hanoi_metro.backend.entity.User;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+import com.hanoi_metro.backend.repository.OrderRepository;
+import com.hanoi_metro.backend.repository.OrderSearchIndexRepository;
+import com.hanoi_metro.backend.repository.OrderSummaryView;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tra cứu đơn hàng cho CSKH/nhân viên qua bảng order_search_index.
+ * Index được ghi qua outbox (ORDER_SEARCH_INDEX) sau khi đơn được tạo hoặc có vận đơn GHN;
+ * job định kỳ bổ sung các đơn gần đây bị sót.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OrderSearchService {
+
+    static final int MIN_QUERY_LENGTH = 3;
+    static final int MAX_LIMIT = 50;
+    static final int BATCH_SIZE = 500;
+    static final int MAX_COLUMN_LENGTH = 255;
+
+    OrderSearchIndexRepository orderSearchIndexRepository;
+    OrderRepository orderRepository;
+    TransactionTemplate transactionTemplate;
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @NonFinal
+    @Value("${app.order-search.reconcile-lookback-hours:24}")
+    long reconcileLookbackHours;
+
+    // ==================== Tra cứu ====================
+
+    /**
+     * Tìm theo tiền tố: có '@' => email khách; toàn chữ số => SĐT khách/người nhận;
+     * còn lại => mã đơn, mã GHN, tên người nhận, email khách. Kết quả mới nhất trước.
+     */
+    public List<OrderSummaryView> search(String rawQuery, int limit) {
+        String query = rawQuery != null ? rawQuery.trim() : "";
+        if (query.length() < MIN_QUERY_LENGTH) {
+            throw new AppException(ErrorCode.BAD_REQUEST,
+                    "Từ khóa tìm kiếm cần ít nhất " + MIN_QUERY_LENGTH + " ký tự");
+        }
+        int size = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        Pageable page = PageRequest.of(0, size);
+
+        List<OrderSearchIndex> hits = new ArrayList<>();
+        String phone = normalizePhone(query);
+        if (query.contains("@")) {
+            hits.addAll(orderSearchIndexRepository.findByCustomerEmailStartingWithOrderByOrderDateTimeDesc(
+                    query.toLowerCase(Locale.ROOT), page));
+        } else if (phone != null && phone.length() >= MIN_QUERY_LENGTH && looksLikePhone(query)) {
+            hits.addAll(orderSearchIndexRepository.findByCustomerPhoneStartingWithOrderByOrderDateTimeDesc(phone, page));
+            hits.addAll(orderSearchIndexRepository.findByRecipientPhoneStartingWithOrderByOrderDateTimeDesc(phone, page));
+        } else {
+            hits.addAll(orderSearchIndexRepository.findByOrderCodeStartingWithOrderByOrderDateTimeDesc(query, page));
+            hits.addAll(orderSearchIndexRepository.findByGhnOrderCodeStartingWithOrderByOrderDateTimeDesc(query, page));
+            hits.addAll(orderSearchIndexRepository.findByRecipientNameStartingWithOrderByOrderDateTimeDesc(query, page));
+            hits.addAll(orderSearchIndexRepository.findByCustomerEmailStartingWithOrderByOrderDateTimeDesc(
+                    query.toLowerCase(Locale.ROOT), page));
+        }
+
+        // Gộp, bỏ trùng và giữ thứ tự mới nhất trước
+        Map<String, OrderSearchIndex> unique = new LinkedHashMap<>();
+        hits.stream()
+                .sorted(Comparator.comparing(
+                        OrderSearchIndex::getOrderDateTime, Comparator.nullsLast(Comparator.reverseOrder())))
+                .forEach(hit -> unique.putIfAbsent(hit.getOrderId(), hit));
+        List<String> orderIds = unique.keySet().stream().limit(size).toList();
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, OrderSummaryView> summaries = new HashMap<>();
+        orderRepository.findSummariesByIdIn(orderIds).forEach(view -> summaries.put(view.getId(), view));
+        return orderIds.stream().map(summaries::get).filter(Objects::nonNull).toList();
+    }
+
+    // ==================== Ghi index ====================
+
+    // Được OutboxDispatcher gọi trong transaction của nó (idempotent: ghi đè cả dòng)
+    public void index(Order order) {
+        orderSearchIndexRepository.save(toIndex(order, LocalDateTime.now()));
+    }
+
+    // Khách đổi email / SĐT: các đơn cũ phải tìm được bằng thông tin mới
+    public void refreshCustomerContact(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        Integer updated = transactionTemplate.execute(status -> orderSearchIndexRepository.updateCustomerContact(
+                user.getId(), normalizeEmail(user.getEmail()), normalizePhone(user.getPhoneNumber()),
+                LocalDateTime.now()));
+        if (updated != null && updated > 0) {
+            log.info("Refreshed contact of user {} on {} indexed orders", user.getId(), updated);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.order-search.reconcile-interval-ms:300000}")
+    public void reconcileRecentOrders() {
+        try {
+            LocalDateTime since = LocalDateTime.now().minusHours(reconcileLookbackHours);
+            int total = 0;
+            List<String> missing;
+            do {
+                missing = orderSearchIndexRepository.findUnindexedOrderIdsSince(since, BATCH_SIZE);
+                total += indexBatch(missing);
+            } while (missing.size() == BATCH_SIZE);
+            if (total > 0) {
+                log.info("Indexed {} recent orders missing from order_search_index", total);
+            }
+        } catch (Exception e) {
+            log.error("Order search index reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Dựng lại index theo khóa chính, tối đa maxBatches lô mỗi lần gọi để request không kéo dài;
+     * gọi tiếp với nextAfterId cho tới khi done = true.
+     */
+    public RebuildProgress rebuild(String afterId, int maxBatches) {
+        String cursor = afterId != null ? afterId : "";
+        int indexed = 0;
+        for (int batch = 0; batch < Math.max(maxBatches, 1); batch++) {
+            List<String> ids = orderSearchIndexRepository.findOrderIdsAfter(cursor, BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return RebuildProgress.builder().indexed(indexed).nextAfterId(null).done(true).build();
+            }
+            indexed += indexBatch(ids);
+            cursor = ids.get(ids.size() - 1);
+            if (ids.size() < BATCH_SIZE) {
+                return RebuildProgress.builder().indexed(indexed).nextAfterId(null).done(true).build();
+            }
+        }
+        return RebuildProgress.builder().indexed(indexed).nextAfterId(cursor).done(false).build();
+    }
+
+    private int indexBatch(List<String> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        Integer saved = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OrderSearchIndex> rows = orderRepository.findWithUserAndShipmentByIdIn(orderIds).stream()
+                    .map(order -> toIndex(order, now))
+                    .toList();
+            orderSearchIndexRepository.saveAll(rows);
+            return rows.size();
+        });
+        return saved != null ? saved : 0;
+    }
+
+    private OrderSearchIndex toIndex(Order order, LocalDateTime now) {
+        User user = order.getUser();
+        JsonNode snapshot = parseShippingSnapshot(order.getShippingAddress());
+        LocalDateTime orderTime = order.getOrderDateTime() != null
+                ? order.getOrderDateTime()
+                : (order.getOrderDate() != null ? order.getOrderDate().atStartOfDay() : null);
+        return OrderSearchIndex.builder()
+                .orderId(order.getId())
+                .userId(user != null ? user.getId() : null)
+                .orderCode(blankToNull(order.getCode()))
+                .customerEmail(user != null ? normalizeEmail(user.getEmail()) : null)
+                .customerPhone(user != null ? normalizePhone(user.getPhoneNumber()) : null)
+                .recipientName(snapshot != null ? truncate(blankToNull(snapshot.path("name").asText(null))) : null)
+                .recipientPhone(snapshot != null ? normalizePhone(snapshot.path("phone").asText(null)) : null)
+                .ghnOrderCode(order.getShipment() != null ? blankToNull(order.getShipment().getOrderCode()) : null)
+                .orderDateTime(orderTime)
+                .updatedAt(now)
+                .build();
+    }
+
+    // shippingAddress là JSON {name, phone, address}; đơn rất cũ có thể là chuỗi tự do => bỏ qua
+    private JsonNode parseShippingSnapshot(String shippingAddress) {
+        if (shippingAddress == null || !shippingAddress.trim().startsWith("{")) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(shippingAddress);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String normalizeEmail(String email) {
+        String value = blankToNull(email);
+        return value != null ? truncate(value.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    // Chỉ giữ chữ số; +84 / 84 đầu số được đổi về 0 để khớp cách nhân viên nhập
+    static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.startsWith("84") && digits.length() >= 11) {
+            digits = "0" + digits.substring(2);
+        }
+        return digits.isEmpty() ? null : digits;
+    }
+
+    private static boolean looksLikePhone(String query) {
+        return query.matches("[+0-9 .\\-()]+");
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_COLUMN_LENGTH ? value.substring(0, MAX_COLUMN_LENGTH) : value;
+    }
+
+    @Getter
+    @Builder
+    public static class RebuildProgress {
+        private final int indexed;
+        private final String nextAfterId;
+        private final boolean done;
+    }
+}
@@ -1,14 +1,19 @@
 package com.hanoi_metro.backend.service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.hanoi_metro.backend.dto.request.RejectRefundRequest;
@@ -34,6 +39,7 @@ import com.hanoi_metro.backend.entity.OrderItem;
 import com.hanoi_metro.backend.entity.User;
 import com.hanoi_metro.backend.enums.CancellationSource;
 import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.OutboxEventType;
 import com.hanoi_metro.backend.enums.PaymentMethod;
 import com.hanoi_metro.backend.enums.PaymentStatus;
 import com.hanoi_metro.backend.exception.AppException;
@@ -41,6 +47,7 @@ import com.hanoi_metro.backend.exception.ErrorCode;
 import com.hanoi_metro.backend.repository.AddressRepository;
 import com.hanoi_metro.backend.repository.OrderItemRepository;
 import com.hanoi_metro.backend.repository.OrderRepository;
+import com.hanoi_metro.backend.repository.OrderSummaryView;
 import com.hanoi_metro.backend.repository.ProductRepository;
 import com.hanoi_metro.backend.repository.CartRepository;
 import com.hanoi_metro.backend.repository.UserRepository;
@@ -76,12 +83,20 @@ public class OrderService {
     ProductRepository productRepository;
     UserRepository userRepository;
     @Lazy ShipmentService shipmentService;
-    NotificationService notificationService;
     VoucherRepository voucherRepository;
     FinancialService financialService;
+    OutboxService outboxService;
+    OrderUpdateRetrier orderUpdateRetrier;
+    OrderArchiveService orderArchiveService;
+    DashboardCacheService dashboardCacheService;
 
     ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final LocalDateTime MIN_ORDER_TIME = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_ORDER_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     /**
      * Khởi tạo đơn hàng từ giỏ hàng hiện tại. Nếu là COD sẽ hoàn tất ngay.
      * Nếu là MoMo sẽ trả về payUrl để khách thanh toán sau.
@@ -166,6 +181,7 @@ public class OrderService {
                 savedOrder = orderRepository.save(order);
                 persistOrderItems(savedOrder, selectedItems);
                 orderRepository.flush();
+                indexOrderForSearch(savedOrder);
 
                 registerVoucherUsage(cart.getUser(), appliedVoucherCode);
                 cartService.clearVoucherForUser(cart.getUser());
@@ -334,6 +350,7 @@ public class OrderService {
 
                 updateInventoryAndSales(product, quantity);
                 finalizeVoucherUsageForUser(user);
+                indexOrderForSearch(savedOrder);
 
                 // Ghi nhận doanh thu: COD chỉ ghi nhận khi DELIVERED, các phương thức khác ghi nhận ngay
                 if (paymentMethod != PaymentMethod.COD) {
@@ -433,6 +450,7 @@ public class OrderService {
                 Order savedOrder = orderRepository.save(order);
                 persistOrderItems(savedOrder, selectedItems);
                 orderRepository.flush();
+                indexOrderForSearch(savedOrder);
                 registerVoucherUsage(cart.getUser(), appliedVoucherCode);
                 cartService.clearVoucherForUser(cart.getUser());
 
@@ -559,6 +577,7 @@ public class OrderService {
 
                 updateInventoryAndSales(product, quantity);
                 finalizeVoucherUsageForUser(user);
+                indexOrderForSearch(savedOrder);
 
                 // Ghi nhận doanh thu: COD chỉ ghi nhận khi DELIVERED, các phương thức khác ghi nhận ngay
                 PaymentMethod orderPaymentMethod = savedOrder.getPaymentMethod();
@@ -829,7 +848,8 @@ public class OrderService {
     public void sendOrderConfirmationEmailForTesting(String orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
-        sendOrderConfirmationEmail(order);
+        // Gửi lại theo yêu cầu => luôn tạo event mới, không qua kiểm tra trùng
+        outboxService.enqueue(OutboxEventType.ORDER_CONFIRMATION_EMAIL, order.getId());
     }
 
 
@@ -868,36 +888,23 @@ public class OrderService {
         }
     }
 
-    // Set để track các order đã gửi email trong session này (tránh gửi trùng)
-    private static final java.util.Set<String> emailSentOrders = java.util.Collections.synchronizedSet(new java.util.HashSet<>());
-    
+    // Email được gửi bất đồng bộ qua outbox sau khi transaction commit; mỗi đơn chỉ có một event xác nhận
     private void sendOrderConfirmationEmail(Order order) {
         if (order == null || order.getUser() == null || order.getUser().getEmail() == null) {
             return;
         }
-        
-        // Kiểm tra xem email đã được gửi cho order này chưa
-        String orderKey = order.getId();
-        if (emailSentOrders.contains(orderKey)) {
-            return; // Đã gửi rồi, không gửi lại
-        }
-        
-        try {
-            // Force load lazy-loaded fields
-            if (order.getItems() != null) {
-                order.getItems().size();
-                for (var item : order.getItems()) {
-                    if (item.getProduct() != null) {
-                        item.getProduct().getName();
-                    }
-                }
-            }
-            
-            brevoEmailService.sendOrderConfirmationEmail(order);
-            emailSentOrders.add(orderKey); // Đánh dấu đã gửi
-        } catch (Exception e) {
-            log.error("Error sending order confirmation email: {}", e.getMessage(), e);
+        outboxService.enqueueIfAbsent(OutboxEventType.ORDER_CONFIRMATION_EMAIL, order.getId());
+    }
+
+    /**
+     * Được OutboxDispatcher gọi (trong transaction của withOrder) để thực sự gửi email xác nhận đơn hàng.
+     * Lỗi được ném ra để dispatcher đánh dấu event thất bại và thử lại.
+     */
+    public void deliverOrderConfirmationEmail(Order order) {
+        if (order == null || order.getUser() == null || order.getUser().getEmail() == null) {
+            return;
         }
+        brevoEmailService.sendOrderConfirmationEmail(order);
     }
 
     private Address resolveShippingAddress(CreateOrderRequest request, User user) {
@@ -1056,6 +1063,74 @@ public class OrderService {
         }
     }
 
+    // Một trang kết quả phân trang keyset; nextCursor = null khi đã hết dữ liệu
+    @Getter
+    public static class OrderSlice<T> {
+        private final List<T> orders;
+        private final String nextCursor;
+        private final boolean hasNext;
+
+        public OrderSlice(List<T> orders, String nextCursor, boolean hasNext) {
+            this.orders = orders;
+            this.nextCursor = nextCursor;
+            this.hasNext = hasNext;
+        }
+    }
+
+    // Tham số lọc + con trỏ đã chuẩn hóa cho các truy vấn keyset của OrderRepository
+    private static class ListingQuery {
+        final LocalDateTime from;
+        final LocalDateTime to;
+        final boolean allStatuses;
+        final Collection<OrderStatus> statuses;
+        final boolean allPaymentMethods;
+        final Collection<PaymentMethod> paymentMethods;
+        final LocalDateTime cursorTime;
+        final String cursorId;
+        final int pageSize;
+
+        ListingQuery(
+                List<OrderStatus> statuses,
+                List<PaymentMethod> paymentMethods,
+                LocalDate from,
+                LocalDate to,
+                String cursor,
+                int size) {
+            this.from = from != null ? from.atStartOfDay() : MIN_ORDER_TIME;
+            this.to = to != null ? to.plusDays(1).atStartOfDay() : MAX_ORDER_TIME;
+            // Chỉ lọc một trong hai => vế còn lại nhận đủ giá trị enum (IN () rỗng không hợp lệ)
+            this.allStatuses = statuses == null || statuses.isEmpty();
+            this.statuses = allStatuses ? EnumSet.allOf(OrderStatus.class) : statuses;
+            this.allPaymentMethods = paymentMethods == null || paymentMethods.isEmpty();
+            this.paymentMethods = allPaymentMethods ? EnumSet.allOf(PaymentMethod.class) : paymentMethods;
+            this.pageSize = size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+
+            if (cursor == null || cursor.isBlank()) {
+                // Trang đầu: con trỏ nằm sau mọi đơn hàng
+                this.cursorTime = MAX_ORDER_TIME;
+                this.cursorId = "";
+            } else {
+                try {
+                    String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+                    int separator = raw.indexOf('|');
+                    this.cursorTime = LocalDateTime.parse(raw.substring(0, separator));
+                    this.cursorId = raw.substring(separator + 1);
+                } catch (RuntimeException e) {
+                    throw new AppException(ErrorCode.BAD_REQUEST, "Cursor phân trang không hợp lệ");
+                }
+            }
+        }
+
+        // Không lọc status / paymentMethod => dùng truy vấn không có điều kiện IN
+        boolean filtered() {
+            return !allStatuses || !allPaymentMethods;
+        }
+
+        Pageable pageable() {
+            return PageRequest.of(0, pageSize + 1);
+        }
+    }
+
     static class PricingSummary {
         double shippingFee;
         double orderTotal;
@@ -1079,75 +1154,76 @@ public class OrderService {
     }
 
     // Danh sách tất cả đơn hàng cho nhân viên / admin.
-    @Transactional
     public Order cancelOrder(String orderId, String reason) {
-        Order order = orderRepository.findById(orderId)
-                .orElseGet(() -> orderRepository.findByCode(orderId)
-                        .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED)));
-
-        OrderStatus currentStatus = order.getStatus() != null ? order.getStatus() : OrderStatus.CREATED;
-        if (currentStatus == OrderStatus.DELIVERED
-                || currentStatus == OrderStatus.SHIPPED
-                || currentStatus == OrderStatus.REFUNDED) {
-            throw new AppException(
-                    ErrorCode.UNCATEGORIZED_EXCEPTION,
-                    "Không thể hủy đơn hàng ở trạng thái hiện tại.");
-        }
-
-        if (currentStatus == OrderStatus.CANCELLED) {
-            boolean updated = false;
-            if (order.getCancellationReason() == null
-                    && reason != null
-                    && !reason.isBlank()) {
-                String resolvedReason = reason.trim();
-                order.setCancellationReason(resolvedReason);
-                order.setNote(buildCancellationNote(resolvedReason));
-                updated = true;
-            }
-            if (order.getCancellationSource() == null) {
-                order.setCancellationSource(guessCancellationSourceFromReason(order.getCancellationReason()));
-                updated = true;
+        return orderUpdateRetrier.execute("cancelOrder " + orderId, () -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseGet(() -> orderRepository.findByCode(orderId)
+                            .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED)));
+
+            OrderStatus currentStatus = OrderStateMachine.currentStatus(order);
+            if (currentStatus != OrderStatus.CANCELLED
+                    && !OrderStateMachine.canTransition(currentStatus, OrderStatus.CANCELLED)) {
+                throw new AppException(
+                        ErrorCode.UNCATEGORIZED_EXCEPTION,
+                        "Không thể hủy đơn hàng ở trạng thái hiện tại.");
             }
-            Order saved = updated ? orderRepository.save(order) : order;
-            if (saved.getCancellationSource() == CancellationSource.CUSTOMER) {
-                notifyStaffOrderCancelledByCustomer(saved);
+
+            if (currentStatus == OrderStatus.CANCELLED) {
+                boolean updated = false;
+                if (order.getCancellationReason() == null
+                        && reason != null
+                        && !reason.isBlank()) {
+                    String resolvedReason = reason.trim();
+                    order.setCancellationReason(resolvedReason);
+                    order.setNote(buildCancellationNote(resolvedReason));
+                    updated = true;
+                }
+                if (order.getCancellationSource() == null) {
+                    order.setCancellationSource(guessCancellationSourceFromReason(order.getCancellationReason()));
+                    updated = true;
+                }
+                Order saved = updated ? orderRepository.save(order) : order;
+                if (saved.getCancellationSource() == CancellationSource.CUSTOMER) {
+                    notifyStaffOrderCancelledByCustomer(saved);
+                }
+                return saved;
             }
-            return saved;
-        }
 
-        var auth = SecurityUtil.getAuthentication();
-        boolean isPrivileged = auth.getAuthorities().stream()
-                .anyMatch(a -> {
-                    String role = a.getAuthority();
-                    return "ROLE_STAFF".equals(role)
-                            || "ROLE_ADMIN".equals(role)
-                            || "ROLE_CUSTOMER_SUPPORT".equals(role);
-                });
+            var auth = SecurityUtil.getAuthentication();
+            boolean isPrivileged = auth.getAuthorities().stream()
+                    .anyMatch(a -> {
+                        String role = a.getAuthority();
+                        return "ROLE_STAFF".equals(role)
+                                || "ROLE_ADMIN".equals(role)
+                                || "ROLE_CUSTOMER_SUPPORT".equals(role);
+                    });
 
-        if (!isPrivileged) {
-            String email = auth.getName();
-            if (order.getUser() == null
-                    || order.getUser().getEmail() == null
-                    || !order.getUser().getEmail().equalsIgnoreCase(email)) {
-                throw new AppException(ErrorCode.UNAUTHORIZED);
+            if (!isPrivileged) {
+                String email = auth.getName();
+                if (order.getUser() == null
+                        || order.getUser().getEmail() == null
+                        || !order.getUser().getEmail().equalsIgnoreCase(email)) {
+                    throw new AppException(ErrorCode.UNAUTHORIZED);
+                }
             }
-        }
 
-        CancellationSource source = isPrivileged ? CancellationSource.STAFF : CancellationSource.CUSTOMER;
-        String resolvedReason = (reason != null && !reason.isBlank())
-                ? reason.trim()
-                : (source == CancellationSource.STAFF ? "Nhân viên hủy đơn" : "Khách hàng hủy đơn");
+            CancellationSource source = isPrivileged ? CancellationSource.STAFF : CancellationSource.CUSTOMER;
+            String resolvedReason = (reason != null && !reason.isBlank())
+                    ? reason.trim()
+                    : (source == CancellationSource.STAFF ? "Nhân viên hủy đơn" : "Khách hàng hủy đơn");
 
-        order.setStatus(OrderStatus.CANCELLED);
-        order.setCancellationReason(resolvedReason);
-        order.setCancellationSource(source);
-        order.setNote(buildCancellationNote(resolvedReason));
+            order.setStatus(OrderStatus.CANCELLED);
+            order.setCancellationReason(resolvedReason);
+            order.setCancellationSource(source);
+            order.setNote(buildCancellationNote(resolvedReason));
 
-        Order savedOrder = orderRepository.save(order);
-        if (source == CancellationSource.CUSTOMER) {
-            notifyStaffOrderCancelledByCustomer(savedOrder);
-        }
-        return savedOrder;
+            Order savedOrder = orderRepository.save(order);
+            refreshRevenueRollup(savedOrder);
+            if (source == CancellationSource.CUSTOMER) {
+                notifyStaffOrderCancelledByCustomer(savedOrder);
+            }
+            return savedOrder;
+        });
     }
 
     private String buildCancellationNote(String reason) {
@@ -1214,24 +1290,132 @@ public class OrderService {
         }
     }
 
+    // Danh sách đơn hàng phân trang keyset cho admin / staff / CSKH
+    @Transactional(readOnly = true)
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN','CUSTOMER_SUPPORT')")
+    public OrderSlice<Order> getOrdersPage(
+            List<OrderStatus> statuses,
+            List<PaymentMethod> paymentMethods,
+            LocalDate from,
+            LocalDate to,
+            String cursor,
+            int size) {
+        ListingQuery q = new ListingQuery(statuses, paymentMethods, from, to, cursor, size);
+        List<Order> rows = q.filtered()
+                ? orderRepository.findFilteredPageAfterCursor(
+                        q.from, q.to, q.statuses, q.paymentMethods, q.cursorTime, q.cursorId, q.pageable())
+                : orderRepository.findPageAfterCursor(q.from, q.to, q.cursorTime, q.cursorId, q.pageable());
+        return toSlice(rows, q.pageSize, o -> encodeCursor(o.getOrderDateTime(), o.getId()));
+    }
+
+    // Danh sách đơn hàng phân trang keyset của khách hàng đang đăng nhập
+    @Transactional(readOnly = true)
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public OrderSlice<Order> getMyOrdersPage(
+            List<OrderStatus> statuses,
+            List<PaymentMethod> paymentMethods,
+            LocalDate from,
+            LocalDate to,
+            String cursor,
+            int size) {
+        String userId = resolveCurrentUserId();
+        ListingQuery q = new ListingQuery(statuses, paymentMethods, from, to, cursor, size);
+        List<Order> rows = q.filtered()
+                ? orderRepository.findUserFilteredPageAfterCursor(
+                        userId, q.from, q.to, q.statuses, q.paymentMethods, q.cursorTime, q.cursorId, q.pageable())
+                : orderRepository.findUserPageAfterCursor(userId, q.from, q.to, q.cursorTime, q.cursorId, q.pageable());
+        return toSlice(rows, q.pageSize, o -> encodeCursor(o.getOrderDateTime(), o.getId()));
+    }
+
+    // Danh sách tóm tắt đơn hàng (1 truy vấn phẳng) cho admin / staff / CSKH
+    @Transactional(readOnly = true)
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN','CUSTOMER_SUPPORT')")
+    public OrderSlice<OrderSummaryView> getOrderSummariesPage(
+            List<OrderStatus> statuses,
+            List<PaymentMethod> paymentMethods,
+            LocalDate from,
+            LocalDate to,
+            String cursor,
+            int size) {
+        ListingQuery q = new ListingQuery(statuses, paymentMethods, from, to, cursor, size);
+        List<OrderSummaryView> rows = q.filtered()
+                ? orderRepository.findFilteredSummariesAfterCursor(
+                        q.from, q.to, q.statuses, q.paymentMethods, q.cursorTime, q.cursorId, q.pageable())
+                : orderRepository.findSummariesAfterCursor(q.from, q.to, q.cursorTime, q.cursorId, q.pageable());
+        return toSlice(rows, q.pageSize, o -> encodeCursor(o.getOrderDateTime(), o.getId()));
+    }
+
+    // Danh sách tóm tắt đơn hàng của khách hàng đang đăng nhập
+    @Transactional(readOnly = true)
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public OrderSlice<OrderSummaryView> getMyOrderSummariesPage(
+            List<OrderStatus> statuses,
+            List<PaymentMethod> paymentMethods,
+            LocalDate from,
+            LocalDate to,
+            String cursor,
+            int size) {
+        String userId = resolveCurrentUserId();
+        ListingQuery q = new ListingQuery(statuses, paymentMethods, from, to, cursor, size);
+        List<OrderSummaryView> rows = q.filtered()
+                ? orderRepository.findUserFilteredSummariesAfterCursor(
+                        userId, q.from, q.to, q.statuses, q.paymentMethods, q.cursorTime, q.cursorId, q.pageable())
+                : orderRepository.findUserSummariesAfterCursor(
+                        userId, q.from, q.to, q.cursorTime, q.cursorId, q.pageable());
+        return toSlice(rows, q.pageSize, o -> encodeCursor(o.getOrderDateTime(), o.getId()));
+    }
+
+    private String resolveCurrentUserId() {
+        return userRepository.findByEmail(SecurityUtil.getCurrentUserEmail())
+                .map(User::getId)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+    }
+
+    // Lấy dư 1 bản ghi để biết còn trang sau hay không (không cần COUNT)
+    private <T> OrderSlice<T> toSlice(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        boolean hasNext = rows.size() > pageSize;
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)) : null;
+        return new OrderSlice<>(content, nextCursor, hasNext);
+    }
+
+    private static String encodeCursor(LocalDateTime orderDateTime, String id) {
+        String raw = orderDateTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
     // Thống kê đơn hàng trong khoảng thời gian
     @Transactional(readOnly = true)
     @PreAuthorize("hasRole('ADMIN')")
     public OrderStatistics getOrderStatistics(LocalDate start, LocalDate end) {
+        // Bucket đã đóng được cache lâu; bucket chứa hôm nay được tính lại sau TTL ngắn
+        return dashboardCacheService.get(DashboardCacheService.Metric.ORDER_STATISTICS, start, end,
+                this::loadOrderStatistics, OrderService::mergeOrderStatistics);
+    }
+
+    private OrderStatistics loadOrderStatistics(LocalDate start, LocalDate end) {
         LocalDateTime startDateTime = start.atStartOfDay();
         LocalDateTime endDateTime = end.atTime(23, 59, 59, 999999999);
-        
-        Long totalOrders = orderRepository.countByOrderDateTimeBetween(startDateTime, endDateTime);
-        Long cancelledOrders = orderRepository.countCancelledOrdersByOrderDateTimeBetween(startDateTime, endDateTime);
-        Long refundedOrders = orderRepository.countRefundedOrdersByOrderDateTimeBetween(startDateTime, endDateTime);
-        
+
+        // Một truy vấn đếm có điều kiện cho cả ba chỉ số; kho lưu trữ chỉ được đọc khi cần
+        OrderStatistics hot = orderRepository.countOrderStatistics(startDateTime, endDateTime);
+        OrderStatistics archived = orderArchiveService.countOrderStatistics(startDateTime, endDateTime);
+        return mergeOrderStatistics(hot, archived);
+    }
+
+    private static OrderStatistics mergeOrderStatistics(OrderStatistics left, OrderStatistics right) {
         return OrderStatistics.builder()
-                .totalOrders(totalOrders)
-                .cancelledOrders(cancelledOrders)
-                .refundedOrders(refundedOrders)
+                .totalOrders(nullToZero(left.getTotalOrders()) + nullToZero(right.getTotalOrders()))
+                .cancelledOrders(nullToZero(left.getCancelledOrders()) + nullToZero(right.getCancelledOrders()))
+                .refundedOrders(nullToZero(left.getRefundedOrders()) + nullToZero(right.getRefundedOrders()))
                 .build();
     }
 
+    // SUM(CASE ...) trả về null khi không có dòng nào
+    private static long nullToZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
     // Lấy Page<Order> để convert trong controller
     @Transactional(readOnly = true)
     @PreAuthorize("hasRole('ADMIN')")
@@ -1298,8 +1482,8 @@ public class OrderService {
                     item.getProduct().getName();
                     if (item.getProduct().getDefaultMedia() != null) {
                         item.getProduct().getDefaultMedia().getMediaUrl();
-                    }
-                    if (item.getProduct().getMediaList() != null) {
+                    } else if (item.getProduct().getMediaList() != null) {
+                        // Chỉ cần mediaList khi không có ảnh mặc định; @BatchSize gom thành 1 truy vấn IN
                         item.getProduct().getMediaList().size();
                     }
                 }
@@ -1310,65 +1494,78 @@ public class OrderService {
     }
 
     // Nhân viên xác nhận đơn hàng
-    @Transactional
     @PreAuthorize("hasAnyRole('STAFF','ADMIN')")
     public Order confirmOrder(String orderId) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
+        return orderUpdateRetrier.execute("confirmOrder " + orderId, () -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
 
-        if (order.getStatus() == OrderStatus.CANCELLED || order.getStatus() == OrderStatus.DELIVERED) {
-            return order;
-        }
+            // Đã xác nhận / đã giao / đã hủy... => giữ nguyên, không báo lỗi
+            if (!OrderStateMachine.canTransition(order.getStatus(), OrderStatus.CONFIRMED)) {
+                return order;
+            }
 
-        if (order.getStatus() != OrderStatus.CONFIRMED) {
             order.setStatus(OrderStatus.CONFIRMED);
             orderRepository.save(order);
-        }
+            refreshRevenueRollup(order);
 
-        return order;
+            return order;
+        });
     }
 
-    @Transactional
     public Order requestReturn(String orderId, ReturnRequestRequest request) {
         log.info("Processing request return for order: {}", orderId);
         try {
-            Order order = orderRepository.findById(orderId)
-                    .orElseThrow(() -> {
-                        log.error("Order not found: {}", orderId);
-                        return new AppException(ErrorCode.ORDER_NOT_EXISTED);
-                    });
-
-            log.info("Order found: {}, current status: {}", orderId, order.getStatus());
-
             // Đồng bộ trạng thái từ GHN trước khi kiểm tra điều kiện request return
-            // Để đảm bảo status được cập nhật mới nhất từ GHN
+            // Để đảm bảo status được cập nhật mới nhất từ GHN (sync tự commit trong transaction riêng)
             try {
                 shipmentService.syncOrderStatusFromGhn(orderId);
-                // Reload order để lấy status mới nhất sau khi sync
-                order = orderRepository.findById(orderId)
-                        .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
-                log.info("Order status after sync from GHN: {}, status: {}", orderId, order.getStatus());
             } catch (Exception e) {
                 log.warn("Failed to sync order status from GHN for order {}: {}", orderId, e.getMessage());
                 // Tiếp tục với status hiện tại nếu sync thất bại
             }
 
-            // Cho phép yêu cầu trả hàng từ DELIVERED hoặc gửi lại từ RETURN_REJECTED
-            if (order.getStatus() != OrderStatus.DELIVERED && order.getStatus() != OrderStatus.RETURN_REJECTED) {
-                log.warn("Invalid order status for return request: orderId={}, status={}", orderId, order.getStatus());
-                throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION, 
-                        String.format("Chỉ có thể yêu cầu trả hàng cho đơn hàng đã giao (DELIVERED) hoặc đơn hàng đã bị từ chối hoàn tiền (RETURN_REJECTED). Trạng thái hiện tại: %s", 
-                                order.getStatus() != null ? order.getStatus().name() : "null"));
-            }
+            return orderUpdateRetrier.execute(
+                    "requestReturn " + orderId, () -> applyReturnRequest(orderId, request));
+        } catch (AppException e) {
+            // Re-throw AppException để giữ nguyên error code và message
+            log.error("AppException in requestReturn for order {}: code={}, message={}", 
+                    orderId, e.getErrorCode().getCode(), e.getMessage(), e);
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error in requestReturn for order {}: {}", orderId, e.getMessage(), e);
+            log.error("Exception stack trace:", e);
+            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION, 
+                    "Có lỗi xảy ra khi xử lý yêu cầu trả hàng. Vui lòng thử lại sau.");
+        }
+    }
 
-            // Force load items để tránh LazyInitializationException
-            if (order.getItems() != null) {
-                order.getItems().size(); // Trigger lazy loading
-                log.info("Loaded {} items for order: {}", order.getItems().size(), orderId);
-            }
+    // Chạy trong transaction của OrderUpdateRetrier; đọc lại đơn ở mỗi lần thử
+    private Order applyReturnRequest(String orderId, ReturnRequestRequest request) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> {
+                    log.error("Order not found: {}", orderId);
+                    return new AppException(ErrorCode.ORDER_NOT_EXISTED);
+                });
+
+        log.info("Order found: {}, current status: {}", orderId, order.getStatus());
+
+        // Cho phép yêu cầu trả hàng từ DELIVERED hoặc gửi lại từ RETURN_REJECTED
+        if (!OrderStateMachine.canTransition(order.getStatus(), OrderStatus.RETURN_REQUESTED)) {
+            log.warn("Invalid order status for return request: orderId={}, status={}", orderId, order.getStatus());
+            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION, 
+                    String.format("Chỉ có thể yêu cầu trả hàng cho đơn hàng đã giao (DELIVERED) hoặc đơn hàng đã bị từ chối hoàn tiền (RETURN_REJECTED). Trạng thái hiện tại: %s", 
+                            order.getStatus() != null ? order.getStatus().name() : "null"));
+        }
+
+        // Force load items để tránh LazyInitializationException
+        if (order.getItems() != null) {
+            order.getItems().size(); // Trigger lazy loading
+            log.info("Loaded {} items for order: {}", order.getItems().size(), orderId);
+        }
+
+        order.setStatus(OrderStatus.RETURN_REQUESTED);
 
-            order.setStatus(OrderStatus.RETURN_REQUESTED);
-        
         // Save refund request information to dedicated fields
         if (request != null) {
             order.setRefundReasonType(request.getReasonType());
@@ -1379,7 +1576,7 @@ public class OrderService {
             order.setRefundBank(request.getBank());
             order.setRefundAccountNumber(request.getAccountNumber());
             order.setRefundAccountHolder(request.getAccountHolder());
-            
+
             // Save selected product IDs as JSON array
             if (request.getSelectedProductIds() != null && !request.getSelectedProductIds().isEmpty()) {
                 try {
@@ -1390,7 +1587,7 @@ public class OrderService {
                     order.setRefundSelectedProductIds(null);
                 }
             }
-            
+
             // Save media URLs as JSON array
             if (request.getMediaUrls() != null && !request.getMediaUrls().isEmpty()) {
                 try {
@@ -1401,7 +1598,7 @@ public class OrderService {
                     order.setRefundMediaUrls(null);
                 }
             }
-            
+
             // Calculate and save refund amount and return fee
             if (order.getItems() != null && request.getSelectedProductIds() != null) {
                 try {
@@ -1409,7 +1606,7 @@ public class OrderService {
                             .filter(item -> request.getSelectedProductIds().contains(item.getId()))
                             .mapToDouble(item -> item.getFinalPrice() != null ? item.getFinalPrice() : 0.0)
                             .sum();
-                    
+
                     double shippingFee = order.getShippingFee() != null ? order.getShippingFee() : 0.0;
                     double totalPaid = order.getTotalAmount() != null ? order.getTotalAmount() : productValue + shippingFee;
 
@@ -1420,7 +1617,7 @@ public class OrderService {
                         log.warn("Failed to estimate return shipping fee for order {}: {}", orderId, e.getMessage());
                         // Continue with fallback calculation
                     }
-                    
+
                     boolean isStoreReason = "store".equalsIgnoreCase(request.getReasonType());
                     double fallbackReturnFee = isStoreReason ? shippingFee : Math.round(productValue * 0.1);
                     double secondShippingFee = computedReturnFee > 0 ? Math.round(computedReturnFee) : Math.max(0.0, fallbackReturnFee);
@@ -1457,7 +1654,7 @@ public class OrderService {
                     order.setRefundConfirmedSecondShippingFee(shippingFee);
                 }
             }
-            
+
             // Also save to note field for backward compatibility
             if (request.getNote() != null && !request.getNote().isBlank()) {
                 order.setNote(request.getNote());
@@ -1491,212 +1688,194 @@ public class OrderService {
                 order.setNote(noteBuilder.toString());
             }
         }
-        
-            log.info("Saving order with return request: {}", orderId);
-            Order saved = orderRepository.save(order);
-            log.info("Order saved successfully: {}", orderId);
 
-            // Gửi thông báo in-app cho bộ phận CSKH về yêu cầu hoàn tiền / trả hàng mới
-            try {
-                String customerName = order.getUser() != null && order.getUser().getFullName() != null
-                        ? order.getUser().getFullName()
-                        : "Khách hàng";
-                String title = "Yêu cầu hoàn tiền / trả hàng mới";
-                String message = String.format(
-                        "%s đã gửi yêu cầu hoàn tiền/trả hàng cho đơn hàng %s.",
-                        customerName,
-                        order.getCode());
-                String link = "/customer-support/refund-management";
-                notificationService.sendToRole(title, message, "INFO", "CUSTOMER_SUPPORT", link);
-                log.info("Notification sent successfully for order: {}", orderId);
-            } catch (Exception e) {
-                log.error("Failed to send notification to CS for return request {}: {}", orderId, e.getMessage(), e);
-                // Không throw exception vì notification là optional
-            }
-
-            log.info("Request return completed successfully for order: {}", orderId);
-            return saved;
-        } catch (AppException e) {
-            // Re-throw AppException để giữ nguyên error code và message
-            log.error("AppException in requestReturn for order {}: code={}, message={}", 
-                    orderId, e.getErrorCode().getCode(), e.getMessage(), e);
-            throw e;
-        } catch (Exception e) {
-            log.error("Unexpected error in requestReturn for order {}: {}", orderId, e.getMessage(), e);
-            log.error("Exception stack trace:", e);
-            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION, 
-                    "Có lỗi xảy ra khi xử lý yêu cầu trả hàng. Vui lòng thử lại sau.");
-        }
+        log.info("Saving order with return request: {}", orderId);
+        Order saved = orderRepository.save(order);
+        log.info("Order saved successfully: {}", orderId);
+        refreshRevenueRollup(saved);
+
+        // Gửi thông báo in-app cho bộ phận CSKH về yêu cầu hoàn tiền / trả hàng mới
+        String customerName = order.getUser() != null && order.getUser().getFullName() != null
+                ? order.getUser().getFullName()
+                : "Khách hàng";
+        String title = "Yêu cầu hoàn tiền / trả hàng mới";
+        String message = String.format(
+                "%s đã gửi yêu cầu hoàn tiền/trả hàng cho đơn hàng %s.",
+                customerName,
+                order.getCode());
+        String link = "/customer-support/refund-management";
+        outboxService.enqueueNotification(OutboxService.NotificationMessage.builder()
+                .aggregateId(saved.getId())
+                .title(title)
+                .message(message)
+                .type("INFO")
+                .role("CUSTOMER_SUPPORT")
+                .link(link)
+                .build());
+        log.info("Notification enqueued for order: {}", orderId);
+
+        log.info("Request return completed successfully for order: {}", orderId);
+        return saved;
     }
 
-    @Transactional
     public Order rejectRefund(String orderId, RejectRefundRequest request) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
+        return orderUpdateRetrier.execute("rejectRefund " + orderId, () -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
 
-        // Chỉ có thể từ chối đơn hàng chưa hoàn tất
-        if (order.getStatus() != OrderStatus.RETURN_REQUESTED
-                && order.getStatus() != OrderStatus.RETURN_CS_CONFIRMED
-                && order.getStatus() != OrderStatus.RETURN_STAFF_CONFIRMED) {
-            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION, 
-                    "Chỉ có thể từ chối yêu cầu hoàn tiền cho đơn hàng đang ở trạng thái 'Hoàn tiền/ trả hàng'");
-        }
+            // Chỉ có thể từ chối đơn hàng chưa hoàn tất
+            if (!OrderStateMachine.canTransition(order.getStatus(), OrderStatus.RETURN_REJECTED)) {
+                throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION, 
+                        "Chỉ có thể từ chối yêu cầu hoàn tiền cho đơn hàng đang ở trạng thái 'Hoàn tiền/ trả hàng'");
+            }
 
-        // Cập nhật status và lưu lý do từ chối
-        order.setStatus(OrderStatus.RETURN_REJECTED);
-        String rejectionReason = request.getReason() != null ? request.getReason() : "Không có lý do";
-        order.setRefundRejectionReason(rejectionReason);
-        String rejectionSource = request.getSource() != null ? request.getSource().trim() : null;
-        order.setRefundRejectionSource(
-                rejectionSource != null && !rejectionSource.isBlank() ? rejectionSource.toUpperCase() : null);
-        // Cũng lưu vào note để tương thích với code cũ
-        String rejectionNote = "Yêu cầu hoàn tiền đã bị từ chối. Lý do: " + rejectionReason;
-        order.setNote(rejectionNote);
+            // Cập nhật status và lưu lý do từ chối
+            order.setStatus(OrderStatus.RETURN_REJECTED);
+            String rejectionReason = request.getReason() != null ? request.getReason() : "Không có lý do";
+            order.setRefundRejectionReason(rejectionReason);
+            String rejectionSource = request.getSource() != null ? request.getSource().trim() : null;
+            order.setRefundRejectionSource(
+                    rejectionSource != null && !rejectionSource.isBlank() ? rejectionSource.toUpperCase() : null);
+            // Cũng lưu vào note để tương thích với code cũ
+            String rejectionNote = "Yêu cầu hoàn tiền đã bị từ chối. Lý do: " + rejectionReason;
+            order.setNote(rejectionNote);
 
-        Order saved = orderRepository.save(order);
+            Order saved = orderRepository.save(order);
 
-        // Gửi email thông báo cho khách khi yêu cầu hoàn tiền bị từ chối
-        try {
-            brevoEmailService.sendReturnRejectedEmail(saved);
-        } catch (Exception e) {
-            log.error("Failed to send return rejected email for order {}: {}", orderId, e.getMessage(), e);
-        }
+            // Gửi email thông báo cho khách khi yêu cầu hoàn tiền bị từ chối
+            outboxService.enqueue(OutboxEventType.RETURN_REJECTED_EMAIL, saved.getId());
 
-        return saved;
+            return saved;
+        });
     }
 
-    @Transactional
     public Order csConfirmReturn(String orderId, ReturnProcessRequest request) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
+        return orderUpdateRetrier.execute("csConfirmReturn " + orderId, () -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
 
-        // Chỉ có thể xác nhận hoàn tiền cho đơn hàng có status RETURN_REQUESTED
-        if (order.getStatus() != OrderStatus.RETURN_REQUESTED) {
-            throw new AppException(
-                    ErrorCode.UNCATEGORIZED_EXCEPTION,
-                    "Chỉ xác nhận các đơn đang ở trạng thái 'Khách yêu cầu hoàn tiền / trả hàng'");
-        }
+            // Chỉ có thể xác nhận hoàn tiền cho đơn hàng có status RETURN_REQUESTED
+            if (!OrderStateMachine.canTransition(order.getStatus(), OrderStatus.RETURN_CS_CONFIRMED)) {
+                throw new AppException(
+                        ErrorCode.UNCATEGORIZED_EXCEPTION,
+                        "Chỉ xác nhận các đơn đang ở trạng thái 'Khách yêu cầu hoàn tiền / trả hàng'");
+            }
 
-        appendProcessingNote(order, request);
-        order.setStatus(OrderStatus.RETURN_CS_CONFIRMED);
-        Order saved = orderRepository.save(order);
+            appendProcessingNote(order, request);
+            order.setStatus(OrderStatus.RETURN_CS_CONFIRMED);
+            Order saved = orderRepository.save(order);
 
-        // Gửi email thông báo cho khách hàng: CSKH đã xác nhận yêu cầu hoàn tiền/trả hàng
-        try {
-            brevoEmailService.sendReturnCsConfirmedEmail(saved);
-        } catch (Exception e) {
-            log.error("Failed to send CS-confirmed return email for order {}: {}", orderId, e.getMessage(), e);
-        }
+            // Gửi email thông báo cho khách hàng: CSKH đã xác nhận yêu cầu hoàn tiền/trả hàng
+            outboxService.enqueue(OutboxEventType.RETURN_CS_CONFIRMED_EMAIL, saved.getId());
 
-        // Gửi thông báo in-app cho STAFF: có đơn hoàn đã được CS xác nhận hợp lệ
-        try {
+            // Gửi thông báo in-app cho STAFF: có đơn hoàn đã được CS xác nhận hợp lệ
             String title = "Đơn hoàn đã được CSKH xác nhận";
             String message = String.format(
                     "Đơn hàng %s đã được CSKH xác nhận yêu cầu hoàn tiền/trả hàng. Vui lòng kiểm tra và xử lý.",
                     order.getCode());
             String link = "/staff/refund-orders";
-            notificationService.sendToRole(title, message, "INFO", "STAFF", link);
-        } catch (Exception e) {
-            log.error("Failed to send notification to staff for CS-confirmed return {}: {}", orderId, e.getMessage(), e);
-        }
+            outboxService.enqueueNotification(OutboxService.NotificationMessage.builder()
+                    .aggregateId(saved.getId())
+                    .title(title)
+                    .message(message)
+                    .type("INFO")
+                    .role("STAFF")
+                    .link(link)
+                    .build());
 
-        return saved;
+            return saved;
+        });
     }
 
-    @Transactional
     public Order staffConfirmReturn(String orderId, ReturnProcessRequest request) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
+        return orderUpdateRetrier.execute("staffConfirmReturn " + orderId, () -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
 
-        if (order.getStatus() != OrderStatus.RETURN_CS_CONFIRMED) {
-            throw new AppException(
-                    ErrorCode.UNCATEGORIZED_EXCEPTION,
-                    "Chỉ xử lý các đơn đã được CSKH xác nhận.");
-        }
+            if (!OrderStateMachine.canTransition(order.getStatus(), OrderStatus.RETURN_STAFF_CONFIRMED)) {
+                throw new AppException(
+                        ErrorCode.UNCATEGORIZED_EXCEPTION,
+                        "Chỉ xử lý các đơn đã được CSKH xác nhận.");
+            }
 
-        appendProcessingNote(order, request);
-        if (request != null && request.getNote() != null && !request.getNote().isBlank()) {
-            order.setStaffInspectionResult(request.getNote().trim());
-        }
-        if (request != null && request.getRefundAmount() != null) {
-            order.setRefundAmount(request.getRefundAmount());
-            // Coi như đây là số tiền hoàn dự kiến do nhân viên xác nhận
-            order.setRefundConfirmedAmount(request.getRefundAmount());
-        }
-        LocalDate requestedReturnDate = request != null ? request.getReturnCheckedDate() : null;
-        if (requestedReturnDate != null) {
-            order.setReturnCheckedDate(requestedReturnDate);
-        } else if (order.getReturnCheckedDate() == null) {
-            order.setReturnCheckedDate(LocalDate.now());
-        }
-        order.setStatus(OrderStatus.RETURN_STAFF_CONFIRMED);
-        Order saved = orderRepository.save(order);
+            appendProcessingNote(order, request);
+            if (request != null && request.getNote() != null && !request.getNote().isBlank()) {
+                order.setStaffInspectionResult(request.getNote().trim());
+            }
+            if (request != null && request.getRefundAmount() != null) {
+                order.setRefundAmount(request.getRefundAmount());
+                // Coi như đây là số tiền hoàn dự kiến do nhân viên xác nhận
+                order.setRefundConfirmedAmount(request.getRefundAmount());
+            }
+            LocalDate requestedReturnDate = request != null ? request.getReturnCheckedDate() : null;
+            if (requestedReturnDate != null) {
+                order.setReturnCheckedDate(requestedReturnDate);
+            } else if (order.getReturnCheckedDate() == null) {
+                order.setReturnCheckedDate(LocalDate.now());
+            }
+            order.setStatus(OrderStatus.RETURN_STAFF_CONFIRMED);
+            Order saved = orderRepository.save(order);
 
-        // Gửi email cho khách về kết quả kiểm tra hàng (lỗi bên nào, số tiền dự kiến hoàn)
-        try {
-            brevoEmailService.sendReturnStaffInspectionEmail(saved);
-        } catch (Exception e) {
-            log.error("Failed to send staff inspection email for order {}: {}", orderId, e.getMessage(), e);
-        }
+            // Gửi email cho khách về kết quả kiểm tra hàng (lỗi bên nào, số tiền dự kiến hoàn)
+            outboxService.enqueue(OutboxEventType.RETURN_STAFF_INSPECTION_EMAIL, saved.getId());
 
-        return saved;
+            return saved;
+        });
     }
 
-    @Transactional
     public Order confirmRefund(String orderId, ReturnProcessRequest request) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
+        return orderUpdateRetrier.execute("confirmRefund " + orderId, () -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new AppException(ErrorCode.ORDER_NOT_EXISTED));
 
-        // Chỉ có thể xác nhận hoàn tiền cho đơn hàng đã được staff kiểm tra
-        if (order.getStatus() != OrderStatus.RETURN_STAFF_CONFIRMED) {
-            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION,
-                    "Chỉ có thể xác nhận hoàn tiền cho đơn hàng đang ở trạng thái 'Hoàn tiền/ trả hàng'");
-        }
+            // Chỉ có thể xác nhận hoàn tiền cho đơn hàng đã được staff kiểm tra
+            if (!OrderStateMachine.canTransition(order.getStatus(), OrderStatus.REFUNDED)) {
+                throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION,
+                        "Chỉ có thể xác nhận hoàn tiền cho đơn hàng đang ở trạng thái 'Hoàn tiền/ trả hàng'");
+            }
 
-        if (request != null && request.getNote() != null && !request.getNote().isBlank()) {
-            String trimmed = request.getNote().trim();
-            order.setAdminProcessingNote(trimmed);
-            appendProcessingNote(order, ReturnProcessRequest.builder().note(trimmed).build());
-        }
+            if (request != null && request.getNote() != null && !request.getNote().isBlank()) {
+                String trimmed = request.getNote().trim();
+                order.setAdminProcessingNote(trimmed);
+                appendProcessingNote(order, ReturnProcessRequest.builder().note(trimmed).build());
+            }
 
-        if (request != null && request.getRefundAmount() != null) {
-            order.setRefundAmount(request.getRefundAmount());
-        }
-        order.setStatus(OrderStatus.REFUNDED);
+            if (request != null && request.getRefundAmount() != null) {
+                order.setRefundAmount(request.getRefundAmount());
+            }
+            order.setStatus(OrderStatus.REFUNDED);
 
-        Order savedOrder = orderRepository.save(order);
-        notifyStaffOrderReturned(savedOrder);
-        return savedOrder;
+            Order savedOrder = orderRepository.save(order);
+            dashboardCacheService.invalidate(savedOrder.getOrderDateTime());
+            notifyStaffOrderReturned(savedOrder);
+            return savedOrder;
+        });
     }
 
     private void notifyStaffOrderCancelledByCustomer(Order order) {
-        try {
-            String code = resolveDisplayOrderCode(order);
-            int itemCount = order.getItems() != null ? order.getItems().size() : 0;
-            String message = itemCount > 0
-                    ? String.format("Khách hàng đã hủy đơn %s với %d sản phẩm. Vui lòng kiểm tra tồn kho/đơn hàng.", code, itemCount)
-                    : String.format("Khách hàng đã hủy đơn %s. Vui lòng kiểm tra tồn kho/đơn hàng.", code);
-            notificationService.sendToStaff(
-                    "Khách hàng hủy đơn hàng",
-                    message,
-                    "WARNING",
-                    String.format("/staff/orders/%s", order.getId()));
-        } catch (Exception e) {
-            log.warn("Không thể gửi thông báo hủy đơn bởi khách hàng cho order {}", order.getId(), e);
-        }
+        String code = resolveDisplayOrderCode(order);
+        int itemCount = order.getItems() != null ? order.getItems().size() : 0;
+        String message = itemCount > 0
+                ? String.format("Khách hàng đã hủy đơn %s với %d sản phẩm. Vui lòng kiểm tra tồn kho/đơn hàng.", code, itemCount)
+                : String.format("Khách hàng đã hủy đơn %s. Vui lòng kiểm tra tồn kho/đơn hàng.", code);
+        outboxService.enqueueNotification(OutboxService.NotificationMessage.builder()
+                .aggregateId(order.getId())
+                .title("Khách hàng hủy đơn hàng")
+                .message(message)
+                .type("WARNING")
+                .link(String.format("/staff/orders/%s", order.getId()))
+                .build());
     }
 
     private void notifyStaffOrderReturned(Order order) {
-        try {
-            String code = resolveDisplayOrderCode(order);
-            notificationService.sendToStaff(
-                    "Đơn hàng hoàn về cần kiểm tra",
-                    String.format("Bộ phận CSKH đã xác nhận hoàn trả cho đơn %s. Vui lòng kiểm tra hàng hoàn và xử lý tồn kho.", code),
-                    "INFO",
-                    String.format("/staff/orders/%s", order.getId()));
-        } catch (Exception e) {
-            log.warn("Không thể gửi thông báo đơn hoàn về cho order {}", order.getId(), e);
-        }
+        String code = resolveDisplayOrderCode(order);
+        outboxService.enqueueNotification(OutboxService.NotificationMessage.builder()
+                .aggregateId(order.getId())
+                .title("Đơn hàng hoàn về cần kiểm tra")
+                .message(String.format("Bộ phận CSKH đã xác nhận hoàn trả cho đơn %s. Vui lòng kiểm tra hàng hoàn và xử lý tồn kho.", code))
+                .type("INFO")
+                .link(String.format("/staff/orders/%s", order.getId()))
+                .build());
     }
 
     private String resolveDisplayOrderCode(Order order) {
@@ -1711,17 +1890,15 @@ public class OrderService {
         if (product == null) {
             return;
         }
-        try {
-            String name = product.getName() != null ? product.getName() : product.getId();
-            String code = product.getId();
-            notificationService.sendToStaff(
-                    "Sản phẩm sắp hết hàng",
-                    String.format("Sản phẩm \"%s\" (Mã: %s) chỉ còn %d sản phẩm trong kho. Vui lòng nhập thêm.", name, code, stock),
-                    "WARNING",
-                    String.format("/staff/products/%s", product.getId()));
-        } catch (Exception e) {
-            log.warn("Không thể gửi thông báo low-stock cho sản phẩm {}", product.getId(), e);
-        }
+        String name = product.getName() != null ? product.getName() : product.getId();
+        String code = product.getId();
+        outboxService.enqueueNotification(OutboxService.NotificationMessage.builder()
+                .aggregateId(product.getId())
+                .title("Sản phẩm sắp hết hàng")
+                .message(String.format("Sản phẩm \"%s\" (Mã: %s) chỉ còn %d sản phẩm trong kho. Vui lòng nhập thêm.", name, code, stock))
+                .type("WARNING")
+                .link(String.format("/staff/products/%s", product.getId()))
+                .build());
     }
 
     private void appendProcessingNote(Order order, ReturnProcessRequest request) {
@@ -1740,12 +1917,33 @@ public class OrderService {
         }
     }
 
-    // Ghi nhận doanh thu cho đơn hàng đã thanh toán thành công
+    // Ghi dòng tra cứu (order_search_index) qua outbox, sau khi đơn được commit
+    private void indexOrderForSearch(Order order) {
+        if (order == null || order.getId() == null) {
+            return;
+        }
+        outboxService.enqueue(OutboxEventType.ORDER_SEARCH_INDEX, order.getId());
+    }
+
+    // Ghi nhận doanh thu cho đơn hàng đã thanh toán thành công (qua outbox, sau khi commit)
     private void recordOrderRevenue(Order order) {
-        ensureOrderRevenueRecorded(order);
+        if (order == null || order.getId() == null) {
+            return;
+        }
+        outboxService.enqueue(OutboxEventType.ORDER_REVENUE, order.getId());
+        refreshRevenueRollup(order);
+    }
+
+    // Trạng thái / thanh toán của đơn đổi => tính lại phần đóng góp vào bảng revenue_rollup_* sau khi commit
+    private void refreshRevenueRollup(Order order) {
+        if (order == null || order.getId() == null) {
+            return;
+        }
+        outboxService.enqueueOnce(OutboxEventType.REVENUE_ROLLUP, order.getId());
+        dashboardCacheService.invalidate(order.getOrderDateTime());
     }
 
-    // Đảm bảo doanh thu được ghi nhận cho đơn hàng
+    // Đảm bảo doanh thu được ghi nhận cho đơn hàng (idempotent, OutboxDispatcher có thể gọi lại)
     public void ensureOrderRevenueRecorded(Order order) {
         if (order == null || order.getItems() == null || order.getItems().isEmpty()) {
             return;
@@ -1756,28 +1954,8 @@ public class OrderService {
             return;
         }
 
-        // Kiểm tra xem đã ghi nhận doanh thu chưa (tránh duplicate)
-        if (financialService.hasRecordedRevenue(order.getId())) {
-            log.debug("Revenue already recorded for order {}", order.getId());
-            return;
-        }
-
-        // Ghi nhận doanh thu cho từng sản phẩm trong đơn hàng
-        for (OrderItem item : order.getItems()) {
-            if (item.getProduct() != null && item.getFinalPrice() != null && item.getFinalPrice() > 0) {
-                try {
-                    financialService.recordRevenue(
-                            order,
-                            item.getProduct(),
-                            item.getFinalPrice(),
-                            order.getPaymentMethod()
-                    );
-                } catch (Exception e) {
-                    log.error("Error recording revenue for order {} product {}", 
-                            order.getId(), item.getProduct().getId(), e);
-                }
-            }
-        }
+        // Khóa duy nhất (order, product, type) tránh ghi trùng khi outbox gọi lại
+        financialService.recordOrderRevenue(order);
     }
 }
 
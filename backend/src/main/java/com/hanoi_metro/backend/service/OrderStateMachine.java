@@ -0,0 +1,82 @@
+package com.hanoi_metro.backend.service;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.hanoi_metro.backend.entity.Order;
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+
+/**
+ * Bảng chuyển trạng thái hợp lệ của đơn hàng. Mọi luồng đổi trạng thái (nhân viên, khách hàng,
+ * đồng bộ GHN, xử lý hàng loạt) đều tra bảng này thay vì tự viết chuỗi if riêng.
+ */
+public final class OrderStateMachine {
+
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        // GHN được đồng bộ định kỳ nên có thể nhảy cóc qua các trạng thái trung gian
+        TRANSITIONS.put(OrderStatus.CREATED, EnumSet.of(
+                OrderStatus.PAID, OrderStatus.CONFIRMED, OrderStatus.SHIPPED,
+                OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        TRANSITIONS.put(OrderStatus.PAID, EnumSet.of(
+                OrderStatus.CONFIRMED, OrderStatus.SHIPPED, OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        TRANSITIONS.put(OrderStatus.CONFIRMED, EnumSet.of(
+                OrderStatus.SHIPPED, OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        // Giao không thành công, GHN đưa hàng về kho chờ giao lại ("storing") => về CONFIRMED như đồng bộ trước đây
+        TRANSITIONS.put(OrderStatus.SHIPPED, EnumSet.of(OrderStatus.CONFIRMED, OrderStatus.DELIVERED));
+        TRANSITIONS.put(OrderStatus.DELIVERED, EnumSet.of(OrderStatus.RETURN_REQUESTED));
+        // Đơn đang trong luồng hoàn trả vẫn hủy được (chỉ SHIPPED, DELIVERED, REFUNDED là không hủy được)
+        TRANSITIONS.put(OrderStatus.RETURN_REQUESTED, EnumSet.of(
+                OrderStatus.RETURN_CS_CONFIRMED, OrderStatus.RETURN_REJECTED, OrderStatus.CANCELLED));
+        TRANSITIONS.put(OrderStatus.RETURN_CS_CONFIRMED, EnumSet.of(
+                OrderStatus.RETURN_STAFF_CONFIRMED, OrderStatus.RETURN_REJECTED, OrderStatus.CANCELLED));
+        TRANSITIONS.put(OrderStatus.RETURN_STAFF_CONFIRMED, EnumSet.of(
+                OrderStatus.REFUNDED, OrderStatus.RETURN_REJECTED, OrderStatus.CANCELLED));
+        // Khách được gửi lại yêu cầu sau khi bị từ chối
+        TRANSITIONS.put(OrderStatus.RETURN_REJECTED, EnumSet.of(OrderStatus.RETURN_REQUESTED, OrderStatus.CANCELLED));
+        TRANSITIONS.put(OrderStatus.CANCELLED, EnumSet.noneOf(OrderStatus.class));
+        TRANSITIONS.put(OrderStatus.REFUNDED, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    private OrderStateMachine() {
+    }
+
+    // Đơn cũ chưa có status được coi như vừa tạo
+    public static OrderStatus currentStatus(Order order) {
+        return order.getStatus() != null ? order.getStatus() : OrderStatus.CREATED;
+    }
+
+    public static boolean canTransition(OrderStatus from, OrderStatus to) {
+        if (to == null) {
+            return false;
+        }
+        return TRANSITIONS.get(from != null ? from : OrderStatus.CREATED).contains(to);
+    }
+
+    public static boolean isTerminal(OrderStatus status) {
+        return status != null && TRANSITIONS.get(status).isEmpty();
+    }
+
+    public static Set<OrderStatus> allowedTargets(OrderStatus from) {
+        return Collections.unmodifiableSet(TRANSITIONS.get(from != null ? from : OrderStatus.CREATED));
+    }
+
+    /**
+     * Kiểm tra rồi đổi trạng thái đơn; ném AppException với thông báo cho người dùng nếu không hợp lệ.
+     */
+    public static void transition(Order order, OrderStatus target, String errorMessage) {
+        OrderStatus current = currentStatus(order);
+        if (!canTransition(current, target)) {
+            throw new AppException(ErrorCode.UNCATEGORIZED_EXCEPTION, errorMessage != null
+                    ? errorMessage
+                    : String.format("Không thể chuyển đơn hàng từ trạng thái %s sang %s", current, target));
+        }
+        order.setStatus(target);
+    }
+}
@@ -0,0 +1,77 @@
+package com.hanoi_metro.backend.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chạy một thao tác đổi trạng thái đơn hàng trong transaction riêng và tự chạy lại khi gặp xung đột
+ * optimistic lock (@Version trên Order). Thao tác phải tự đọc lại đơn hàng bên trong để lần thử sau
+ * nhìn thấy trạng thái mới nhất.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderUpdateRetrier {
+
+    @Value("${app.order.optimistic-retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.order.optimistic-retry.backoff-ms:25}")
+    private long backoffMs;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public <T> T execute(String operation, Supplier<T> action) {
+        // Đang nằm trong transaction của caller: xung đột chỉ lộ ra lúc caller commit nên không thể thử lại ở đây
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+
+        int attempts = Math.max(1, maxAttempts);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= attempts) {
+                    log.warn("{} still conflicting after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw new AppException(ErrorCode.ORDER_CONCURRENT_MODIFICATION);
+                }
+                log.info("{} hit a concurrent order update, retrying ({}/{})", operation, attempt, attempts);
+                pause(attempt);
+            }
+        }
+    }
+
+    public void run(String operation, Runnable action) {
+        execute(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Backoff ngắn có jitter để hai luồng đụng nhau không thử lại cùng lúc
+    private void pause(int attempt) {
+        if (backoffMs <= 0) {
+            return;
+        }
+        long delay = backoffMs * attempt + ThreadLocalRandom.current().nextLong(backoffMs);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.ORDER_CONCURRENT_MODIFICATION);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.hanoi_metro.backend.service;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.hanoi_metro.backend.configuration.OutboxProperties;
+import com.hanoi_metro.backend.entity.Order;
+import com.hanoi_metro.backend.entity.OutboxEvent;
+import com.hanoi_metro.backend.enums.OutboxEventType;
+import com.hanoi_metro.backend.repository.OrderRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đọc bảng outbox theo batch và thực thi side effect bất đồng bộ (at-least-once).
+ * Mỗi loại event có thread pool riêng nên email chậm không chặn ghi doanh thu hay thông báo.
+ * Handler phải idempotent vì event có thể được xử lý lại khi instance chết giữa chừng.
+ */
+@Slf4j
+@Service
+public class OutboxDispatcher {
+
+    private final OutboxService outboxService;
+    private final OutboxProperties outboxProperties;
+    private final OrderService orderService;
+    private final FinancialService financialService;
+    private final OrderRepository orderRepository;
+    private final BrevoEmailService brevoEmailService;
+    private final NotificationService notificationService;
+    private final OrderSearchService orderSearchService;
+    private final RevenueRollupService revenueRollupService;
+    private final RevenueCubeService revenueCubeService;
+    private final ShipmentService shipmentService;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<OutboxEventType, ExecutorService> executors = new EnumMap<>(OutboxEventType.class);
+
+    public OutboxDispatcher(
+            OutboxService outboxService,
+            OutboxProperties outboxProperties,
+            OrderService orderService,
+            FinancialService financialService,
+            OrderRepository orderRepository,
+            BrevoEmailService brevoEmailService,
+            NotificationService notificationService,
+            OrderSearchService orderSearchService,
+            RevenueRollupService revenueRollupService,
+            RevenueCubeService revenueCubeService,
+            ShipmentService shipmentService,
+            TransactionTemplate transactionTemplate) {
+        this.outboxService = outboxService;
+        this.outboxProperties = outboxProperties;
+        this.orderService = orderService;
+        this.financialService = financialService;
+        this.orderRepository = orderRepository;
+        this.brevoEmailService = brevoEmailService;
+        this.notificationService = notificationService;
+        this.orderSearchService = orderSearchService;
+        this.revenueRollupService = revenueRollupService;
+        this.revenueCubeService = revenueCubeService;
+        this.shipmentService = shipmentService;
+        this.transactionTemplate = transactionTemplate;
+        for (OutboxEventType type : OutboxEventType.values()) {
+            AtomicInteger counter = new AtomicInteger();
+            String prefix = "outbox-" + type.name().toLowerCase() + "-";
+            executors.put(type, Executors.newFixedThreadPool(outboxProperties.concurrencyFor(type), runnable -> {
+                Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void dispatchPending() {
+        List<OutboxEvent> batch = outboxService.claimBatch();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        CountDownLatch latch = new CountDownLatch(batch.size());
+        Set<String> inFlight = ConcurrentHashMap.newKeySet();
+        for (OutboxEvent event : batch) {
+            inFlight.add(event.getId());
+            executors.get(event.getEventType()).execute(() -> {
+                try {
+                    handle(event);
+                    outboxService.markDone(event);
+                } catch (Exception e) {
+                    outboxService.markFailed(event, e);
+                } finally {
+                    inFlight.remove(event.getId());
+                    latch.countDown();
+                }
+            });
+        }
+
+        // Chờ batch xong rồi mới lấy batch mới => giới hạn số event đang xử lý trong bộ nhớ.
+        // Mỗi nhịp chờ ngắn hơn staleAfterSeconds và gia hạn lockedAt cho event còn chạy,
+        // để event chậm không bị claimBatch (của instance này hay instance khác) lấy lại xử lý trùng.
+        long heartbeatSeconds = Math.max(1, outboxProperties.getStaleAfterSeconds() / 3);
+        try {
+            while (!latch.await(heartbeatSeconds, TimeUnit.SECONDS)) {
+                outboxService.renewLocks(List.copyOf(inFlight));
+                log.warn("Outbox batch still has {} of {} events in flight", inFlight.size(), batch.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Dọn event đã xử lý xong
+    @Scheduled(cron = "0 15 3 * * *")
+    public void purgeProcessedEvents() {
+        int deleted = outboxService.purgeProcessed();
+        if (deleted > 0) {
+            log.info("Purged {} processed outbox events", deleted);
+        }
+    }
+
+    private void handle(OutboxEvent event) {
+        switch (event.getEventType()) {
+            case ORDER_REVENUE -> withOrder(event, orderService::ensureOrderRevenueRecorded);
+            case COD_DELIVERED_REVENUE -> withOrder(event, financialService::ensureCodOrderRevenueRecorded);
+            case ORDER_CONFIRMATION_EMAIL -> withOrder(event, orderService::deliverOrderConfirmationEmail);
+            case RETURN_CS_CONFIRMED_EMAIL -> withOrder(event, brevoEmailService::sendReturnCsConfirmedEmail);
+            case RETURN_STAFF_INSPECTION_EMAIL -> withOrder(event, brevoEmailService::sendReturnStaffInspectionEmail);
+            case RETURN_REJECTED_EMAIL -> withOrder(event, brevoEmailService::sendReturnRejectedEmail);
+            case NOTIFICATION -> sendNotification(outboxService.readPayload(event, OutboxService.NotificationMessage.class));
+            case ORDER_SEARCH_INDEX -> withOrder(event, orderSearchService::index);
+            // Tự mở transaction và khóa đơn; đơn đã bị xóa / lưu trữ thì bỏ qua
+            case REVENUE_ROLLUP -> {
+                revenueRollupService.refreshOrders(List.of(event.getAggregateId()));
+                revenueCubeService.refreshOrders(List.of(event.getAggregateId()));
+            }
+            // Tự mở transaction ngắn (OrderUpdateRetrier); đơn không đổi được trạng thái thì bỏ qua
+            case GHN_STATUS_CALLBACK -> shipmentService.applyGhnCallback(
+                    event.getAggregateId(),
+                    outboxService.readPayload(event, GhnWebhookService.StatusCallback.class).getStatus());
+            default -> log.warn("No handler for outbox event type {}", event.getEventType());
+        }
+    }
+
+    // Load lại đơn hàng trong transaction riêng để handler truy cập được các quan hệ lazy
+    private void withOrder(OutboxEvent event, Consumer<Order> handler) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Order order = orderRepository.findById(event.getAggregateId()).orElse(null);
+            if (order == null) {
+                log.warn("Order {} of outbox event {} no longer exists, skipping", event.getAggregateId(), event.getId());
+                return;
+            }
+            handler.accept(order);
+        });
+    }
+
+    private void sendNotification(OutboxService.NotificationMessage message) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (message.getUserIds() != null && !message.getUserIds().isEmpty()) {
+                notificationService.sendToUsers(
+                        message.getTitle(),
+                        message.getMessage(),
+                        message.getType(),
+                        new HashSet<>(message.getUserIds()),
+                        message.getLink());
+            } else if (message.getRole() != null) {
+                notificationService.sendToRole(
+                        message.getTitle(), message.getMessage(), message.getType(), message.getRole(), message.getLink());
+            } else {
+                notificationService.sendToStaff(
+                        message.getTitle(), message.getMessage(), message.getType(), message.getLink());
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executors.values().forEach(ExecutorService::shutdown);
+    }
+}
@@ -0,0 +1,208 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hanoi_metro.backend.configuration.OutboxProperties;
+import com.hanoi_metro.backend.entity.OutboxEvent;
+import com.hanoi_metro.backend.enums.OutboxEventType;
+import com.hanoi_metro.backend.enums.OutboxStatus;
+import com.hanoi_metro.backend.repository.OutboxEventRepository;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ghi side effect vào bảng outbox trong cùng transaction với thay đổi đơn hàng.
+ * Event chỉ được dispatcher nhìn thấy sau khi transaction commit, rollback thì event cũng biến mất.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+    private static final Object ENQUEUED_KEYS = new Object();
+
+    OutboxEventRepository outboxEventRepository;
+    OutboxProperties outboxProperties;
+    ObjectMapper objectMapper;
+
+    @Transactional
+    public void enqueue(OutboxEventType type, String aggregateId) {
+        enqueue(type, aggregateId, null);
+    }
+
+    @Transactional
+    public void enqueue(OutboxEventType type, String aggregateId, Object payload) {
+        LocalDateTime now = LocalDateTime.now();
+        outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(type)
+                .aggregateId(aggregateId)
+                .payload(writePayload(payload))
+                .status(OutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+    }
+
+    /**
+     * Như enqueue nhưng chỉ ghi một event cho mỗi (type, aggregateId) trong transaction hiện tại.
+     * Dùng cho handler tính lại từ dữ liệu gốc (ví dụ REVENUE_ROLLUP) khi một thao tác chạm vào đơn nhiều lần.
+     */
+    @Transactional
+    public void enqueueOnce(OutboxEventType type, String aggregateId) {
+        if (enqueuedInCurrentTransaction().add(type.name() + ":" + aggregateId)) {
+            enqueue(type, aggregateId, null);
+        }
+    }
+
+    /**
+     * Chỉ ghi event nếu chưa từng có event (type, aggregateId) nào được ghi qua hàm này.
+     * Dùng cho side effect chỉ được xảy ra một lần cho mỗi đơn (ví dụ email xác nhận) dù nhiều luồng
+     * (IPN MoMo, verify payment) cùng kích hoạt: khóa duy nhất dedupe_key + INSERT IGNORE nên hai luồng
+     * song song không cùng ghi được, và dòng có khóa không bị purgeProcessed xóa.
+     */
+    @Transactional
+    public void enqueueIfAbsent(OutboxEventType type, String aggregateId) {
+        outboxEventRepository.insertIfAbsent(
+                UUID.randomUUID().toString(),
+                type.name(),
+                aggregateId,
+                type.name() + ":" + aggregateId,
+                LocalDateTime.now());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> enqueuedInCurrentTransaction() {
+        Set<String> keys = (Set<String>) TransactionSynchronizationManager.getResource(ENQUEUED_KEYS);
+        if (keys == null) {
+            keys = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(ENQUEUED_KEYS, keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ENQUEUED_KEYS);
+                }
+            });
+        }
+        return keys;
+    }
+
+    @Transactional
+    public void enqueueNotification(NotificationMessage message) {
+        enqueue(OutboxEventType.NOTIFICATION, message.getAggregateId(), message);
+    }
+
+    // Lấy một batch event đến hạn và đánh dấu PROCESSING
+    @Transactional
+    public List<OutboxEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> batch = outboxEventRepository.findDueForUpdate(
+                now,
+                now.minusSeconds(outboxProperties.getStaleAfterSeconds()),
+                PageRequest.of(0, outboxProperties.getBatchSize()));
+        batch.forEach(event -> {
+            event.setStatus(OutboxStatus.PROCESSING);
+            event.setLockedAt(now);
+        });
+        return batch;
+    }
+
+    public void renewLocks(Collection<String> eventIds) {
+        if (!eventIds.isEmpty()) {
+            outboxEventRepository.renewLocks(eventIds, LocalDateTime.now());
+        }
+    }
+
+    public void markDone(OutboxEvent event) {
+        outboxEventRepository.markDone(event.getId(), LocalDateTime.now());
+    }
+
+    public void markFailed(OutboxEvent event, Exception error) {
+        int attempts = event.getAttempts() + 1;
+        boolean exhausted = attempts >= outboxProperties.getMaxAttempts();
+        long backoff = Math.min(
+                outboxProperties.getMaxBackoffSeconds(),
+                outboxProperties.getInitialBackoffSeconds() * (1L << Math.min(attempts - 1, 20)));
+        String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+        outboxEventRepository.markFailed(
+                event.getId(),
+                exhausted ? OutboxStatus.FAILED : OutboxStatus.PENDING,
+                attempts,
+                LocalDateTime.now().plusSeconds(backoff),
+                message);
+        if (exhausted) {
+            log.error("Outbox event {} ({}) failed permanently after {} attempts: {}",
+                    event.getId(), event.getEventType(), attempts, message);
+        } else {
+            log.warn("Outbox event {} ({}) failed, retry #{} in {}s: {}",
+                    event.getId(), event.getEventType(), attempts, backoff, message);
+        }
+    }
+
+    public int purgeProcessed() {
+        return outboxEventRepository.deleteDoneBefore(
+                LocalDateTime.now().minusDays(outboxProperties.getRetentionDays()));
+    }
+
+    public <T> T readPayload(OutboxEvent event, Class<T> type) {
+        try {
+            return objectMapper.readValue(event.getPayload(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid outbox payload for event " + event.getId(), e);
+        }
+    }
+
+    private String writePayload(Object payload) {
+        if (payload == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload", e);
+        }
+    }
+
+    // Thông báo in-app: gửi cho danh sách user, một role, hoặc toàn bộ staff (role = null)
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class NotificationMessage {
+        String aggregateId;
+        String title;
+        String message;
+        String type;
+        String link;
+        String role;
+        List<String> userIds;
+    }
+}
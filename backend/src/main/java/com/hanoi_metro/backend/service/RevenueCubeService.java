@@ -0,0 +1,189 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.hanoi_metro.backend.configuration.RevenueCubeProperties;
+import com.hanoi_metro.backend.dto.response.RevenueSlice;
+import com.hanoi_metro.backend.enums.PaymentMethod;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+import com.hanoi_metro.backend.repository.RevenueCubeRepository;
+import com.hanoi_metro.backend.util.RevenueCube;
+import com.hanoi_metro.backend.util.RevenueCube.Dimension;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giữ RevenueCube cho dashboard admin: nạp toàn bộ lúc khởi động và định kỳ (dọn dòng đã xóa, đồng bộ thay đổi
+ * từ instance khác), cập nhật từng đơn khi OutboxDispatcher xử lý REVENUE_ROLLUP.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RevenueCubeService {
+
+    RevenueCubeRepository revenueCubeRepository;
+    OrderArchiveService orderArchiveService;
+    RevenueCubeProperties revenueCubeProperties;
+    AtomicReference<RevenueCube> cube = new AtomicReference<>();
+    // Đơn thay đổi trong lúc nạp toàn bộ: áp lại lên khối mới sau khi nạp xong
+    AtomicBoolean loading = new AtomicBoolean();
+    Set<String> changedDuringLoad = ConcurrentHashMap.newKeySet();
+
+    // ==================== Nạp / cập nhật ====================
+
+    @Scheduled(
+            initialDelayString = "${app.revenue-cube.initial-delay-ms:0}",
+            fixedDelayString = "${app.revenue-cube.reload-interval-ms:900000}")
+    public void reload() {
+        if (!revenueCubeProperties.isEnabled()) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        changedDuringLoad.clear();
+        loading.set(true);
+        try {
+            RevenueCube fresh = new RevenueCube();
+            // Kho lưu trữ chỉ có sau khi chạy migration lưu trữ (app.archive mặc định tắt)
+            boolean includeArchived = orderArchiveService.hasArchivedOrders();
+            revenueCubeRepository.streamFacts(false, fresh::append);
+            if (includeArchived) {
+                revenueCubeRepository.streamFacts(true, fresh::append);
+            }
+            cube.set(fresh);
+            loading.set(false);
+
+            List<String> changed = new ArrayList<>(changedDuringLoad);
+            if (!changed.isEmpty()) {
+                fresh.replaceOrders(changed, revenueCubeRepository.findFacts(changed, includeArchived));
+            }
+            log.info("Loaded revenue cube with {} rows in {} ms",
+                    fresh.liveRows(), System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("Revenue cube reload failed", e);
+        } finally {
+            loading.set(false);
+        }
+    }
+
+    // Được OutboxDispatcher gọi (REVENUE_ROLLUP) sau khi dữ liệu doanh thu của đơn đã commit
+    public void refreshOrders(Collection<String> orderIds) {
+        if (!revenueCubeProperties.isEnabled() || orderIds == null || orderIds.isEmpty()) {
+            return;
+        }
+        if (loading.get()) {
+            changedDuringLoad.addAll(orderIds);
+        }
+        RevenueCube current = cube.get();
+        if (current != null) {
+            current.replaceOrders(
+                    orderIds, revenueCubeRepository.findFacts(orderIds, orderArchiveService.hasArchivedOrders()));
+        }
+    }
+
+    // ==================== Truy vấn ====================
+
+    public List<RevenueSlice> query(
+            LocalDate start,
+            LocalDate end,
+            List<String> groupBy,
+            List<String> paymentMethods,
+            List<String> categoryIds,
+            List<String> productIds) {
+        if (start == null || end == null || start.isAfter(end)) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Khoảng thời gian không hợp lệ");
+        }
+        List<Dimension> dimensions = parseDimensions(groupBy);
+        long days = ChronoUnit.DAYS.between(start, end) + 1;
+        if (days > revenueCubeProperties.getMaxRangeDays()
+                || (dimensions.contains(Dimension.HOUR) && days > revenueCubeProperties.getMaxHourlyRangeDays())) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Khoảng thời gian quá dài cho cách nhóm đã chọn");
+        }
+        RevenueCube current = cube.get();
+        if (!revenueCubeProperties.isEnabled() || current == null) {
+            throw new AppException(ErrorCode.REVENUE_CUBE_LOADING);
+        }
+
+        RevenueCube.Query query = RevenueCube.Query.builder()
+                .from(start.atStartOfDay())
+                .to(end.plusDays(1).atStartOfDay())
+                .groupBy(dimensions)
+                .paymentMethods(parsePaymentMethods(paymentMethods))
+                .categoryIds(categoryIds)
+                .productIds(productIds)
+                .build();
+        return current.query(query).stream()
+                .map(slice -> RevenueSlice.builder()
+                        .bucket(slice.getBucket())
+                        .paymentMethod(slice.getPaymentMethod())
+                        .categoryId(slice.getCategoryId())
+                        .categoryName(slice.getCategoryName())
+                        .productId(slice.getProductId())
+                        .productName(slice.getProductName())
+                        .revenue(slice.getRevenue())
+                        .records(slice.getRecords())
+                        .build())
+                .toList();
+    }
+
+    // hour | day | month | paymentMethod | category | product (không phân biệt hoa thường, chấp nhận '_' / '-')
+    private static List<Dimension> parseDimensions(List<String> values) {
+        List<Dimension> dimensions = new ArrayList<>();
+        if (values == null) {
+            return dimensions;
+        }
+        for (String value : values) {
+            String key = value.trim().toLowerCase(Locale.ROOT).replace("_", "").replace("-", "");
+            Dimension dimension = switch (key) {
+                case "hour" -> Dimension.HOUR;
+                case "day" -> Dimension.DAY;
+                case "month" -> Dimension.MONTH;
+                case "paymentmethod", "payment" -> Dimension.PAYMENT_METHOD;
+                case "category" -> Dimension.CATEGORY;
+                case "product" -> Dimension.PRODUCT;
+                default -> throw new AppException(ErrorCode.BAD_REQUEST, "Chiều nhóm không hợp lệ: " + value);
+            };
+            if (!dimensions.contains(dimension)) {
+                dimensions.add(dimension);
+            }
+        }
+        long timeDimensions = dimensions.stream()
+                .filter(d -> d == Dimension.HOUR || d == Dimension.DAY || d == Dimension.MONTH)
+                .count();
+        if (timeDimensions > 1) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Chỉ được nhóm theo một mốc thời gian (hour, day hoặc month)");
+        }
+        return dimensions;
+    }
+
+    private static List<PaymentMethod> parsePaymentMethods(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        List<PaymentMethod> methods = new ArrayList<>();
+        for (String value : values) {
+            try {
+                methods.add(PaymentMethod.valueOf(value.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new AppException(ErrorCode.BAD_REQUEST, "Phương thức thanh toán không hợp lệ: " + value);
+            }
+        }
+        return methods;
+    }
+}
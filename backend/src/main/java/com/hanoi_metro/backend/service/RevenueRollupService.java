@@ -0,0 +1,346 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.hanoi_metro.backend.configuration.RevenueRollupProperties;
+import com.hanoi_metro.backend.repository.RevenueRollupRepository;
+import com.hanoi_metro.backend.repository.RevenueRollupRepository.BackfillState;
+import com.hanoi_metro.backend.repository.RevenueRollupRepository.Contribution;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Duy trì các bảng revenue_rollup_* khi dữ liệu doanh thu thay đổi và đọc chúng cho /api/financial/revenue/*.
+ * Mỗi đơn lưu phần đóng góp hiện tại (revenue_rollup_contributions); khi đơn thay đổi, phần đóng góp được tính lại
+ * từ dữ liệu gốc và chỉ phần chênh lệch được cộng vào bảng giờ / ngày / tháng, nên xử lý lại nhiều lần vẫn đúng.
+ * Báo cáo chỉ đọc bảng tổng hợp sau khi backfill dữ liệu cũ xong; trước đó vẫn dùng truy vấn trực tiếp.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RevenueRollupService {
+
+    static final String PHASE_HOT = "HOT";
+    static final String PHASE_ARCHIVE = "ARCHIVE";
+    static final String PHASE_DONE = "DONE";
+
+    RevenueRollupRepository revenueRollupRepository;
+    RevenueRollupProperties revenueRollupProperties;
+    TransactionTemplate transactionTemplate;
+    DashboardCacheService dashboardCacheService;
+    AtomicReference<ReadyState> readyState = new AtomicReference<>();
+
+    // ==================== Ghi ====================
+
+    // Được OutboxDispatcher gọi (REVENUE_ROLLUP); mỗi lô một transaction
+    public void refreshOrders(Collection<String> orderIds) {
+        if (!revenueRollupProperties.isEnabled() || orderIds == null || orderIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        int batchSize = Math.max(revenueRollupProperties.getBatchSize(), 1);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            transactionTemplate.executeWithoutResult(status -> refreshBatch(false, batch));
+        }
+    }
+
+    /**
+     * Tính lại phần đóng góp của một lô đơn. Đơn ở bảng nóng bị khóa FOR UPDATE để hai lượt cùng một đơn
+     * chạy tuần tự; đơn không còn ở bảng nóng (đã lưu trữ) giữ nguyên phần đóng góp cũ.
+     */
+    private void refreshBatch(boolean archived, List<String> orderIds) {
+        List<String> ids = archived ? orderIds : revenueRollupRepository.lockOrders(orderIds);
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Map<ContributionKey, Totals> desired = new LinkedHashMap<>();
+        for (Contribution row : revenueRollupRepository.computeContributions(archived, ids)) {
+            desired.computeIfAbsent(new ContributionKey(row.getOrderId(), row.getBucketStart(), row.getPaymentMethod()),
+                    key -> new Totals()).add(row, 1);
+        }
+
+        Map<BucketKey, Totals> hourly = new HashMap<>();
+        Map<BucketKey, Totals> daily = new HashMap<>();
+        Map<BucketKey, Totals> monthly = new HashMap<>();
+        List<Contribution> rows = new ArrayList<>(desired.size());
+        desired.forEach((key, totals) -> {
+            Contribution row = totals.toContribution(key.getOrderId(), key.getBucketStart(), key.getPaymentMethod());
+            accumulate(hourly, daily, monthly, row, 1);
+            rows.add(row);
+        });
+        for (Contribution stored : revenueRollupRepository.findContributions(ids)) {
+            accumulate(hourly, daily, monthly, stored, -1);
+        }
+
+        List<Contribution> dailyDeltas = toDeltas(daily);
+        revenueRollupRepository.applyDeltas(RevenueRollupRepository.HOURLY, toDeltas(hourly));
+        revenueRollupRepository.applyDeltas(RevenueRollupRepository.DAILY, dailyDeltas);
+        revenueRollupRepository.applyDeltas(RevenueRollupRepository.MONTHLY, toDeltas(monthly));
+        revenueRollupRepository.replaceContributions(ids, rows);
+
+        // Cache dashboard có thể đã đọc bảng tổng hợp trước khi lượt cập nhật này chạy
+        dashboardCacheService.invalidateDays(dailyDeltas.stream()
+                .map(delta -> delta.getBucketStart().toLocalDate())
+                .distinct()
+                .toList());
+    }
+
+    private static void accumulate(
+            Map<BucketKey, Totals> hourly,
+            Map<BucketKey, Totals> daily,
+            Map<BucketKey, Totals> monthly,
+            Contribution row,
+            int sign) {
+        LocalDateTime hour = row.getBucketStart();
+        LocalDateTime day = hour.toLocalDate().atStartOfDay();
+        LocalDateTime month = hour.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        hourly.computeIfAbsent(new BucketKey(hour, row.getPaymentMethod()), key -> new Totals()).add(row, sign);
+        daily.computeIfAbsent(new BucketKey(day, row.getPaymentMethod()), key -> new Totals()).add(row, sign);
+        monthly.computeIfAbsent(new BucketKey(month, row.getPaymentMethod()), key -> new Totals()).add(row, sign);
+    }
+
+    private static List<Contribution> toDeltas(Map<BucketKey, Totals> buckets) {
+        List<Contribution> deltas = new ArrayList<>();
+        buckets.forEach((key, totals) -> {
+            Contribution delta = totals.toContribution(null, key.getBucketStart(), key.getPaymentMethod());
+            if (!delta.isZero()) {
+                deltas.add(delta);
+            }
+        });
+        return deltas;
+    }
+
+    // ==================== Backfill ====================
+
+    /**
+     * Nạp dữ liệu cũ theo khóa chính: bảng nóng trước, rồi kho lưu trữ; tiến độ lưu ở revenue_rollup_state
+     * nên job có thể dừng / khởi động lại bất kỳ lúc nào. Ghi mới vẫn được cập nhật song song trong lúc backfill.
+     */
+    @Scheduled(fixedDelayString = "${app.revenue-rollup.backfill-interval-ms:60000}")
+    public void backfill() {
+        if (!revenueRollupProperties.isEnabled()) {
+            return;
+        }
+        try {
+            BackfillState state = revenueRollupRepository.findState();
+            String phase = state != null ? state.getPhase() : PHASE_HOT;
+            String cursor = state != null && state.getCursorId() != null ? state.getCursorId() : "";
+            if (PHASE_DONE.equals(phase)) {
+                return;
+            }
+
+            int batchSize = Math.max(revenueRollupProperties.getBatchSize(), 1);
+            int processed = 0;
+            for (int batch = 0; batch < Math.max(revenueRollupProperties.getBackfillBatchesPerRun(), 1); batch++) {
+                boolean archived = PHASE_ARCHIVE.equals(phase);
+                List<String> ids = findBackfillIds(archived, cursor, batchSize);
+                if (ids.isEmpty()) {
+                    phase = archived ? PHASE_DONE : PHASE_ARCHIVE;
+                    cursor = "";
+                    revenueRollupRepository.saveState(
+                            phase, cursor, PHASE_DONE.equals(phase) ? LocalDateTime.now() : null);
+                    if (PHASE_DONE.equals(phase)) {
+                        readyState.set(null);
+                        log.info("Revenue rollup backfill finished");
+                        break;
+                    }
+                    continue;
+                }
+                transactionTemplate.executeWithoutResult(status -> refreshBatch(archived, ids));
+                cursor = ids.get(ids.size() - 1);
+                revenueRollupRepository.saveState(phase, cursor, null);
+                processed += ids.size();
+            }
+            if (processed > 0) {
+                log.info("Revenue rollup backfill processed {} orders ({} phase, cursor {})", processed, phase, cursor);
+            }
+        } catch (Exception e) {
+            log.error("Revenue rollup backfill failed", e);
+        }
+    }
+
+    private List<String> findBackfillIds(boolean archived, String cursor, int limit) {
+        if (!archived) {
+            return revenueRollupRepository.findOrderIdsAfter(false, cursor, limit);
+        }
+        try {
+            return revenueRollupRepository.findOrderIdsAfter(true, cursor, limit);
+        } catch (DataAccessException e) {
+            // Chưa chạy migration lưu trữ => không có gì để nạp
+            log.info("Order archive tables not available, skipping archive backfill: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    // Xóa toàn bộ và backfill lại từ đầu (ví dụ sau khi sửa dữ liệu gốc bằng tay)
+    public void rebuild() {
+        transactionTemplate.executeWithoutResult(status -> {
+            revenueRollupRepository.clearAll();
+            revenueRollupRepository.saveState(PHASE_HOT, "", null);
+        });
+        readyState.set(null);
+        log.info("Revenue rollup tables cleared, backfill restarted");
+    }
+
+    // Bảng tổng hợp đã đủ dữ liệu để thay cho truy vấn trực tiếp
+    public boolean isReady() {
+        if (!revenueRollupProperties.isEnabled()) {
+            return false;
+        }
+        ReadyState current = readyState.get();
+        long now = System.currentTimeMillis();
+        if (current != null && now - current.loadedAt < revenueRollupProperties.getStateCacheSeconds() * 1000) {
+            return current.ready;
+        }
+        boolean ready;
+        try {
+            BackfillState state = revenueRollupRepository.findState();
+            ready = state != null && state.getBackfilledAt() != null;
+        } catch (DataAccessException e) {
+            log.warn("Revenue rollup tables not available: {}", e.getMessage());
+            ready = false;
+        }
+        readyState.set(new ReadyState(ready, now));
+        return ready;
+    }
+
+    // ==================== Đọc ====================
+
+    public Map<LocalDateTime, Double> revenueByHour(LocalDateTime start, LocalDateTime end) {
+        Map<LocalDateTime, Double> result = new TreeMap<>();
+        for (Object[] row : revenueRollupRepository.revenueByHour(start, end)) {
+            result.put((LocalDateTime) row[0], (Double) row[1]);
+        }
+        return result;
+    }
+
+    public Map<LocalDate, Double> revenueByDay(LocalDate start, LocalDate end) {
+        Map<LocalDate, Double> result = new TreeMap<>();
+        for (Object[] row : revenueRollupRepository.revenueByBucket(RevenueRollupRepository.DAILY, start, end)) {
+            result.merge((LocalDate) row[0], (Double) row[1], Double::sum);
+        }
+        return result;
+    }
+
+    // Key là ngày 1 của tháng; tháng đầu / cuối không trọn vẹn được cộng từ bảng ngày
+    public Map<LocalDate, Double> revenueByMonth(LocalDate start, LocalDate end) {
+        Map<LocalDate, Double> result = new TreeMap<>();
+        readRange(start, end,
+                (from, to) -> revenueRollupRepository.revenueByBucket(RevenueRollupRepository.MONTHLY, from, to),
+                (from, to) -> revenueRollupRepository.revenueByBucket(RevenueRollupRepository.DAILY, from, to))
+                .forEach(row -> result.merge(((LocalDate) row[0]).withDayOfMonth(1), (Double) row[1], Double::sum));
+        return result;
+    }
+
+    // Tổng theo phương thức thanh toán trong [start, end] (NO_PAYMENT_METHOD: FinancialRecord không có phương thức)
+    public Map<String, Contribution> totalsByPaymentMethod(LocalDate start, LocalDate end) {
+        Map<String, Totals> totals = new LinkedHashMap<>();
+        readRange(start, end,
+                (from, to) -> revenueRollupRepository.sumByPaymentMethod(RevenueRollupRepository.MONTHLY, from, to),
+                (from, to) -> revenueRollupRepository.sumByPaymentMethod(RevenueRollupRepository.DAILY, from, to))
+                .forEach(row -> totals.computeIfAbsent(row.getPaymentMethod(), key -> new Totals()).add(row, 1));
+        Map<String, Contribution> result = new LinkedHashMap<>();
+        totals.forEach((method, value) -> result.put(method, value.toContribution(null, null, method)));
+        return result;
+    }
+
+    /**
+     * Chia [start, end] thành các tháng trọn vẹn (đọc bảng tháng) và phần lẻ hai đầu (đọc bảng ngày),
+     * để mỗi khoảng chỉ là vài lần đọc theo khóa chính.
+     */
+    private static <T> List<T> readRange(
+            LocalDate start, LocalDate end, RangeReader<T> monthlyReader, RangeReader<T> dailyReader) {
+        List<T> rows = new ArrayList<>();
+        if (start.isAfter(end)) {
+            return rows;
+        }
+        LocalDate firstFullMonth = start.getDayOfMonth() == 1 ? start : start.withDayOfMonth(1).plusMonths(1);
+        LocalDate lastFullMonthEnd = end.getDayOfMonth() == end.lengthOfMonth() ? end : end.withDayOfMonth(1).minusDays(1);
+        if (firstFullMonth.isAfter(lastFullMonthEnd)) {
+            rows.addAll(dailyReader.read(start, end));
+            return rows;
+        }
+        rows.addAll(monthlyReader.read(firstFullMonth, lastFullMonthEnd.withDayOfMonth(1)));
+        if (start.isBefore(firstFullMonth)) {
+            rows.addAll(dailyReader.read(start, firstFullMonth.minusDays(1)));
+        }
+        if (end.isAfter(lastFullMonthEnd)) {
+            rows.addAll(dailyReader.read(lastFullMonthEnd.plusDays(1), end));
+        }
+        return rows;
+    }
+
+    @FunctionalInterface
+    private interface RangeReader<T> {
+        List<T> read(LocalDate from, LocalDate to);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class ContributionKey {
+        private final String orderId;
+        private final LocalDateTime bucketStart;
+        private final String paymentMethod;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class BucketKey {
+        private final LocalDateTime bucketStart;
+        private final String paymentMethod;
+    }
+
+    private static class Totals {
+        private double revenue;
+        private long orderCount;
+        private double salesIncome;
+        private double costOfGoods;
+
+        private void add(Contribution row, int sign) {
+            revenue += sign * row.getRevenue();
+            orderCount += sign * row.getOrderCount();
+            salesIncome += sign * row.getSalesIncome();
+            costOfGoods += sign * row.getCostOfGoods();
+        }
+
+        private Contribution toContribution(String orderId, LocalDateTime bucketStart, String paymentMethod) {
+            return new Contribution(orderId, bucketStart, paymentMethod, revenue, orderCount, salesIncome, costOfGoods);
+        }
+    }
+
+    private static class ReadyState {
+        private final boolean ready;
+        private final long loadedAt;
+
+        private ReadyState(boolean ready, long loadedAt) {
+            this.ready = ready;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.hanoi_metro.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.hanoi_metro.backend.configuration.GhnProperties;
+import com.hanoi_metro.backend.dto.request.GhnCreateOrderRequest;
+import com.hanoi_metro.backend.dto.request.ShipmentDispatchRequest;
+import com.hanoi_metro.backend.dto.response.GhnShipmentDataResponse;
+import com.hanoi_metro.backend.dto.response.ShipmentDispatchResponse;
+import com.hanoi_metro.backend.dto.response.ShipmentDispatchResult;
+import com.hanoi_metro.backend.entity.Order;
+import com.hanoi_metro.backend.entity.Shipment;
+import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.OutboxEventType;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+import com.hanoi_metro.backend.repository.OrderRepository;
+import com.hanoi_metro.backend.repository.ShipmentRepository;
+import com.hanoi_metro.backend.util.RateLimiter;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tạo vận đơn GHN hàng loạt cho lượt giao hằng ngày.
+ * Cả lô đơn được nạp bằng một truy vấn và dựng request GHN trên luồng gọi; lời gọi tạo đơn GHN chạy song song
+ * có giới hạn tốc độ (ghn.dispatch.*), Shipment được ghi theo từng lô trong transaction ngắn.
+ * Lời gọi tạo đơn không idempotent nên không bị ngắt giữa chừng: hết maxRunMinutes thì chỉ dừng gửi đơn mới.
+ * Trước khi gọi GHN mỗi đơn được giữ bằng UPDATE có điều kiện (orders.dispatch_claim) để hai lượt chồng nhau
+ * không cùng tạo vận đơn; đơn gửi GHN thất bại được nhả ngay, đơn chưa rõ kết quả giữ đến khi quá hạn.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ShipmentDispatchService {
+
+    OrderRepository orderRepository;
+    ShipmentRepository shipmentRepository;
+    ShipmentService shipmentService;
+    GhnService ghnService;
+    OutboxService outboxService;
+    GhnProperties ghnProperties;
+    TransactionTemplate transactionTemplate;
+
+    @PreAuthorize("hasAnyRole('STAFF','ADMIN')")
+    public ShipmentDispatchResponse dispatch(ShipmentDispatchRequest request) {
+        GhnProperties.Dispatch settings = ghnProperties.getDispatch();
+        List<String> ids = normalizeOrderIds(request, settings.getMaxOrders());
+        long startedAt = System.nanoTime();
+
+        Map<String, Order> orders = new HashMap<>();
+        orderRepository.findForDispatchByIdIn(ids).forEach(order -> orders.put(order.getId(), order));
+
+        // Ca lấy hàng chọn một lần cho cả lô
+        List<Integer> pickShiftIds = shipmentService.resolvePickShiftIds(request.getPickShiftIds());
+
+        Map<String, ShipmentDispatchResult> results = new ConcurrentHashMap<>();
+        List<PendingShipment> pending = new ArrayList<>();
+        for (String id : ids) {
+            Order order = orders.get(id);
+            String rejection = rejectionReason(order);
+            if (rejection != null) {
+                results.put(id, failure(id, order, null, rejection));
+                continue;
+            }
+            try {
+                pending.add(new PendingShipment(order, shipmentService.buildGhnCreateOrderRequest(order, pickShiftIds)));
+            } catch (RuntimeException e) {
+                results.put(id, failure(id, order, null, e.getMessage()));
+            }
+        }
+
+        String claim = UUID.randomUUID().toString();
+        List<PendingShipment> claimed = claim(pending, claim, settings, results);
+        // Đơn có thể GHN đã tạo vận đơn (chưa nhận phản hồi, hoặc lưu Shipment lỗi): không nhả để tránh tạo trùng
+        Set<String> inDoubt = ConcurrentHashMap.newKeySet();
+        try {
+            List<CreatedShipment> created = submitToGhn(claimed, settings, results, inDoubt);
+            persist(created, settings.getPersistBatchSize(), results, inDoubt);
+        } finally {
+            List<String> release = claimed.stream()
+                    .map(shipment -> shipment.order.getId())
+                    .filter(id -> !inDoubt.contains(id))
+                    .toList();
+            if (!release.isEmpty()) {
+                orderRepository.releaseDispatchClaim(release, claim);
+            }
+        }
+
+        List<ShipmentDispatchResult> ordered = ids.stream().map(results::get).toList();
+        int succeeded = (int) ordered.stream().filter(ShipmentDispatchResult::isSuccess).count();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        log.info("GHN dispatch: {} orders in {} ms, {} succeeded, {} failed",
+                ids.size(), elapsedMs, succeeded, ids.size() - succeeded);
+        return ShipmentDispatchResponse.builder()
+                .requested(ids.size())
+                .succeeded(succeeded)
+                .failed(ids.size() - succeeded)
+                .elapsedMs(elapsedMs)
+                .results(ordered)
+                .build();
+    }
+
+    // Giữ cả lô bằng một UPDATE; đơn không giữ được (lượt khác đang tạo, đã có vận đơn, đổi trạng thái) bị bỏ qua
+    private List<PendingShipment> claim(
+            List<PendingShipment> pending,
+            String claim,
+            GhnProperties.Dispatch settings,
+            Map<String, ShipmentDispatchResult> results) {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        List<String> ids = pending.stream().map(shipment -> shipment.order.getId()).toList();
+        LocalDateTime now = LocalDateTime.now();
+        // Lượt cũ chờ tối đa maxRunMinutes + 1 phút: quá khoảng đó mà chưa nhả thì coi như lượt đã chết
+        orderRepository.claimForDispatch(ids, claim, now, now.minusMinutes(settings.getMaxRunMinutes() + 2));
+        Set<String> claimedIds = new HashSet<>(orderRepository.findIdsByDispatchClaim(ids, claim));
+
+        List<PendingShipment> claimed = new ArrayList<>();
+        for (PendingShipment shipment : pending) {
+            Order order = shipment.order;
+            if (claimedIds.contains(order.getId())) {
+                claimed.add(shipment);
+            } else {
+                results.put(order.getId(), failure(order.getId(), order, null,
+                        "Đơn hàng đang được tạo vận đơn ở lượt khác hoặc không còn chờ tạo vận đơn"));
+            }
+        }
+        return claimed;
+    }
+
+    private List<CreatedShipment> submitToGhn(
+            List<PendingShipment> pending,
+            GhnProperties.Dispatch settings,
+            Map<String, ShipmentDispatchResult> results,
+            Set<String> inDoubt) {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        // Java 17 chưa có virtual thread: pool cố định có giới hạn, cộng thêm giới hạn tốc độ gọi GHN
+        int concurrency = Math.max(1, Math.min(settings.getConcurrency(), pending.size()));
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ghn-dispatch-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        RateLimiter rateLimiter = new RateLimiter(settings.getPermitsPerSecond(), settings.getBurst());
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(settings.getMaxRunMinutes());
+        Queue<CreatedShipment> created = new ConcurrentLinkedQueue<>();
+
+        try {
+            for (PendingShipment shipment : pending) {
+                executor.execute(() -> {
+                    Order order = shipment.order;
+                    try {
+                        rateLimiter.acquire();
+                        if (System.nanoTime() - deadline > 0) {
+                            results.put(order.getId(), failure(order.getId(), order, null,
+                                    "Hết thời gian xử lý lô, chưa gửi GHN; vui lòng tạo lại"));
+                            return;
+                        }
+                        GhnShipmentDataResponse data = ghnService.createOrder(shipment.request);
+                        if (data == null || data.getOrder_code() == null) {
+                            results.put(order.getId(), failure(order.getId(), order, null,
+                                    "GHN không trả về mã vận đơn"));
+                            return;
+                        }
+                        created.add(new CreatedShipment(order, data));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        results.put(order.getId(), failure(order.getId(), order, null, "Đã dừng, chưa gửi GHN"));
+                    } catch (Exception e) {
+                        log.warn("GHN create failed for order {}: {}", order.getId(), e.getMessage());
+                        results.put(order.getId(), failure(order.getId(), order, null, e.getMessage()));
+                    }
+                });
+            }
+            executor.shutdown();
+            // Không ngắt lời gọi đang chạy: GHN có thể đã tạo đơn. Chờ thêm một phút cho lời gọi cuối.
+            if (!executor.awaitTermination(settings.getMaxRunMinutes() + 1, TimeUnit.MINUTES)) {
+                log.warn("GHN dispatch still has in-flight calls after {} minutes", settings.getMaxRunMinutes() + 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Đơn chưa có kết quả (lời gọi chưa xong khi hết giờ chờ): trạng thái GHN chưa rõ
+        Set<String> createdIds = new HashSet<>();
+        created.forEach(item -> createdIds.add(item.order.getId()));
+        for (PendingShipment shipment : pending) {
+            String id = shipment.order.getId();
+            if (!results.containsKey(id) && !createdIds.contains(id)) {
+                inDoubt.add(id);
+                results.put(id, failure(id, shipment.order, null,
+                        "Chưa nhận được phản hồi GHN; kiểm tra trên GHN trước khi tạo lại"));
+            }
+        }
+        return new ArrayList<>(created);
+    }
+
+    private void persist(
+            List<CreatedShipment> created,
+            int batchSize,
+            Map<String, ShipmentDispatchResult> results,
+            Set<String> inDoubt) {
+        int size = Math.max(1, batchSize);
+        for (int from = 0; from < created.size(); from += size) {
+            List<CreatedShipment> batch = created.subList(from, Math.min(from + size, created.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> saveBatch(batch));
+                batch.forEach(item -> results.put(item.order.getId(), success(item)));
+            } catch (RuntimeException e) {
+                // Một dòng lỗi (ví dụ đơn vừa được tạo vận đơn riêng) không kéo theo cả lô: ghi lại từng đơn
+                log.warn("Persisting dispatch batch failed ({}), retrying one by one", e.getMessage());
+                for (CreatedShipment item : batch) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> saveBatch(List.of(item)));
+                        results.put(item.order.getId(), success(item));
+                    } catch (RuntimeException single) {
+                        log.error("GHN order {} created for order {} but shipment was not saved",
+                                item.data.getOrder_code(), item.order.getId(), single);
+                        inDoubt.add(item.order.getId());
+                        results.put(item.order.getId(), failure(item.order.getId(), item.order, item.data,
+                                "Đã tạo vận đơn GHN nhưng lưu thất bại, cần đối soát: " + single.getMessage()));
+                    }
+                }
+            }
+        }
+    }
+
+    private void saveBatch(List<CreatedShipment> batch) {
+        List<Shipment> shipments = batch.stream()
+                .map(item -> shipmentService.buildShipmentFromGhnData(item.order, item.data))
+                .toList();
+        shipmentRepository.saveAll(shipments);
+        // Mã vận đơn GHN vừa có => cập nhật index tra cứu
+        batch.forEach(item -> outboxService.enqueue(OutboxEventType.ORDER_SEARCH_INDEX, item.order.getId()));
+    }
+
+    private static List<String> normalizeOrderIds(ShipmentDispatchRequest request, int maxOrders) {
+        Set<String> orderIds = new LinkedHashSet<>();
+        if (request != null && request.getOrderIds() != null) {
+            request.getOrderIds().stream()
+                    .filter(id -> id != null && !id.isBlank())
+                    .map(String::trim)
+                    .forEach(orderIds::add);
+        }
+        if (orderIds.isEmpty()) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Danh sách đơn hàng trống");
+        }
+        if (orderIds.size() > maxOrders) {
+            throw new AppException(ErrorCode.BAD_REQUEST, "Mỗi lần chỉ tạo tối đa " + maxOrders + " vận đơn");
+        }
+        return new ArrayList<>(orderIds);
+    }
+
+    private static String rejectionReason(Order order) {
+        if (order == null) {
+            return "Đơn hàng không tồn tại";
+        }
+        if (order.getStatus() != OrderStatus.CONFIRMED) {
+            return "Chỉ tạo vận đơn cho đơn đã xác nhận (hiện tại: " + order.getStatus() + ")";
+        }
+        if (order.getAddress() == null) {
+            return "Đơn hàng không có địa chỉ giao hàng";
+        }
+        if (order.getShipment() != null) {
+            return "Đơn hàng đã có vận đơn GHN";
+        }
+        return null;
+    }
+
+    private static ShipmentDispatchResult success(CreatedShipment item) {
+        return ShipmentDispatchResult.builder()
+                .orderId(item.order.getId())
+                .code(item.order.getCode())
+                .success(true)
+                .ghnOrderCode(item.data.getOrder_code())
+                .totalFee(item.data.getTotal_fee())
+                .build();
+    }
+
+    private static ShipmentDispatchResult failure(
+            String id, Order order, GhnShipmentDataResponse data, String message) {
+        return ShipmentDispatchResult.builder()
+                .orderId(id)
+                .code(order != null ? order.getCode() : null)
+                .success(false)
+                .ghnOrderCode(data != null ? data.getOrder_code() : null)
+                .message(message)
+                .build();
+    }
+
+    private static final class PendingShipment {
+        private final Order order;
+        private final GhnCreateOrderRequest request;
+
+        private PendingShipment(Order order, GhnCreateOrderRequest request) {
+            this.order = order;
+            this.request = request;
+        }
+    }
+
+    private static final class CreatedShipment {
+        private final Order order;
+        private final GhnShipmentDataResponse data;
+
+        private CreatedShipment(Order order, GhnShipmentDataResponse data) {
+            this.order = order;
+            this.data = data;
+        }
+    }
+}
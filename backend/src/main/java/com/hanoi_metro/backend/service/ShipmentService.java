@@ -4,6 +4,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
@@ -14,6 +15,7 @@ import com.hanoi_metro.backend.dto.request.GhnCalculateFeeRequest;
 import com.hanoi_metro.backend.dto.request.GhnCreateOrderRequest;
 import com.hanoi_metro.backend.dto.request.GhnLeadtimeRequest;
 import com.hanoi_metro.backend.dto.request.GhnOrderItemRequest;
+import com.hanoi_metro.backend.dto.response.CheckoutQuoteResponse;
 import com.hanoi_metro.backend.dto.response.GhnDistrictResponse;
 import com.hanoi_metro.backend.dto.response.GhnFeeResponse;
 import com.hanoi_metro.backend.dto.response.GhnLeadtimeResponse;
@@ -22,6 +24,7 @@ import com.hanoi_metro.backend.dto.response.GhnProvinceResponse;
 import com.hanoi_metro.backend.dto.response.GhnShipmentDataResponse;
 import com.hanoi_metro.backend.dto.response.GhnOrderDetailResponse;
 import com.hanoi_metro.backend.dto.response.GhnWardResponse;
+import com.hanoi_metro.backend.dto.response.QuoteCacheStats;
 import com.hanoi_metro.backend.dto.response.ShipmentResponse;
 import com.hanoi_metro.backend.entity.Address;
 import com.hanoi_metro.backend.entity.Order;
@@ -31,19 +34,23 @@ import com.hanoi_metro.backend.entity.Shipment;
 import com.hanoi_metro.backend.enums.PaymentMethod;
 import com.hanoi_metro.backend.enums.PaymentStatus;
 import com.hanoi_metro.backend.enums.OrderStatus;
+import com.hanoi_metro.backend.enums.OutboxEventType;
 import com.hanoi_metro.backend.enums.ShipmentProvider;
 import com.hanoi_metro.backend.enums.ShipmentStatus;
 import com.hanoi_metro.backend.exception.AppException;
 import com.hanoi_metro.backend.exception.ErrorCode;
 import com.hanoi_metro.backend.repository.OrderRepository;
+import com.hanoi_metro.backend.repository.OrderStatusView;
 import com.hanoi_metro.backend.repository.ShipmentRepository;
 import com.hanoi_metro.backend.mapper.ShipmentMapper;
 import com.hanoi_metro.backend.mapper.GhnMapper;
 
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
 
 @Slf4j
 @Service
@@ -53,37 +60,41 @@ public class ShipmentService {
     ShipmentRepository shipmentRepository;
     OrderRepository orderRepository;
     GhnService ghnService;
+    GhnMasterDataService ghnMasterDataService;
+    GhnQuoteService ghnQuoteService;
     ShipmentMapper shipmentMapper;
     GhnMapper ghnMapper;
-    FinancialService financialService;
+    OutboxService outboxService;
+    OrderUpdateRetrier orderUpdateRetrier;
+    DashboardCacheService dashboardCacheService;
 
     // ==================== GHN Master Data APIs ====================
 
     // Lấy danh sách tỉnh/thành phố từ GHN.
     public List<GhnProvinceResponse> getProvinces() {
-        return ghnService.getProvinces();
+        return ghnMasterDataService.getProvinces();
     }
 
     // Lấy danh sách quận/huyện theo tỉnh/thành phố.
     public List<GhnDistrictResponse> getDistricts(Integer provinceId) {
-        return ghnService.getDistricts(provinceId);
+        return ghnMasterDataService.getDistricts(provinceId);
     }
 
     // Lấy danh sách phường/xã theo quận/huyện.
     public List<GhnWardResponse> getWards(Integer districtId) {
-        return ghnService.getWards(districtId);
+        return ghnMasterDataService.getWards(districtId);
     }
 
     // Lấy danh sách ca lấy hàng từ GHN.
     public List<GhnPickShiftResponse> getPickShifts() {
-        return ghnService.getPickShifts();
+        return ghnMasterDataService.getPickShifts();
     }
 
     // ==================== Shipping Fee Calculation ====================
 
     // Tính phí vận chuyển từ request trực tiếp.
     public GhnFeeResponse calculateShippingFee(GhnCalculateFeeRequest request) {
-        return ghnService.calculateShippingFee(request);
+        return ghnQuoteService.quoteFee(request);
     }
 
     // Tính phí vận chuyển cho một đơn hàng.
@@ -91,7 +102,7 @@ public class ShipmentService {
         Order order = validateOrderWithAddress(orderId);
         GhnCreateOrderRequest ghnRequest = buildGhnCreateOrderRequest(order, null);
         GhnCalculateFeeRequest feeRequest = ghnMapper.toCalculateFeeRequest(ghnRequest);
-        return ghnService.calculateShippingFee(feeRequest);
+        return ghnQuoteService.quoteFee(feeRequest);
     }
 
     /**
@@ -116,7 +127,7 @@ public class ShipmentService {
             feeRequest.setToDistrictId(GhnConstants.DEFAULT_FROM_DISTRICT_ID);
             feeRequest.setToWardCode(GhnConstants.DEFAULT_FROM_WARD_CODE);
 
-            GhnFeeResponse response = ghnService.calculateShippingFee(feeRequest);
+            GhnFeeResponse response = ghnQuoteService.quoteFee(feeRequest);
             return response != null && response.getTotal() != null ? response.getTotal() : 0D;
         } catch (Exception ex) {
             log.warn("Failed to estimate return shipping fee for order {}: {}", order.getId(), ex.getMessage());
@@ -124,16 +135,15 @@ public class ShipmentService {
         }
     }
 
+    public List<QuoteCacheStats> getQuoteCacheStats() {
+        return ghnQuoteService.stats();
+    }
+
     // ==================== Leadtime Calculation ====================
 
     // Tính thời gian giao hàng dự kiến từ request trực tiếp.
     public GhnLeadtimeResponse getLeadtime(GhnLeadtimeRequest request) {
-        return ghnService.getLeadtime(
-                request.getFromDistrictId(),
-                request.getFromWardCode(),
-                request.getToDistrictId(),
-                request.getToWardCode(),
-                request.getServiceTypeId());
+        return ghnQuoteService.quoteLeadtime(request);
     }
 
     // Tính thời gian giao hàng dự kiến cho một đơn hàng.
@@ -144,6 +154,43 @@ public class ShipmentService {
         return getLeadtime(leadtimeRequest);
     }
 
+    // ==================== Checkout Quote ====================
+
+    /**
+     * Phí, thời gian giao và ca lấy hàng cho màn checkout. Ba lời gọi GHN độc lập chạy song song
+     * nên độ trễ bằng lời gọi chậm nhất thay vì tổng ba lời gọi.
+     * Chỉ lỗi phí làm hỏng cả báo giá; thời gian giao / ca lấy hàng lỗi thì để trống.
+     */
+    public Mono<CheckoutQuoteResponse> getCheckoutQuote(GhnCalculateFeeRequest request) {
+        if (request.getFromDistrictId() == null || request.getFromWardCode() == null) {
+            request.setFromDistrictId(GhnConstants.DEFAULT_FROM_DISTRICT_ID);
+            request.setFromWardCode(GhnConstants.DEFAULT_FROM_WARD_CODE);
+        }
+        GhnLeadtimeRequest leadtimeRequest = ghnMapper.toLeadtimeRequest(request);
+
+        Mono<GhnFeeResponse> fee = ghnQuoteService.quoteFeeAsync(request)
+                .defaultIfEmpty(GhnFeeResponse.builder().feeToBeConfirmed(true).build());
+        Mono<Optional<GhnLeadtimeResponse>> leadtime = ghnQuoteService.quoteLeadtimeAsync(leadtimeRequest)
+                .map(Optional::of)
+                .onErrorResume(e -> {
+                    log.warn("Checkout quote without leadtime: {}", e.getMessage());
+                    return Mono.just(Optional.empty());
+                })
+                .defaultIfEmpty(Optional.empty());
+        Mono<List<GhnPickShiftResponse>> pickShifts = ghnMasterDataService.getPickShiftsAsync()
+                .onErrorResume(e -> {
+                    log.warn("Checkout quote without pick shifts: {}", e.getMessage());
+                    return Mono.just(List.of());
+                });
+
+        return Mono.zip(fee, leadtime, pickShifts)
+                .map(quote -> CheckoutQuoteResponse.builder()
+                        .fee(quote.getT1())
+                        .leadtime(quote.getT2().orElse(null))
+                        .pickShifts(quote.getT3())
+                        .build());
+    }
+
     // ==================== Order Preview & Creation ====================
 
     // Xem trước thông tin đơn hàng trước khi tạo (preview).
@@ -173,7 +220,9 @@ public class ShipmentService {
 
         Shipment shipment = buildShipmentFromGhnData(order, ghnData);
         Shipment saved = shipmentRepository.save(shipment);
-        
+        // Mã vận đơn GHN vừa có => cập nhật index tra cứu
+        outboxService.enqueue(OutboxEventType.ORDER_SEARCH_INDEX, order.getId());
+
         return shipmentMapper.toResponse(saved);
     }
 
@@ -196,7 +245,7 @@ public class ShipmentService {
     }
 
     // Đồng bộ trạng thái đơn hàng từ GHN API.
-    @Transactional
+    // Gọi GHN ngoài transaction; chỉ bước ghi trạng thái chạy trong transaction ngắn, tự thử lại khi xung đột version.
     public void syncOrderStatusFromGhn(String orderId) {
         log.info("Bắt đầu sync status từ GHN cho order: {}", orderId);
         try {
@@ -206,73 +255,103 @@ public class ShipmentService {
                 return;
             }
 
-            // Chỉ đồng bộ nếu order chưa ở trạng thái cuối cùng (DELIVERED, CANCELLED, etc.)
-            Order order = shipment.getOrder();
-            if (order == null) {
+            OrderStatusView view = orderRepository.findStatusViewsByIdIn(List.of(orderId)).stream()
+                    .findFirst()
+                    .orElse(null);
+            if (view == null) {
                 return;
             }
 
-            OrderStatus currentStatus = order.getStatus();
-            log.info("Order {} hiện tại có status: {}", orderId, currentStatus);
-            // Không sync GHN nếu đơn đang trong luồng hoàn tiền/trả hàng
-            // (RETURN_REQUESTED, RETURN_CS_CONFIRMED, RETURN_STAFF_CONFIRMED, REFUNDED, RETURN_REJECTED)
-            // để tránh override status từ GHN (ví dụ: GHN có thể trả về DELIVERED nhưng đơn đang ở RETURN_CS_CONFIRMED)
-            if (currentStatus == OrderStatus.CANCELLED ||
-                currentStatus == OrderStatus.RETURN_REQUESTED ||
-                currentStatus == OrderStatus.RETURN_CS_CONFIRMED ||
-                currentStatus == OrderStatus.RETURN_STAFF_CONFIRMED ||
-                currentStatus == OrderStatus.REFUNDED ||
-                currentStatus == OrderStatus.RETURN_REJECTED) {
-                log.info("Bỏ qua sync cho order {} vì đang ở trạng thái cuối cùng: {}", orderId, currentStatus);
-                return;
-            }
+            log.info("Order {} hiện tại có status: {}", orderId, view.getStatus());
+            syncFromGhn(orderId, shipment.getOrderCode(), view.getStatus());
+        } catch (Exception e) {
+            log.error("Lỗi khi đồng bộ trạng thái từ GHN cho order: {}", orderId, e);
+        }
+    }
 
-            // Gọi GHN API để lấy trạng thái mới nhất
-            GhnOrderDetailResponse ghnDetail;
-            try {
-                ghnDetail = ghnService.getOrderDetail(shipment.getOrderCode());
-            } catch (Exception e) {
-                // Nếu GHN API lỗi, chỉ log warning và return (không throw exception để không ảnh hưởng đến các thao tác khác)
-                log.warn("Không thể lấy trạng thái từ GHN cho order: {} - Error: {}", orderId, e.getMessage());
-                return;
-            }
-            
-            if (ghnDetail == null || ghnDetail.getStatus() == null) {
-                log.warn("Không thể lấy trạng thái từ GHN cho order: {} - Response null hoặc không có status", orderId);
-                return;
-            }
+    /**
+     * Lấy trạng thái GHN của một vận đơn và ghi vào đơn nếu khác. currentStatus chỉ dùng để bỏ qua sớm;
+     * bước ghi đọc lại đơn trong transaction riêng. Không ném lỗi GHN ra ngoài (trả về GhnSyncResult.failed()).
+     */
+    public GhnSyncResult syncFromGhn(String orderId, String orderCode, OrderStatus currentStatus) {
+        // GHN chỉ đẩy đơn tiến tới DELIVERED; đơn đã giao, đã hủy hoặc đang trong luồng hoàn tiền/trả hàng
+        // thì bỏ qua để tránh override status (ví dụ: GHN trả về DELIVERED nhưng đơn đang ở RETURN_CS_CONFIRMED)
+        if (!OrderStateMachine.canTransition(currentStatus, OrderStatus.DELIVERED)) {
+            log.info("Bỏ qua sync cho order {} vì đang ở trạng thái cuối cùng: {}", orderId, currentStatus);
+            return new GhnSyncResult(null, false);
+        }
 
-            String ghnStatus = ghnDetail.getStatus().toLowerCase();
-            OrderStatus newStatus = mapGhnStatusToOrderStatus(ghnStatus);
-            
-            // Log để debug
-            log.info("Sync status từ GHN cho order {}: GHN status = '{}', mapped = {}, current = {}", 
-                    orderId, ghnStatus, newStatus, currentStatus);
-            
-            if (newStatus != null && newStatus != currentStatus) {
-                log.info("Cập nhật trạng thái đơn hàng {} từ {} sang {}", orderId, currentStatus, newStatus);
-                order.setStatus(newStatus);
-                orderRepository.save(order);
-                
-                // Đảm bảo doanh thu được ghi nhận cho đơn COD khi chuyển sang DELIVERED
-                // Đối với COD: xóa FinancialRecord cũ (nếu có) và ghi nhận lại với occurredAt = thời điểm DELIVERED
-                if (newStatus == OrderStatus.DELIVERED 
-                        && order.getPaymentMethod() == PaymentMethod.COD
-                        && order.getPaymentStatus() == PaymentStatus.PAID
-                        && Boolean.TRUE.equals(order.getPaid())) {
-                    try {
-                        // Reload order với items để đảm bảo có đầy đủ dữ liệu
-                        Order reloadedOrder = orderRepository.findById(order.getId()).orElse(order);
-                        // Sử dụng method trong FinancialService để đảm bảo logic nhất quán
-                        financialService.ensureCodOrderRevenueRecorded(reloadedOrder);
-                    } catch (Exception e) {
-                        log.error("Error ensuring revenue recorded for COD order {} when delivered", order.getId(), e);
-                    }
-                }
-            }
+        // Gọi GHN API để lấy trạng thái mới nhất
+        GhnOrderDetailResponse ghnDetail;
+        try {
+            ghnDetail = ghnService.getOrderDetail(orderCode);
         } catch (Exception e) {
-            log.error("Lỗi khi đồng bộ trạng thái từ GHN cho order: {}", orderId, e);
+            // Nếu GHN API lỗi, chỉ log warning và return (không throw exception để không ảnh hưởng đến các thao tác khác)
+            log.warn("Không thể lấy trạng thái từ GHN cho order: {} - Error: {}", orderId, e.getMessage());
+            return GhnSyncResult.failed();
+        }
+
+        if (ghnDetail == null || ghnDetail.getStatus() == null) {
+            log.warn("Không thể lấy trạng thái từ GHN cho order: {} - Response null hoặc không có status", orderId);
+            return GhnSyncResult.failed();
+        }
+
+        String ghnStatus = ghnDetail.getStatus().toLowerCase();
+        OrderStatus newStatus = mapGhnStatusToOrderStatus(ghnStatus);
+
+        // Log để debug
+        log.debug("Sync status từ GHN cho order {}: GHN status = '{}', mapped = {}, current = {}",
+                orderId, ghnStatus, newStatus, currentStatus);
+
+        boolean updated = false;
+        if (newStatus != null && newStatus != currentStatus) {
+            updated = Boolean.TRUE.equals(orderUpdateRetrier.execute(
+                    "syncOrderStatusFromGhn " + orderId, () -> applyGhnStatus(orderId, newStatus)));
+        }
+        return new GhnSyncResult(ghnStatus, updated);
+    }
+
+    /**
+     * Áp trạng thái từ callback GHN (OutboxDispatcher gọi). Callback đến trễ/lệch thứ tự không kéo đơn lùi lại
+     * vì applyGhnStatus chỉ ghi khi OrderStateMachine cho phép chuyển. Xung đột version hết lượt thử thì ném lỗi
+     * để outbox thử lại.
+     */
+    public boolean applyGhnCallback(String orderId, String ghnStatus) {
+        OrderStatus newStatus = mapGhnStatusToOrderStatus(ghnStatus);
+        if (newStatus == null) {
+            return false;
         }
+        return Boolean.TRUE.equals(orderUpdateRetrier.execute(
+                "applyGhnCallback " + orderId, () -> applyGhnStatus(orderId, newStatus)));
+    }
+
+    // Ghi trạng thái GHN vào đơn; đọc lại đơn ở mỗi lần thử nên luôn kiểm tra trên trạng thái mới nhất
+    private boolean applyGhnStatus(String orderId, OrderStatus newStatus) {
+        Order order = orderRepository.findById(orderId).orElse(null);
+        if (order == null || order.getStatus() == newStatus) {
+            return false;
+        }
+        OrderStatus currentStatus = order.getStatus();
+        if (!OrderStateMachine.canTransition(currentStatus, newStatus)) {
+            log.info("Bỏ qua trạng thái GHN {} cho order {}: không thể chuyển từ {}", newStatus, orderId, currentStatus);
+            return false;
+        }
+
+        log.info("Cập nhật trạng thái đơn hàng {} từ {} sang {}", orderId, currentStatus, newStatus);
+        order.setStatus(newStatus);
+        orderRepository.save(order);
+        outboxService.enqueueOnce(OutboxEventType.REVENUE_ROLLUP, order.getId());
+        dashboardCacheService.invalidate(order.getOrderDateTime());
+
+        // Đảm bảo doanh thu được ghi nhận cho đơn COD khi chuyển sang DELIVERED
+        // Ghi nhận qua outbox (cùng transaction) để lỗi ghi doanh thu không làm rollback trạng thái đơn
+        if (newStatus == OrderStatus.DELIVERED
+                && order.getPaymentMethod() == PaymentMethod.COD
+                && order.getPaymentStatus() == PaymentStatus.PAID
+                && Boolean.TRUE.equals(order.getPaid())) {
+            outboxService.enqueue(OutboxEventType.COD_DELIVERED_REVENUE, order.getId());
+        }
+        return true;
     }
 
     // Map trạng thái GHN sang OrderStatus.
@@ -308,7 +387,7 @@ public class ShipmentService {
 
     // ==================== GHN Request Building ====================
 
-    private GhnCreateOrderRequest buildGhnCreateOrderRequest(Order order, List<Integer> pickShiftIds) {
+    GhnCreateOrderRequest buildGhnCreateOrderRequest(Order order, List<Integer> pickShiftIds) {
         Address address = order.getAddress();
         validateAddress(address);
 
@@ -390,7 +469,7 @@ public class ShipmentService {
     // ==================== Pick Shift Resolution ====================
 
     // Xử lý pick shift IDs. Nếu null hoặc empty, tự động chọn ca lấy hàng phù hợp.
-    private List<Integer> resolvePickShiftIds(List<Integer> pickShiftIds) {
+    List<Integer> resolvePickShiftIds(List<Integer> pickShiftIds) {
         if (pickShiftIds != null && !pickShiftIds.isEmpty()) {
             return pickShiftIds;
         }
@@ -401,7 +480,7 @@ public class ShipmentService {
     // Tự động chọn ca lấy hàng tốt nhất dựa trên thời gian hiện tại.
     private List<Integer> selectBestPickShift() {
         try {
-            List<GhnPickShiftResponse> shifts = ghnService.getPickShifts();
+            List<GhnPickShiftResponse> shifts = ghnMasterDataService.getPickShifts();
             if (shifts == null || shifts.isEmpty()) {
                 log.warn("No pick shifts available from GHN");
                 return new ArrayList<>();
@@ -605,7 +684,7 @@ public class ShipmentService {
     // ==================== Shipment Building ====================
 
     // Build Shipment entity từ GHN response data.
-    private Shipment buildShipmentFromGhnData(Order order, GhnShipmentDataResponse ghnData) {
+    Shipment buildShipmentFromGhnData(Order order, GhnShipmentDataResponse ghnData) {
         return Shipment.builder()
                 .order(order)
                 .provider(ShipmentProvider.GHN)
@@ -617,6 +696,28 @@ public class ShipmentService {
 
     // ==================== Helper Classes ====================
 
+    // ghnStatus = null khi không lấy được trạng thái từ GHN (hoặc đơn không cần đồng bộ và failed = false)
+    @Getter
+    public static class GhnSyncResult {
+        private final String ghnStatus;
+        private final boolean updated;
+        private final boolean failed;
+
+        GhnSyncResult(String ghnStatus, boolean updated) {
+            this(ghnStatus, updated, false);
+        }
+
+        private GhnSyncResult(String ghnStatus, boolean updated, boolean failed) {
+            this.ghnStatus = ghnStatus;
+            this.updated = updated;
+            this.failed = failed;
+        }
+
+        static GhnSyncResult failed() {
+            return new GhnSyncResult(null, false, true);
+        }
+    }
+
     // Kích thước bưu kiện (light service).
     private static class ParcelDimensions {
         final int length, width, height, weight;
@@ -1,90 +1,144 @@
 package com.hanoi_metro.backend.service;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import com.hanoi_metro.backend.entity.Order;
-import com.hanoi_metro.backend.entity.Shipment;
+import com.hanoi_metro.backend.configuration.GhnProperties;
 import com.hanoi_metro.backend.enums.OrderStatus;
 import com.hanoi_metro.backend.enums.ShipmentProvider;
-import com.hanoi_metro.backend.repository.OrderRepository;
 import com.hanoi_metro.backend.repository.ShipmentRepository;
+import com.hanoi_metro.backend.repository.ShipmentSyncView;
+import com.hanoi_metro.backend.util.RateLimiter;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Service để tự động đồng bộ trạng thái đơn hàng từ GHN.
- * Chạy định kỳ để cập nhật trạng thái đơn hàng khi GHN giao hàng thành công.
+ * Trạng thái chủ yếu đến qua webhook (GhnWebhookService); lượt quét này chỉ đối soát thưa
+ * (mặc định 2 giờ/lần) để bắt callback bị mất.
+ * Chỉ đọc các vận đơn GHN còn đang vận chuyển; lời gọi GHN chạy song song có giới hạn (ghn.sync.*),
+ * mỗi đơn được ghi trong transaction ngắn riêng.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ShipmentSyncService {
 
+    // Các trạng thái GHN còn có thể đẩy tiếp tới DELIVERED
+    private static final Set<OrderStatus> SYNCABLE_STATUSES = syncableStatuses();
+
     private final ShipmentRepository shipmentRepository;
-    private final OrderRepository orderRepository;
     private final ShipmentService shipmentService;
+    private final GhnProperties ghnProperties;
+    private final AtomicBoolean running = new AtomicBoolean();
 
-
-    @Scheduled(cron = "0 */15 * * * *")
-    @Transactional
+    @Scheduled(cron = "${ghn.sync.cron:0 0 */2 * * *}")
     public void syncAllShipmentStatuses() {
+        // Lượt trước chưa xong (GHN chậm) thì bỏ qua lượt này thay vì chạy chồng lên nhau
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Lượt đồng bộ GHN trước vẫn đang chạy, bỏ qua lượt này");
+            return;
+        }
         try {
-            log.debug("Bắt đầu đồng bộ trạng thái đơn hàng từ GHN...");
-            
-            // Lấy tất cả shipments có orderCode (đã tạo trên GHN) và provider là GHN
-            List<Shipment> shipments = shipmentRepository.findAll().stream()
-                    .filter(s -> s.getProvider() == ShipmentProvider.GHN)
-                    .filter(s -> s.getOrderCode() != null && !s.getOrderCode().isBlank())
-                    .filter(s -> {
-                        // Chỉ sync các đơn chưa ở trạng thái cuối cùng
-                        Order order = s.getOrder();
-                        if (order == null) {
-                            return false;
-                        }
-                        OrderStatus status = order.getStatus();
-                        return status != OrderStatus.DELIVERED
-                                && status != OrderStatus.CANCELLED
-                                && status != OrderStatus.RETURN_REQUESTED
-                                && status != OrderStatus.RETURN_CS_CONFIRMED
-                                && status != OrderStatus.RETURN_STAFF_CONFIRMED
-                                && status != OrderStatus.REFUNDED
-                                && status != OrderStatus.RETURN_REJECTED;
-                    })
-                    .toList();
-
+            List<ShipmentSyncView> shipments =
+                    shipmentRepository.findSyncCandidates(ShipmentProvider.GHN, SYNCABLE_STATUSES);
             if (shipments.isEmpty()) {
                 log.debug("Không có đơn hàng nào cần đồng bộ từ GHN");
                 return;
             }
-
             log.info("Tìm thấy {} đơn hàng cần đồng bộ trạng thái từ GHN", shipments.size());
+            syncInParallel(shipments);
+        } catch (Exception e) {
+            log.error("Lỗi khi thực hiện đồng bộ trạng thái từ GHN: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
 
-            int successCount = 0;
-            int errorCount = 0;
+    private void syncInParallel(List<ShipmentSyncView> shipments) throws InterruptedException {
+        GhnProperties.Sync settings = ghnProperties.getSync();
+        // Java 17 chưa có virtual thread: pool cố định có giới hạn, cộng thêm giới hạn tốc độ gọi GHN
+        int concurrency = Math.max(1, Math.min(settings.getConcurrency(), shipments.size()));
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ghn-sync-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        RateLimiter rateLimiter = new RateLimiter(settings.getPermitsPerSecond(), settings.getBurst());
 
-            for (Shipment shipment : shipments) {
-                try {
-                    String orderId = shipment.getOrder().getId();
-                    shipmentService.syncOrderStatusFromGhn(orderId);
-                    successCount++;
-                } catch (Exception e) {
-                    errorCount++;
-                    log.warn("Lỗi khi đồng bộ trạng thái cho shipment {} (order: {}): {}",
-                            shipment.getId(),
-                            shipment.getOrder() != null ? shipment.getOrder().getId() : "unknown",
-                            e.getMessage());
-                }
+        Map<String, LongAdder> byGhnStatus = new ConcurrentHashMap<>();
+        LongAdder updated = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder processed = new LongAdder();
+        long startedAt = System.nanoTime();
+        try {
+            for (ShipmentSyncView shipment : shipments) {
+                executor.execute(() -> {
+                    try {
+                        rateLimiter.acquire();
+                        ShipmentService.GhnSyncResult result = shipmentService.syncFromGhn(
+                                shipment.getOrderId(), shipment.getOrderCode(), shipment.getStatus());
+                        if (result.isFailed()) {
+                            failed.increment();
+                        } else if (result.getGhnStatus() != null) {
+                            byGhnStatus.computeIfAbsent(result.getGhnStatus(), key -> new LongAdder()).increment();
+                        }
+                        if (result.isUpdated()) {
+                            updated.increment();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        failed.increment();
+                        log.warn("Lỗi khi đồng bộ trạng thái cho order {}: {}", shipment.getOrderId(), e.getMessage());
+                    }
+                    processed.increment();
+                });
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(settings.getMaxRunMinutes(), TimeUnit.MINUTES)) {
+                List<Runnable> skipped = executor.shutdownNow();
+                log.warn("Đồng bộ GHN vượt quá {} phút, dừng lại; {} vận đơn để lượt sau",
+                        settings.getMaxRunMinutes(), skipped.size());
             }
+        } finally {
+            executor.shutdownNow();
+        }
 
-            log.info("Hoàn tất đồng bộ trạng thái từ GHN: {} thành công, {} lỗi", successCount, errorCount);
-        } catch (Exception e) {
-            log.error("Lỗi khi thực hiện đồng bộ trạng thái từ GHN: {}", e.getMessage(), e);
+        double seconds = Math.max((System.nanoTime() - startedAt) / 1e9, 0.001);
+        Map<String, Long> statusCounts = new TreeMap<>();
+        byGhnStatus.forEach((status, count) -> statusCounts.put(status, count.sum()));
+        log.info("Hoàn tất đồng bộ trạng thái từ GHN: {}/{} vận đơn trong {} s ({} vận đơn/giây, {} luồng), "
+                        + "cập nhật {}, lỗi {}, theo trạng thái GHN {}",
+                processed.sum(), shipments.size(), String.format("%.1f", seconds),
+                String.format("%.1f", processed.sum() / seconds), concurrency,
+                updated.sum(), failed.sum(), statusCounts);
+    }
+
+    private static Set<OrderStatus> syncableStatuses() {
+        List<OrderStatus> statuses = new ArrayList<>();
+        for (OrderStatus status : OrderStatus.values()) {
+            if (OrderStateMachine.canTransition(status, OrderStatus.DELIVERED)) {
+                statuses.add(status);
+            }
         }
+        return EnumSet.copyOf(statuses);
     }
 }
-
@@ -2,6 +2,7 @@ package com.hanoi_metro.backend.service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -43,6 +44,7 @@ public class UserService {
     PasswordGeneratorService passwordGeneratorService;
     BrevoEmailService brevoEmailService;
     FileStorageService fileStorageService;
+    OrderSearchService orderSearchService;
 
     @NonFinal
     @Value("${app.default-avatar}")
@@ -176,6 +178,9 @@ public class UserService {
             }
         }
 
+        String previousEmail = user.getEmail();
+        String previousPhone = user.getPhoneNumber();
+
         // Change Email
         if (request.getEmail() != null && !request.getEmail().isEmpty()) {
             if (isAdmin) {
@@ -296,7 +301,13 @@ public class UserService {
 
         // Save user vào database
         User savedUser = userRepository.save(user);
-        
+
+        // Đơn hàng cũ phải tìm được bằng email / SĐT mới
+        if (!Objects.equals(previousEmail, savedUser.getEmail())
+                || !Objects.equals(previousPhone, savedUser.getPhoneNumber())) {
+            orderSearchService.refreshCustomerContact(savedUser);
+        }
+
         return userMapper.toUserResponse(savedUser);
     }
 
@@ -1,5 +1,6 @@
 package com.hanoi_metro.backend.util;
 
+import java.time.Duration;
 import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -9,8 +10,10 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import com.hanoi_metro.backend.constant.ApiConstants;
 import com.hanoi_metro.backend.dto.response.GhnApiResponse;
 import com.hanoi_metro.backend.exception.AppException;
 import com.hanoi_metro.backend.exception.ErrorCode;
@@ -27,10 +30,12 @@ import reactor.core.publisher.Mono;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class ApiUtil {
     WebClient ghnWebClient;
+    ResilienceGuard resilienceGuard;
     static ObjectMapper objectMapper = new ObjectMapper();
 
-    public ApiUtil(@Qualifier("ghnWebClient") WebClient ghnWebClient) {
+    public ApiUtil(@Qualifier("ghnWebClient") WebClient ghnWebClient, ResilienceGuard resilienceGuard) {
         this.ghnWebClient = ghnWebClient;
+        this.resilienceGuard = resilienceGuard;
     }
 
     // =============================== GHN API ===============================
@@ -42,8 +47,14 @@ public class ApiUtil {
             ParameterizedTypeReference<GhnApiResponse<T>> responseType,
             String token,
             Integer shopId) {
+        String policy = ghnPolicy(path);
         try {
-            GhnApiResponse<T> response = executeGhnRequest(path, method, payload, responseType, token, shopId);
+            // Tạo đơn không idempotent: thử lại sau timeout có thể sinh hai vận đơn
+            GhnApiResponse<T> response = resilienceGuard.execute(
+                    policy,
+                    !ApiConstants.GHN_SHIPPING_ORDER_CREATE.equals(path),
+                    () -> executeGhnRequest(path, method, payload, responseType, token, shopId,
+                            resilienceGuard.readTimeout(policy)));
 
             if (response == null || response.getCode() == null || response.getCode() != 200) {
                 log.error("GHN API error: {}", response != null ? response.getMessage() : "Null response");
@@ -54,20 +65,86 @@ public class ApiUtil {
         } catch (AppException e) {
             throw e;
         } catch (Exception e) {
-            log.error("Error calling GHN API [{} {}]", method, path, e);
-            throw new AppException(ErrorCode.EXTERNAL_SERVICE_ERROR);
+            // Hết lượt thử với lỗi tạm thời (timeout, lỗi kết nối, HTTP 5xx)
+            log.error("Error calling GHN API [{} {}]: {}", method, path, e.getMessage());
+            throw new AppException(
+                    ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE, "Lỗi kết nối dịch vụ vận chuyển: " + e.getMessage());
         }
     }
 
-    // Thực hiện request đến GHN API
-    private <T> GhnApiResponse<T> executeGhnRequest(
+    /**
+     * Bản không chặn của callGhnApi: cùng chính sách resilience, cùng cách phân loại lỗi.
+     * Dùng khi cần gọi song song nhiều API GHN độc lập (ví dụ báo giá checkout) mà không giữ luồng servlet.
+     * Mono rỗng khi GHN trả data null.
+     */
+    public <T> Mono<T> callGhnApiAsync(
             String path,
             HttpMethod method,
             Object payload,
             ParameterizedTypeReference<GhnApiResponse<T>> responseType,
             String token,
             Integer shopId) {
- 
+        String policy = ghnPolicy(path);
+        return resilienceGuard
+                .executeAsync(
+                        policy,
+                        !ApiConstants.GHN_SHIPPING_ORDER_CREATE.equals(path),
+                        () -> ghnRequest(path, method, payload, responseType, token, shopId,
+                                resilienceGuard.readTimeout(policy)))
+                .onErrorMap(e -> !(e instanceof AppException), e -> {
+                    log.error("Error calling GHN API [{} {}]: {}", method, path, e.getMessage());
+                    return new AppException(
+                            ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE, "Lỗi kết nối dịch vụ vận chuyển: " + e.getMessage());
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.error("GHN API error: Null response");
+                    return Mono.<GhnApiResponse<T>>error(new AppException(ErrorCode.EXTERNAL_SERVICE_ERROR));
+                }))
+                .flatMap(response -> {
+                    if (response.getCode() == null || response.getCode() != 200) {
+                        log.error("GHN API error: {}", response.getMessage());
+                        return Mono.<T>error(new AppException(ErrorCode.EXTERNAL_SERVICE_ERROR));
+                    }
+                    return Mono.justOrEmpty(response.getData());
+                });
+    }
+
+    // Nhóm chính sách app.resilience.policies theo endpoint GHN
+    private static String ghnPolicy(String path) {
+        return switch (path) {
+            case ApiConstants.GHN_MASTER_DATA_PROVINCE,
+                    ApiConstants.GHN_MASTER_DATA_DISTRICT,
+                    ApiConstants.GHN_MASTER_DATA_WARD,
+                    ApiConstants.GHN_SHIFT_DATE -> "ghn-master-data";
+            case ApiConstants.GHN_SHIPPING_ORDER_FEE, ApiConstants.GHN_SHIPPING_ORDER_LEADTIME -> "ghn-quote";
+            case ApiConstants.GHN_SHIPPING_ORDER_PREVIEW, ApiConstants.GHN_SHIPPING_ORDER_CREATE -> "ghn-order";
+            case ApiConstants.GHN_SHIPPING_ORDER_DETAIL -> "ghn-tracking";
+            default -> "ghn";
+        };
+    }
+
+    // Thực hiện request đến GHN API. HTTP 4xx => AppException (lỗi nghiệp vụ);
+    // 5xx, timeout, lỗi kết nối được ném nguyên để ResilienceGuard thử lại / tính vào circuit breaker
+    private <T> GhnApiResponse<T> executeGhnRequest(
+            String path,
+            HttpMethod method,
+            Object payload,
+            ParameterizedTypeReference<GhnApiResponse<T>> responseType,
+            String token,
+            Integer shopId,
+            Duration readTimeout) {
+        return ghnRequest(path, method, payload, responseType, token, shopId, readTimeout).block();
+    }
+
+    private <T> Mono<GhnApiResponse<T>> ghnRequest(
+            String path,
+            HttpMethod method,
+            Object payload,
+            ParameterizedTypeReference<GhnApiResponse<T>> responseType,
+            String token,
+            Integer shopId,
+            Duration readTimeout) {
+
         WebClient.RequestBodySpec requestSpec = ghnWebClient
                 .method(method)
                 .uri(path)
@@ -77,43 +154,34 @@ public class ApiUtil {
                 ? requestSpec.bodyValue(payload)
                 : requestSpec;
 
-        try {
-            GhnApiResponse<T> response = headersSpec
-                    .retrieve()
-                    .onStatus(HttpStatusCode::isError, clientResponse -> {
-                        return clientResponse.bodyToMono(String.class)
-                                .flatMap(body -> {
-                                    
-                                    // Thử parse response body để lấy error message từ GHN
-                                    String errorMessage = "Lỗi kết nối dịch vụ vận chuyển";
-                                    try {
-                                        GhnApiResponse<?> errorResponse = objectMapper.readValue(body, 
-                                                new com.fasterxml.jackson.core.type.TypeReference<GhnApiResponse<Object>>() {});
-                                        if (errorResponse != null && errorResponse.getMessage() != null && !errorResponse.getMessage().isEmpty()) {
-                                            errorMessage = errorResponse.getMessage();
-                                        }
-                                    } catch (Exception e) {
-                                        log.warn("Could not parse GHN error response: {}", e.getMessage());
-                                        // Nếu không parse được, dùng body trực tiếp nếu có (giới hạn độ dài)
-                                        if (body != null && !body.isEmpty() && body.length() < 500) {
-                                            errorMessage = "Lỗi từ GHN: " + body;
-                                        }
+        return headersSpec
+                .retrieve()
+                .onStatus(HttpStatusCode::is5xxServerError, ClientResponse::createException)
+                .onStatus(HttpStatusCode::isError, clientResponse -> {
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(body -> {
+
+                                // Thử parse response body để lấy error message từ GHN
+                                String errorMessage = "Lỗi kết nối dịch vụ vận chuyển";
+                                try {
+                                    GhnApiResponse<?> errorResponse = objectMapper.readValue(body,
+                                            new com.fasterxml.jackson.core.type.TypeReference<GhnApiResponse<Object>>() {});
+                                    if (errorResponse != null && errorResponse.getMessage() != null && !errorResponse.getMessage().isEmpty()) {
+                                        errorMessage = errorResponse.getMessage();
                                     }
-                                    
-                                    return Mono.error(new AppException(ErrorCode.EXTERNAL_SERVICE_ERROR, errorMessage));
-                                });
-                    })
-                    .bodyToMono(responseType)
-                    .block();
+                                } catch (Exception e) {
+                                    log.warn("Could not parse GHN error response: {}", e.getMessage());
+                                    // Nếu không parse được, dùng body trực tiếp nếu có (giới hạn độ dài)
+                                    if (body != null && !body.isEmpty() && body.length() < 500) {
+                                        errorMessage = "Lỗi từ GHN: " + body;
+                                    }
+                                }
 
-            return response;
-        } catch (AppException e) {
-            // Re-throw AppException để giữ nguyên error message
-            throw e;
-        } catch (Exception e) {
-            log.error("Unexpected error calling GHN API [{} {}]: {}", method, path, e.getMessage(), e);
-            throw new AppException(ErrorCode.EXTERNAL_SERVICE_ERROR, "Lỗi kết nối dịch vụ vận chuyển: " + e.getMessage());
-        }
+                                return Mono.error(new AppException(ErrorCode.EXTERNAL_SERVICE_ERROR, errorMessage));
+                            });
+                })
+                .bodyToMono(responseType)
+                .timeout(readTimeout);
     }
 
     private void configureGhnHeaders(HttpHeaders headers, String token, Integer shopId) {
@@ -0,0 +1,138 @@
+package com.hanoi_metro.backend.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker đếm theo cửa sổ trượt N lời gọi gần nhất.
+ * CLOSED: mở khi tỉ lệ lỗi trong cửa sổ (đủ minimumCalls) vượt ngưỡng.
+ * OPEN: từ chối ngay trong openDurationMs, sau đó chuyển HALF_OPEN.
+ * HALF_OPEN: cho halfOpenCalls lời gọi thử; tất cả thành công thì đóng, một lỗi thì mở lại.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(
+            String name, int windowSize, int minimumCalls, double failureRatePercent, long openDurationMs, int halfOpenCalls) {
+        this.name = name;
+        this.window = new boolean[Math.max(windowSize, 1)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRatePercent;
+        this.openDurationNanos = openDurationMs * 1_000_000L;
+        this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+    }
+
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+            halfOpenPermits = 0;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenPermits++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= halfOpenCalls) {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls && getFailureRate() >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    // Trả lại lượt thử HALF_OPEN khi lời gọi bị hủy trước khi có kết quả
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+        }
+    }
+
+    public synchronized State getState() {
+        // OPEN đã hết hạn được báo như HALF_OPEN dù chưa có lời gọi nào chuyển trạng thái
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    // Tỉ lệ lỗi (%) trong cửa sổ hiện tại
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0D : failures * 100.0 / recorded;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+
+    private void transition(State target) {
+        if (state != target) {
+            log.warn("Circuit breaker '{}' {} -> {} (failure rate {}%)",
+                    name, state, target, String.format("%.0f", getFailureRate()));
+            state = target;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.hanoi_metro.backend.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template cú pháp mustache rút gọn, parse một lần rồi render nhiều lần:
+ *  - {{name}}: giá trị tham số; ở chế độ html được escape và xuống dòng thành &lt;br&gt;
+ *  - {{#items}}...{{/items}}: lặp qua danh sách Map (bên trong đọc được khóa của phần tử lẫn
+ *    của ngoài); giá trị không phải danh sách thì render một lần khi khác null / false / rỗng
+ *  - {{^items}}...{{/items}}: render khi giá trị null / false / rỗng
+ * Render vào StringBuilder dùng lại theo thread nên không cấp phát buffer mới cho mỗi lần gửi.
+ */
+public final class CompiledTemplate {
+
+    private static final int BUFFER_CAPACITY = 16 * 1024;
+    // Buffer vượt mức này (email nhiều sản phẩm) không giữ lại để khỏi chiếm bộ nhớ
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFERS =
+            ThreadLocal.withInitial(() -> new StringBuilder(BUFFER_CAPACITY));
+
+    private final List<Node> nodes;
+    private final boolean html;
+
+    private CompiledTemplate(List<Node> nodes, boolean html) {
+        this.nodes = nodes;
+        this.html = html;
+    }
+
+    public static CompiledTemplate compile(String source, boolean html) {
+        Deque<Section> open = new ArrayDeque<>();
+        List<Node> root = new ArrayList<>();
+        List<Node> current = root;
+        int position = 0;
+        while (position < source.length()) {
+            int start = source.indexOf("{{", position);
+            if (start < 0) {
+                current.add(new Text(source.substring(position)));
+                break;
+            }
+            if (start > position) {
+                current.add(new Text(source.substring(position, start)));
+            }
+            int end = source.indexOf("}}", start + 2);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed tag at offset " + start);
+            }
+            String tag = source.substring(start + 2, end).trim();
+            position = end + 2;
+            if (tag.isEmpty()) {
+                throw new IllegalArgumentException("Empty tag at offset " + start);
+            }
+            char kind = tag.charAt(0);
+            if (kind == '#' || kind == '^') {
+                Section section = new Section(tag.substring(1).trim(), kind == '^');
+                current.add(section);
+                open.push(section);
+                current = section.children;
+            } else if (kind == '/') {
+                String name = tag.substring(1).trim();
+                if (open.isEmpty() || !open.peek().name.equals(name)) {
+                    throw new IllegalArgumentException("Unexpected {{/" + name + "}} at offset " + start);
+                }
+                open.pop();
+                current = open.isEmpty() ? root : open.peek().children;
+            } else {
+                current.add(new Variable(tag));
+            }
+        }
+        if (!open.isEmpty()) {
+            throw new IllegalArgumentException("Unclosed section {{#" + open.peek().name + "}}");
+        }
+        return new CompiledTemplate(List.copyOf(root), html);
+    }
+
+    public String render(Map<String, ?> params) {
+        StringBuilder buffer = BUFFERS.get();
+        buffer.setLength(0);
+        renderTo(params, buffer);
+        String result = buffer.toString();
+        if (buffer.capacity() > MAX_POOLED_CAPACITY) {
+            BUFFERS.set(new StringBuilder(BUFFER_CAPACITY));
+        } else {
+            buffer.setLength(0);
+        }
+        return result;
+    }
+
+    public void renderTo(Map<String, ?> params, StringBuilder out) {
+        Scope scope = new Scope(params != null ? params : Map.of(), null);
+        for (Node node : nodes) {
+            node.render(scope, out, html);
+        }
+    }
+
+    static void escapeHtml(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                case '\n' -> out.append("<br>");
+                case '\r' -> {}
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private interface Node {
+        void render(Scope scope, StringBuilder out, boolean html);
+    }
+
+    private record Text(String text) implements Node {
+        @Override
+        public void render(Scope scope, StringBuilder out, boolean html) {
+            out.append(text);
+        }
+    }
+
+    private record Variable(String name) implements Node {
+        @Override
+        public void render(Scope scope, StringBuilder out, boolean html) {
+            Object value = scope.lookup(name);
+            if (value == null) {
+                return;
+            }
+            if (html) {
+                escapeHtml(value.toString(), out);
+            } else {
+                out.append(value);
+            }
+        }
+    }
+
+    private static final class Section implements Node {
+        private final String name;
+        private final boolean inverted;
+        private final List<Node> children = new ArrayList<>();
+
+        private Section(String name, boolean inverted) {
+            this.name = name;
+            this.inverted = inverted;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out, boolean html) {
+            Object value = scope.lookup(name);
+            if (inverted) {
+                if (isEmpty(value)) {
+                    renderChildren(scope, out, html);
+                }
+                return;
+            }
+            if (value instanceof Collection<?> collection) {
+                for (Object element : collection) {
+                    renderChildren(element instanceof Map<?, ?> map ? new Scope(map, scope) : scope, out, html);
+                }
+            } else if (!isEmpty(value)) {
+                renderChildren(scope, out, html);
+            }
+        }
+
+        private void renderChildren(Scope scope, StringBuilder out, boolean html) {
+            for (Node child : children) {
+                child.render(scope, out, html);
+            }
+        }
+
+        private static boolean isEmpty(Object value) {
+            return value == null
+                    || Boolean.FALSE.equals(value)
+                    || (value instanceof Collection<?> collection && collection.isEmpty())
+                    || (value instanceof CharSequence text && text.isEmpty());
+        }
+    }
+
+    private record Scope(Map<?, ?> values, Scope parent) {
+        private Object lookup(String name) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                Object value = scope.values.get(name);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+}
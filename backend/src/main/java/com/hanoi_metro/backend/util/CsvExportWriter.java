@@ -0,0 +1,76 @@
+package com.hanoi_metro.backend.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public class CsvExportWriter implements ExportWriter {
+
+    static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+
+    public CsvExportWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) throws IOException {
+        // BOM để Excel mở đúng tiếng Việt
+        writer.write('\uFEFF');
+        writeRow(columns.toArray());
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(format(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    // Không có tài nguyên tạm; writer bọc output stream của response nên không đóng
+    @Override
+    public void close() {
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        if (value instanceof Timestamp timestamp) {
+            return DATE_TIME.format(timestamp.toLocalDateTime());
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return DATE_TIME.format(dateTime);
+        }
+        String text = value.toString();
+        // Chặn công thức khi mở bằng Excel (CSV injection)
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
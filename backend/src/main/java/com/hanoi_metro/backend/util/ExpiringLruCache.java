@@ -0,0 +1,211 @@
+package com.hanoi_metro.backend.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import lombok.Getter;
+
+/**
+ * Cache LRU giới hạn số phần tử, mỗi phần tử hết hạn sau ttl.
+ * getOrLoad gộp các lời gọi trùng khóa đang chạy đồng thời thành một lần nạp; lỗi và giá trị null không được lưu.
+ * getOrLoadAsync làm tương tự cho nguồn bất đồng bộ và dùng chung bảng lời gọi đang chạy với getOrLoad.
+ * Phần tử hết hạn vẫn được giữ tới khi bị LRU đẩy ra để getStale dùng làm dự phòng khi nguồn lỗi.
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpiringLruCache(int maxEntries, Duration ttl) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        // accessOrder = true: get() đưa phần tử lên cuối, phần tử đầu là phần tử ít dùng nhất
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringLruCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public V getOrLoad(K key, Supplier<V> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Đã có luồng khác đang gọi ra ngoài cho cùng khóa: chờ kết quả của nó
+            collapsed.increment();
+            return join(running);
+        }
+
+        try {
+            // Kiểm tra lại: luồng nạp trước có thể vừa xong giữa lần đọc đầu và putIfAbsent
+            V value = getIfPresent(key);
+            if (value != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                value = loader.get();
+                if (value != null) {
+                    put(key, value);
+                }
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            failures.increment();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Mỗi bên gọi nhận một bản copy: hủy future của mình không hủy lần nạp dùng chung
+    public CompletableFuture<V> getOrLoadAsync(K key, Supplier<CompletableFuture<V>> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            collapsed.increment();
+            return running.copy();
+        }
+
+        V value = getIfPresent(key);
+        if (value != null) {
+            hits.increment();
+            mine.complete(value);
+            inFlight.remove(key, mine);
+            return mine.copy();
+        }
+
+        misses.increment();
+        CompletableFuture<V> loading;
+        try {
+            loading = loader.get();
+        } catch (RuntimeException e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        loading.whenComplete((loaded, error) -> {
+            if (error != null) {
+                failures.increment();
+                mine.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error);
+            } else {
+                if (loaded != null) {
+                    put(key, loaded);
+                }
+                mine.complete(loaded);
+            }
+            inFlight.remove(key, mine);
+        });
+        return mine.copy();
+    }
+
+    // Giá trị gần nhất kể cả đã hết hạn (null nếu chưa từng nạp hoặc đã bị đẩy ra)
+    public synchronized V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public Stats stats() {
+        return new Stats(size(), hits.sum(), misses.sum(), collapsed.sum(), failures.sum(), evictions.sum());
+    }
+
+    private synchronized V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtNanos - System.nanoTime() <= 0) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    private synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAtNanos;
+
+        private Entry(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    @Getter
+    public static class Stats {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long collapsed;
+        private final long failures;
+        private final long evictions;
+
+        public Stats(int size, long hits, long misses, long collapsed, long failures, long evictions) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.collapsed = collapsed;
+            this.failures = failures;
+            this.evictions = evictions;
+        }
+
+        // Lời gọi gộp cũng không ra ngoài nên được tính như hit
+        public double getHitRatio() {
+            long total = hits + misses + collapsed;
+            return total == 0 ? 0D : (double) (hits + collapsed) / total;
+        }
+    }
+}
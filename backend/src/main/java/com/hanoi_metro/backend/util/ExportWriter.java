@@ -0,0 +1,28 @@
+package com.hanoi_metro.backend.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.hanoi_metro.backend.enums.ExportFormat;
+
+/**
+ * Ghi bảng dữ liệu theo từng dòng ra output stream; chỉ giữ một lượng dòng cố định trong bộ nhớ.
+ */
+public interface ExportWriter extends AutoCloseable {
+
+    static ExportWriter of(ExportFormat format, OutputStream out) {
+        return format == ExportFormat.XLSX ? new XlsxExportWriter(out) : new CsvExportWriter(out);
+    }
+
+    void writeHeader(List<String> columns) throws IOException;
+
+    void writeRow(Object[] values) throws IOException;
+
+    // Ghi phần còn lại ra output stream
+    void finish() throws IOException;
+
+    // Giải phóng tài nguyên tạm (kể cả khi export lỗi giữa chừng); không đóng output stream của response
+    @Override
+    void close() throws IOException;
+}
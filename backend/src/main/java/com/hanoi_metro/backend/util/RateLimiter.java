@@ -0,0 +1,37 @@
+package com.hanoi_metro.backend.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket đơn giản: tối đa permitsPerSecond lượt mỗi giây, cho phép dồn tối đa burst lượt khi rảnh.
+ * acquire() giữ chỗ trước rồi mới ngủ ngoài khóa nên nhiều luồng chờ cùng lúc vẫn được xếp hàng đều nhau.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long maxBurstNanos;
+    private long nextFreeNanos;
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.maxBurstNanos = intervalNanos * (Math.max(burst, 1) - 1);
+        this.nextFreeNanos = System.nanoTime() - maxBurstNanos;
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // Thời gian rảnh chỉ được tích lũy tối đa burst lượt
+            nextFreeNanos = Math.max(nextFreeNanos, now - maxBurstNanos);
+            waitNanos = nextFreeNanos - now;
+            nextFreeNanos += intervalNanos;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
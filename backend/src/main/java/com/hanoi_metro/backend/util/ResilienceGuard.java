@@ -0,0 +1,219 @@
+package com.hanoi_metro.backend.util;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.hanoi_metro.backend.configuration.ResilienceProperties;
+import com.hanoi_metro.backend.dto.response.ResilienceStats;
+import com.hanoi_metro.backend.exception.AppException;
+import com.hanoi_metro.backend.exception.ErrorCode;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Bọc lời gọi ra dịch vụ ngoài (GHN, MoMo) theo chính sách app.resilience.policies.&lt;tên&gt;:
+ * bulkhead giới hạn số lời gọi đang bay, circuit breaker, và thử lại có jitter cho lời gọi idempotent.
+ *
+ * Phân loại lỗi: AppException là lỗi nghiệp vụ (đối tác đã trả lời, ví dụ địa chỉ sai) => không thử lại, không tính
+ * vào circuit breaker. Mọi RuntimeException khác (timeout, lỗi kết nối, HTTP 5xx) là lỗi tạm thời.
+ * Bị bulkhead/circuit breaker từ chối thì ném AppException(EXTERNAL_SERVICE_UNAVAILABLE).
+ * executeAsync dùng chung trạng thái (breaker, bulkhead, bộ đếm) với execute nhưng không chặn luồng:
+ * bulkhead không chờ (bỏ qua maxWaitMs) và khoảng nghỉ giữa các lần thử chạy trên scheduler của Reactor.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ResilienceGuard {
+
+    ResilienceProperties resilienceProperties;
+    Map<String, PolicyState> states = new ConcurrentHashMap<>();
+
+    public <T> T execute(String policyName, boolean idempotent, Supplier<T> call) {
+        PolicyState state = states.computeIfAbsent(policyName, this::createState);
+        ResilienceProperties.Policy policy = state.policy;
+
+        if (!acquire(state.bulkhead, policy.getMaxWaitMs())) {
+            state.bulkheadRejected.increment();
+            log.warn("Bulkhead '{}' full ({} in-flight calls), rejecting", policyName, policy.getMaxConcurrentCalls());
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        }
+        try {
+            int attempts = idempotent ? Math.max(1, policy.getMaxAttempts()) : 1;
+            for (int attempt = 1; ; attempt++) {
+                if (!state.breaker.tryAcquirePermission()) {
+                    state.shortCircuited.increment();
+                    throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+                }
+                state.calls.increment();
+                try {
+                    T result = call.get();
+                    state.breaker.onSuccess();
+                    state.successes.increment();
+                    return result;
+                } catch (AppException e) {
+                    state.breaker.onSuccess();
+                    state.businessErrors.increment();
+                    throw e;
+                } catch (RuntimeException e) {
+                    state.breaker.onFailure();
+                    state.failures.increment();
+                    if (attempt >= attempts) {
+                        throw e;
+                    }
+                    state.retries.increment();
+                    log.info("Call '{}' failed ({}), retry {}/{}", policyName, e.getMessage(), attempt, attempts - 1);
+                    backoff(policy, attempt);
+                }
+            }
+        } finally {
+            state.bulkhead.release();
+        }
+    }
+
+    public <T> Mono<T> executeAsync(String policyName, boolean idempotent, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            PolicyState state = states.computeIfAbsent(policyName, this::createState);
+            ResilienceProperties.Policy policy = state.policy;
+
+            if (!state.bulkhead.tryAcquire()) {
+                state.bulkheadRejected.increment();
+                log.warn("Bulkhead '{}' full ({} in-flight calls), rejecting", policyName, policy.getMaxConcurrentCalls());
+                return Mono.<T>error(new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE));
+            }
+
+            Mono<T> attempt = Mono.defer(() -> {
+                if (!state.breaker.tryAcquirePermission()) {
+                    state.shortCircuited.increment();
+                    return Mono.<T>error(new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE));
+                }
+                state.calls.increment();
+                return call.get()
+                        .doOnSuccess(result -> {
+                            state.breaker.onSuccess();
+                            state.successes.increment();
+                        })
+                        .doOnError(e -> {
+                            if (e instanceof AppException) {
+                                state.breaker.onSuccess();
+                                state.businessErrors.increment();
+                            } else {
+                                state.breaker.onFailure();
+                                state.failures.increment();
+                            }
+                        })
+                        // Bên gọi hủy (client ngắt, zip lỗi nhánh khác): không có kết quả để ghi nhận
+                        .doOnCancel(state.breaker::releasePermission);
+            });
+
+            int attempts = idempotent ? Math.max(1, policy.getMaxAttempts()) : 1;
+            if (attempts > 1) {
+                attempt = attempt.retryWhen(Retry.backoff(attempts - 1, Duration.ofMillis(policy.getRetryBaseDelayMs()))
+                        .maxBackoff(Duration.ofMillis(Math.max(policy.getRetryBaseDelayMs(), policy.getRetryMaxDelayMs())))
+                        .jitter(1D)
+                        .filter(e -> !(e instanceof AppException))
+                        .doBeforeRetry(signal -> {
+                            state.retries.increment();
+                            log.info("Call '{}' failed ({}), retry {}/{}", policyName,
+                                    signal.failure().getMessage(), signal.totalRetries() + 1, attempts - 1);
+                        })
+                        // Hết lượt thử: ném lỗi gốc như execute, không bọc RetryExhaustedException
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+            }
+            return attempt.doFinally(signal -> state.bulkhead.release());
+        });
+    }
+
+    public Duration readTimeout(String policyName) {
+        return Duration.ofMillis(resilienceProperties.policyFor(policyName).getReadTimeoutMs());
+    }
+
+    public List<ResilienceStats> stats() {
+        return states.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> {
+                    PolicyState state = entry.getValue();
+                    return ResilienceStats.builder()
+                            .policy(entry.getKey())
+                            .circuitState(state.breaker.getState().name())
+                            .failureRate(state.breaker.getFailureRate())
+                            .inFlight(state.policy.getMaxConcurrentCalls() - state.bulkhead.availablePermits())
+                            .calls(state.calls.sum())
+                            .successes(state.successes.sum())
+                            .businessErrors(state.businessErrors.sum())
+                            .failures(state.failures.sum())
+                            .retries(state.retries.sum())
+                            .shortCircuited(state.shortCircuited.sum())
+                            .bulkheadRejected(state.bulkheadRejected.sum())
+                            .build();
+                })
+                .toList();
+    }
+
+    private PolicyState createState(String policyName) {
+        ResilienceProperties.Policy policy = resilienceProperties.policyFor(policyName);
+        CircuitBreaker breaker = new CircuitBreaker(
+                policyName,
+                policy.getSlidingWindowSize(),
+                policy.getMinimumCalls(),
+                policy.getFailureRateThreshold(),
+                policy.getOpenDurationMs(),
+                policy.getHalfOpenCalls());
+        return new PolicyState(policy, breaker, new Semaphore(Math.max(1, policy.getMaxConcurrentCalls())));
+    }
+
+    private static boolean acquire(Semaphore bulkhead, long maxWaitMs) {
+        try {
+            return maxWaitMs <= 0 ? bulkhead.tryAcquire() : bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void backoff(ResilienceProperties.Policy policy, int attempt) {
+        long cap = Math.min(policy.getRetryMaxDelayMs(), policy.getRetryBaseDelayMs() * (1L << Math.min(attempt - 1, 20)));
+        if (cap <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private static final class PolicyState {
+        private final ResilienceProperties.Policy policy;
+        private final CircuitBreaker breaker;
+        private final Semaphore bulkhead;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder businessErrors = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder shortCircuited = new LongAdder();
+        private final LongAdder bulkheadRejected = new LongAdder();
+
+        private PolicyState(ResilienceProperties.Policy policy, CircuitBreaker breaker, Semaphore bulkhead) {
+            this.policy = policy;
+            this.breaker = breaker;
+            this.bulkhead = bulkhead;
+        }
+    }
+}
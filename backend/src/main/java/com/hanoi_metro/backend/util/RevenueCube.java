@@ -0,0 +1,390 @@
+package com.hanoi_metro.backend.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.hanoi_metro.backend.enums.PaymentMethod;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Khối dữ liệu doanh thu dạng cột trong bộ nhớ: mỗi bản ghi doanh thu là một vị trí trong các mảng nguyên thủy
+ * (giờ, tháng, phương thức thanh toán, danh mục, sản phẩm, số tiền). Danh mục/sản phẩm được mã hóa bằng từ điển
+ * (mã 0 = không có). Truy vấn group-by/filter là một lượt quét tuần tự các mảng, không cấp phát theo dòng.
+ * Dòng của một đơn được thay cả cụm khi đơn thay đổi; dòng cũ bị đánh dấu xóa và dọn khi nạp lại toàn bộ.
+ */
+public class RevenueCube {
+
+    public enum Dimension {
+        HOUR, DAY, MONTH, PAYMENT_METHOD, CATEGORY, PRODUCT;
+
+        boolean isTime() {
+            return this == HOUR || this == DAY || this == MONTH;
+        }
+    }
+
+    // Số ô tối đa để gom nhóm bằng mảng đặc; vượt quá thì dùng HashMap
+    private static final int DENSE_CELL_LIMIT = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final PaymentMethod[] PAYMENT_METHODS = PaymentMethod.values();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Dictionary categories = new Dictionary();
+    private final Dictionary products = new Dictionary();
+    private final Map<String, int[]> rowsByOrder = new HashMap<>();
+
+    private int size;
+    private int deleted;
+    private int[] hour = new int[INITIAL_CAPACITY];
+    private int[] month = new int[INITIAL_CAPACITY];
+    private byte[] paymentMethod = new byte[INITIAL_CAPACITY];
+    private int[] category = new int[INITIAL_CAPACITY];
+    private int[] product = new int[INITIAL_CAPACITY];
+    private double[] amount = new double[INITIAL_CAPACITY];
+    private boolean[] live = new boolean[INITIAL_CAPACITY];
+
+    // ==================== Ghi ====================
+
+    public void append(Fact fact) {
+        lock.writeLock().lock();
+        try {
+            int row = appendRow(fact);
+            int[] rows = rowsByOrder.get(fact.getOrderId());
+            int[] grown = rows == null ? new int[1] : Arrays.copyOf(rows, rows.length + 1);
+            grown[grown.length - 1] = row;
+            rowsByOrder.put(fact.getOrderId(), grown);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Thay toàn bộ dòng của các đơn bằng facts (đơn không còn fact nào => chỉ xóa)
+    public void replaceOrders(Collection<String> orderIds, List<Fact> facts) {
+        lock.writeLock().lock();
+        try {
+            for (String orderId : orderIds) {
+                int[] rows = rowsByOrder.remove(orderId);
+                if (rows != null) {
+                    for (int row : rows) {
+                        live[row] = false;
+                    }
+                    deleted += rows.length;
+                }
+            }
+            Map<String, List<Integer>> appended = new HashMap<>();
+            for (Fact fact : facts) {
+                appended.computeIfAbsent(fact.getOrderId(), key -> new ArrayList<>()).add(appendRow(fact));
+            }
+            appended.forEach((orderId, rows) ->
+                    rowsByOrder.put(orderId, rows.stream().mapToInt(Integer::intValue).toArray()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int appendRow(Fact fact) {
+        if (size == hour.length) {
+            grow();
+        }
+        int row = size++;
+        long epochHour = fact.getOccurredAt().toEpochSecond(ZoneOffset.UTC) / 3600;
+        hour[row] = (int) epochHour;
+        month[row] = fact.getOccurredAt().getYear() * 12 + fact.getOccurredAt().getMonthValue() - 1;
+        paymentMethod[row] = (byte) (fact.getPaymentMethod() != null ? fact.getPaymentMethod().ordinal() + 1 : 0);
+        category[row] = categories.encode(fact.getCategoryId(), fact.getCategoryName());
+        product[row] = products.encode(fact.getProductId(), fact.getProductName());
+        amount[row] = fact.getAmount();
+        live[row] = true;
+        return row;
+    }
+
+    private void grow() {
+        int capacity = hour.length * 2;
+        hour = Arrays.copyOf(hour, capacity);
+        month = Arrays.copyOf(month, capacity);
+        paymentMethod = Arrays.copyOf(paymentMethod, capacity);
+        category = Arrays.copyOf(category, capacity);
+        product = Arrays.copyOf(product, capacity);
+        amount = Arrays.copyOf(amount, capacity);
+        live = Arrays.copyOf(live, capacity);
+    }
+
+    public int liveRows() {
+        lock.readLock().lock();
+        try {
+            return size - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== Truy vấn ====================
+
+    /**
+     * Gom nhóm theo các chiều trong query (tối đa một chiều thời gian), lọc theo khoảng [from, to) và các tập
+     * phương thức / danh mục / sản phẩm. Có chiều thời gian => sắp theo thời gian, ngược lại theo doanh thu giảm dần.
+     */
+    public List<Slice> query(Query query) {
+        long timeDimensions = query.getGroupBy().stream().filter(Dimension::isTime).count();
+        if (timeDimensions > 1) {
+            throw new IllegalArgumentException("At most one time dimension can be grouped");
+        }
+        // Chiều thời gian (nếu có) là chữ số có trọng số cao nhất để thứ tự khóa = thứ tự thời gian
+        List<Dimension> dimensions = new ArrayList<>(query.getGroupBy().stream().distinct().toList());
+        dimensions.sort(Comparator.comparing((Dimension dimension) -> !dimension.isTime()));
+
+        lock.readLock().lock();
+        try {
+            int fromHour = (int) (query.getFrom().toEpochSecond(ZoneOffset.UTC) / 3600);
+            int toHour = (int) ((query.getTo().toEpochSecond(ZoneOffset.UTC) + 3599) / 3600);
+            int fromMonth = query.getFrom().getYear() * 12 + query.getFrom().getMonthValue() - 1;
+            boolean[] methodMask = paymentMask(query.getPaymentMethods());
+            boolean[] categoryMask = categories.mask(query.getCategoryIds());
+            boolean[] productMask = products.mask(query.getProductIds());
+
+            int[] radix = new int[dimensions.size()];
+            long cells = 1;
+            for (int d = 0; d < dimensions.size(); d++) {
+                radix[d] = cardinality(dimensions.get(d), fromHour, toHour, fromMonth, query.getTo());
+                cells *= radix[d];
+            }
+
+            Aggregates aggregates = cells <= DENSE_CELL_LIMIT
+                    ? new DenseAggregates((int) cells)
+                    : new SparseAggregates();
+            for (int row = 0; row < size; row++) {
+                int h = hour[row];
+                if (!live[row] || h < fromHour || h >= toHour
+                        || (methodMask != null && !methodMask[paymentMethod[row]])
+                        || (categoryMask != null && !categoryMask[category[row]])
+                        || (productMask != null && !productMask[product[row]])) {
+                    continue;
+                }
+                long key = 0;
+                for (int d = 0; d < radix.length; d++) {
+                    key = key * radix[d] + code(dimensions.get(d), row, fromHour, fromMonth);
+                }
+                aggregates.add(key, amount[row]);
+            }
+
+            List<Slice> slices = new ArrayList<>();
+            aggregates.forEach((key, revenue, records) ->
+                    slices.add(decode(key, dimensions, radix, fromHour, fromMonth, revenue, records)));
+            if (dimensions.isEmpty() || !dimensions.get(0).isTime()) {
+                slices.sort(Comparator.comparingDouble(Slice::getRevenue).reversed());
+            }
+            return slices;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int cardinality(Dimension dimension, int fromHour, int toHour, int fromMonth, LocalDateTime to) {
+        return switch (dimension) {
+            case HOUR -> Math.max(toHour - fromHour, 1);
+            case DAY -> Math.max(Math.floorDiv(toHour - 1, 24) - Math.floorDiv(fromHour, 24) + 1, 1);
+            case MONTH -> Math.max(to.getYear() * 12 + to.getMonthValue() - 1 - fromMonth + 1, 1);
+            case PAYMENT_METHOD -> PAYMENT_METHODS.length + 1;
+            case CATEGORY -> categories.size();
+            case PRODUCT -> products.size();
+        };
+    }
+
+    private int code(Dimension dimension, int row, int fromHour, int fromMonth) {
+        return switch (dimension) {
+            case HOUR -> hour[row] - fromHour;
+            case DAY -> Math.floorDiv(hour[row], 24) - Math.floorDiv(fromHour, 24);
+            case MONTH -> month[row] - fromMonth;
+            case PAYMENT_METHOD -> paymentMethod[row];
+            case CATEGORY -> category[row];
+            case PRODUCT -> product[row];
+        };
+    }
+
+    private Slice decode(
+            long key, List<Dimension> dimensions, int[] radix, int fromHour, int fromMonth,
+            double revenue, long records) {
+        Slice.SliceBuilder slice = Slice.builder().revenue(revenue).records(records);
+        for (int d = dimensions.size() - 1; d >= 0; d--) {
+            int code = (int) (key % radix[d]);
+            key /= radix[d];
+            switch (dimensions.get(d)) {
+                case HOUR -> slice.bucket(epochHourToTime((long) fromHour + code));
+                case DAY -> slice.bucket(epochHourToTime((Math.floorDiv(fromHour, 24) + (long) code) * 24));
+                case MONTH -> {
+                    int value = fromMonth + code;
+                    slice.bucket(LocalDateTime.of(value / 12, value % 12 + 1, 1, 0, 0));
+                }
+                case PAYMENT_METHOD -> slice.paymentMethod(code == 0 ? null : PAYMENT_METHODS[code - 1]);
+                case CATEGORY -> slice.categoryId(categories.id(code)).categoryName(categories.name(code));
+                case PRODUCT -> slice.productId(products.id(code)).productName(products.name(code));
+            }
+        }
+        return slice.build();
+    }
+
+    private static LocalDateTime epochHourToTime(long epochHour) {
+        return LocalDateTime.ofEpochSecond(epochHour * 3600, 0, ZoneOffset.UTC);
+    }
+
+    private static boolean[] paymentMask(Collection<PaymentMethod> methods) {
+        if (methods == null || methods.isEmpty()) {
+            return null;
+        }
+        boolean[] mask = new boolean[PAYMENT_METHODS.length + 1];
+        methods.forEach(method -> mask[method.ordinal() + 1] = true);
+        return mask;
+    }
+
+    // ==================== Kiểu dữ liệu ====================
+
+    @Getter
+    @Builder
+    public static class Fact {
+        private final String orderId;
+        private final LocalDateTime occurredAt;
+        private final PaymentMethod paymentMethod;
+        private final String categoryId;
+        private final String categoryName;
+        private final String productId;
+        private final String productName;
+        private final double amount;
+    }
+
+    @Getter
+    @Builder
+    public static class Query {
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        @Builder.Default
+        private final List<Dimension> groupBy = List.of();
+        private final Collection<PaymentMethod> paymentMethods;
+        private final Collection<String> categoryIds;
+        private final Collection<String> productIds;
+    }
+
+    @Getter
+    @Builder
+    public static class Slice {
+        private final LocalDateTime bucket;
+        private final PaymentMethod paymentMethod;
+        private final String categoryId;
+        private final String categoryName;
+        private final String productId;
+        private final String productName;
+        private final double revenue;
+        private final long records;
+    }
+
+    // Mã 0 dành cho giá trị null
+    private static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> ids = new ArrayList<>(List.of(""));
+        private final List<String> names = new ArrayList<>(List.of(""));
+
+        private int encode(String id, String name) {
+            if (id == null) {
+                return 0;
+            }
+            Integer code = codes.get(id);
+            if (code == null) {
+                code = ids.size();
+                codes.put(id, code);
+                ids.add(id);
+                names.add(name);
+            } else if (name != null && !name.equals(names.get(code))) {
+                names.set(code, name);
+            }
+            return code;
+        }
+
+        private boolean[] mask(Collection<String> selected) {
+            if (selected == null || selected.isEmpty()) {
+                return null;
+            }
+            boolean[] mask = new boolean[ids.size()];
+            for (String id : selected) {
+                Integer code = codes.get(id);
+                if (code != null) {
+                    mask[code] = true;
+                }
+            }
+            return mask;
+        }
+
+        private int size() {
+            return ids.size();
+        }
+
+        private String id(int code) {
+            return code == 0 ? null : ids.get(code);
+        }
+
+        private String name(int code) {
+            return code == 0 ? null : names.get(code);
+        }
+    }
+
+    @FunctionalInterface
+    private interface CellConsumer {
+        void accept(long key, double revenue, long records);
+    }
+
+    private interface Aggregates {
+        void add(long key, double value);
+
+        void forEach(CellConsumer consumer);
+    }
+
+    private static class DenseAggregates implements Aggregates {
+        private final double[] revenue;
+        private final long[] records;
+
+        private DenseAggregates(int cells) {
+            revenue = new double[cells];
+            records = new long[cells];
+        }
+
+        @Override
+        public void add(long key, double value) {
+            revenue[(int) key] += value;
+            records[(int) key]++;
+        }
+
+        @Override
+        public void forEach(CellConsumer consumer) {
+            for (int key = 0; key < records.length; key++) {
+                if (records[key] > 0) {
+                    consumer.accept(key, revenue[key], records[key]);
+                }
+            }
+        }
+    }
+
+    private static class SparseAggregates implements Aggregates {
+        private final Map<Long, double[]> cells = new HashMap<>();
+
+        @Override
+        public void add(long key, double value) {
+            double[] cell = cells.computeIfAbsent(key, ignored -> new double[2]);
+            cell[0] += value;
+            cell[1]++;
+        }
+
+        @Override
+        public void forEach(CellConsumer consumer) {
+            cells.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> consumer.accept(entry.getKey(), entry.getValue()[0], (long) entry.getValue()[1]));
+        }
+    }
+}
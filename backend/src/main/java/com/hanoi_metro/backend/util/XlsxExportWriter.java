@@ -0,0 +1,113 @@
+package com.hanoi_metro.backend.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * XLSX qua SXSSF: chỉ ROW_WINDOW dòng gần nhất nằm trong bộ nhớ, phần còn lại được đẩy ra file tạm (nén).
+ * Một sheet tối đa ~1 triệu dòng nên dữ liệu lớn hơn được chia sang sheet tiếp theo.
+ */
+public class XlsxExportWriter implements ExportWriter {
+
+    private static final int ROW_WINDOW = 100;
+    private static final int MAX_ROWS_PER_SHEET = 1_048_575;
+
+    private final OutputStream out;
+    private final SXSSFWorkbook workbook;
+    private final CellStyle dateTimeStyle;
+    private final CellStyle dateStyle;
+    private List<String> header = List.of();
+    private Sheet sheet;
+    private int rowIndex;
+    private int sheetCount;
+
+    public XlsxExportWriter(OutputStream out) {
+        this.out = out;
+        this.workbook = new SXSSFWorkbook(ROW_WINDOW);
+        this.workbook.setCompressTempFiles(true);
+        this.dateTimeStyle = workbook.createCellStyle();
+        this.dateTimeStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+        this.dateStyle = workbook.createCellStyle();
+        this.dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) {
+        header = List.copyOf(columns);
+        newSheet();
+    }
+
+    @Override
+    public void writeRow(Object[] values) {
+        if (sheet == null || rowIndex > MAX_ROWS_PER_SHEET) {
+            newSheet();
+        }
+        Row row = sheet.createRow(rowIndex++);
+        for (int i = 0; i < values.length; i++) {
+            setCell(row.createCell(i), values[i]);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (sheet == null) {
+            newSheet();
+        }
+        workbook.write(out);
+        out.flush();
+    }
+
+    // Xóa file tạm của SXSSF
+    @Override
+    public void close() throws IOException {
+        try {
+            workbook.dispose();
+        } finally {
+            workbook.close();
+        }
+    }
+
+    private void newSheet() {
+        sheetCount++;
+        sheet = workbook.createSheet(sheetCount == 1 ? "data" : "data_" + sheetCount);
+        rowIndex = 0;
+        if (!header.isEmpty()) {
+            Row row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < header.size(); i++) {
+                row.createCell(i).setCellValue(header.get(i));
+            }
+        }
+    }
+
+    private void setCell(Cell cell, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number number) {
+            cell.setCellValue(number.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            cell.setCellValue(bool);
+        } else if (value instanceof Timestamp timestamp) {
+            cell.setCellValue(timestamp.toLocalDateTime());
+            cell.setCellStyle(dateTimeStyle);
+        } else if (value instanceof LocalDateTime dateTime) {
+            cell.setCellValue(dateTime);
+            cell.setCellStyle(dateTimeStyle);
+        } else if (value instanceof LocalDate date) {
+            cell.setCellValue(date);
+            cell.setCellStyle(dateStyle);
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+}
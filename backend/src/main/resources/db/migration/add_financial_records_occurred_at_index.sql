@@ -0,0 +1,2 @@
+-- Báo cáo doanh thu và xuất file (/api/exports/financial-records) đọc theo khoảng occurred_at
+CREATE INDEX idx_financial_records_occurred_at ON financial_records (occurred_at);
@@ -0,0 +1,35 @@
+-- Ghi doanh thu theo đơn bằng INSERT ... ON DUPLICATE KEY UPDATE cần khóa duy nhất (order_id, product_id, record_type)
+
+-- Bản ghi trùng khóa có hai nguồn: cùng sản phẩm trên nhiều dòng của một đơn (code cũ ghi mỗi dòng hàng một bản ghi)
+-- và ghi nhận hai lần do race ở bước kiểm tra "đã ghi doanh thu chưa". Cộng dồn sẽ tính đôi trường hợp thứ hai,
+-- nên chỉ giữ một dòng (id nhỏ nhất) và tính lại số tiền từ order_items giống FinancialService.revenueByProduct.
+CREATE TEMPORARY TABLE financial_records_duplicates AS
+SELECT order_id, product_id, record_type, MIN(id) AS keep_id
+FROM financial_records
+WHERE order_id IS NOT NULL AND product_id IS NOT NULL
+GROUP BY order_id, product_id, record_type
+HAVING COUNT(*) > 1;
+
+-- Chỉ ORDER_PAYMENT được ghi theo sản phẩm; đơn không còn dòng hàng thì dòng được giữ giữ nguyên số tiền của nó
+UPDATE financial_records fr
+JOIN financial_records_duplicates d ON fr.id = d.keep_id
+JOIN (
+    SELECT order_id, product_id, SUM(final_price) AS total_amount
+    FROM order_items
+    WHERE final_price > 0
+    GROUP BY order_id, product_id
+) oi ON oi.order_id = d.order_id AND oi.product_id = d.product_id
+SET fr.amount = oi.total_amount
+WHERE d.record_type = 'ORDER_PAYMENT';
+
+DELETE fr FROM financial_records fr
+JOIN financial_records_duplicates d
+    ON fr.order_id = d.order_id
+    AND fr.product_id = d.product_id
+    AND fr.record_type = d.record_type
+    AND fr.id <> d.keep_id;
+
+DROP TEMPORARY TABLE financial_records_duplicates;
+
+ALTER TABLE financial_records
+    ADD CONSTRAINT uk_financial_records_order_product_type UNIQUE (order_id, product_id, record_type);
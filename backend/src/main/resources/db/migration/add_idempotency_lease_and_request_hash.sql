@@ -0,0 +1,4 @@
+-- Lease cho key IN_PROGRESS và hash body request để phát hiện key bị dùng lại với body khác
+ALTER TABLE idempotency_records
+    ADD COLUMN request_hash VARCHAR(64) DEFAULT NULL,
+    ADD COLUMN locked_at DATETIME(6) DEFAULT NULL;
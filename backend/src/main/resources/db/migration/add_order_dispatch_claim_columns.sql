@@ -0,0 +1,4 @@
+-- Tạo vận đơn hàng loạt giữ đơn bằng UPDATE có điều kiện trước khi gọi GHN để hai lượt chồng nhau không cùng tạo vận đơn
+ALTER TABLE orders
+    ADD COLUMN dispatch_claim VARCHAR(36) DEFAULT NULL,
+    ADD COLUMN dispatch_claimed_at DATETIME DEFAULT NULL;
@@ -0,0 +1,7 @@
+-- Phân trang keyset sắp xếp theo (order_date_time, id) nên cột này không được NULL
+UPDATE orders SET order_date_time = TIMESTAMP(order_date) WHERE order_date_time IS NULL AND order_date IS NOT NULL;
+
+CREATE INDEX idx_orders_date_id ON orders (order_date_time, id);
+CREATE INDEX idx_orders_status_date_id ON orders (status, order_date_time, id);
+CREATE INDEX idx_orders_user_date_id ON orders (user_id, order_date_time, id);
+CREATE INDEX idx_orders_payment_date_id ON orders (payment_method, order_date_time, id);
@@ -0,0 +1,3 @@
+-- Cột version cho optimistic locking trên orders (Hibernate @Version)
+ALTER TABLE orders
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,17 @@
+-- Event chỉ được ghi một lần cho mỗi đơn (email xác nhận) giữ khóa dedupe_key duy nhất, ghi bằng INSERT IGNORE.
+-- Các event khác để NULL nên không bị ràng buộc. Dòng có khóa không bị dọn theo retention để khóa còn hiệu lực.
+ALTER TABLE outbox_events
+    ADD COLUMN dedupe_key VARCHAR(120) DEFAULT NULL;
+
+-- Đơn đã có event email xác nhận: gắn khóa cho event cũ nhất để không gửi lại sau khi triển khai
+UPDATE outbox_events e
+JOIN (
+    SELECT MIN(id) AS keep_id
+    FROM outbox_events
+    WHERE event_type = 'ORDER_CONFIRMATION_EMAIL' AND aggregate_id IS NOT NULL
+    GROUP BY aggregate_id
+) f ON e.id = f.keep_id
+SET e.dedupe_key = CONCAT('ORDER_CONFIRMATION_EMAIL:', e.aggregate_id);
+
+ALTER TABLE outbox_events
+    ADD CONSTRAINT uk_outbox_dedupe_key UNIQUE (dedupe_key);
@@ -0,0 +1,18 @@
+CREATE TABLE IF NOT EXISTS email_queue (
+    id VARCHAR(36) PRIMARY KEY,
+    template VARCHAR(50) NOT NULL,
+    sender_name VARCHAR(255) NOT NULL,
+    recipient_email VARCHAR(255) NOT NULL,
+    recipient_name VARCHAR(255) DEFAULT NULL,
+    subject VARCHAR(500) NOT NULL,
+    text_content MEDIUMTEXT DEFAULT NULL,
+    html_content MEDIUMTEXT DEFAULT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME NOT NULL,
+    locked_at DATETIME DEFAULT NULL,
+    last_error TEXT DEFAULT NULL,
+    created_at DATETIME NOT NULL,
+    sent_at DATETIME DEFAULT NULL,
+    INDEX idx_email_queue_status_next_attempt (status, next_attempt_at)
+);
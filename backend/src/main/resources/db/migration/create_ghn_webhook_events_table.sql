@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS ghn_webhook_events (
+    id VARCHAR(64) PRIMARY KEY,
+    order_code VARCHAR(50) NOT NULL,
+    status VARCHAR(50) DEFAULT NULL,
+    received_at DATETIME NOT NULL,
+    INDEX idx_ghn_webhook_received_at (received_at)
+);
@@ -0,0 +1,10 @@
+CREATE TABLE IF NOT EXISTS idempotency_records (
+    id VARCHAR(64) PRIMARY KEY,
+    endpoint VARCHAR(255) NOT NULL,
+    user_email VARCHAR(255) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    response_body LONGTEXT DEFAULT NULL,
+    created_at DATETIME NOT NULL,
+    expires_at DATETIME NOT NULL,
+    INDEX idx_idempotency_expires_at (expires_at)
+);
@@ -0,0 +1,53 @@
+-- Kho lưu trữ đơn hàng cũ đã kết thúc (DELIVERED / REFUNDED / CANCELLED).
+-- Cấu trúc cột sao chép từ bảng nóng (CREATE TABLE ... AS SELECT không kéo theo index/FK),
+-- phân vùng theo năm để truy vấn báo cáo chỉ quét các năm cần thiết.
+-- Partition năm mới được OrderArchiveService tự thêm bằng REORGANIZE PARTITION pmax.
+
+CREATE TABLE orders_archive AS SELECT * FROM orders WHERE 1 = 0;
+ALTER TABLE orders_archive
+    MODIFY order_date_time DATETIME(6) NOT NULL,
+    ADD PRIMARY KEY (id, order_date_time),
+    ADD INDEX idx_orders_archive_date_status (order_date_time, status),
+    ADD INDEX idx_orders_archive_user (user_id),
+    ADD INDEX idx_orders_archive_code (order_code);
+ALTER TABLE orders_archive PARTITION BY RANGE COLUMNS (order_date_time) (
+    PARTITION p2023 VALUES LESS THAN ('2024-01-01'),
+    PARTITION p2024 VALUES LESS THAN ('2025-01-01'),
+    PARTITION p2025 VALUES LESS THAN ('2026-01-01'),
+    PARTITION p2026 VALUES LESS THAN ('2027-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+-- order_items không có cột thời gian nên lưu kèm order_date_time của đơn để phân vùng cùng nhịp với orders_archive
+CREATE TABLE order_items_archive AS SELECT * FROM order_items WHERE 1 = 0;
+ALTER TABLE order_items_archive
+    ADD COLUMN order_date_time DATETIME(6) NOT NULL,
+    ADD PRIMARY KEY (id, order_date_time),
+    ADD INDEX idx_order_items_archive_order (order_id),
+    ADD INDEX idx_order_items_archive_product (product_id);
+ALTER TABLE order_items_archive PARTITION BY RANGE COLUMNS (order_date_time) (
+    PARTITION p2023 VALUES LESS THAN ('2024-01-01'),
+    PARTITION p2024 VALUES LESS THAN ('2025-01-01'),
+    PARTITION p2025 VALUES LESS THAN ('2026-01-01'),
+    PARTITION p2026 VALUES LESS THAN ('2027-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE financial_records_archive AS SELECT * FROM financial_records WHERE 1 = 0;
+ALTER TABLE financial_records_archive
+    ADD PRIMARY KEY (id, occurred_at),
+    ADD INDEX idx_financial_records_archive_type_date (record_type, occurred_at),
+    ADD INDEX idx_financial_records_archive_order (order_id);
+ALTER TABLE financial_records_archive PARTITION BY RANGE COLUMNS (occurred_at) (
+    PARTITION p2023 VALUES LESS THAN ('2024-01-01'),
+    PARTITION p2024 VALUES LESS THAN ('2025-01-01'),
+    PARTITION p2025 VALUES LESS THAN ('2026-01-01'),
+    PARTITION p2026 VALUES LESS THAN ('2027-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+-- Vận đơn GHN của đơn đã lưu trữ (ít dữ liệu, không cần phân vùng)
+CREATE TABLE shipment_archive AS SELECT * FROM shipment WHERE 1 = 0;
+ALTER TABLE shipment_archive
+    ADD PRIMARY KEY (id),
+    ADD INDEX idx_shipment_archive_order (order_id);
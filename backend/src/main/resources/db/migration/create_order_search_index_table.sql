@@ -0,0 +1,23 @@
+-- Bảng tra cứu đơn hàng cho CSKH/nhân viên: mỗi đơn một dòng, mỗi cột tìm kiếm một index (cột, thời gian đặt)
+-- để truy vấn tiền tố (LIKE 'abc%') chỉ quét một đoạn index. Dữ liệu được đồng bộ qua outbox (ORDER_SEARCH_INDEX).
+CREATE TABLE IF NOT EXISTS order_search_index (
+    order_id        VARCHAR(255) NOT NULL PRIMARY KEY,
+    user_id         VARCHAR(255) NULL,
+    order_code      VARCHAR(64)  NULL,
+    customer_email  VARCHAR(255) NULL,
+    customer_phone  VARCHAR(32)  NULL,
+    recipient_name  VARCHAR(255) NULL,
+    recipient_phone VARCHAR(32)  NULL,
+    ghn_order_code  VARCHAR(64)  NULL,
+    order_date_time DATETIME(6)  NULL,
+    updated_at      DATETIME(6)  NOT NULL,
+    INDEX idx_osi_order_code (order_code, order_date_time),
+    INDEX idx_osi_customer_email (customer_email, order_date_time),
+    INDEX idx_osi_customer_phone (customer_phone, order_date_time),
+    INDEX idx_osi_recipient_name (recipient_name, order_date_time),
+    INDEX idx_osi_recipient_phone (recipient_phone, order_date_time),
+    INDEX idx_osi_ghn_order_code (ghn_order_code, order_date_time),
+    INDEX idx_osi_user (user_id)
+);
+
+-- Sau khi tạo bảng, gọi POST /orders/search-index/rebuild (ADMIN) một lần để nạp các đơn đã có.
@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id VARCHAR(36) PRIMARY KEY,
+    event_type VARCHAR(50) NOT NULL,
+    aggregate_id VARCHAR(255) DEFAULT NULL,
+    payload TEXT DEFAULT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME NOT NULL,
+    locked_at DATETIME DEFAULT NULL,
+    last_error TEXT DEFAULT NULL,
+    created_at DATETIME NOT NULL,
+    processed_at DATETIME DEFAULT NULL,
+    INDEX idx_outbox_status_next_attempt (status, next_attempt_at),
+    INDEX idx_outbox_aggregate (aggregate_id)
+);
@@ -0,0 +1,55 @@
+-- Bảng tổng hợp doanh thu theo giờ / ngày / tháng và phương thức thanh toán cho /api/financial/revenue/*.
+-- revenue: tổng FinancialRecord ORDER_PAYMENT theo thời điểm ghi nhận (occurred_at)
+-- order_count / sales_income / cost_of_goods: đơn đã thanh toán theo thời điểm đặt (order_date_time)
+-- Chỉ đơn thỏa điều kiện "đã thanh toán" (COD: DELIVERED, MoMo: CONFIRMED) mới được cộng vào.
+
+CREATE TABLE IF NOT EXISTS revenue_rollup_hourly (
+    bucket_start   DATETIME    NOT NULL,
+    payment_method VARCHAR(20) NOT NULL,
+    revenue        DOUBLE      NOT NULL DEFAULT 0,
+    order_count    BIGINT      NOT NULL DEFAULT 0,
+    sales_income   DOUBLE      NOT NULL DEFAULT 0,
+    cost_of_goods  DOUBLE      NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, payment_method)
+);
+
+CREATE TABLE IF NOT EXISTS revenue_rollup_daily (
+    bucket_start   DATE        NOT NULL,
+    payment_method VARCHAR(20) NOT NULL,
+    revenue        DOUBLE      NOT NULL DEFAULT 0,
+    order_count    BIGINT      NOT NULL DEFAULT 0,
+    sales_income   DOUBLE      NOT NULL DEFAULT 0,
+    cost_of_goods  DOUBLE      NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, payment_method)
+);
+
+-- bucket_start là ngày 1 của tháng
+CREATE TABLE IF NOT EXISTS revenue_rollup_monthly (
+    bucket_start   DATE        NOT NULL,
+    payment_method VARCHAR(20) NOT NULL,
+    revenue        DOUBLE      NOT NULL DEFAULT 0,
+    order_count    BIGINT      NOT NULL DEFAULT 0,
+    sales_income   DOUBLE      NOT NULL DEFAULT 0,
+    cost_of_goods  DOUBLE      NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, payment_method)
+);
+
+-- Phần đóng góp hiện tại của từng đơn vào bảng giờ; khi đơn thay đổi chỉ cộng/trừ phần chênh lệch
+CREATE TABLE IF NOT EXISTS revenue_rollup_contributions (
+    order_id       VARCHAR(255) NOT NULL,
+    bucket_start   DATETIME     NOT NULL,
+    payment_method VARCHAR(20)  NOT NULL,
+    revenue        DOUBLE       NOT NULL DEFAULT 0,
+    order_count    BIGINT       NOT NULL DEFAULT 0,
+    sales_income   DOUBLE       NOT NULL DEFAULT 0,
+    cost_of_goods  DOUBLE       NOT NULL DEFAULT 0,
+    PRIMARY KEY (order_id, bucket_start, payment_method)
+);
+
+-- Tiến độ backfill (một dòng). Báo cáo chỉ đọc bảng tổng hợp khi backfilled_at đã có giá trị.
+CREATE TABLE IF NOT EXISTS revenue_rollup_state (
+    id            TINYINT      NOT NULL PRIMARY KEY,
+    phase         VARCHAR(20)  NOT NULL,
+    cursor_id     VARCHAR(255) NULL,
+    backfilled_at DATETIME(6)  NULL
+);